@@ -0,0 +1,309 @@
+package com.glview.hwui;
+
+import android.graphics.Color;
+import android.opengl.Matrix;
+
+import com.glview.graphics.Bitmap;
+import com.glview.graphics.Rect;
+import com.glview.hwui.op.OpFactory;
+
+/**
+ * Micro benchmark of the display list op layer: recording through
+ * {@link GLRecordingCanvas}, staging in {@link RenderNode#end(GLCanvas)},
+ * decoding the flat op arrays of {@link com.glview.hwui.op.DisplayListData}
+ * and recycling the display lists through their pool.
+ * <p>
+ * Replay runs against {@link StubCanvas}, which keeps the snapshot/matrix
+ * bookkeeping of the real canvas but issues no GL at all, so the numbers
+ * only contain the cost of the op layer.
+ * <p>
+ * {@link #runTextList(int, int)} records a text heavy list where every view
+ * has paints of its own, and counts the paint copies kept by the display lists.
+ * <p>
+ * Lives in the hwui package of the demos because it drives package private API.
+ */
+public final class DisplayListBenchmark {
+	
+	/**
+	 * Approximate number of ops recorded into every child node, the
+	 * drawRenderNode op in the root node included, only used to size the list.
+	 * The results count the ops really recorded.
+	 */
+	final static int OPS_PER_NODE = 11;
+	
+	final static int WIDTH = 720;
+	final static int HEIGHT = 120;
+	
+	public static class Result {
+		public int ops;
+		public int iterations;
+		public long recordNs;
+		public long endNs;
+		public long replayNs;
+		public long recycleNs;
+		public long poolHits;
+		public long poolMisses;
+		/*
+		 * Ops recorded with a paint and the paint copies kept for them, in
+		 * the last iteration.
+		 */
+		public int paintedOps;
+		public int paintCopies;
+		
+		static String perOp(long ns, int iterations, int ops) {
+			return String.format("%.1f", ns / (double) iterations / ops);
+		}
+		
+		@Override
+		public String toString() {
+			return ops + " ops: record=" + perOp(recordNs, iterations, ops)
+					+ " end=" + perOp(endNs, iterations, ops)
+					+ " replay=" + perOp(replayNs, iterations, ops)
+					+ " recycle=" + perOp(recycleNs, iterations, ops) + " ns/op"
+					+ " pool hit=" + poolHits + " miss=" + poolMisses
+					+ (paintedOps > 0 ? " paints=" + paintCopies + "/" + paintedOps : "");
+		}
+	}
+	
+	final GLPaint mPaint = new GLPaint();
+	final Bitmap mBitmap = new Bitmap();
+	final Rect mRect = new Rect(0, 0, 48, 48);
+	final StubCanvas mCanvas = new StubCanvas();
+	
+	/*
+	 * The paints of the views of every row of the text list, equal from row
+	 * to row but different objects, like the paints of the widgets.
+	 */
+	GLPaint[] mBackgroundPaints = new GLPaint[0];
+	GLPaint[] mTitlePaints, mSummaryPaints, mDividerPaints;
+	
+	public DisplayListBenchmark() {
+		mPaint.setColor(Color.BLACK);
+		mCanvas.setSize(WIDTH, HEIGHT * 10);
+	}
+	
+	/**
+	 * Builds a root node with ops / {@link #OPS_PER_NODE} children and measures
+	 * every stage iterations times, the per op numbers are divided by the ops
+	 * recorded in the display lists.
+	 */
+	public Result run(int ops, int iterations) {
+		final int childCount = Math.max(1, ops / OPS_PER_NODE);
+		final RenderNode root = new RenderNode();
+		final RenderNode[] children = new RenderNode[childCount];
+		for (int i = 0; i < childCount; i ++) {
+			children[i] = new RenderNode();
+		}
+		
+		Result result = new Result();
+		result.iterations = iterations;
+		long hits = OpFactory.getHitCount();
+		long misses = OpFactory.getMissCount();
+		
+		for (int it = 0; it < iterations; it ++) {
+			for (int i = 0; i < childCount; i ++) {
+				RenderNode child = children[i];
+				long start = System.nanoTime();
+				GLCanvas canvas = child.start(WIDTH, HEIGHT);
+				recordItem(canvas, i);
+				long recorded = System.nanoTime();
+				child.end(canvas);
+				long ended = System.nanoTime();
+				result.recordNs += recorded - start;
+				result.endNs += ended - recorded;
+				child.setTop(i * HEIGHT);
+				child.setBottom((i + 1) * HEIGHT);
+			}
+			long start = System.nanoTime();
+			GLCanvas canvas = root.start(WIDTH, HEIGHT * childCount);
+			for (int i = 0; i < childCount; i ++) {
+				canvas.drawRenderNode(children[i]);
+			}
+			long recorded = System.nanoTime();
+			root.end(canvas);
+			long ended = System.nanoTime();
+			result.recordNs += recorded - start;
+			result.endNs += ended - recorded;
+			result.ops = countOps(root, children);
+			
+			// The first replay syncs the staged display lists, keep it out of the numbers.
+			replay(root);
+			start = System.nanoTime();
+			replay(root);
+			result.replayNs += System.nanoTime() - start;
+			
+			start = System.nanoTime();
+			for (int i = 0; i < childCount; i ++) {
+				children[i].recycleDisplayListData(false);
+			}
+			root.recycleDisplayListData(false);
+			result.recycleNs += System.nanoTime() - start;
+		}
+		root.destroy();
+		for (int i = 0; i < childCount; i ++) {
+			children[i].destroy();
+		}
+		result.poolHits = OpFactory.getHitCount() - hits;
+		result.poolMisses = OpFactory.getMissCount() - misses;
+		return result;
+	}
+	
+	/**
+	 * Records a list of ops / {@link #OPS_PER_NODE} text rows iterations times,
+	 * only the recording and the staging are measured.
+	 */
+	public Result runTextList(int ops, int iterations) {
+		final int childCount = Math.max(1, ops / OPS_PER_NODE);
+		final RenderNode root = new RenderNode();
+		final RenderNode[] children = new RenderNode[childCount];
+		for (int i = 0; i < childCount; i ++) {
+			children[i] = new RenderNode();
+		}
+		ensureRowPaints(childCount);
+		
+		Result result = new Result();
+		result.iterations = iterations;
+		for (int it = 0; it < iterations; it ++) {
+			result.paintedOps = 0;
+			result.paintCopies = 0;
+			for (int i = 0; i < childCount; i ++) {
+				RenderNode child = children[i];
+				long start = System.nanoTime();
+				GLCanvas canvas = child.start(WIDTH, HEIGHT);
+				recordTextRow(canvas, i);
+				long recorded = System.nanoTime();
+				child.end(canvas);
+				long ended = System.nanoTime();
+				result.recordNs += recorded - start;
+				result.endNs += ended - recorded;
+				result.paintedOps += child.mStageDisplayListData.getOpCount();
+				result.paintCopies += child.mStageDisplayListData.getPaintCount();
+			}
+			long start = System.nanoTime();
+			GLCanvas canvas = root.start(WIDTH, HEIGHT * childCount);
+			for (int i = 0; i < childCount; i ++) {
+				canvas.drawRenderNode(children[i]);
+			}
+			long recorded = System.nanoTime();
+			root.end(canvas);
+			result.recordNs += recorded - start;
+			result.endNs += System.nanoTime() - recorded;
+			result.ops = countOps(root, children);
+		}
+		root.destroy();
+		for (int i = 0; i < childCount; i ++) {
+			children[i].destroy();
+		}
+		return result;
+	}
+	
+	/*
+	 * The ops of the display lists staged by the last recording.
+	 */
+	private static int countOps(RenderNode root, RenderNode[] children) {
+		int ops = root.mStageDisplayListData.getOpCount();
+		for (int i = 0; i < children.length; i ++) {
+			ops += children[i].mStageDisplayListData.getOpCount();
+		}
+		return ops;
+	}
+	
+	private void ensureRowPaints(int rows) {
+		if (mBackgroundPaints.length >= rows) return;
+		mBackgroundPaints = new GLPaint[rows];
+		mTitlePaints = new GLPaint[rows];
+		mSummaryPaints = new GLPaint[rows];
+		mDividerPaints = new GLPaint[rows];
+		for (int i = 0; i < rows; i ++) {
+			mBackgroundPaints[i] = new GLPaint();
+			mBackgroundPaints[i].setColor(Color.WHITE);
+			mTitlePaints[i] = new GLPaint();
+			mTitlePaints[i].setColor(Color.BLACK);
+			mTitlePaints[i].setTextSize(36);
+			mSummaryPaints[i] = new GLPaint();
+			mSummaryPaints[i].setColor(Color.GRAY);
+			mSummaryPaints[i].setTextSize(24);
+			mDividerPaints[i] = new GLPaint();
+			mDividerPaints[i].setColor(Color.LTGRAY);
+			mDividerPaints[i].setStrokeWidth(2);
+		}
+	}
+	
+	/**
+	 * A row of text views, 9 ops with a paint.
+	 */
+	private void recordTextRow(GLCanvas canvas, int index) {
+		canvas.drawRect(0, 0, WIDTH, HEIGHT, mBackgroundPaints[index]);
+		canvas.drawText("Item title", 80, 40, mTitlePaints[index]);
+		canvas.drawText("Item summary", 80, 70, mSummaryPaints[index]);
+		canvas.drawText("Item detail", 80, 100, mSummaryPaints[index]);
+		canvas.drawText("12:00", WIDTH - 100, 40, mSummaryPaints[index]);
+		canvas.drawText("Label", WIDTH - 100, 70, mTitlePaints[index]);
+		canvas.drawText("More", WIDTH - 100, 100, mSummaryPaints[index]);
+		canvas.drawRect(80, 0, WIDTH, 1, mDividerPaints[index]);
+		canvas.drawLine(80, HEIGHT - 1, WIDTH, HEIGHT - 1, mDividerPaints[index]);
+	}
+	
+	private void replay(RenderNode root) {
+		mCanvas.beginFrame();
+		mCanvas.drawRenderNode(root);
+		mCanvas.endFrame();
+	}
+	
+	/**
+	 * A typical list item, icon + background + two lines of text. Records
+	 * {@link #OPS_PER_NODE} - 1 ops with the translate flushed before the
+	 * bitmap, the RenderNodeOp in the parent is the last one.
+	 */
+	private void recordItem(GLCanvas canvas, int index) {
+		canvas.drawRect(0, 0, WIDTH, HEIGHT, mPaint);
+		canvas.save();
+		canvas.translate(16, 16);
+		canvas.drawBitmap(mBitmap, mRect, mRect, mPaint);
+		canvas.restore();
+		canvas.save();
+		canvas.clipRect(80, 0, WIDTH, HEIGHT);
+		canvas.drawText("Item title", 80, 40, mPaint);
+		canvas.drawText("Item summary", 80, 90, mPaint);
+		canvas.restore();
+	}
+	
+	/**
+	 * A canvas doing the state bookkeeping of {@link GL20Canvas} without any GL.
+	 */
+	static class StubCanvas extends StatefullBaseCanvas {
+		
+		int mDrawCount;
+		
+		@Override
+		public void setSize(int width, int height) {
+			super.setSize(width, height);
+			Matrix.setIdentityM(currentSnapshot().transform, 0);
+		}
+		
+		@Override
+		public void beginFrame() {
+			mDrawCount = 0;
+		}
+		
+		@Override
+		public void endFrame() {
+			restoreToCount(1);
+		}
+		
+		@Override
+		public void drawRect(float left, float top, float right, float bottom, GLPaint paint) {
+			mDrawCount ++;
+		}
+		
+		@Override
+		public void drawBitmap(Bitmap bitmap, Rect source, Rect target, GLPaint paint) {
+			mDrawCount ++;
+		}
+		
+		@Override
+		public void drawText(CharSequence text, int start, int end, float x, float y, GLPaint paint, boolean drawDefer) {
+			mDrawCount ++;
+		}
+	}
+}
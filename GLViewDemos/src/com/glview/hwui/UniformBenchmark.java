@@ -0,0 +1,152 @@
+package com.glview.hwui;
+
+import android.opengl.Matrix;
+
+import com.glview.App;
+import com.glview.graphics.shader.A8TextureShader;
+import com.glview.graphics.shader.BaseShader;
+import com.glview.graphics.shader.DefaultColorShader;
+import com.glview.graphics.shader.DefaultTextureShader;
+import com.glview.hwui.task.Task;
+import com.glview.libgdx.graphics.glutils.ShaderProgram;
+import com.glview.libgdx.graphics.glutils.ShaderProgram.HandleInfo;
+import com.glview.libgdx.graphics.opengl.GL20;
+import com.glview.libgdx.graphics.opengl.HeadlessGL20;
+
+/**
+ * Counts the GL calls of the uniforms of a list frame drawn immediately,
+ * with and without {@link ShaderProgram#shadowUniforms}.
+ * <p>
+ * Every row of the list draws a background, an icon, two lines of text and a
+ * divider with the programs and the uniforms of {@link GL20Canvas}, the rows
+ * have transforms of their own. The programs run against a
+ * {@link HeadlessGL20} installed in the RenderThread for the time of the
+ * run, the frames of the app wait for it.
+ * <p>
+ * Lives in the hwui package of the demos because it drives package private API.
+ */
+public final class UniformBenchmark {
+
+	final static int WIDTH = 720;
+	final static int HEIGHT = 120;
+
+	public static class Result {
+		public int rows;
+		public int frames;
+		public long callsPerFrame;
+		public long uniformCallsPerFrame;
+		public long shadowedCallsPerFrame;
+		public long shadowedUniformCallsPerFrame;
+
+		@Override
+		public String toString() {
+			return rows + " rows: gl calls/frame=" + callsPerFrame + " -> " + shadowedCallsPerFrame
+					+ ", uniforms/frame=" + uniformCallsPerFrame + " -> " + shadowedUniformCallsPerFrame;
+		}
+	}
+
+	final HandleInfo mProjTrans = new HandleInfo("u_projTrans");
+	final HandleInfo mColorTotal = new HandleInfo("u_ColorTotal");
+	final HandleInfo mTexture = new HandleInfo("u_texture");
+	final HandleInfo mTexSize = new HandleInfo("u_texSize");
+
+	final float[] mProjection = new float[16];
+	final float[] mMatrix = new float[16];
+
+	ShaderProgram mColorProgram, mTextureProgram, mTextProgram;
+	ShaderProgram mCurrentProgram;
+
+	public UniformBenchmark() {
+		Matrix.orthoM(mProjection, 0, 0, WIDTH, HEIGHT * 10, 0, -1, 1);
+	}
+
+	/**
+	 * Draws frames of a list of rows in the RenderThread, once with and
+	 * once without the shadowed uniforms.
+	 */
+	public Result run(final int rows, final int frames) {
+		final Result result = new Result();
+		result.rows = rows;
+		result.frames = frames;
+		CanvasContext.sTaskHandler.postAndWait(new Task() {
+			@Override
+			public void doTask() {
+				final GL20 gl = App.getGL20();
+				final boolean shadow = ShaderProgram.shadowUniforms;
+				final HeadlessGL20 headless = new HeadlessGL20();
+				App.setGL20(headless);
+				try {
+					ShaderProgram.shadowUniforms = false;
+					runFrames(headless, rows, frames);
+					result.callsPerFrame = headless.getCallCount() / frames;
+					result.uniformCallsPerFrame = headless.getUniformCallCount() / frames;
+
+					ShaderProgram.shadowUniforms = true;
+					runFrames(headless, rows, frames);
+					result.shadowedCallsPerFrame = headless.getCallCount() / frames;
+					result.shadowedUniformCallsPerFrame = headless.getUniformCallCount() / frames;
+				} finally {
+					ShaderProgram.shadowUniforms = shadow;
+					App.setGL20(gl);
+				}
+			}
+		});
+		return result;
+	}
+
+	private void runFrames(HeadlessGL20 gl, int rows, int frames) {
+		mColorProgram = createProgram(new DefaultColorShader());
+		mTextureProgram = createProgram(new DefaultTextureShader());
+		mTextProgram = createProgram(new A8TextureShader());
+		gl.reset();
+		for (int i = 0; i < frames; i ++) {
+			drawFrame(gl, rows);
+		}
+		mColorProgram.dispose();
+		mTextureProgram.dispose();
+		mTextProgram.dispose();
+	}
+
+	private static ShaderProgram createProgram(BaseShader shader) {
+		return new ShaderProgram(shader.getVertexShader(), shader.getFragmentShader());
+	}
+
+	private void drawFrame(HeadlessGL20 gl, int rows) {
+		mCurrentProgram = null;
+		for (int i = 0; i < rows; i ++) {
+			Matrix.translateM(mMatrix, 0, mProjection, 0, 0, i * HEIGHT, 0);
+			// Background and icon.
+			drawColor(gl, 1, 1, 1, 1);
+			drawTexture(gl, mTextureProgram, 1, 1, 1, 1, 16, 16, 48, 48);
+			// Two lines of text in the same glyph page.
+			drawTexture(gl, mTextProgram, 0, 0, 0, 1, 0, 0, 1024, 1024);
+			drawTexture(gl, mTextProgram, 0.5f, 0.5f, 0.5f, 1, 0, 0, 1024, 1024);
+			// Divider.
+			drawColor(gl, 0.8f, 0.8f, 0.8f, 1);
+		}
+	}
+
+	private void useProgram(HeadlessGL20 gl, ShaderProgram program) {
+		if (mCurrentProgram != program) {
+			gl.glUseProgram(program.getProgram());
+			mCurrentProgram = program;
+		}
+	}
+
+	private void drawColor(HeadlessGL20 gl, float r, float g, float b, float a) {
+		useProgram(gl, mColorProgram);
+		mColorProgram.setUniformMatrix4fv(mProjTrans, mMatrix, 0, 16);
+		mColorProgram.setUniformf(mColorTotal, r, g, b, a);
+		gl.glDrawArrays(GL20.GL_TRIANGLE_STRIP, 0, 4);
+	}
+
+	private void drawTexture(HeadlessGL20 gl, ShaderProgram program, float r, float g, float b, float a,
+			float x, float y, float width, float height) {
+		useProgram(gl, program);
+		program.setUniformMatrix4fv(mProjTrans, mMatrix, 0, 16);
+		program.setUniformf(mColorTotal, r, g, b, a);
+		program.setUniformi(mTexture, 0);
+		program.setUniformf(mTexSize, x, y, width, height);
+		gl.glDrawArrays(GL20.GL_TRIANGLE_STRIP, 0, 4);
+	}
+}
@@ -0,0 +1,50 @@
+package com.rendernode.test.demos.benchmark;
+
+import android.graphics.Color;
+import android.os.Bundle;
+import android.util.Log;
+
+import com.glview.hwui.DisplayListBenchmark;
+import com.glview.widget.TextView;
+import com.rendernode.test.demos.BaseActivity;
+
+/**
+ * Record/end/replay/recycle cost of display lists with 100, 1k and 10k ops,
+ * and the recording of a 1k ops text list with its paint copies.
+ */
+public class DisplayListBenchmarkActivity extends BaseActivity {
+	
+	final static String TAG = "DisplayListBenchmark";
+	
+	final static int[] OPS = {100, 1000, 10000};
+	final static int ITERATIONS = 50;
+	final static int TEXT_LIST_OPS = 1000;
+
+	@Override
+	protected void onCreate(Bundle savedInstanceState) {
+		super.onCreate(savedInstanceState);
+		DisplayListBenchmark benchmark = new DisplayListBenchmark();
+		// Warm up the op pools and the JIT.
+		benchmark.run(OPS[OPS.length - 1], 5);
+		
+		StringBuilder sb = new StringBuilder();
+		for (int ops : OPS) {
+			DisplayListBenchmark.Result result = benchmark.run(ops, ITERATIONS);
+			Log.d(TAG, result.toString());
+			sb.append(result).append('\n');
+		}
+		// Paints shared by the ops of a text heavy list.
+		benchmark.runTextList(TEXT_LIST_OPS, 5);
+		DisplayListBenchmark.Result result = benchmark.runTextList(TEXT_LIST_OPS, ITERATIONS);
+		Log.d(TAG, "text list " + result);
+		sb.append("text list ").append(result).append('\n');
+		
+		TextView tv = new TextView(this);
+		tv.setBackgroundColor(Color.WHITE);
+		tv.setTextColor(Color.BLACK);
+		tv.setTextSize(20);
+		tv.setText(sb);
+		setGLContentView(tv);
+	}
+	
+}
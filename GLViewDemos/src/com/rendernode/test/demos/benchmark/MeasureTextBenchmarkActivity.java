@@ -0,0 +1,57 @@
+package com.rendernode.test.demos.benchmark;
+
+import android.graphics.Color;
+import android.os.Bundle;
+import android.util.Log;
+
+import com.glview.graphics.font.GlyphAdvanceCache;
+import com.glview.hwui.GLPaint;
+import com.glview.widget.TextView;
+import com.rendernode.test.demos.BaseActivity;
+
+/**
+ * Compares cold (empty glyph advance cache) and warm measureText throughput.
+ */
+public class MeasureTextBenchmarkActivity extends BaseActivity {
+	
+	final static String TAG = "MeasureTextBenchmark";
+	
+	final static String TEXT = "The quick brown fox jumps over the lazy dog 1234567890, 哎呦我去，这是怎么个情况";
+	final static int ITERATIONS = 2000;
+
+	@Override
+	protected void onCreate(Bundle savedInstanceState) {
+		super.onCreate(savedInstanceState);
+		GLPaint paint = new GLPaint();
+		paint.setTextSize(30);
+		
+		long cold = 0;
+		for (int i = 0; i < ITERATIONS; i ++) {
+			GlyphAdvanceCache.clearAll();
+			long start = System.nanoTime();
+			paint.measureText(TEXT);
+			cold += System.nanoTime() - start;
+		}
+		
+		paint.measureText(TEXT);
+		long warm = 0;
+		for (int i = 0; i < ITERATIONS; i ++) {
+			long start = System.nanoTime();
+			paint.measureText(TEXT);
+			warm += System.nanoTime() - start;
+		}
+		
+		String result = "measureText x" + ITERATIONS + ", " + TEXT.length() + " chars\n"
+				+ "cold: " + (cold / ITERATIONS) + " ns/call\n"
+				+ "warm: " + (warm / ITERATIONS) + " ns/call";
+		Log.d(TAG, result);
+		
+		TextView tv = new TextView(this);
+		tv.setBackgroundColor(Color.WHITE);
+		tv.setTextColor(Color.BLACK);
+		tv.setTextSize(20);
+		tv.setText(result);
+		setGLContentView(tv);
+	}
+	
+}
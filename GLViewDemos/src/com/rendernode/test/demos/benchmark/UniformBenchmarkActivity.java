@@ -0,0 +1,42 @@
+package com.rendernode.test.demos.benchmark;
+
+import android.graphics.Color;
+import android.os.Bundle;
+import android.util.Log;
+
+import com.glview.hwui.UniformBenchmark;
+import com.glview.widget.TextView;
+import com.rendernode.test.demos.BaseActivity;
+
+/**
+ * GL calls per frame of the uniforms of lists of 10 and 50 rows, with and
+ * without the shadowed uniform values of the programs.
+ */
+public class UniformBenchmarkActivity extends BaseActivity {
+	
+	final static String TAG = "UniformBenchmark";
+	
+	final static int[] ROWS = {10, 50};
+	final static int FRAMES = 60;
+
+	@Override
+	protected void onCreate(Bundle savedInstanceState) {
+		super.onCreate(savedInstanceState);
+		UniformBenchmark benchmark = new UniformBenchmark();
+		
+		StringBuilder sb = new StringBuilder();
+		for (int rows : ROWS) {
+			UniformBenchmark.Result result = benchmark.run(rows, FRAMES);
+			Log.d(TAG, result.toString());
+			sb.append(result).append('\n');
+		}
+		
+		TextView tv = new TextView(this);
+		tv.setBackgroundColor(Color.WHITE);
+		tv.setTextColor(Color.BLACK);
+		tv.setTextSize(20);
+		tv.setText(sb);
+		setGLContentView(tv);
+	}
+	
+}
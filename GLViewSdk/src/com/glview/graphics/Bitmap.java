@@ -31,6 +31,12 @@ public class Bitmap {
 	private boolean mHasMipMap;
 	private boolean mHasAlpha;
 	
+	/*
+	 * Pinned by the display lists drawing the bitmap, see pin().
+	 */
+	private int mPinCount;
+	private boolean mRecyclePending;
+	
 	// Package-scoped for fast access.
     int mDensity = getDefaultDensity();
 
@@ -77,6 +83,22 @@ public class Bitmap {
 		}
 	}
 	
+	/**
+	 * @return true if the pixels are in memory, {@link #getBitmap()} won't decode.
+	 */
+	public final boolean isDecoded() {
+		synchronized (lock) {
+			return mBitmap != null;
+		}
+	}
+	
+	/**
+	 * @return true if the pixels can be decoded again after {@link #freeBitmap()}.
+	 */
+	public final boolean isDecodable() {
+		return desireFreeBitmap();
+	}
+	
 	private void initialProperties() {
 		if (mBitmap != null) {
 			mWidth = mBitmap.getWidth();
@@ -209,12 +231,45 @@ public class Bitmap {
 	
 	public void recycle() {
 		synchronized (lock) {
-			if (mBitmap != null && !mBitmap.isRecycled()) {
-				mBitmap.recycle();
+			mRecycled = true;
+			if (mPinCount > 0) {
+				// Still read by the RenderThread, freed by the last unpin().
+				mRecyclePending = true;
+				return;
+			}
+			recycleLocked();
+		}
+	}
+	
+	private void recycleLocked() {
+		if (mBitmap != null && !mBitmap.isRecycled()) {
+			mBitmap.recycle();
+		}
+		mBitmap = null;
+	}
+	
+	/**
+	 * Keep the pixels until {@link #unpin()}, a display list pins the bitmaps
+	 * it draws until the RenderThread is done with it. A {@link #recycle()}
+	 * meanwhile only marks the bitmap recycled.
+	 * @hide
+	 */
+	public final void pin() {
+		synchronized (lock) {
+			mPinCount ++;
+		}
+	}
+	
+	/**
+	 * @hide
+	 */
+	public final void unpin() {
+		synchronized (lock) {
+			if (-- mPinCount == 0 && mRecyclePending) {
+				mRecyclePending = false;
+				recycleLocked();
 			}
-			mBitmap = null;
 		}
-		mRecycled = true;
 	}
 	
 	/**
@@ -111,7 +111,7 @@ public class BitmapFactory {
      */
     public static Bitmap decodeResource(Resources res, int id, Options opts) {
     	android.graphics.Bitmap bm = android.graphics.BitmapFactory.decodeResource(res, id, opts);
-    	if (bm != null) return new ResourceBitmap(res, id, opts);
+    	if (bm != null) return new ResourceBitmap(bm, res, id, opts);
     	else return null;
     }
 
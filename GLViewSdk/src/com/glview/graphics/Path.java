@@ -17,9 +17,11 @@
 package com.glview.graphics;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map.Entry;
 import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * The Path class encapsulates compound (multiple contour) geometric paths
@@ -44,9 +46,12 @@ public final class Path {
      * @param src The path to copy from when initializing the new path
      */
 	public Path(Path src) {
-		fPoints.addAll(src.fPoints);
-		fVerbs.addAll(src.fVerbs);
+		fPts = Arrays.copyOf(src.fPts, src.fPointCount * 2);
+		fPointCount = src.fPointCount;
+		fVerbBytes = Arrays.copyOf(src.fVerbBytes, src.fVerbCount);
+		fVerbCount = src.fVerbCount;
 		fLastMoveToIndex = src.fLastMoveToIndex;
+		copyCaches(src);
 	}
 	
 	/**
@@ -54,21 +59,186 @@ public final class Path {
      * This does NOT change the fill-type setting.
      */
 	public void reset() {
-		fPoints.clear();
-		fVerbs.clear();
+		fPointCount = 0;
+		fVerbCount = 0;
 		fLastMoveToIndex = ~0;
+		invalidate();
+	}
+	
+	/**
+     * Hint to the path to prepare for adding more points. This can allow the
+     * path to more efficiently allocate its storage.
+     *
+     * @param extraPtCount The number of extra points that may be added to this
+     *                     path
+     */
+	public void incReserve(int extraPtCount) {
+		if (extraPtCount > 0) {
+			ensurePoints(fPointCount + extraPtCount);
+			ensureVerbs(fVerbCount + extraPtCount);
+		}
 	}
 	
 	/** Replace the contents of this with the contents of src.
 	    */
     public void set(Path src) {
         if (this != src) {
-        	reset();
-        	fPoints.addAll(src.fPoints);
-    		fVerbs.addAll(src.fVerbs);
+        	fPointCount = 0;
+        	fVerbCount = 0;
+        	ensurePoints(src.fPointCount);
+        	ensureVerbs(src.fVerbCount);
+        	System.arraycopy(src.fPts, 0, fPts, 0, src.fPointCount * 2);
+        	System.arraycopy(src.fVerbBytes, 0, fVerbBytes, 0, src.fVerbCount);
+        	fPointCount = src.fPointCount;
+        	fVerbCount = src.fVerbCount;
     		fLastMoveToIndex = src.fLastMoveToIndex;
+    		copyCaches(src);
         }
     }
+    
+    private void copyCaches(Path src) {
+    	mGenerationId = src.getGenerationId();
+    	mBoundsValid = src.mBoundsValid;
+    	mBoundsLeft = src.mBoundsLeft;
+    	mBoundsTop = src.mBoundsTop;
+    	mBoundsRight = src.mBoundsRight;
+    	mBoundsBottom = src.mBoundsBottom;
+    	mConvexity = src.mConvexity;
+    }
+    
+    /*
+     * The contents changed.
+     */
+    private void invalidate() {
+    	mGenerationId = 0;
+    	mBoundsValid = false;
+    	mConvexity = CONVEXITY_UNKNOWN;
+    }
+    
+    /**
+     * Returns an id that changes when the contents of the path change, and is
+     * shared by the copies of the same contents.
+     *
+     * @return a positive id, unique to the contents among all paths
+     */
+    public int getGenerationId() {
+    	if (mGenerationId == 0) {
+    		mGenerationId = sNextGenerationId.getAndIncrement();
+    	}
+    	return mGenerationId;
+    }
+    
+    /**
+     * Returns a copy of the path to keep while the path may change, it has the
+     * same generation id and is returned again until the path changes. The
+     * copy must not be changed.
+     *
+     * @hide
+     */
+    public Path snapshot() {
+    	final int generationId = getGenerationId();
+    	Path snapshot = mSnapshot;
+    	if (snapshot == null || snapshot.mGenerationId != generationId) {
+    		snapshot = new Path(this);
+    		mSnapshot = snapshot;
+    	}
+    	return snapshot;
+    }
+    
+    /**
+     * Compute the bounds of the control points of the path, and write the
+     * answer into bounds. If the path contains 0 or 1 points, the bounds is
+     * set to (0,0,0,0)
+     *
+     * @param bounds Returns the computed bounds of the path's control points.
+     */
+    public void computeBounds(RectF bounds) {
+    	if (!mBoundsValid) {
+    		final int count = fPointCount;
+    		final float[] pts = fPts;
+    		float left = 0, top = 0, right = 0, bottom = 0;
+    		if (count > 1) {
+    			left = right = pts[0];
+    			top = bottom = pts[1];
+    			for (int i = 2; i < count * 2; i += 2) {
+    				final float x = pts[i], y = pts[i + 1];
+    				if (x < left) left = x;
+    				else if (x > right) right = x;
+    				if (y < top) top = y;
+    				else if (y > bottom) bottom = y;
+    			}
+    		}
+    		mBoundsLeft = left;
+    		mBoundsTop = top;
+    		mBoundsRight = right;
+    		mBoundsBottom = bottom;
+    		mBoundsValid = true;
+    	}
+    	bounds.set(mBoundsLeft, mBoundsTop, mBoundsRight, mBoundsBottom);
+    }
+    
+    /**
+     * Returns true if the path is a single contour whose points turn the same
+     * way, then its curves do too and it can be filled as a fan. The answer is
+     * kept until the path changes.
+     *
+     * @hide
+     */
+    public boolean isConvex() {
+    	if (mConvexity == CONVEXITY_UNKNOWN) {
+    		mConvexity = computeConvexity() ? CONVEXITY_CONVEX : CONVEXITY_CONCAVE;
+    	}
+    	return mConvexity == CONVEXITY_CONVEX;
+    }
+    
+    /*
+     * Every corner of the control polygon turns the same way and the x
+     * direction changes at most twice, a star turns the same way too.
+     */
+    private boolean computeConvexity() {
+    	final byte[] verbs = fVerbBytes;
+    	for (int i = 1; i < fVerbCount; i ++) {
+    		if (verbs[i] == VERB_MOVE) {
+    			// A second contour.
+    			return false;
+    		}
+    	}
+    	final float[] pts = fPts;
+    	int n = fPointCount;
+    	if (n > 1 && pts[0] == pts[n * 2 - 2] && pts[1] == pts[n * 2 - 1]) {
+    		// Closed on the first point.
+    		n --;
+    	}
+    	if (n < 3) return false;
+    	int sign = 0;
+    	int xChanges = 0;
+    	float firstDx = 0, lastDx = 0;
+    	for (int i = 0; i < n; i ++) {
+    		final int a = i * 2, b = ((i + 1) % n) * 2, c = ((i + 2) % n) * 2;
+    		final float dx1 = pts[b] - pts[a], dy1 = pts[b + 1] - pts[a + 1];
+    		final float dx2 = pts[c] - pts[b], dy2 = pts[c + 1] - pts[b + 1];
+    		final float cross = dx1 * dy2 - dy1 * dx2;
+    		if (cross > 0) {
+    			if (sign < 0) return false;
+    			sign = 1;
+    		} else if (cross < 0) {
+    			if (sign > 0) return false;
+    			sign = -1;
+    		}
+    		if (dx1 != 0) {
+    			if (lastDx == 0) {
+    				firstDx = dx1;
+    			} else if ((dx1 > 0) != (lastDx > 0)) {
+    				xChanges ++;
+    			}
+    			lastDx = dx1;
+    		}
+    	}
+    	if (lastDx != 0 && (firstDx > 0) != (lastDx > 0)) {
+    		xChanges ++;
+    	}
+    	return sign != 0 && xChanges <= 2;
+    }
 	
 	/**
      * Returns true if the path is empty (contains no lines or curves)
@@ -86,7 +256,7 @@ public final class Path {
 	public PointF getLastPt(PointF dst) {
 		int count = countPoints();
 		if (count > 0) {
-			dst.set(fPoints.get(count - 1));
+			dst.set(fPts[count * 2 - 2], fPts[count * 2 - 1]);
 		} else {
 			dst.set(0, 0);
 		}
@@ -101,8 +271,8 @@ public final class Path {
      */
 	public void moveTo(float x, float y) {
 		fLastMoveToIndex = countPoints();
-		int p = growForVerb(Verb.kMove_Verb);
-		fPoints.get(p).set(x, y);
+		int p = growForVerb(VERB_MOVE, 1);
+		setPoint(p, x, y);
 	}
 	
 	/**
@@ -130,8 +300,8 @@ public final class Path {
      */
 	public void lineTo(float x, float y) {
 		this.injectMoveToIfNeeded();
-		int p = growForVerb(Verb.kLine_Verb);
-		fPoints.get(p).set(x, y);
+		int p = growForVerb(VERB_LINE, 1);
+		setPoint(p, x, y);
 	}
 	
 	/**
@@ -162,9 +332,9 @@ public final class Path {
      */
     public void quadTo(float x1, float y1, float x2, float y2) {
     	this.injectMoveToIfNeeded();
-    	int p = growForVerb(Verb.kQuad_Verb);
-    	fPoints.get(p).set(x1, y1);
-    	fPoints.get(p + 1).set(x2, y2);
+    	int p = growForVerb(VERB_QUAD, 2);
+    	setPoint(p, x1, y1);
+    	setPoint(p + 1, x2, y2);
     }
 
     /**
@@ -202,10 +372,10 @@ public final class Path {
     public void cubicTo(float x1, float y1, float x2, float y2,
                         float x3, float y3) {
     	this.injectMoveToIfNeeded();
-    	int p = growForVerb(Verb.kCubic_Verb);
-    	fPoints.get(p).set(x1, y1);
-    	fPoints.get(p + 1).set(x2, y2);
-    	fPoints.get(p + 2).set(x3, y3);
+    	int p = growForVerb(VERB_CUBIC, 3);
+    	setPoint(p, x1, y1);
+    	setPoint(p + 1, x2, y2);
+    	setPoint(p + 2, x3, y3);
     }
 
     /**
@@ -486,16 +656,16 @@ public final class Path {
 	public void close() {
 		int count = countVerbs();
 	    if (count > 0) {
-	    	switch (fVerbs.get(count - 1)) {
-	    	case kLine_Verb:
-            case kQuad_Verb:
-            case kConic_Verb:
-            case kCubic_Verb:
-            case kMove_Verb: {
-            	growForVerb(Verb.kClose_Verb);
+	    	switch (fVerbBytes[count - 1]) {
+	    	case VERB_LINE:
+            case VERB_QUAD:
+            case VERB_CONIC:
+            case VERB_CUBIC:
+            case VERB_MOVE: {
+            	growForVerb(VERB_CLOSE, 0);
                 break;
             }
-            case kClose_Verb:
+            case VERB_CLOSE:
                 // don't add a close if it's the first verb or a repeat
                 break;
             default:
@@ -765,9 +935,8 @@ public final class Path {
         	if (countVerbs() == 0) {
         		x = y = 0f;
         	} else {
-        		PointF pt = fPoints.get(~fLastMoveToIndex);
-        		x = pt.x;
-        		y = pt.y;
+        		x = fPts[(~fLastMoveToIndex) * 2];
+        		y = fPts[(~fLastMoveToIndex) * 2 + 1];
         	}
         	moveTo(x, y);
         }
@@ -969,36 +1138,38 @@ public final class Path {
     	List<PointF> segmentPoints = new ArrayList<PointF>();
     	List<Float> lengths = new ArrayList<Float>();
         float errorSquared = acceptableError * acceptableError;
-    	int srcPts = 0;
+    	final float[] srcPts = fPts;
+    	int srcPt = 0;
     	PointF fMoveTo = new PointF();;
-    	for (Verb verb : fVerbs) {
+    	for (int v = 0; v < fVerbCount; v ++) {
+    		Verb verb = VERBS[fVerbBytes[v]];
     		switch (verb) {
             case kMove_Verb:
-            	pts[0].set(fPoints.get(srcPts));
+            	pts[0].set(srcPts[srcPt], srcPts[srcPt + 1]);
             	lastPoint.set(pts[0]);
             	fMoveTo.set(lastPoint);
-            	srcPts += 1;
+            	srcPt += 2;
                 break;
             case kLine_Verb:
             	pts[0].set(lastPoint);
-            	pts[1].set(fPoints.get(srcPts));
+            	pts[1].set(srcPts[srcPt], srcPts[srcPt + 1]);
             	lastPoint.set(pts[1]);
-            	srcPts += 1;
+            	srcPt += 2;
                 break;
             case kQuad_Verb:
             	pts[0].set(lastPoint);;
-            	pts[1].set(fPoints.get(srcPts));
-            	pts[2].set(fPoints.get(srcPts + 1));
+            	pts[1].set(srcPts[srcPt], srcPts[srcPt + 1]);
+            	pts[2].set(srcPts[srcPt + 2], srcPts[srcPt + 3]);
                 lastPoint.set(pts[2]);
-                srcPts += 2;
+                srcPt += 4;
                 break;
             case kCubic_Verb:
             	pts[0].set(lastPoint);;
-            	pts[1].set(fPoints.get(srcPts));
-                pts[2].set(fPoints.get(srcPts + 1));
-                pts[3].set(fPoints.get(srcPts + 2));
+            	pts[1].set(srcPts[srcPt], srcPts[srcPt + 1]);
+                pts[2].set(srcPts[srcPt + 2], srcPts[srcPt + 3]);
+                pts[3].set(srcPts[srcPt + 4], srcPts[srcPt + 5]);
                 lastPoint.set(pts[3]);
-                srcPts += 3;
+                srcPt += 6;
                 break;
             case kClose_Verb:
             	lastPoint.set(fMoveTo);
@@ -1012,7 +1183,7 @@ public final class Path {
     	if (segmentPoints.isEmpty()) {
             int numVerbs = countVerbs();
             if (numVerbs == 1) {
-                addMove(segmentPoints, lengths, fPoints.get(0));
+                addMove(segmentPoints, lengths, new PointF(fPts[0], fPts[1]));
             } else {
                 // Invalid or empty path. Fall back to point(0,0)
                 addMove(segmentPoints, lengths, new PointF());
@@ -1042,56 +1213,166 @@ public final class Path {
         return approximation;
     }
     
-    private final List<PointF> fPoints = new ArrayList<PointF>();
-    private final List<Verb> fVerbs = new ArrayList<Verb>();
+    final static byte VERB_MOVE = 0;
+    final static byte VERB_LINE = 1;
+    final static byte VERB_QUAD = 2;
+    final static byte VERB_CONIC = 3;
+    final static byte VERB_CUBIC = 4;
+    final static byte VERB_CLOSE = 5;
+    
+    /*
+     * The verbs by their ordinal, as stored in fVerbBytes.
+     */
+    final static Verb[] VERBS = Verb.values();
+    
+    final static int MIN_POINTS = 8;
+    final static int MIN_VERBS = 8;
+    
+    /*
+     * x and y of every point, then the verbs as the ordinals of Verb.
+     */
+    private float[] fPts = EMPTY_POINTS;
+    private int fPointCount;
+    private byte[] fVerbBytes = EMPTY_VERBS;
+    private int fVerbCount;
     private int fLastMoveToIndex = ~0;
     
+    private final static float[] EMPTY_POINTS = new float[0];
+    private final static byte[] EMPTY_VERBS = new byte[0];
+    
+    private static final AtomicInteger sNextGenerationId = new AtomicInteger(1);
+    /*
+     * 0 until asked after a change.
+     */
+    private int mGenerationId;
+    private Path mSnapshot;
+    
+    private boolean mBoundsValid;
+    private float mBoundsLeft, mBoundsTop, mBoundsRight, mBoundsBottom;
+    
+    private final static int CONVEXITY_UNKNOWN = 0;
+    private final static int CONVEXITY_CONVEX = 1;
+    private final static int CONVEXITY_CONCAVE = 2;
+    private int mConvexity = CONVEXITY_UNKNOWN;
+    
     int countVerbs() {
-    	return fVerbs.size();
+    	return fVerbCount;
     }
     
     int countPoints() {
-    	return fPoints.size();
+    	return fPointCount;
     }
     
-    public final List<PointF> fPointFs() {
-    	return fPoints;
+    private void setPoint(int index, float x, float y) {
+    	fPts[index * 2] = x;
+    	fPts[index * 2 + 1] = y;
     }
     
-    public final List<Verb> fVerbs() {
-    	return fVerbs;
+    /*
+     * Grow by half at least, so adding the points one by one is amortized.
+     */
+    private void ensurePoints(int count) {
+    	if (count * 2 > fPts.length) {
+    		int capacity = Math.max(fPts.length / 2 + (fPts.length >> 2), MIN_POINTS);
+    		fPts = Arrays.copyOf(fPts, Math.max(capacity, count) * 2);
+    	}
     }
     
-    private int growForVerb(Verb verb) {
-    	int pCnt = 0;
-    	switch (verb) {
-    	case kMove_Verb:
-    	case kLine_Verb:
-    		pCnt = 1;
-    		break;
-    	case kQuad_Verb:
-            pCnt = 2;
-            break;
-        case kConic_Verb:
-            pCnt = 2;
-            break;
-        case kCubic_Verb:
-            pCnt = 3;
-            break;
-        case kClose_Verb:
-            pCnt = 0;
-            break;
-		default:
-			break;
-    	}
-    	int ret = countPoints();
-    	for (int i = 0; i < pCnt; i ++) {
-    		fPoints.add(new PointF());
+    private void ensureVerbs(int count) {
+    	if (count > fVerbBytes.length) {
+    		int capacity = Math.max(fVerbBytes.length + (fVerbBytes.length >> 1), MIN_VERBS);
+    		fVerbBytes = Arrays.copyOf(fVerbBytes, Math.max(capacity, count));
     	}
-    	fVerbs.add(verb);
+    }
+    
+    private int growForVerb(byte verb, int pointCount) {
+    	int ret = fPointCount;
+    	invalidate();
+    	ensurePoints(ret + pointCount);
+    	ensureVerbs(fVerbCount + 1);
+    	fPointCount = ret + pointCount;
+    	fVerbBytes[fVerbCount ++] = verb;
     	return ret;
     }
     
+    /**
+     * Walks the verbs and the points of a path without allocating, the
+     * iterator can be reused for another path with {@link #setPath(Path)}.
+     * The path must not change while iterated.
+     *
+     * @hide
+     */
+    public static final class Iter {
+    	
+    	Path mPath;
+    	int mVerb;
+    	int mPoint;
+    	float mMoveX, mMoveY;
+    	float mLastX, mLastY;
+    	
+    	public Iter() {
+    	}
+    	
+    	public Iter(Path path) {
+    		setPath(path);
+    	}
+    	
+    	public void setPath(Path path) {
+    		mPath = path;
+    		mVerb = 0;
+    		mPoint = 0;
+    		mMoveX = mMoveY = mLastX = mLastY = 0;
+    	}
+    	
+    	/**
+    	 * Returns the next verb and its points in pts, x and y by point: the
+    	 * point of a move, the last point and then the new ones for a line, a
+    	 * quad or a cubic, the first point of the contour for a close.
+    	 *
+    	 * @param pts room for 4 points
+    	 * @return the verb, kDone_Verb after the last one
+    	 */
+    	public Verb next(float[] pts) {
+    		final Path path = mPath;
+    		if (path == null || mVerb >= path.fVerbCount) {
+    			return Verb.kDone_Verb;
+    		}
+    		final Verb verb = VERBS[path.fVerbBytes[mVerb ++]];
+    		final float[] src = path.fPts;
+    		int count = 0;
+    		switch (verb) {
+    		case kMove_Verb:
+    			mMoveX = mLastX = pts[0] = src[mPoint * 2];
+    			mMoveY = mLastY = pts[1] = src[mPoint * 2 + 1];
+    			mPoint ++;
+    			return verb;
+    		case kLine_Verb:
+    			count = 1;
+    			break;
+    		case kQuad_Verb:
+    		case kConic_Verb:
+    			count = 2;
+    			break;
+    		case kCubic_Verb:
+    			count = 3;
+    			break;
+    		case kClose_Verb:
+    			mLastX = pts[0] = mMoveX;
+    			mLastY = pts[1] = mMoveY;
+    			return verb;
+    		default:
+    			return verb;
+    		}
+    		pts[0] = mLastX;
+    		pts[1] = mLastY;
+    		System.arraycopy(src, mPoint * 2, pts, 2, count * 2);
+    		mPoint += count;
+    		mLastX = pts[count * 2];
+    		mLastY = pts[count * 2 + 1];
+    		return verb;
+    	}
+    }
+    
     public enum Verb {
         kMove_Verb,     //!< iter.next returns 1 point
         kLine_Verb,     //!< iter.next returns 2 points
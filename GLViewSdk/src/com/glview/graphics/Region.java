@@ -16,6 +16,15 @@
 
 package com.glview.graphics;
 
+/**
+ * A union of a few rectangles, used to accumulate the damage of a frame.
+ * <p>
+ * Unlike SkRegion the rectangles may overlap. {@link Op#UNION} drops a
+ * rectangle inside another one, and once there are more than
+ * {@link #MAX_RECTS} of them the region is collapsed to its bounds, so a union
+ * may cover more than its operands. The other ops are exact, they split the
+ * rectangles in bands around the ones they remove.
+ */
 public class Region {
 
     // the native values for these must match up with the enum in SkRegion.h
@@ -28,4 +37,412 @@ public class Region {
         REPLACE;
     }
 
+    public static final int MAX_RECTS = 8;
+
+    private Rect[] mRects = new Rect[MAX_RECTS];
+    private int mCount;
+    private final Rect mBounds = new Rect();
+
+    /** Create an empty region */
+    public Region() {
+        for (int i = 0; i < MAX_RECTS; i++) {
+            mRects[i] = new Rect();
+        }
+    }
+
+    /** Return a copy of the specified region */
+    public Region(Region region) {
+        this();
+        set(region);
+    }
+
+    /** Return a region set to the specified rectangle */
+    public Region(Rect r) {
+        this();
+        set(r);
+    }
+
+    /** Return a region set to the specified rectangle */
+    public Region(int left, int top, int right, int bottom) {
+        this();
+        set(left, top, right, bottom);
+    }
+
+    /** Set the region to the empty region */
+    public void setEmpty() {
+        mCount = 0;
+        mBounds.setEmpty();
+    }
+
+    /** Set the region to the specified region. */
+    public boolean set(Region region) {
+        if (region == this) {
+            return mCount > 0;
+        }
+        ensureCapacity(region.mCount);
+        mCount = region.mCount;
+        for (int i = 0; i < mCount; i++) {
+            mRects[i].set(region.mRects[i]);
+        }
+        mBounds.set(region.mBounds);
+        return mCount > 0;
+    }
+
+    /** Set the region to the specified rectangle */
+    public boolean set(Rect r) {
+        return set(r.left, r.top, r.right, r.bottom);
+    }
+
+    /** Set the region to the specified rectangle */
+    public boolean set(int left, int top, int right, int bottom) {
+        if (left >= right || top >= bottom) {
+            setEmpty();
+            return false;
+        }
+        mRects[0].set(left, top, right, bottom);
+        mCount = 1;
+        mBounds.set(left, top, right, bottom);
+        return true;
+    }
+
+    /**
+     * Return true if this region is empty
+     */
+    public boolean isEmpty() {
+        return mCount == 0;
+    }
+
+    /**
+     * Return true if the region contains a single rectangle
+     */
+    public boolean isRect() {
+        return mCount == 1;
+    }
+
+    /**
+     * Return a new Rect set to the bounds of the region. If the region is
+     * empty, the Rect will be set to [0, 0, 0, 0]
+     */
+    public Rect getBounds() {
+        return new Rect(mBounds);
+    }
+
+    /**
+     * Set the Rect to the bounds of the region. If the region is empty, the
+     * Rect will be set to [0, 0, 0, 0]
+     */
+    public boolean getBounds(Rect r) {
+        r.set(mBounds);
+        return mCount > 0;
+    }
+
+    /**
+     * @return the number of rectangles of the region.
+     */
+    public int getRectCount() {
+        return mCount;
+    }
+
+    /**
+     * Set the Rect to the rectangle at the index, 0 <= index < {@link #getRectCount()}.
+     */
+    public void getRect(int index, Rect r) {
+        if (index < 0 || index >= mCount) {
+            throw new IndexOutOfBoundsException("index=" + index + ", count=" + mCount);
+        }
+        r.set(mRects[index]);
+    }
+
+    /**
+     * Return true if the region contains the specified point
+     */
+    public boolean contains(int x, int y) {
+        if (!mBounds.contains(x, y)) {
+            return false;
+        }
+        for (int i = 0; i < mCount; i++) {
+            if (mRects[i].contains(x, y)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Return true if the region is empty, or if the specified rectangle does
+     * not intersect the region. Returning false is not a guarantee that they
+     * intersect, but returning true is a guarantee that they do not.
+     */
+    public boolean quickReject(Rect r) {
+        return quickReject(r.left, r.top, r.right, r.bottom);
+    }
+
+    /**
+     * Return true if the region is empty, or if the specified rectangle does
+     * not intersect the region. Returning false is not a guarantee that they
+     * intersect, but returning true is a guarantee that they do not.
+     */
+    public boolean quickReject(int left, int top, int right, int bottom) {
+        if (mCount == 0 || !mBounds.intersects(left, top, right, bottom)) {
+            return true;
+        }
+        for (int i = 0; i < mCount; i++) {
+            if (mRects[i].intersects(left, top, right, bottom)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Translate the region by [dx, dy]. If the region is empty, do nothing.
+     */
+    public void translate(int dx, int dy) {
+        for (int i = 0; i < mCount; i++) {
+            mRects[i].offset(dx, dy);
+        }
+        if (mCount > 0) {
+            mBounds.offset(dx, dy);
+        }
+    }
+
+    public final boolean union(Rect r) {
+        return op(r.left, r.top, r.right, r.bottom, Op.UNION);
+    }
+
+    /**
+     * Perform the specified Op on this region and the specified rect. Return
+     * true if the result of the op is not empty.
+     */
+    public boolean op(Rect r, Op op) {
+        return op(r.left, r.top, r.right, r.bottom, op);
+    }
+
+    /**
+     * Perform the specified Op on this region and the specified rect. Return
+     * true if the result of the op is not empty.
+     */
+    public boolean op(int left, int top, int right, int bottom, Op op) {
+        switch (op) {
+            case INTERSECT:
+                intersect(left, top, right, bottom);
+                break;
+            case UNION:
+                if (left < right && top < bottom) {
+                    add(left, top, right, bottom);
+                }
+                break;
+            case REPLACE:
+                set(left, top, right, bottom);
+                break;
+            default:
+                return op(new Region(left, top, right, bottom), op);
+        }
+        return mCount > 0;
+    }
+
+    /**
+     * Perform the specified Op on this region and the specified region. Return
+     * true if the result of the op is not empty.
+     */
+    public boolean op(Region region, Op op) {
+        if (region == this) {
+            region = new Region(this);
+        }
+        switch (op) {
+            case UNION:
+                for (int i = 0; i < region.mCount; i++) {
+                    final Rect r = region.mRects[i];
+                    add(r.left, r.top, r.right, r.bottom);
+                }
+                break;
+            case REPLACE:
+                set(region);
+                break;
+            case INTERSECT:
+                if (region.mCount == 1) {
+                    intersect(region.mBounds.left, region.mBounds.top,
+                            region.mBounds.right, region.mBounds.bottom);
+                } else {
+                    intersect(region);
+                }
+                break;
+            case DIFFERENCE:
+                subtract(region);
+                break;
+            case REVERSE_DIFFERENCE: {
+                final Region src = new Region(this);
+                set(region);
+                subtract(src);
+                break;
+            }
+            case XOR: {
+                final Region other = new Region(region);
+                other.subtract(this);
+                subtract(region);
+                for (int i = 0; i < other.mCount; i++) {
+                    final Rect r = other.mRects[i];
+                    append(r.left, r.top, r.right, r.bottom);
+                }
+                updateBounds();
+                break;
+            }
+        }
+        return mCount > 0;
+    }
+
+    /*
+     * The pairwise intersections of the rectangles.
+     */
+    private void intersect(Region region) {
+        final int count = mCount;
+        for (int i = 0; i < count; i++) {
+            final Rect a = mRects[i];
+            for (int j = 0; j < region.mCount; j++) {
+                final Rect b = region.mRects[j];
+                final int left = Math.max(a.left, b.left);
+                final int top = Math.max(a.top, b.top);
+                final int right = Math.min(a.right, b.right);
+                final int bottom = Math.min(a.bottom, b.bottom);
+                if (left < right && top < bottom) {
+                    append(left, top, right, bottom);
+                }
+            }
+        }
+        keepAppended(count);
+        updateBounds();
+    }
+
+    /*
+     * Each rectangle is split in the bands above, beside and below the
+     * rectangles removed.
+     */
+    private void subtract(Region region) {
+        for (int j = 0; j < region.mCount && mCount > 0; j++) {
+            final Rect s = region.mRects[j];
+            if (!mBounds.intersects(s.left, s.top, s.right, s.bottom)) {
+                continue;
+            }
+            final int count = mCount;
+            for (int i = 0; i < count; i++) {
+                final Rect a = mRects[i];
+                final int left = a.left, top = a.top, right = a.right, bottom = a.bottom;
+                if (!a.intersects(s.left, s.top, s.right, s.bottom)) {
+                    append(left, top, right, bottom);
+                    continue;
+                }
+                final int bandTop = Math.max(top, s.top);
+                final int bandBottom = Math.min(bottom, s.bottom);
+                if (top < s.top) {
+                    append(left, top, right, s.top);
+                }
+                if (left < s.left) {
+                    append(left, bandTop, s.left, bandBottom);
+                }
+                if (s.right < right) {
+                    append(s.right, bandTop, right, bandBottom);
+                }
+                if (s.bottom < bottom) {
+                    append(left, s.bottom, right, bottom);
+                }
+            }
+            keepAppended(count);
+            updateBounds();
+        }
+    }
+
+    /*
+     * Drop the first count rectangles, keeping the ones appended after them.
+     */
+    private void keepAppended(int count) {
+        final int n = mCount - count;
+        for (int i = 0; i < n; i++) {
+            final Rect r = mRects[i];
+            mRects[i] = mRects[count + i];
+            mRects[count + i] = r;
+        }
+        mCount = n;
+    }
+
+    private void append(int left, int top, int right, int bottom) {
+        ensureCapacity(mCount + 1);
+        mRects[mCount++].set(left, top, right, bottom);
+    }
+
+    private void ensureCapacity(int count) {
+        if (count <= mRects.length) {
+            return;
+        }
+        final Rect[] rects = new Rect[Math.max(count, mRects.length * 2)];
+        System.arraycopy(mRects, 0, rects, 0, mRects.length);
+        for (int i = mRects.length; i < rects.length; i++) {
+            rects[i] = new Rect();
+        }
+        mRects = rects;
+    }
+
+    private void intersect(int left, int top, int right, int bottom) {
+        int count = 0;
+        for (int i = 0; i < mCount; i++) {
+            final Rect r = mRects[i];
+            if (r.intersect(left, top, right, bottom)) {
+                if (count != i) {
+                    mRects[count].set(r);
+                }
+                count++;
+            }
+        }
+        mCount = count;
+        updateBounds();
+    }
+
+    private void add(int left, int top, int right, int bottom) {
+        if (mCount == 0) {
+            set(left, top, right, bottom);
+            return;
+        }
+        int count = 0;
+        for (int i = 0; i < mCount; i++) {
+            final Rect r = mRects[i];
+            if (r.contains(left, top, right, bottom)) {
+                // Nothing new.
+                return;
+            }
+            // Drop the rectangles covered by the new one.
+            if (left > r.left || top > r.top || right < r.right || bottom < r.bottom) {
+                if (count != i) {
+                    mRects[count].set(r);
+                }
+                count++;
+            }
+        }
+        mCount = count;
+        mBounds.union(left, top, right, bottom);
+        if (mCount >= MAX_RECTS) {
+            // Too many pieces, just keep the bounds.
+            mRects[0].set(mBounds);
+            mCount = 1;
+            return;
+        }
+        mRects[mCount++].set(left, top, right, bottom);
+    }
+
+    private void updateBounds() {
+        mBounds.setEmpty();
+        for (int i = 0; i < mCount; i++) {
+            mBounds.union(mRects[i]);
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Region(");
+        for (int i = 0; i < mCount; i++) {
+            if (i > 0) sb.append(", ");
+            mRects[i].toShortString(sb);
+        }
+        sb.append(')');
+        return sb.toString();
+    }
 }
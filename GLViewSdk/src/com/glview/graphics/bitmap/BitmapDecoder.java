@@ -0,0 +1,220 @@
+package com.glview.graphics.bitmap;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import android.os.Process;
+import android.util.Log;
+
+import com.glview.graphics.Bitmap;
+
+/**
+ * Decodes the pixels of the bitmaps created from a file, an asset or a resource
+ * in a small pool of background threads, so they are never decoded by the
+ * RenderThread or the UI thread the first time they are drawn.
+ * <p>
+ * The requests of one bitmap are coalesced by {@link Bitmap#generateCacheKey()},
+ * the bitmaps drawn on screen go before the ones prefetched for a list, and
+ * a request not started yet can be canceled.
+ */
+public final class BitmapDecoder {
+
+	final static String TAG = "BitmapDecoder";
+	final static boolean DEBUG = false;
+
+	/**
+	 * The bitmap is drawn and has nothing to draw until it's decoded.
+	 */
+	public final static int PRIORITY_VISIBLE = 2;
+	/**
+	 * The bitmap is likely to be drawn soon.
+	 */
+	public final static int PRIORITY_PREFETCH = 1;
+
+	final static int THREAD_COUNT = 2;
+	final static int KEEP_ALIVE_SECONDS = 10;
+
+	/**
+	 * Called in a decoder thread when the bitmap is decoded.
+	 */
+	public interface OnDecodedListener {
+		void onBitmapDecoded(Bitmap bitmap, boolean succeeded);
+	}
+
+	private static BitmapDecoder sInstance;
+
+	public static synchronized BitmapDecoder getInstance() {
+		if (sInstance == null) {
+			sInstance = new BitmapDecoder();
+		}
+		return sInstance;
+	}
+
+	final ThreadPoolExecutor mExecutor;
+	final HashMap<String, Request> mRequests = new HashMap<String, Request>();
+
+	/*
+	 * Keeps the order of the requests of the same priority.
+	 */
+	long mSequence;
+
+	private BitmapDecoder() {
+		mExecutor = new ThreadPoolExecutor(THREAD_COUNT, THREAD_COUNT, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+				new PriorityBlockingQueue<Runnable>(), new ThreadFactory() {
+					int mCount = 0;
+					@Override
+					public Thread newThread(final Runnable r) {
+						return new Thread("BitmapDecoder #" + (++ mCount)) {
+							@Override
+							public void run() {
+								Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+								r.run();
+							}
+						};
+					}
+				});
+		mExecutor.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * @return true if the bitmap has to be decoded before it can be drawn.
+	 */
+	public static boolean needsDecode(Bitmap bitmap) {
+		return bitmap != null && !bitmap.isRecycled() && bitmap.isDecodable() && !bitmap.isDecoded();
+	}
+
+	/**
+	 * Decode the bitmap in background, a request of the same bitmap queued
+	 * already is raised to the given priority.
+	 * @param listener null-ok.
+	 * @return false if the bitmap doesn't need to be decoded.
+	 */
+	public boolean decode(Bitmap bitmap, int priority, OnDecodedListener listener) {
+		if (!needsDecode(bitmap)) {
+			return false;
+		}
+		final String key = bitmap.generateCacheKey();
+		synchronized (mRequests) {
+			Request request = mRequests.get(key);
+			if (request == null) {
+				request = new Request(key, bitmap, priority, mSequence ++);
+				request.addListener(listener);
+				mRequests.put(key, request);
+				mExecutor.execute(request);
+				if (DEBUG) Log.d(TAG, "decode " + key + ", priority=" + priority);
+				return true;
+			}
+			request.addListener(listener);
+			if (!request.mStarted && request.mPriority < priority && mExecutor.remove(request)) {
+				request.mPriority = priority;
+				mExecutor.execute(request);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Decode the bitmap in background before it is drawn.
+	 */
+	public boolean prefetch(Bitmap bitmap) {
+		return decode(bitmap, PRIORITY_PREFETCH, null);
+	}
+
+	/**
+	 * Drop the request of the bitmap if it's not started yet, its listeners
+	 * are not called.
+	 */
+	public void cancel(Bitmap bitmap) {
+		if (bitmap == null) return;
+		final String key = bitmap.generateCacheKey();
+		synchronized (mRequests) {
+			Request request = mRequests.get(key);
+			if (request != null && !request.mStarted && mExecutor.remove(request)) {
+				mRequests.remove(key);
+				if (DEBUG) Log.d(TAG, "cancel " + key);
+			}
+		}
+	}
+
+	/**
+	 * Cancel a prefetch, a bitmap drawn on screen is still decoded.
+	 */
+	public void cancelPrefetch(Bitmap bitmap) {
+		if (bitmap == null) return;
+		synchronized (mRequests) {
+			Request request = mRequests.get(bitmap.generateCacheKey());
+			if (request != null && request.mPriority == PRIORITY_PREFETCH) {
+				cancel(bitmap);
+			}
+		}
+	}
+
+	void finish(Request request, boolean succeeded) {
+		ArrayList<OnDecodedListener> listeners;
+		synchronized (mRequests) {
+			mRequests.remove(request.mKey);
+			listeners = request.mListeners;
+		}
+		if (listeners == null) return;
+		for (int i = 0; i < listeners.size(); i ++) {
+			listeners.get(i).onBitmapDecoded(request.mBitmap, succeeded);
+		}
+	}
+
+	final class Request implements Runnable, Comparable<Request> {
+
+		final String mKey;
+		final Bitmap mBitmap;
+		final long mSequence;
+		int mPriority;
+		boolean mStarted;
+		ArrayList<OnDecodedListener> mListeners;
+
+		Request(String key, Bitmap bitmap, int priority, long sequence) {
+			mKey = key;
+			mBitmap = bitmap;
+			mPriority = priority;
+			mSequence = sequence;
+		}
+
+		void addListener(OnDecodedListener listener) {
+			if (listener == null) return;
+			if (mListeners == null) {
+				mListeners = new ArrayList<OnDecodedListener>(1);
+			}
+			if (!mListeners.contains(listener)) {
+				mListeners.add(listener);
+			}
+		}
+
+		@Override
+		public void run() {
+			synchronized (mRequests) {
+				if (mRequests.get(mKey) != this) {
+					return;
+				}
+				mStarted = true;
+			}
+			boolean succeeded = false;
+			try {
+				succeeded = !mBitmap.isRecycled() && mBitmap.getBitmap() != null;
+			} catch (Throwable e) {
+				Log.w(TAG, "decode " + mKey + " fail", e);
+			}
+			finish(this, succeeded);
+		}
+
+		@Override
+		public int compareTo(Request another) {
+			if (mPriority != another.mPriority) {
+				return another.mPriority - mPriority;
+			}
+			return mSequence < another.mSequence ? -1 : (mSequence == another.mSequence ? 0 : 1);
+		}
+	}
+
+}
@@ -23,6 +23,13 @@ public class ResourceBitmap extends Bitmap {
 		setBitmap(onGotBitmap());
 	}
 	
+	public ResourceBitmap(android.graphics.Bitmap bitmap, Resources resources, int resourceId, Options options) {
+		mResources = resources;
+		mResourceId = resourceId;
+		mOptions = options;
+		setBitmap(bitmap);
+	}
+	
 	@Override
 	protected android.graphics.Bitmap onGotBitmap() {
 		return BitmapFactory.decodeResource(mResources, mResourceId, mOptions);
@@ -18,14 +18,22 @@ public class FontUtils {
         if (text.length() == 0 || start == end) {
             return 0f;
         }
+        GlyphAdvanceCache cache = GlyphAdvanceCache.get(paint.getTypeface(), paint.getTextSize());
+        float r = 0f;
+        int i = start;
+        for (; i < end; i ++) {
+        	int advance = cache.getAdvance(text.charAt(i));
+        	if (advance == GlyphAdvanceCache.MISSING) break;
+        	r += advance;
+        }
+        if (i == end) {
+        	return r;
+        }
         FreeType.Face face = paint.getTypeface().face();
         synchronized (face) {
 	        face.setPixelSizes(0, paint.getTextSize());
-	        float r = 0f;
-	        for (int i = start; i < end; i ++) {
-	        	char c = text.charAt(i);
-	        	
-	        	r += measureChar(c, face);
+	        for (; i < end; i ++) {
+	        	r += measureChar(text.charAt(i), face, cache);
 	        }
 			return r;
         }
@@ -42,31 +50,36 @@ public class FontUtils {
         if (text.length == 0 || count == 0) {
             return 0f;
         }
+        GlyphAdvanceCache cache = GlyphAdvanceCache.get(paint.getTypeface(), paint.getTextSize());
+        float r = 0f;
+        int i = index;
+        for (; i < index + count; i ++) {
+        	int advance = cache.getAdvance(text[i]);
+        	if (advance == GlyphAdvanceCache.MISSING) break;
+        	r += advance;
+        }
+        if (i == index + count) {
+        	return r;
+        }
         FreeType.Face face = paint.getTypeface().face();
         synchronized (face) {
         	face.setPixelSizes(0, paint.getTextSize());
-        	float r = 0f;
-        	for (int i = index; i < index + count; i ++) {
-        		char c = text[i];
-        		
-        		r += measureChar(c, face);
+        	for (; i < index + count; i ++) {
+        		r += measureChar(text[i], face, cache);
         	}
         	return r;
         }
 	}
 	
-	private static float measureChar(char c, FreeType.Face face) {
-		int charIndex = face.getCharIndex(c);
-		if (charIndex == 0) {
-			c = 0;
-			charIndex = face.getCharIndex(c);
-		}
-		if (charIndex == 0) return 0f;
-		if (!face.loadChar(c, FreeType.FT_LOAD_DEFAULT)) {
-			return 0f;
+	/**
+	 * Must be called with the face lock held and the pixel size set.
+	 */
+	private static float measureChar(char c, FreeType.Face face, GlyphAdvanceCache cache) {
+		int advance = cache.getAdvance(c);
+		if (advance == GlyphAdvanceCache.MISSING) {
+			advance = cache.load(face, c);
 		}
-		FreeType.GlyphSlot slot = face.getGlyph();
-		return FreeType.toInt(slot.getAdvanceX());
+		return advance;
 	}
 	
 	public static int getFontMetricsInt(GLPaint paint, FontMetricsInt fmi) {
@@ -87,12 +100,23 @@ public class FontUtils {
 	}
 	
 	public static float getTextRunAdvances(GLPaint paint, char[] chars, int index, int count, float[] advances, int advanceIndex) {
+		GlyphAdvanceCache cache = GlyphAdvanceCache.get(paint.getTypeface(), paint.getTextSize());
+		float totalAdvance = 0f;
+		int i = 0;
+		for (; i < count; i ++) {
+			int advance = cache.getAdvance(chars[i + index]);
+			if (advance == GlyphAdvanceCache.MISSING) break;
+			advances[i + advanceIndex] = advance;
+			totalAdvance += advance;
+		}
+		if (i == count) {
+			return totalAdvance;
+		}
 		FreeType.Face face = paint.getTypeface().face();
 		synchronized (face) {
 	        face.setPixelSizes(0, paint.getTextSize());
-	        float totalAdvance = 0f;
-	        for (int i = 0; i < count; i ++) {
-	        	float advance = measureChar(chars[i + index], face);
+	        for (; i < count; i ++) {
+	        	float advance = measureChar(chars[i + index], face, cache);
 	        	advances[i + advanceIndex] = advance;
 	        	totalAdvance += advance;
 	        	
@@ -0,0 +1,170 @@
+package com.glview.graphics.font;
+
+import java.util.Arrays;
+
+import android.support.v4.util.LongSparseArray;
+
+import com.glview.freetype.FreeType;
+import com.glview.graphics.Typeface;
+
+/**
+ * Caches the glyph index and the horizontal advance of every char measured or
+ * drawn with one (typeface, text size) pair, so that repeated measurement
+ * does not need to go through FreeType again.
+ * <p>
+ * Shared by {@link FontUtils} and {@link com.glview.hwui.font.FontRenderer}.
+ * Entries are stored in an open addressing char map of primitive arrays,
+ * lookups never allocate and take no lock. {@link #put(int, int, int)} is
+ * synchronized and publishes a new copy of the map.
+ * <p>
+ * Lock order: the {@link FreeType.Face} lock may be held while calling into
+ * this class, but never the other way around.
+ */
+public final class GlyphAdvanceCache {
+
+	/**
+	 * Returned by {@link #getAdvance(int)} and {@link #getGlyphIndex(int)} on a miss.
+	 */
+	public final static int MISSING = Integer.MIN_VALUE;
+
+	private final static int INITIAL_CAPACITY = 128;
+
+	private static final LongSparseArray<GlyphAdvanceCache> sCaches = new LongSparseArray<GlyphAdvanceCache>();
+
+	public static GlyphAdvanceCache get(Typeface typeface, int textSize) {
+		long key = typeface.index() * 10000L + textSize;
+		synchronized (sCaches) {
+			GlyphAdvanceCache cache = sCaches.get(key);
+			if (cache == null) {
+				cache = new GlyphAdvanceCache();
+				sCaches.put(key, cache);
+			}
+			return cache;
+		}
+	}
+
+	/**
+	 * Drop every cached advance, called when trimming memory.
+	 */
+	public static void clearAll() {
+		synchronized (sCaches) {
+			sCaches.clear();
+		}
+	}
+
+	private final static int EMPTY = -1;
+
+	/*
+	 * An open addressing map of the chars to their glyph index in the high 32
+	 * bits and their advance in the low 32 bits. Never changed once published.
+	 */
+	private final static class Table {
+		final int[] mKeys;
+		final long[] mValues;
+		final int mSize;
+
+		Table(int[] keys, long[] values, int size) {
+			mKeys = keys;
+			mValues = values;
+			mSize = size;
+		}
+
+		int slot(int c) {
+			final int[] keys = mKeys;
+			final int mask = keys.length - 1;
+			int i = hash(c) & mask;
+			while (keys[i] != EMPTY && keys[i] != c) {
+				i = (i + 1) & mask;
+			}
+			return i;
+		}
+	}
+
+	/*
+	 * Replaced by a copy on every put, under the lock of this cache.
+	 */
+	private volatile Table mTable;
+
+	private GlyphAdvanceCache() {
+		final int[] keys = new int[INITIAL_CAPACITY];
+		Arrays.fill(keys, EMPTY);
+		mTable = new Table(keys, new long[INITIAL_CAPACITY], 0);
+	}
+
+	private static int hash(int c) {
+		int h = c * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	public int getAdvance(int c) {
+		final Table table = mTable;
+		final int i = table.slot(c);
+		return table.mKeys[i] == EMPTY ? MISSING : (int) table.mValues[i];
+	}
+
+	public int getGlyphIndex(int c) {
+		final Table table = mTable;
+		final int i = table.slot(c);
+		return table.mKeys[i] == EMPTY ? MISSING : (int) (table.mValues[i] >> 32);
+	}
+
+	/*
+	 * A miss is rare and the table small, it is copied.
+	 */
+	public synchronized void put(int c, int glyphIndex, int advance) {
+		final Table table = mTable;
+		final long value = ((long) glyphIndex << 32) | (advance & 0xFFFFFFFFL);
+		int i = table.slot(c);
+		final boolean added = table.mKeys[i] == EMPTY;
+		if (!added && table.mValues[i] == value) {
+			return;
+		}
+		final int size = added ? table.mSize + 1 : table.mSize;
+		final int capacity = size << 1 > table.mKeys.length ? table.mKeys.length << 1 : table.mKeys.length;
+		final Table copy;
+		if (capacity == table.mKeys.length) {
+			copy = new Table(table.mKeys.clone(), table.mValues.clone(), size);
+		} else {
+			final int[] keys = new int[capacity];
+			Arrays.fill(keys, EMPTY);
+			copy = new Table(keys, new long[capacity], size);
+			for (int j = 0; j < table.mKeys.length; j ++) {
+				if (table.mKeys[j] != EMPTY) {
+					final int k = copy.slot(table.mKeys[j]);
+					keys[k] = table.mKeys[j];
+					copy.mValues[k] = table.mValues[j];
+				}
+			}
+			i = copy.slot(c);
+		}
+		copy.mKeys[i] = c;
+		copy.mValues[i] = value;
+		mTable = copy;
+	}
+
+	public int size() {
+		return mTable.mSize;
+	}
+
+	/**
+	 * Load the glyph of the char through FreeType and cache it.
+	 * The caller must hold the face lock and have set its pixel size.
+	 *
+	 * @return the advance of the char, 0 if the face has no glyph for it.
+	 */
+	public int load(FreeType.Face face, int c) {
+		int charIndex = face.getCharIndex(c);
+		int glyphChar = c;
+		if (charIndex == 0) {
+			glyphChar = 0;
+			charIndex = face.getCharIndex(glyphChar);
+		}
+		int advance = 0;
+		if (charIndex != 0 && face.loadChar(glyphChar, FreeType.FT_LOAD_DEFAULT)) {
+			advance = FreeType.toInt(face.getGlyph().getAdvanceX());
+		}
+		put(c, charIndex, advance);
+		return advance;
+	}
+
+}
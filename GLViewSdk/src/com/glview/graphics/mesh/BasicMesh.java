@@ -1,5 +1,6 @@
 package com.glview.graphics.mesh;
 
+import com.glview.libgdx.graphics.Mesh;
 import com.glview.libgdx.graphics.VertexAttribute;
 import com.glview.libgdx.graphics.VertexAttributes;
 import com.glview.libgdx.graphics.VertexAttributes.Usage;
@@ -34,6 +35,13 @@ public abstract class BasicMesh {
 	 */
 	int drawMode = GL20.GL_TRIANGLES;
 	
+	/*
+	 * The vertices are read by the RenderThread, a mesh changing them after
+	 * it is drawn holds the lock meanwhile, see notifyVerticesChanged().
+	 */
+	private final Object mLock = new Object();
+	private int mGenerationId;
+	
 	protected BasicMesh() {
 	}
 	
@@ -105,20 +113,59 @@ public abstract class BasicMesh {
 		return drawMode;
 	}
 	
+	/**
+	 * The vertices and the indices are read under this lock, change them under
+	 * it then call {@link #notifyVerticesChanged()}.
+	 */
+	public final Object getLock() {
+		return mLock;
+	}
+	
+	/**
+	 * The vertices or the indices changed, the next frame uploads them again.
+	 */
+	public final void notifyVerticesChanged() {
+		synchronized (mLock) {
+			mGenerationId ++;
+		}
+	}
+	
+	public final int getGenerationId() {
+		synchronized (mLock) {
+			return mGenerationId;
+		}
+	}
+	
+	/**
+	 * Copy the vertices and the indices to the mesh, in RenderThread.
+	 * @return the generation copied.
+	 */
+	public final int copyTo(Mesh mesh) {
+		synchronized (mLock) {
+			mesh.setVertices(getVertices());
+			mesh.setIndices(getIndices());
+			return mGenerationId;
+		}
+	}
+	
 	public final float[] getVertices() {
-		float[] vertices = generateVertices();
-		if (vertices.length * 4 > getVertexCount() * attributes.vertexSize) {
-			throw new IllegalArgumentException("vertices too large!");
+		synchronized (mLock) {
+			float[] vertices = generateVertices();
+			if (vertices.length * 4 > getVertexCount() * attributes.vertexSize) {
+				throw new IllegalArgumentException("vertices too large!");
+			}
+			return vertices;
 		}
-		return vertices;
 	}
 	
 	public final short[] getIndices() {
-		short[] indices = generateIndices();
-		if (indices.length > getIndexCount()) {
-			throw new IllegalArgumentException("indices too large!");
+		synchronized (mLock) {
+			short[] indices = generateIndices();
+			if (indices.length > getIndexCount()) {
+				throw new IllegalArgumentException("indices too large!");
+			}
+			return indices;
 		}
-		return indices;
 	}
 	
 	public float[] generateVertices() {
@@ -145,6 +192,10 @@ public abstract class BasicMesh {
 		return mHasColorAttr;
 	}
 	
+	/**
+	 * @return true to upload the vertices every frame, false to upload them
+	 * again only after {@link #notifyVerticesChanged()}.
+	 */
 	public boolean needReload() {
 		return true;
 	}
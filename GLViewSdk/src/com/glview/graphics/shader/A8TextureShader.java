@@ -29,6 +29,16 @@ public class A8TextureShader extends BaseShader {
 		return vertexShader.toString();
 	}
 	
+	@Override
+	public long getDescription() {
+		if (getClass() != A8TextureShader.class) {
+			return super.getDescription();
+		}
+		long description = DESCRIPTION_TYPE_A8_TEXTURE;
+		if (isA8Format()) description |= DESCRIPTION_A8;
+		return description;
+	}
+	
 	@Override
 	public void setupTextureCoords(float x, float y, float width, float height) {
 		getShaderProgram().setUniformf(mTexSizeHandle, x, y, width, height);
@@ -12,6 +12,18 @@ public abstract class BaseShader {
 	final static String COLOR_UNIFORM = "u_ColorTotal";
 	final static String TEXTURE_UNIFORM = "u_texture";
 
+	/*
+	 * The bits of getDescription(), the type of the shader and the options
+	 * its sources are generated with.
+	 */
+	final static long DESCRIPTION_TYPE_COLOR = 1;
+	final static long DESCRIPTION_TYPE_TEXTURE = 2;
+	final static long DESCRIPTION_TYPE_A8_TEXTURE = 3;
+	final static long DESCRIPTION_A8 = 1 << 4;
+	final static long DESCRIPTION_TEXCOORDS_ATTR = 1 << 5;
+	final static long DESCRIPTION_COLOR_ATTR = 1 << 6;
+	final static long DESCRIPTION_TOTAL_COLOR = 1 << 7;
+
 	WeakReference<ShaderProgram> mShaderProgram = null;
 	
 	protected boolean mHasTexture = false;
@@ -89,6 +101,17 @@ public abstract class BaseShader {
 		key = -1;
 	}
 	
+	/**
+	 * The shaders generating their sources from a few options describe them
+	 * as bits, the shaders with the same description share a program without
+	 * generating and comparing their sources.
+	 * @hide
+	 * @return 0 if the shader is only known by its sources.
+	 */
+	public long getDescription() {
+		return 0;
+	}
+	
 	public final int getKey() {
 		if (key == -1) {
 			key = getVertexShader().hashCode() * 31 + getFragmentShader().hashCode();
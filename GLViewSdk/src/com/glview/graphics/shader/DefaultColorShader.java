@@ -16,6 +16,17 @@ public class DefaultColorShader extends BaseShader{
 		}
 	}
 	
+	@Override
+	public long getDescription() {
+		if (getClass() != DefaultColorShader.class) {
+			// The sources may be generated differently.
+			return super.getDescription();
+		}
+		long description = DESCRIPTION_TYPE_COLOR;
+		if (mHasColorAttr) description |= DESCRIPTION_COLOR_ATTR;
+		return description;
+	}
+	
 	@Override
 	protected String generateVertexShader() {
 		StringBuffer vertexShader = new StringBuffer();
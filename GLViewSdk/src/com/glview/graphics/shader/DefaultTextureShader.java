@@ -36,6 +36,20 @@ public class DefaultTextureShader extends BaseShader {
 		}
 	}
 	
+	@Override
+	public long getDescription() {
+		if (getClass() != DefaultTextureShader.class) {
+			// The sources may be generated differently.
+			return super.getDescription();
+		}
+		long description = DESCRIPTION_TYPE_TEXTURE;
+		if (isA8Format()) description |= DESCRIPTION_A8;
+		if (mHasTexcoordsAttr) description |= DESCRIPTION_TEXCOORDS_ATTR;
+		if (mHasColorAttr) description |= DESCRIPTION_COLOR_ATTR;
+		if (mHasTotalColor) description |= DESCRIPTION_TOTAL_COLOR;
+		return description;
+	}
+	
 	@Override
 	protected String generateVertexShader() {
 		StringBuffer vertexShader = new StringBuffer();
@@ -1,6 +1,7 @@
 package com.glview.hwui;
 
 import com.glview.graphics.Bitmap;
+import com.glview.graphics.Path;
 import com.glview.graphics.Rect;
 import com.glview.graphics.RectF;
 import com.glview.graphics.drawable.ninepatch.NinePatch;
@@ -162,16 +163,22 @@ public abstract class AbsGLCanvas implements GLCanvas {
 	
 	@Override
 	public void drawCircle(float cx, float cy, float radius, GLPaint paint) {
+		drawOval(cx - radius, cy - radius, cx + radius, cy + radius, paint);
 	}
 	
 	@Override
 	public void drawRoundRect(RectF rect, float rx, float ry, GLPaint paint) {
+		drawRoundRect(rect.left, rect.top, rect.right, rect.bottom, rx, ry, paint);
 	}
 	
 	@Override
 	public void drawRoundRect(float left, float top, float right, float bottom,
 			float rx, float ry, GLPaint paint) {
 	}
+	
+	@Override
+	public void drawPath(Path path, GLPaint paint) {
+	}
 
 	@Override
 	public void drawRenderNode(RenderNode renderNode) {
@@ -185,9 +192,19 @@ public abstract class AbsGLCanvas implements GLCanvas {
 	public void clipRect(float left, float top, float right, float bottom) {
 	}
 
+	@Override
+	public boolean quickReject(float left, float top, float right, float bottom) {
+		return false;
+	}
+
 	@Override
 	public void beginFrame() {
 	}
+	
+	@Override
+	public void beginFrame(Rect dirty) {
+		beginFrame();
+	}
 
 	@Override
 	public void endFrame() {
@@ -3,18 +3,17 @@ package com.glview.hwui;
 import android.opengl.Matrix;
 
 import com.glview.graphics.Bitmap;
+import com.glview.graphics.Rect;
+import com.glview.graphics.drawable.ninepatch.NinePatch;
 import com.glview.graphics.shader.BaseShader;
 import com.glview.graphics.shader.DefaultTextureShader;
-import com.glview.libgdx.graphics.Mesh;
-import com.glview.libgdx.graphics.VertexAttribute;
-import com.glview.libgdx.graphics.VertexAttributes.Usage;
+import com.glview.hwui.cache.PatchCache;
 import com.glview.libgdx.graphics.glutils.ShaderProgram;
 import com.glview.libgdx.graphics.math.NumberUtils;
-import com.glview.libgdx.graphics.opengl.GL20;
+import com.glview.util.MatrixUtil;
 
 class Batch {
 	
-	private Mesh mMesh;
 	final GLCanvas mCanvas;
 	
 	final float[] mVertices;
@@ -27,40 +26,43 @@ class Batch {
 	
 	Caches mCaches;
 	
-	float[] temp = new float[16];
+	float[] mIdentityMatrix = new float[16];
+	/*
+	 * The transform of the queued quads when it is not a 2D affine one, their
+	 * vertices are left as they are and GL applies it.
+	 */
+	final float[] mModelMatrix = new float[16];
+	boolean mHasModelMatrix = false;
+	
+	/*
+	 * Dividers of the nine-patch being queued.
+	 */
+	float[] mDivX = new float[8], mDivY = new float[8];
+	float[] mDivU = new float[8], mDivV = new float[8];
+	
+	/*
+	 * The queued quads are all opaque, they are drawn with blending off.
+	 * A translucent quad flushes them first when they cover at least
+	 * MIN_OPAQUE_FLUSH_AREA pixels, a background for example, the draw
+	 * call is worth the fill rate saved.
+	 */
+	final static float MIN_OPAQUE_FLUSH_AREA = 256 * 256;
+	boolean mOpaque = true;
+	float mOpaqueArea;
 	
 	public Batch(GLCanvas canvas) {
 		this(canvas, 1000);
 	}
 	
 	public Batch(GLCanvas canvas, int size) {
-		// 32767 is max index, so 32767 / 6 - (32767 / 6 % 3) = 5460.
-		if (size > 5460) throw new IllegalArgumentException("Can't have more than 5460 sprites per batch: " + size);
-		mCanvas = canvas;
-		Matrix.setIdentityM(temp, 0);
 		mCaches = Caches.getInstance();
+		// The sprites of a flush are drawn at once from the quad stream.
+		final int maxSize = mCaches.quadStream.getMaxQuads();
+		if (size > maxSize) throw new IllegalArgumentException("Can't have more than " + maxSize + " sprites per batch: " + size);
+		mCanvas = canvas;
+		Matrix.setIdentityM(mIdentityMatrix, 0);
 		
-		mMesh = new Mesh(false, size * 4, size * 6, new VertexAttribute(
-				Usage.Position, 2, ShaderProgram.POSITION_ATTRIBUTE), // position
-				 new VertexAttribute(Usage.ColorPacked, 4,
-						 ShaderProgram.COLOR_ATTRIBUTE),
-				new VertexAttribute(Usage.TextureCoordinates, 2,
-						ShaderProgram.TEXCOORD_ATTRIBUTE));// texture position
-		
-		mVertices = new float[size * 20];
-		
-		int len = size * 6;
-		short[] indices = new short[len];
-		short j = 0;
-		for (int i = 0; i < len; i += 6, j += 4) {
-			indices[i] = j;
-			indices[i + 1] = (short)(j + 1);
-			indices[i + 2] = (short)(j + 2);
-			indices[i + 3] = (short)(j + 2);
-			indices[i + 4] = (short)(j + 3);
-			indices[i + 5] = j;
-		}
-		mMesh.setIndices(indices);
+		mVertices = new float[size * QuadStream.FLOATS_PER_QUAD];
 		mDefaultShader = new DefaultTextureShader();
 		mDefaultShader.setHasTexcoordsAttr(true);
 		mDefaultShader.setHasColorAttr(true);
@@ -74,71 +76,170 @@ class Batch {
 		mInvTexHeight = 1.0f / texture.getHeight();
 	}
 	
-	public void drawBitmap(Bitmap bitmap, float x, float y, float width, float height, float srcX, float srcY, float srcWidth, float srcHeight, float alpha, GLPaint paint) {
-		Texture texture = mCaches.textureCache.get(bitmap);
-		if (texture == null)
+	/**
+	 * Queue a sprite of the bitmap, the corners are mapped with transform
+	 * so sprites drawn with different 2D transforms still go in one draw call,
+	 * see {@link MatrixUtil#isAffine2D(float[])}. A null transform leaves the
+	 * vertices as they are.
+	 * Bitmaps packed in the same atlas page go in one draw call too.
+	 */
+	public void drawBitmap(Bitmap bitmap, float x, float y, float width, float height, float srcX, float srcY, float srcWidth, float srcHeight, float alpha, GLPaint paint, float[] transform) {
+		TextureRegion region = mCaches.textureCache.getRegion(bitmap);
+		if (region == null)
 			return;
-		float[] vertices = this.mVertices;
+		Texture texture = region.mTexture;
 
 		if (texture != mLastTexture)
 			switchTexture(texture);
-		else if (this.mIndex == vertices.length) //
+
+		final float u = region.mRegion.left + srcX * mInvTexWidth;
+		final float v = region.mRegion.top + srcY * mInvTexHeight;
+		final float u2 = region.mRegion.left + (srcX + srcWidth) * mInvTexWidth;
+		final float v2 = region.mRegion.top + (srcY + srcHeight) * mInvTexHeight;
+		final int packedColor = packColor(alpha * paint.getAlpha(), paint.getColor());
+		final float color = NumberUtils.intToFloatColor(packedColor);
+		drawQuad(x, y, x + width, y + height, u, v, u2, v2, color,
+				isOpaque(bitmap, packedColor), transform);
+	}
+	
+	/**
+	 * Queue a nine-patch stretched to the rect as one quad per patch,
+	 * the same layout as the mesh of {@link PatchCache}.
+	 */
+	public void drawPatch(NinePatch patch, Rect rect, float alpha, GLPaint paint, float[] transform) {
+		TextureRegion region = mCaches.textureCache.getRegion(patch.getBitmap());
+		if (region == null)
+			return;
+		final int[] divX = patch.getChunk().mDivX;
+		final int[] divY = patch.getChunk().mDivY;
+		if (mDivX.length < divX.length + 2) {
+			mDivX = new float[divX.length + 2];
+			mDivU = new float[divX.length + 2];
+		}
+		if (mDivY.length < divY.length + 2) {
+			mDivY = new float[divY.length + 2];
+			mDivV = new float[divY.length + 2];
+		}
+		final int nx = PatchCache.stretchX(patch, rect.width(), mDivX, mDivU);
+		final int ny = PatchCache.stretchY(patch, rect.height(), mDivY, mDivV);
+		if (nx < 2 || ny < 2)
+			return;
+		Texture texture = region.mTexture;
+		if (texture != mLastTexture)
+			switchTexture(texture);
+
+		final float left = rect.left, top = rect.top;
+		final float regionU = region.mRegion.left, regionV = region.mRegion.top;
+		final float regionWidth = region.mRegion.width(), regionHeight = region.mRegion.height();
+		final int packedColor = packColor(alpha * paint.getAlpha(), paint.getColor());
+		final float color = NumberUtils.intToFloatColor(packedColor);
+		final boolean opaque = isOpaque(patch.getBitmap(), packedColor);
+		for (int j = 0; j < ny - 1; j ++) {
+			final float v = regionV + mDivV[j] * regionHeight;
+			final float v2 = regionV + mDivV[j + 1] * regionHeight;
+			for (int i = 0; i < nx - 1; i ++) {
+				drawQuad(left + mDivX[i], top + mDivY[j], left + mDivX[i + 1], top + mDivY[j + 1],
+						regionU + mDivU[i] * regionWidth, v, regionU + mDivU[i + 1] * regionWidth, v2,
+						color, opaque, transform);
+			}
+		}
+	}
+	
+	private static boolean isOpaque(Bitmap bitmap, int packedColor) {
+		return !bitmap.hasAlpha() && (packedColor >>> 24) == 0xFF;
+	}
+	
+	private void drawQuad(float x, float y, float fx2, float fy2, float u, float v, float u2, float v2,
+			float color, boolean opaque, float[] transform) {
+		float[] vertices = this.mVertices;
+		if (transform != null && !MatrixUtil.isAffine2D(transform)) {
+			// A 3D transform, only the quads drawn with the same one can go
+			// in the draw call.
+			if (!mHasModelMatrix || !MatrixUtil.equals(mModelMatrix, transform)) {
+				flush();
+				System.arraycopy(transform, 0, mModelMatrix, 0, 16);
+				mHasModelMatrix = true;
+			}
+			transform = null;
+		} else if (mHasModelMatrix) {
 			flush();
+			mHasModelMatrix = false;
+		}
+		if (this.mIndex == vertices.length
+				|| (!opaque && mOpaque && mOpaqueArea >= MIN_OPAQUE_FLUSH_AREA))
+			flush();
+		
+		float x1 = x, y1 = y, x2 = x, y2 = fy2, x3 = fx2, y3 = fy2, x4 = fx2, y4 = y;
+		if (transform != null) {
+			final float sx = transform[0], kx = transform[4], tx = transform[12];
+			final float ky = transform[1], sy = transform[5], ty = transform[13];
+			x1 = sx * x + kx * y + tx;
+			y1 = ky * x + sy * y + ty;
+			x2 = sx * x + kx * fy2 + tx;
+			y2 = ky * x + sy * fy2 + ty;
+			x3 = sx * fx2 + kx * fy2 + tx;
+			y3 = ky * fx2 + sy * fy2 + ty;
+			x4 = sx * fx2 + kx * y + tx;
+			y4 = ky * fx2 + sy * y + ty;
+		}
 
-		final float u = srcX * mInvTexWidth;
-		final float v = srcY * mInvTexHeight;
-		final float u2 = (srcX + srcWidth) * mInvTexWidth;
-		final float v2 = (srcY + srcHeight) * mInvTexHeight;
-		final float fx2 = x + width;
-		final float fy2 = y + height;
+		if (opaque) {
+			if (mOpaque) {
+				// The quads are parallelograms.
+				mOpaqueArea += Math.abs((x4 - x1) * (y2 - y1) - (y4 - y1) * (x2 - x1));
+			}
+		} else {
+			mOpaque = false;
+		}
 
-		float color = NumberUtils.intToFloatColor(packColor(alpha * paint.getAlpha(), paint.getColor()));
 		int idx = this.mIndex;
-		vertices[idx++] = x;
-		vertices[idx++] = y;
+		vertices[idx++] = x1;
+		vertices[idx++] = y1;
 		vertices[idx++] = color;
 		vertices[idx++] = u;
 		vertices[idx++] = v;
 
-		vertices[idx++] = x;
-		vertices[idx++] = fy2;
+		vertices[idx++] = x2;
+		vertices[idx++] = y2;
 		vertices[idx++] = color;
 		vertices[idx++] = u;
 		vertices[idx++] = v2;
 
-		vertices[idx++] = fx2;
-		vertices[idx++] = fy2;
+		vertices[idx++] = x3;
+		vertices[idx++] = y3;
 		vertices[idx++] = color;
 		vertices[idx++] = u2;
 		vertices[idx++] = v2;
 
-		vertices[idx++] = fx2;
-		vertices[idx++] = y;
+		vertices[idx++] = x4;
+		vertices[idx++] = y4;
 		vertices[idx++] = color;
 		vertices[idx++] = u2;
 		vertices[idx++] = v;
 		this.mIndex = idx;
 	}
 	
+	public boolean isEmpty() {
+		return mIndex == 0;
+	}
+	
 	public void flush() {
 		if (mIndex == 0) return;
 
-		int count = mIndex / 20 * 6;
-
 		mCaches.bindTexture(mLastTexture);
-		Mesh mesh = this.mMesh;
-		mesh.setVertices(mVertices, 0, mIndex);
-		mesh.getIndicesBuffer().position(0);
-		mesh.getIndicesBuffer().limit(count);
 		
 		ShaderProgram program = mDefaultShader.getShaderProgram();
 		mCaches.useProgram(program);
 		mDefaultShader.setupColor(1, 1, 1, 1);
-		mCanvas.applyMatrix(mDefaultShader, temp);
+		mCanvas.applyMatrix(mDefaultShader, mHasModelMatrix ? mModelMatrix : mIdentityMatrix);
 		mDefaultShader.setupCustomValues();
+		mCaches.renderState.setBlendEnabled(!mOpaque);
 		
-		mesh.render(program, GL20.GL_TRIANGLES, 0, count);
+		mCaches.quadStream.draw(program, mVertices, mIndex);
 		mIndex = 0;
+		mOpaque = true;
+		mOpaqueArea = 0;
+		mCaches.frameInfo.add(FrameInfo.BATCH_FLUSHES, 1);
 	}
 	
 	int packColor(float alpha, int color) {
@@ -8,6 +8,7 @@ import com.glview.App;
 import com.glview.hwui.cache.FboCache;
 import com.glview.hwui.cache.MeshCache;
 import com.glview.hwui.cache.PatchCache;
+import com.glview.hwui.cache.PathCache;
 import com.glview.hwui.cache.ProgramCache;
 import com.glview.hwui.cache.Stencil;
 import com.glview.hwui.cache.TextureCache;
@@ -43,7 +44,8 @@ public final class Caches {
 	private Caches() {
 		mGL = App.getGL20();
 		
-		scissorEnabled = mGL.glIsEnabled(GL20.GL_SCISSOR_TEST);
+		renderState = new RenderState(mGL, frameInfo);
+		quadStream = new QuadStream(mGL, renderState, QUAD_STREAM_SIZE, extensions.hasElementIndexUint());
 		IntBuffer intbuf = BufferUtils.newIntBuffer(1);
 		mGL.glGetIntegerv(GL20.GL_MAX_TEXTURE_SIZE, intbuf);
 		maxTextureSize = intbuf.get(0);
@@ -53,11 +55,32 @@ public final class Caches {
 	public TextureCache textureCache = new TextureCache();
 	public PatchCache patchCache = new PatchCache();
 	public MeshCache meshCache = new MeshCache();
+	public PathCache pathCache = new PathCache();
 	public ProgramCache programCache = new ProgramCache();
 	
 	public Stencil stencil = new Stencil();
 	public Extensions extensions = new Extensions();
 	
+	/**
+	 * The counters of the frame being drawn.
+	 */
+	public final FrameInfo frameInfo = new FrameInfo();
+	
+	/**
+	 * The GL state of our context, shared by the canvases of this thread.
+	 */
+	public final RenderState renderState;
+	
+	/**
+	 * The vertices and the quad indices of the sprite and glyph batches.
+	 */
+	public final QuadStream quadStream;
+	
+	/*
+	 * Quads of the quad stream, two flushes of the largest batches fit.
+	 */
+	final static int QUAD_STREAM_SIZE = 4096;
+	
 	IntBuffer mBuffer = BufferUtils.newIntBuffer(1);
 	
 	public static Caches getInstance() {
@@ -69,120 +92,33 @@ public final class Caches {
 		}
 	}
 	
-	Texture mBindedTexture = null;
-	
 	public void bindTexture(Texture texture) {
-		if (mBindedTexture != texture) {
-			mBindedTexture = texture;
-			mGL.glBindTexture(GL20.GL_TEXTURE_2D, texture.mId);
-		}
+		renderState.bindTexture(texture.mId);
 	}
 	
 	public void unbindTexture(Texture texture) {
-		if (mBindedTexture == texture) {
-			mBindedTexture = null;
-			mGL.glBindTexture(GL20.GL_TEXTURE_2D, 0);
-		}
+		renderState.unbindTexture(texture.mId);
 	}
 	
 	public void deleteTexture(Texture texture) {
 		unbindTexture(texture);
 		if (texture.mId <= 0) return;
+		renderState.deleteTexture(texture.mId);
 		mBuffer.put(0, texture.mId);
 		mBuffer.position(0);
 		mGL.glDeleteTextures(1, mBuffer);
 		texture.mId = 0;
 	}
 
-	ShaderProgram mCurrentProgram = null;
 	public void useProgram(ShaderProgram program) {
-		if (mCurrentProgram != program) {
-			if (program != null) {
-				mGL.glUseProgram(program.getProgram());
-			} else {
-				mGL.glUseProgram(0);
-			}
-			
-			mCurrentProgram = program;
-		} else if (mCurrentProgram != null && !mCurrentProgram.isCompiled()) {
-			mGL.glUseProgram(mCurrentProgram.getProgram());
-		}
+		renderState.useProgram(program);
 	}
 	
 	public void clear() {
 		meshCache.clear();
 		textureCache.clear();
 		patchCache.clear();
+		pathCache.clear();
 		programCache.clear();
 	}
-	
-	///////////////////////////////////////////////////////////////////////////////
-	//Scissor
-	///////////////////////////////////////////////////////////////////////////////
-	boolean scissorEnabled;
-	int mScissorX;
-	int mScissorY;
-	int mScissorWidth;
-	int mScissorHeight;
-	
-	boolean setScissor(int x, int y, int width, int height) {
-	    if (scissorEnabled && (x != mScissorX || y != mScissorY ||
-	            width != mScissorWidth || height != mScissorHeight)) {
-
-	        if (x < 0) {
-	            width += x;
-	            x = 0;
-	        }
-	        if (y < 0) {
-	            height += y;
-	            y = 0;
-	        }
-	        if (width < 0) {
-	            width = 0;
-	        }
-	        if (height < 0) {
-	            height = 0;
-	        }
-	        mGL.glScissor(x, y, width, height);
-
-	        mScissorX = x;
-	        mScissorY = y;
-	        mScissorWidth = width;
-	        mScissorHeight = height;
-
-	        return true;
-	    }
-	    return false;
-	}
-	
-	boolean enableScissor() {
-	    if (!scissorEnabled) {
-	    	mGL.glEnable(GL20.GL_SCISSOR_TEST);
-	        scissorEnabled = true;
-	        resetScissor();
-	        return true;
-	    }
-	    return false;
-	}
-
-	boolean disableScissor() {
-	    if (scissorEnabled) {
-	        mGL.glDisable(GL20.GL_SCISSOR_TEST);
-	        scissorEnabled = false;
-	        return true;
-	    }
-	    return false;
-	}
-
-	void setScissorEnabled(boolean enabled) {
-	    if (scissorEnabled != enabled) {
-	        if (enabled) mGL.glEnable(GL20.GL_SCISSOR_TEST);
-	        else mGL.glDisable(GL20.GL_SCISSOR_TEST);
-	        scissorEnabled = enabled;
-	    }
-	}
-	
-	void resetScissor() {
-	    mScissorX = mScissorY = mScissorWidth = mScissorHeight = 0;
-	}
 }
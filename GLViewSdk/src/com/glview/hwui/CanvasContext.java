@@ -11,17 +11,19 @@ import android.opengl.GLSurfaceView;
 import android.util.Log;
 import android.view.SurfaceHolder;
 
-import com.glview.App;
 import com.glview.animation.Animator;
 import com.glview.animation.AnimatorListenerAdapter;
 import com.glview.animation.ValueAnimator;
 import com.glview.animation.ValueAnimator.AnimatorUpdateListener;
 import com.glview.graphics.Bitmap;
+import com.glview.graphics.Rect;
+import com.glview.hwui.cache.TextureCache;
+import com.glview.hwui.cache.TextureCache.OnTextureUploadedListener;
 import com.glview.hwui.font.FontRenderer;
+import com.glview.hwui.font.FontRenderer.OnGlyphsRasterizedListener;
 import com.glview.hwui.task.Task;
 import com.glview.hwui.task.TaskHandler;
 import com.glview.thread.Looper;
-import com.glview.util.FPSUtils;
 import com.glview.view.GLRootView;
 
 /**
@@ -36,14 +38,48 @@ class CanvasContext {
 	private final static String TAG = "CanvasContext";
 	private final static boolean DEBUG = true;
 	private final static boolean DEBUG_FRAME = false;
-	private final static boolean DEBUG_FPS = true;
+	private final static boolean DEBUG_FRAME_STATS = false;
 	private final static boolean DEBUG_ANIMATING = false;
+	private final static boolean DEBUG_DEFER = false;
+	private final static boolean DEBUG_DAMAGE = false;
+	
+	/**
+	 * Reorder and merge the draw ops of every frame, see {@link DeferredDisplayList}.
+	 */
+	private final static boolean DEFER_DISPLAY_LIST = true;
+	
+	/**
+	 * Upload the bitmaps of the window frames in background, see {@link TextureUploader}.
+	 */
+	private final static boolean ASYNC_TEXTURE_UPLOAD = true;
+	
+	/**
+	 * Rasterize the glyphs of the window frames in background, see
+	 * {@link FontRenderer#setAsyncRasterEnabled(boolean)}.
+	 */
+	private final static boolean ASYNC_GLYPH_RASTER = true;
+	
+	/**
+	 * Only redraw the damage of the frames recorded by the UI thread when the
+	 * back buffer still holds an older frame, see {@link #setDamage(Rect)}.
+	 */
+	private final static boolean PARTIAL_UPDATE = true;
+	
+	/**
+	 * The damage of this many frames is kept, an older back buffer is redrawn.
+	 */
+	private final static int MAX_BUFFER_AGE = 4;
 	
 	/**
 	 * EGL Management.
 	 * Manage the EGL Context.
 	 */
 	static EglManager sEglManager;
+	
+	/**
+	 * Shares the textures of {@link #sEglManager}'s context, started with the first frame.
+	 */
+	static TextureUploader sTextureUploader;
 
     EGLSurface mEglSurface;
     
@@ -56,12 +92,47 @@ class CanvasContext {
     
     /**
      * The root node, we begin our frame with this node.
-     * It contains the real CanvasOp list.
+     * It contains the real display list.
      * @see RenderNode#replay(GLCanvas)
      */
     RenderNode mRootNode;
     
-    FPSUtils mFpsUtils = null;
+    /**
+     * The timings of our frames, read by {@link RenderPolicy} in the UI thread.
+     */
+    final FrameStats mFrameStats = new FrameStats();
+    
+    /**
+     * Measured in the UI thread for the frame about to be drawn, 0 for
+     * the frames driven by the RenderThread.
+     * @see #setFrameTimes(long, long)
+     */
+    long mRecordTime, mSyncWaitTime;
+    
+    /**
+     * The time of the last {@link #syncFrameState()}.
+     */
+    long mSyncTime;
+    
+    /**
+     * The damage of the next frame in window coordinates, set while the UI
+     * thread waits for the sync. The frames driven by the RenderThread are full.
+     */
+    final Rect mDamage = new Rect();
+    boolean mFullDamage = true;
+    
+    /*
+     * mDamageHistory[i] is the damage of the frame drawn i + 1 frames ago,
+     * the first mDamageHistoryCount are known.
+     */
+    final Rect[] mDamageHistory = new Rect[MAX_BUFFER_AGE];
+    int mDamageHistoryCount;
+    final Rect mFrameDirty = new Rect();
+    
+    /**
+     * The surface keeps its content when swapped, used without EGL_EXT_buffer_age.
+     */
+    boolean mBufferPreserved;
     
     RenderState mRenderState;
     
@@ -122,11 +193,33 @@ class CanvasContext {
 		}
 	};
 	
+	/**
+	 * Draw again the frames that were drawn without a texture still uploading.
+	 */
+	OnTextureUploadedListener mTextureUploadedListener = new OnTextureUploadedListener() {
+		@Override
+		public void onTextureUploaded() {
+			scheduleAnimatingDrawTask();
+		}
+	};
+	
+	/**
+	 * Draw again the frames that skipped glyphs still rasterizing.
+	 */
+	OnGlyphsRasterizedListener mGlyphsRasterizedListener = new OnGlyphsRasterizedListener() {
+		@Override
+		public void onGlyphsRasterized() {
+			scheduleAnimatingDrawTask();
+		}
+	};
+	
     public CanvasContext(RenderNode rootRenderNode) {
     	mHandler = new TaskHandler(Looper.myLooper());
     	ensureEglManager();
     	mRootNode = rootRenderNode;
-    	if (DEBUG_FPS) mFpsUtils = new FPSUtils(this);
+    	for (int i = 0; i < MAX_BUFFER_AGE; i ++) {
+    		mDamageHistory[i] = new Rect();
+    	}
     }
     
     public static void ensureEglManager() {
@@ -161,9 +254,32 @@ class CanvasContext {
 			throw new IllegalStateException("No egl context exists.");
 		}
 		if (mRenderState == null) {
-			mRenderState = new RenderState(App.getGL20());
+			mRenderState = Caches.getInstance().renderState;
+		}
+		GL20Canvas canvas = new GL20Canvas(mRenderState);
+		canvas.setDeferEnabled(DEFER_DISPLAY_LIST);
+		Caches.getInstance().textureCache.addOnTextureUploadedListener(mTextureUploadedListener);
+		FontRenderer.instance().addOnGlyphsRasterizedListener(mGlyphsRasterizedListener);
+		if (sPrecacheProgramsPending) {
+			sPrecacheProgramsPending = false;
+			Caches.getInstance().programCache.precache();
+		}
+		return canvas;
+	}
+	
+	/*
+	 * Our context must be current.
+	 */
+	private static void ensureTextureUploader() {
+		if (sTextureUploader == null) {
+			sTextureUploader = new TextureUploader(sEglManager);
+			if (sTextureUploader.start()) {
+				Caches.getInstance().textureCache.setUploader(sTextureUploader);
+			} else {
+				// Not tried again until the context is recreated.
+				Log.w(TAG, "No texture uploader, upload in RenderThread.");
+			}
 		}
-		return new GL20Canvas(mRenderState);
 	}
 	
 	/**
@@ -181,6 +297,7 @@ class CanvasContext {
 			mWidth = width;
 			mHeight = height;
 			mCanvas.setSize(mWidth, mHeight);
+			mDamageHistoryCount = 0;
 		}
 	}
 	
@@ -197,27 +314,164 @@ class CanvasContext {
     }
 	
 	/**
-	 * Draw one frame, called by RenderPolicy {@link RenderPolicy#innerDraw()}
+	 * Set the UI thread times of the next frame.
+	 */
+	void setFrameTimes(long recordTime, long syncWaitTime) {
+		mRecordTime = recordTime;
+		mSyncWaitTime = syncWaitTime;
+	}
+	
+	/**
+	 * Set the area changed by the next frame, in window coordinates.
+	 * @param dirty null if the whole window changed.
+	 */
+	void setDamage(Rect dirty) {
+		mFullDamage = dirty == null;
+		if (dirty != null) {
+			mDamage.set(dirty);
+		}
+	}
+	
+	/**
+	 * Take the display lists and the properties staged by the UI thread for
+	 * the next frame. Called by {@link RenderPolicy} while the UI thread waits,
+	 * it goes on recording as soon as this returns.
+	 */
+	void syncFrameState() {
+		final long syncStart = System.nanoTime();
+		mRootNode.prepareTree();
+		mSyncTime = System.nanoTime() - syncStart;
+	}
+	
+	/**
+	 * Sync and draw one frame, for the frames driven by the RenderThread.
 	 * @return
 	 */
 	public boolean draw() {
+		syncFrameState();
+		return drawFrame();
+	}
+	
+	/**
+	 * Draw the frame synced by {@link #syncFrameState()}, called by RenderPolicy {@link RenderPolicy#innerDraw()}
+	 * @return
+	 */
+	boolean drawFrame() {
 		if (isEnable() && ensureCurrentSurface()) {
 			if (DEBUG_FRAME) Log.d(TAG, "One frame begin!");
-			mCanvas.beginFrame();
+			final long frameStart = System.nanoTime();
+			final Caches caches = Caches.getInstance();
+			final TextureCache textureCache = caches.textureCache;
+			if (ASYNC_TEXTURE_UPLOAD) ensureTextureUploader();
+			textureCache.beginFrame();
+			final boolean asyncUpload = textureCache.setAsyncUploadEnabled(ASYNC_TEXTURE_UPLOAD);
+			final FontRenderer fontRenderer = FontRenderer.instance();
+			final boolean asyncRaster = fontRenderer.setAsyncRasterEnabled(ASYNC_GLYPH_RASTER);
+			final Rect dirty = computeFrameDirty();
+			mCanvas.beginFrame(dirty);
 			mCanvas.drawRenderNode(mRootNode);
 			mCanvas.endFrame();
+			fontRenderer.setAsyncRasterEnabled(asyncRaster);
+			textureCache.setAsyncUploadEnabled(asyncUpload);
+			if (DEBUG_DEFER) logDeferredDrawCalls();
+			final long replayEnd = System.nanoTime();
 			swapBuffers();
-			if (DEBUG_FPS) mFpsUtils.fps();
+			addDamageHistory();
+			final long swapEnd = System.nanoTime();
+			addFrameStats(caches.frameInfo, frameStart, replayEnd, swapEnd);
 			if (DEBUG_FRAME) Log.d(TAG, "One frame end!");
 			return true;
 		}
 		return false;
 	}
 	
+	/*
+	 * The damage of this frame and of the frames the back buffer misses,
+	 * or null to draw the whole window.
+	 */
+	private Rect computeFrameDirty() {
+		if (!mFullDamage && !mDamage.intersect(0, 0, mWidth, mHeight)) {
+			// Nothing on screen changed.
+			mDamage.setEmpty();
+		}
+		// A RenderThread animation may have moved anything since the last frame.
+		if (!PARTIAL_UPDATE || mAnimatingDrawRequested) {
+			mFullDamage = true;
+		}
+		if (mFullDamage) {
+			return null;
+		}
+		final int age = mBufferPreserved ? 1 : sEglManager.queryBufferAge(mEglSurface);
+		if (age <= 0 || age > mDamageHistoryCount) {
+			if (DEBUG_DAMAGE) Log.d(TAG, "Full frame, buffer age=" + age);
+			return null;
+		}
+		final Rect dirty = mFrameDirty;
+		dirty.set(mDamage);
+		for (int i = 0; i < age - 1; i ++) {
+			dirty.union(mDamageHistory[i]);
+		}
+		if (dirty.contains(0, 0, mWidth, mHeight)) {
+			return null;
+		}
+		if (DEBUG_DAMAGE) Log.d(TAG, "Partial frame, buffer age=" + age + ", dirty=" + dirty);
+		return dirty;
+	}
+	
+	/*
+	 * Remember the damage of the frame just drawn, the next frames redraw it
+	 * if their back buffer is older.
+	 */
+	private void addDamageHistory() {
+		final Rect[] history = mDamageHistory;
+		final Rect last = history[MAX_BUFFER_AGE - 1];
+		System.arraycopy(history, 0, history, 1, MAX_BUFFER_AGE - 1);
+		history[0] = last;
+		if (mFullDamage) {
+			last.set(0, 0, mWidth, mHeight);
+		} else {
+			last.set(mDamage);
+		}
+		if (mDamageHistoryCount < MAX_BUFFER_AGE) {
+			mDamageHistoryCount ++;
+		}
+		// Until the UI thread sets the damage of its next frame.
+		mFullDamage = true;
+	}
+	
+	private void addFrameStats(FrameInfo frameInfo, long frameStart, long replayEnd, long swapEnd) {
+		frameInfo.set(FrameInfo.RECORD, mRecordTime);
+		frameInfo.set(FrameInfo.SYNC_WAIT, mSyncWaitTime);
+		frameInfo.set(FrameInfo.SYNC, mSyncTime);
+		frameInfo.set(FrameInfo.REPLAY, replayEnd - frameStart);
+		frameInfo.set(FrameInfo.SWAP, swapEnd - replayEnd);
+		frameInfo.set(FrameInfo.TOTAL, mRecordTime + mSyncWaitTime + mSyncTime + swapEnd - frameStart);
+		FrameStats.Report report = mFrameStats.addFrame(frameInfo);
+		// The uploads finished between two frames go to the next one.
+		frameInfo.reset();
+		mRecordTime = 0;
+		mSyncWaitTime = 0;
+		if (DEBUG_FRAME_STATS && report != null) {
+			Log.d(TAG, "Frame stats: " + report);
+		}
+	}
+	
+	private void logDeferredDrawCalls() {
+		DeferredDisplayList deferredDisplayList = ((GL20Canvas) mCanvas).getDeferredDisplayList();
+		if (deferredDisplayList != null) {
+			Log.d(TAG, "Deferred frame: ops=" + deferredDisplayList.getLastFrameOpCount()
+					+ ", draw calls=" + deferredDisplayList.getLastFrameDrawCount()
+					+ ", occluded=" + deferredDisplayList.getLastFrameOccludedCount());
+		}
+	}
+	
 	private boolean createSurface(Object surface) {
 		if (DEBUG) Log.d(TAG, "createSurface called in CanvasContext, surface=" + surface);
 		destroySurface();
         mEglSurface = sEglManager.createSurface(surface);
+        mDamageHistoryCount = 0;
+        mBufferPreserved = PARTIAL_UPDATE && mEglSurface != null && !EglManager.sHasBufferAge
+        		&& sEglManager.setBufferPreserved(mEglSurface);
         return mEglSurface != null;
     }
     
@@ -226,6 +480,10 @@ class CanvasContext {
         destroySurface();
         mSurfaceHolder = null;
         if (full) {
+        	if (mCanvas != null) {
+        		Caches.getInstance().textureCache.removeOnTextureUploadedListener(mTextureUploadedListener);
+        		FontRenderer.instance().removeOnGlyphsRasterizedListener(mGlyphsRasterizedListener);
+        	}
         	mRootNode.destroy();
         	mCanvas = null;
         	mHandler.removeCallbacksAndMessages(null);
@@ -238,6 +496,8 @@ class CanvasContext {
     	Caches.getInstance().clear();
     	destroyContext();
     	ensureEglManager();
+    	Caches.getInstance().renderState.invalidate();
+    	Caches.getInstance().quadStream.invalidate();
     }
     
     void swapBuffers() {
@@ -258,6 +518,11 @@ class CanvasContext {
     
     void destroyContext() {
     	if (DEBUG) Log.d(TAG, "destroy EGLContext called in CanvasContext.");
+    	if (sTextureUploader != null) {
+    		Caches.getInstance().textureCache.setUploader(null);
+    		sTextureUploader.quit();
+    		sTextureUploader = null;
+    	}
     	sEglManager.destroy();
     }
     
@@ -406,6 +671,48 @@ class CanvasContext {
     static final int TRIM_MEMORY_RUNNING_MODERATE = 5;
     
     static TaskHandler sTaskHandler = new TaskHandler(RenderThread.getRenderThreadLooper());
+    
+    static void precacheText(GLPaint paint, CharSequence text) {
+    	final GLPaint copy = new GLPaint();
+    	copy.set(paint);
+    	final String string = text.toString();
+    	sTaskHandler.post(new Task() {
+			@Override
+			public void doTask() {
+				FontRenderer.instance().precache(copy, string, 0, string.length(), true);
+			}
+		});
+    }
+    
+    /*
+     * No context could be made current to precache the programs, the first
+     * canvas does.
+     */
+    static boolean sPrecacheProgramsPending = false;
+    
+    static void precachePrograms() {
+    	sTaskHandler.post(new Task() {
+			@Override
+			public void doTask() {
+				ensureEglManager();
+				if (EglManager.hasCurrentContext()) {
+					Caches.getInstance().programCache.precache();
+					return;
+				}
+				EGLSurface pbuffer = sEglManager.makeCurrentPbuffer();
+				if (pbuffer == null) {
+					sPrecacheProgramsPending = true;
+					return;
+				}
+				try {
+					Caches.getInstance().programCache.precache();
+				} finally {
+					sEglManager.releasePbufferSurface(pbuffer);
+				}
+			}
+		});
+    }
+    
     static void trimMemory(final int level) {
     	sTaskHandler.postAndWait(new Task() {
 			@Override
@@ -1,12 +1,13 @@
 package com.glview.hwui;
 
-import com.glview.hwui.op.OpFactory;
+import com.glview.hwui.op.OpPool;
 import com.glview.pool.Poolable;
 
 /**
- * Record operations by canvas {@link GLRecordingCanvas}, 
+ * Pooled display list object recorded by canvas {@link GLRecordingCanvas},
  * and replayed in render thread {@link RenderThread}.
- * Called by RenderNode {@link RenderNode#replay(GLCanvas)}.
+ * The ops themselves are stored flat in {@link com.glview.hwui.op.DisplayListData}
+ * and decoded by RenderNode {@link RenderNode#replay(GLCanvas)}.
  * 
  * @author lijing.lj
  */
@@ -24,13 +25,18 @@ public abstract class CanvasOp implements Poolable {
 	
 	abstract protected void recycleInner();
 	
+	/*
+	 * The pool of the concrete op type, see {@link OpPool}.
+	 */
+	abstract protected OpPool<? extends CanvasOp> pool();
+	
 	/*
 	 * The display list has been changed or destroyed, so we recycle unused resources.
 	 */
 	public final void recycle() {
 		mNext = null;
 		recycleInner();
-		// Cache to CanvasOpFactory, so it can be reuse.
-		OpFactory.get().push(this);
+		// Give back to the pool of this type, so it can be reused.
+		pool().release(this);
 	}
 }
@@ -0,0 +1,465 @@
+package com.glview.hwui;
+
+import java.util.Arrays;
+
+import com.glview.graphics.Bitmap;
+import com.glview.graphics.Rect;
+import com.glview.graphics.RectF;
+import com.glview.hwui.GLPaint.Style;
+import com.glview.hwui.font.FontRenderer;
+import com.glview.hwui.op.DisplayListData;
+
+/**
+ * Collects the draw ops of one frame instead of issuing them to GL right away,
+ * so that they can be reordered and merged before being drawn, like AOSP's
+ * DeferredDisplayList.
+ * <p>
+ * Every deferred op keeps the transform, clip and alpha it was drawn with, and
+ * its bounds in the canvas space. An op joins an earlier batch of the same kind
+ * (same texture or atlas page for bitmaps and patches, any text, any plain color)
+ * as long as it does not overlap any batch recorded after that one, so the result
+ * on screen is unchanged. Bitmap and patch batches are then drawn through {@link Batch}
+ * with their transform folded into the vertices, and text batches through one flush of the
+ * {@link com.glview.hwui.font.FontRenderer}, whatever render node the ops came from.
+ * <p>
+ * An opaque op covering a large part of the screen, a background, hides the ops
+ * recorded before it in its bounds, they are culled and never drawn.
+ * <p>
+ * Only used by the main {@link GL20Canvas} of a window, see
+ * {@link GL20Canvas#setDeferEnabled(boolean)}. Runs in RenderThread.
+ */
+final class DeferredDisplayList {
+
+	/*
+	 * Never joined with other ops.
+	 */
+	final static int BATCH_NONE = 0;
+	/*
+	 * Bitmaps and nine-patches, merged by texture.
+	 */
+	final static int BATCH_BITMAP = 1;
+	final static int BATCH_TEXT = 2;
+	final static int BATCH_COLOR = 3;
+
+	/*
+	 * Op kind of GL20Canvas#drawTexture, the others are DisplayListData.OP_*.
+	 */
+	final static int OP_DRAW_TEXTURE = 100;
+
+	/*
+	 * How many batches are looked at backwards for one to join, keeps adding an op O(1).
+	 */
+	final static int MAX_SEARCH_BATCHES = 16;
+
+	final static int INITIAL_CAPACITY = 64;
+
+	/*
+	 * Pixels an opaque op must cover to look for the ops it hides, the
+	 * smaller ones rarely hide anything.
+	 */
+	final static float MIN_OCCLUDER_AREA = 128 * 128;
+
+	static final class DeferredOp {
+		int mOp;
+		int mBatchId;
+		Object mMergeId;
+
+		final float[] mFloats = new float[8];
+		int mStart, mEnd;
+		boolean mDrawDefer;
+		boolean mHasAlpha;
+		Object mObject;
+		Object mObject2;
+		final GLPaint mPaint = new GLPaint();
+		boolean mHasPaint;
+
+		final float[] mTransform = new float[16];
+		final Rect mClip = new Rect();
+		float mAlpha;
+
+		final RectF mBounds = new RectF();
+		boolean mUnbounded;
+
+		/*
+		 * Every pixel of the bounds is drawn opaque, and the op is hidden
+		 * by a later opaque one.
+		 */
+		boolean mOpaque;
+		boolean mOccluded;
+
+		GLPaint paint() {
+			return mHasPaint ? mPaint : null;
+		}
+
+		void setPaint(GLPaint paint) {
+			mHasPaint = paint != null;
+			if (mHasPaint) {
+				mPaint.set(paint);
+			}
+		}
+
+		void reset() {
+			mObject = null;
+			mObject2 = null;
+			mMergeId = null;
+			if (mHasPaint) {
+				mPaint.reset();
+				mHasPaint = false;
+			}
+		}
+	}
+
+	static final class DrawBatch {
+		int mBatchId;
+		Object mMergeId;
+		final RectF mBounds = new RectF();
+		boolean mUnbounded;
+		int[] mOps = new int[8];
+		int mSize;
+
+		void reset(DeferredOp op) {
+			mBatchId = op.mBatchId;
+			mMergeId = op.mMergeId;
+			mBounds.setEmpty();
+			mUnbounded = false;
+			mSize = 0;
+		}
+
+		void add(int index, DeferredOp op) {
+			if (mSize == mOps.length) {
+				mOps = Arrays.copyOf(mOps, mSize << 1);
+			}
+			mOps[mSize ++] = index;
+			if (op.mUnbounded) {
+				mUnbounded = true;
+			} else {
+				mBounds.union(op.mBounds);
+			}
+		}
+
+		boolean intersects(DeferredOp op) {
+			if (mUnbounded || op.mUnbounded) return true;
+			return mBounds.intersects(op.mBounds.left, op.mBounds.top, op.mBounds.right, op.mBounds.bottom);
+		}
+
+		boolean accepts(DeferredOp op) {
+			return mBatchId != BATCH_NONE && mBatchId == op.mBatchId && mMergeId == op.mMergeId;
+		}
+
+		boolean isMerged() {
+			return mBatchId == BATCH_BITMAP || mBatchId == BATCH_TEXT;
+		}
+	}
+
+	DeferredOp[] mOps = new DeferredOp[INITIAL_CAPACITY];
+	int mOpsSize;
+
+	DrawBatch[] mBatches = new DrawBatch[INITIAL_CAPACITY];
+	int mBatchesSize;
+
+	final float[] mTmpPoints = new float[8];
+	final RectF mOccluder = new RectF();
+	final RectF mVisible = new RectF();
+
+	/*
+	 * Statistics of the current and the last frame.
+	 */
+	int mFrameOpCount, mFrameDrawCount, mFrameOccludedCount;
+	int mLastFrameOpCount, mLastFrameDrawCount, mLastFrameOccludedCount;
+
+	boolean isEmpty() {
+		return mOpsSize == 0;
+	}
+
+	/**
+	 * Get the next free op, fill it and hand it to {@link #add(DeferredOp)}.
+	 */
+	DeferredOp obtainOp() {
+		if (mOpsSize == mOps.length) {
+			mOps = Arrays.copyOf(mOps, mOpsSize << 1);
+		}
+		DeferredOp op = mOps[mOpsSize];
+		if (op == null) {
+			op = new DeferredOp();
+			mOps[mOpsSize] = op;
+		}
+		op.mUnbounded = false;
+		op.mOpaque = false;
+		op.mOccluded = false;
+		op.mBatchId = BATCH_NONE;
+		return op;
+	}
+
+	/**
+	 * Capture the canvas state of the op and find the batch it goes to.
+	 * The local bounds of the op must be in {@link DeferredOp#mBounds} already,
+	 * unless it is unbounded.
+	 */
+	void add(DeferredOp op, Snapshot snapshot) {
+		System.arraycopy(snapshot.transform, 0, op.mTransform, 0, 16);
+		op.mClip.set(snapshot.clipRect);
+		op.mAlpha = snapshot.alpha;
+		if (!op.mUnbounded) {
+			mapBounds(op.mTransform, op.mBounds);
+		}
+		op.mMergeId = op.mBatchId == BATCH_NONE ? null : op.mMergeId;
+		if (op.mOpaque && !op.mUnbounded) {
+			occlude(op);
+		}
+
+		final int index = mOpsSize ++;
+		DrawBatch target = null;
+		final int stop = Math.max(0, mBatchesSize - MAX_SEARCH_BATCHES);
+		for (int i = mBatchesSize - 1; i >= stop; i --) {
+			DrawBatch batch = mBatches[i];
+			if (batch.accepts(op)) {
+				target = batch;
+				break;
+			}
+			if (batch.intersects(op)) {
+				// Can't be moved before a batch it overlaps.
+				break;
+			}
+		}
+		if (target == null) {
+			if (mBatchesSize == mBatches.length) {
+				mBatches = Arrays.copyOf(mBatches, mBatchesSize << 1);
+			}
+			target = mBatches[mBatchesSize];
+			if (target == null) {
+				target = new DrawBatch();
+				mBatches[mBatchesSize] = target;
+			}
+			mBatchesSize ++;
+			target.reset(op);
+		}
+		target.add(index, op);
+	}
+
+	/*
+	 * Cull the ops recorded before the opaque op and hidden by it. Only the
+	 * ops drawn with a translation and a scale cover their whole bounds.
+	 */
+	private void occlude(DeferredOp op) {
+		final float[] m = op.mTransform;
+		if (op.mAlpha < 1 || m[1] != 0 || m[4] != 0 || m[3] != 0 || m[7] != 0 || m[15] != 1) {
+			return;
+		}
+		final RectF occluder = mOccluder;
+		occluder.set(op.mBounds);
+		if (!occluder.intersect(op.mClip.left, op.mClip.top, op.mClip.right, op.mClip.bottom)) {
+			return;
+		}
+		// The pixels of the edges may be partly covered.
+		occluder.set((float) Math.ceil(occluder.left), (float) Math.ceil(occluder.top),
+				(float) Math.floor(occluder.right), (float) Math.floor(occluder.bottom));
+		if (op.mOp != DisplayListData.OP_DRAW_RECT) {
+			// The filtering of a texture may blend the edges with the
+			// transparent pixels around it.
+			occluder.inset(1, 1);
+		}
+		if (occluder.width() * occluder.height() < MIN_OCCLUDER_AREA) {
+			return;
+		}
+		final RectF visible = mVisible;
+		for (int i = 0; i < mOpsSize; i ++) {
+			DeferredOp hidden = mOps[i];
+			if (hidden.mOccluded) continue;
+			final Rect clip = hidden.mClip;
+			if (hidden.mUnbounded) {
+				visible.set(clip.left, clip.top, clip.right, clip.bottom);
+			} else {
+				visible.set(hidden.mBounds);
+				if (!visible.intersect(clip.left, clip.top, clip.right, clip.bottom)) {
+					// Drawn nothing anyway.
+					hidden.mOccluded = true;
+					continue;
+				}
+			}
+			if (occluder.contains(visible)) {
+				hidden.mOccluded = true;
+			}
+		}
+	}
+
+	/*
+	 * Map the four corners, the transform may rotate.
+	 */
+	private void mapBounds(float[] m, RectF bounds) {
+		final float[] p = mTmpPoints;
+		p[0] = bounds.left; p[1] = bounds.top;
+		p[2] = bounds.right; p[3] = bounds.top;
+		p[4] = bounds.right; p[5] = bounds.bottom;
+		p[6] = bounds.left; p[7] = bounds.bottom;
+		float left = Float.MAX_VALUE, top = Float.MAX_VALUE;
+		float right = - Float.MAX_VALUE, bottom = - Float.MAX_VALUE;
+		for (int i = 0; i < 8; i += 2) {
+			float x = p[i], y = p[i + 1];
+			float w = m[3] * x + m[7] * y + m[15];
+			float mx = (m[0] * x + m[4] * y + m[12]) / w;
+			float my = (m[1] * x + m[5] * y + m[13]) / w;
+			if (mx < left) left = mx;
+			if (mx > right) right = mx;
+			if (my < top) top = my;
+			if (my > bottom) bottom = my;
+		}
+		bounds.set(left, top, right, bottom);
+	}
+
+	/**
+	 * Compute the local bounds and the batch of an op recorded with the
+	 * {@link DisplayListData} opcodes.
+	 */
+	static void setupBatch(DeferredOp op) {
+		final float[] f = op.mFloats;
+		final GLPaint paint = op.paint();
+		final boolean simplePaint = paint == null || paint.getShader() == null;
+		switch (op.mOp) {
+		case DisplayListData.OP_DRAW_RECT:
+		case DisplayListData.OP_DRAW_LINE: {
+			float outset = 0;
+			if (paint != null && (op.mOp == DisplayListData.OP_DRAW_LINE || paint.getStyle() != Style.FILL)) {
+				outset = paint.getStrokeWidth() / 2 + 1;
+			}
+			op.mBounds.set(Math.min(f[0], f[2]) - outset, Math.min(f[1], f[3]) - outset,
+					Math.max(f[0], f[2]) + outset, Math.max(f[1], f[3]) + outset);
+			op.mBatchId = simplePaint ? BATCH_COLOR : BATCH_NONE;
+			op.mOpaque = op.mOp == DisplayListData.OP_DRAW_RECT && simplePaint
+					&& (paint == null || paint.getStyle() == Style.FILL) && isOpaque(paint);
+			break;
+		}
+		case DisplayListData.OP_DRAW_BITMAP:
+		case DisplayListData.OP_DRAW_BITMAP_RECT:
+		case DisplayListData.OP_DRAW_BITMAP_RECT_F:
+		case DisplayListData.OP_DRAW_BITMAP_BATCH:
+			// Set by the canvas, target rect or position and size, and
+			// the texture as merge id.
+			op.mBatchId = simplePaint ? BATCH_BITMAP : BATCH_NONE;
+			op.mOpaque = simplePaint && !((Bitmap) op.mObject).hasAlpha() && isOpaque(paint);
+			break;
+		case DisplayListData.OP_DRAW_PATCH:
+			op.mBounds.set(f[0], f[1], f[2], f[3]);
+			op.mBatchId = simplePaint ? BATCH_BITMAP : BATCH_NONE;
+			break;
+		case DisplayListData.OP_DRAW_TEXT: {
+			FontRenderer.getTextBounds((CharSequence) op.mObject, op.mStart, op.mEnd, f[0], f[1],
+					paint, op.mBounds);
+			op.mBatchId = BATCH_TEXT;
+			op.mMergeId = null;
+			break;
+		}
+		case DisplayListData.OP_DRAW_OVAL:
+		case DisplayListData.OP_DRAW_ROUND_RECT:
+		case DisplayListData.OP_DRAW_PATH: {
+			// Set by the canvas, the bounds of the oval, the rect or the path.
+			float outset = 0;
+			if (paint != null && paint.getStyle() != Style.FILL) {
+				outset = op.mOp == DisplayListData.OP_DRAW_PATH ? PathTessellator.getStrokeOutset(paint)
+						: Math.max(paint.getStrokeWidth(), 1) / 2 + 1;
+			}
+			op.mBounds.set(Math.min(f[0], f[2]) - outset, Math.min(f[1], f[3]) - outset,
+					Math.max(f[0], f[2]) + outset, Math.max(f[1], f[3]) + outset);
+			op.mBatchId = BATCH_NONE;
+			break;
+		}
+		case OP_DRAW_TEXTURE:
+			op.mBounds.set(f[0], f[1], f[0] + f[2], f[1] + f[3]);
+			op.mBatchId = BATCH_NONE;
+			op.mOpaque = simplePaint && !op.mHasAlpha && isOpaque(paint);
+			break;
+		default:
+			// Meshes, their bounds are unknown.
+			op.mUnbounded = true;
+			op.mBatchId = BATCH_NONE;
+			break;
+		}
+	}
+
+	/*
+	 * The color and the alpha of the paint are opaque, null is the default
+	 * paint.
+	 */
+	private static boolean isOpaque(GLPaint paint) {
+		return paint == null || ((paint.getColor() >>> 24) == 0xFF && paint.getAlpha() == 255);
+	}
+
+	/**
+	 * Draw every deferred op batch by batch and clear the list.
+	 */
+	void flush(GL20Canvas canvas) {
+		if (mOpsSize == 0) return;
+		int drawCount = 0;
+		int occludedCount = 0;
+		canvas.beginDeferredReplay();
+		for (int i = 0; i < mBatchesSize; i ++) {
+			DrawBatch batch = mBatches[i];
+			final boolean merge = batch.isMerged();
+			Rect lastClip = null;
+			for (int j = 0; j < batch.mSize; j ++) {
+				DeferredOp op = mOps[batch.mOps[j]];
+				if (op.mOccluded) {
+					occludedCount ++;
+					continue;
+				}
+				if (!merge) {
+					drawCount ++;
+				} else if (lastClip == null || !lastClip.equals(op.mClip)) {
+					// A clip change breaks a merged draw.
+					drawCount ++;
+					lastClip = op.mClip;
+				}
+				canvas.replayDeferredOp(op, merge);
+			}
+			canvas.endDeferredBatch(batch.mBatchId);
+		}
+		canvas.endDeferredReplay();
+
+		mFrameOpCount += mOpsSize;
+		mFrameDrawCount += drawCount;
+		mFrameOccludedCount += occludedCount;
+		if (occludedCount > 0) {
+			Caches.getInstance().frameInfo.add(FrameInfo.OCCLUDED_OPS, occludedCount);
+		}
+		for (int i = 0; i < mOpsSize; i ++) {
+			mOps[i].reset();
+		}
+		mOpsSize = 0;
+		mBatchesSize = 0;
+	}
+
+	void beginFrame() {
+		mFrameOpCount = 0;
+		mFrameDrawCount = 0;
+		mFrameOccludedCount = 0;
+	}
+
+	void endFrame() {
+		mLastFrameOpCount = mFrameOpCount;
+		mLastFrameDrawCount = mFrameDrawCount;
+		mLastFrameOccludedCount = mFrameOccludedCount;
+	}
+
+	/**
+	 * @return the number of draw ops deferred in the last frame, which
+	 * is about the number of draw calls without deferring.
+	 */
+	int getLastFrameOpCount() {
+		return mLastFrameOpCount;
+	}
+
+	/**
+	 * @return the estimated number of draw calls issued for the deferred ops of
+	 * the last frame, a merged batch counts once per clip it spans.
+	 */
+	int getLastFrameDrawCount() {
+		return mLastFrameDrawCount;
+	}
+
+	/**
+	 * @return the number of deferred ops of the last frame hidden by an
+	 * opaque op drawn after them, and never drawn.
+	 */
+	int getLastFrameOccludedCount() {
+		return mLastFrameOccludedCount;
+	}
+}
@@ -18,6 +18,7 @@ import javax.microedition.khronos.opengles.GL;
 
 import android.opengl.EGL14;
 import android.opengl.GLUtils;
+import android.os.Build;
 import android.util.Log;
 
 /**
@@ -31,12 +32,24 @@ class EglManager {
 	
 	int mEGLContextClientVersion = 2;
 
+	/**
+	 * EGL_EXT_buffer_age, not in EGL10.
+	 */
+	final static int EGL_BUFFER_AGE_EXT = 0x313D;
+
 	static EGL10 sEgl;
     static EGLDisplay sEglDisplay;
     static EGLConfig sEglConfig;
     
+    /**
+     * The display supports EGL_EXT_buffer_age.
+     */
+    static boolean sHasBufferAge;
+    
     EGLContext mEglContext;
     
+    final int[] mQueryValue = new int[1];
+    
     EglManager() {
     	initializeEgl();
 	}
@@ -65,6 +78,10 @@ class EglManager {
             checkEglErrorsForced();
 
             sEglConfig = loadEglConfig();
+            
+            String extensions = sEgl.eglQueryString(sEglDisplay, EGL10.EGL_EXTENSIONS);
+            sHasBufferAge = extensions != null && extensions.contains("EGL_EXT_buffer_age");
+            if (DEBUG) Log.d(TAG, "EGL_EXT_buffer_age supported=" + sHasBufferAge);
         }
 
         if (mEglContext == null) {
@@ -152,6 +169,91 @@ class EglManager {
         return context;
     }
 	
+	/**
+	 * Create a context sharing the textures of our context, to be made current
+	 * in another thread with {@link #makeCurrent(EGLSurface, EGLContext)}.
+	 * @return null if it can't be created.
+	 */
+	EGLContext createSharedContext() {
+		initializeEgl();
+		int[] attribs = { EGL14.EGL_CONTEXT_CLIENT_VERSION, mEGLContextClientVersion, EGL_NONE };
+		EGLContext context = sEgl.eglCreateContext(sEglDisplay, sEglConfig, mEglContext,
+				mEGLContextClientVersion != 0 ? attribs : null);
+		if (context == null || context == EGL_NO_CONTEXT) {
+			Log.w(TAG, "createSharedContext failed " + GLUtils.getEGLErrorString(sEgl.eglGetError()));
+			return null;
+		}
+		return context;
+	}
+	
+	/**
+	 * A 1x1 pbuffer for a context that never draws to a window.
+	 * @return EGL_NO_SURFACE if our config has no pbuffer support, the context
+	 * may still be made current without a surface on most drivers.
+	 */
+	EGLSurface createPbufferSurface() {
+		int[] attribs = { EGL10.EGL_WIDTH, 1, EGL10.EGL_HEIGHT, 1, EGL_NONE };
+		EGLSurface surface = sEgl.eglCreatePbufferSurface(sEglDisplay, sEglConfig, attribs);
+		if (surface == null || surface == EGL_NO_SURFACE) {
+			Log.w(TAG, "createPbufferSurface failed " + GLUtils.getEGLErrorString(sEgl.eglGetError()));
+			return EGL_NO_SURFACE;
+		}
+		return surface;
+	}
+	
+	/**
+	 * Make our context current on a pbuffer, for the work done before the
+	 * first window surface exists.
+	 * @return the pbuffer to release with {@link #releasePbufferSurface(EGLSurface)},
+	 * null if the context can't be made current.
+	 */
+	EGLSurface makeCurrentPbuffer() {
+		initializeEgl();
+		EGLSurface surface = createPbufferSurface();
+		if (surface == EGL_NO_SURFACE) {
+			return null;
+		}
+		if (!sEgl.eglMakeCurrent(sEglDisplay, surface, surface, mEglContext)) {
+			Log.w(TAG, "eglMakeCurrent pbuffer failed " + GLUtils.getEGLErrorString(sEgl.eglGetError()));
+			sEgl.eglDestroySurface(sEglDisplay, surface);
+			return null;
+		}
+		return surface;
+	}
+	
+	void releasePbufferSurface(EGLSurface surface) {
+		sEgl.eglMakeCurrent(sEglDisplay, EGL_NO_SURFACE, EGL_NO_SURFACE, EGL_NO_CONTEXT);
+		sEgl.eglDestroySurface(sEglDisplay, surface);
+	}
+	
+	/**
+	 * @return true if a context is current in the calling thread.
+	 */
+	static boolean hasCurrentContext() {
+		return sEgl != null && sEgl.eglGetCurrentContext() != EGL_NO_CONTEXT;
+	}
+	
+	/**
+	 * Make a context created by {@link #createSharedContext()} current in the calling thread.
+	 */
+	static boolean makeCurrent(EGLSurface surface, EGLContext context) {
+		return sEgl.eglMakeCurrent(sEglDisplay, surface, surface, context);
+	}
+	
+	/**
+	 * Release and destroy a context created by {@link #createSharedContext()},
+	 * in the thread it is current.
+	 */
+	static void destroySharedContext(EGLSurface surface, EGLContext context) {
+		sEgl.eglMakeCurrent(sEglDisplay, EGL_NO_SURFACE, EGL_NO_SURFACE, EGL_NO_CONTEXT);
+		if (surface != null && surface != EGL_NO_SURFACE) {
+			sEgl.eglDestroySurface(sEglDisplay, surface);
+		}
+		if (context != null && context != EGL_NO_CONTEXT) {
+			sEgl.eglDestroyContext(sEglDisplay, context);
+		}
+	}
+	
 	EGLSurface createSurface(Object surface) {
 		initializeEgl();
         EGLSurface eglSurface = null;
@@ -192,6 +294,40 @@ class EglManager {
     	return true;
 	}
 	
+	/**
+	 * @return the number of frames since the back buffer of the surface was
+	 * drawn, 0 if its content is undefined or the age isn't supported.
+	 */
+	int queryBufferAge(EGLSurface surface) {
+		if (!sHasBufferAge) return 0;
+		final int[] value = mQueryValue;
+		value[0] = 0;
+		if (!sEgl.eglQuerySurface(sEglDisplay, surface, EGL_BUFFER_AGE_EXT, value)) {
+			Log.w(TAG, "Query buffer age failed " + GLUtils.getEGLErrorString(sEgl.eglGetError()));
+			return 0;
+		}
+		return value[0];
+	}
+	
+	/**
+	 * Keep the content of the surface when it's swapped, so the next frame
+	 * finds the last one in its back buffer. The surface must be current.
+	 * @return false if it's not supported, needs EGL 1.4 and a config with
+	 * EGL_SWAP_BEHAVIOR_PRESERVED_BIT.
+	 */
+	boolean setBufferPreserved(EGLSurface surface) {
+		if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN_MR1 || !makeCurrent(surface)) {
+			return false;
+		}
+		// EGL10 has no eglSurfaceAttrib, reach the current surface from EGL14.
+		if (!EGL14.eglSurfaceAttrib(EGL14.eglGetCurrentDisplay(), EGL14.eglGetCurrentSurface(EGL14.EGL_DRAW),
+				EGL14.EGL_SWAP_BEHAVIOR, EGL14.EGL_BUFFER_PRESERVED)) {
+			if (DEBUG) Log.d(TAG, "EGL_BUFFER_PRESERVED not supported " + GLUtils.getEGLErrorString(EGL14.eglGetError()));
+			return false;
+		}
+		return true;
+	}
+	
 	void destroySurface(EGLSurface surface) {
 		if (surface != null && surface != EGL_NO_SURFACE) {
             if (surface.equals(sEgl.eglGetCurrentSurface(EGL_DRAW))) {
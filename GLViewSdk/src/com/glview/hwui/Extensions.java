@@ -5,10 +5,14 @@ import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import android.os.Build;
 import android.util.Log;
 
 import com.glview.App;
+import com.glview.libgdx.graphics.opengl.AndroidGL20;
+import com.glview.libgdx.graphics.opengl.AndroidGL30;
 import com.glview.libgdx.graphics.opengl.GL20;
+import com.glview.libgdx.graphics.opengl.GL30;
 
 public class Extensions {
 	
@@ -27,10 +31,13 @@ public class Extensions {
     boolean mHasTiledRendering;
     boolean mHas1BitStencil;
     boolean mHas4BitStencil;
+    boolean mHasElementIndexUint;
     boolean mHasNvSystemTime;
 
     int mVersionMajor;
     int mVersionMinor;
+    
+    GL30 mGL30;
 	
 	Extensions() {
 		mGL = App.getGL20();
@@ -46,6 +53,7 @@ public class Extensions {
 	    mHasTiledRendering = hasGlExtension("GL_QCOM_tiled_rendering");
 	    mHas1BitStencil = hasGlExtension("GL_OES_stencil1");
 	    mHas4BitStencil = hasGlExtension("GL_OES_stencil4");
+	    mHasElementIndexUint = hasGlExtension("GL_OES_element_index_uint");
 	    
 	    String version = mGL != null ? mGL.glGetString(GL20.GL_VERSION) : null;
 	    Log.i(TAG, "GL_VERSION=" + version);
@@ -92,6 +100,7 @@ public class Extensions {
 	public boolean hasTiledRendering() { return mHasTiledRendering; }
 	public boolean has1BitStencil() { return mHas1BitStencil; }
 	public boolean has4BitStencil() { return mHas4BitStencil; }
+	public boolean hasElementIndexUint() { return mHasElementIndexUint || mVersionMajor >= 3; }
 	public boolean hasNvSystemTime() { return mHasNvSystemTime; }
 	public boolean hasUnpackRowLength() { return mVersionMajor >= 3; }
 	public boolean hasPixelBufferObjects() { return mVersionMajor >= 3; }
@@ -101,4 +110,21 @@ public class Extensions {
 	public int getMajorGlVersion() { return mVersionMajor; }
 	public int getMinorGlVersion() { return mVersionMinor; }
 	
+	/**
+	 * Our context is created for 2.0 but the drivers give a 3.0 context when
+	 * they support it, the GLES 3.0 calls are made through this one then.
+	 * The calls go to the current context, any context of the driver.
+	 * @return null before GLES 3.0.
+	 */
+	public GL30 getGL30() {
+		if (mGL30 == null && mVersionMajor >= 3) {
+			if (mGL instanceof GL30) {
+				mGL30 = (GL30) mGL;
+			} else if (mGL instanceof AndroidGL20 && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+				mGL30 = new AndroidGL30();
+			}
+		}
+		return mGL30;
+	}
+	
 }
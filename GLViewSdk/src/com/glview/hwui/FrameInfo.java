@@ -0,0 +1,92 @@
+package com.glview.hwui;
+
+/**
+ * The timings and counters of the frame being drawn, one per RenderThread,
+ * see {@link Caches#frameInfo}. The batches, the font renderer and the texture
+ * cache add to it, {@link CanvasContext} hands it to its {@link FrameStats}
+ * at the end of every frame.
+ */
+public final class FrameInfo {
+
+	/**
+	 * Building the display lists in the UI thread, ns.
+	 */
+	public final static int RECORD = 0;
+	/**
+	 * From the UI thread posting the frame to the RenderThread starting it, ns.
+	 */
+	public final static int SYNC_WAIT = 1;
+	/**
+	 * Syncing the display lists recorded to the RenderThread, ns.
+	 */
+	public final static int SYNC = 2;
+	/**
+	 * Replaying the display lists and issuing the GL commands, ns.
+	 */
+	public final static int REPLAY = 3;
+	/**
+	 * eglSwapBuffers, ns.
+	 */
+	public final static int SWAP = 4;
+	/**
+	 * From the start of the record to the end of the swap, ns.
+	 */
+	public final static int TOTAL = 5;
+
+	/**
+	 * The fields before are durations.
+	 */
+	public final static int DURATION_COUNT = 6;
+
+	/**
+	 * Draw calls of the sprite batches.
+	 */
+	public final static int BATCH_FLUSHES = 6;
+	/**
+	 * Draw calls of the font batches.
+	 */
+	public final static int FONT_FLUSHES = 7;
+	/**
+	 * Bytes of bitmaps uploaded to textures.
+	 */
+	public final static int UPLOAD_BYTES = 8;
+	/**
+	 * Draw ops skipped because they are out of the clip.
+	 */
+	public final static int CULLED_OPS = 9;
+	/**
+	 * Render nodes skipped because they are out of the clip.
+	 */
+	public final static int CULLED_NODES = 10;
+	/**
+	 * GL calls skipped by {@link RenderState} because the state was already set.
+	 */
+	public final static int GL_CALLS_SAVED = 11;
+	/**
+	 * Deferred draw ops skipped because an opaque op drawn after them hides them.
+	 */
+	public final static int OCCLUDED_OPS = 12;
+
+	public final static int FIELD_COUNT = 13;
+
+	final long[] mValues = new long[FIELD_COUNT];
+
+	public void add(int field, long value) {
+		mValues[field] += value;
+	}
+
+	public void set(int field, long value) {
+		mValues[field] = value;
+	}
+
+	public long get(int field) {
+		return mValues[field];
+	}
+
+	void reset() {
+		for (int i = 0; i < FIELD_COUNT; i ++) {
+			mValues[i] = 0;
+		}
+	}
+
+}
@@ -0,0 +1,266 @@
+package com.glview.hwui;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The frame timings of one window.
+ * <p>
+ * Every frame is written by the RenderThread to a ring buffer of the last
+ * {@link #RING_SIZE} frames, which any thread can copy with {@link #getFrames(long[])}
+ * without a lock, and to a histogram of every duration. Every {@link #REPORT_INTERVAL}
+ * frames the percentiles of the histograms are turned into a {@link Report} and
+ * the histograms start again, the report is delivered to the
+ * {@link OnFrameStatsListener} in the UI thread.
+ * @see FrameInfo
+ */
+public final class FrameStats {
+
+	public final static int RING_SIZE = 128;
+	public final static int REPORT_INTERVAL = 120;
+
+	/**
+	 * A frame longer than this missed a vsync.
+	 */
+	public final static long FRAME_INTERVAL_NS = 16666667L;
+
+	/**
+	 * Called in the UI thread with the stats of the last {@link #REPORT_INTERVAL} frames.
+	 */
+	public interface OnFrameStatsListener {
+		void onFrameStats(Report report);
+	}
+
+	/**
+	 * The stats of {@link #getFrameCount()} frames.
+	 */
+	public final static class Report {
+
+		final int mFrameCount;
+		final int mJankyFrameCount;
+		/*
+		 * p50, p95, p99 and max of every duration.
+		 */
+		final long[] mPercentiles = new long[FrameInfo.DURATION_COUNT * 4];
+		final long[] mSums = new long[FrameInfo.FIELD_COUNT];
+
+		Report(int frameCount, int jankyFrameCount) {
+			mFrameCount = frameCount;
+			mJankyFrameCount = jankyFrameCount;
+		}
+
+		public int getFrameCount() {
+			return mFrameCount;
+		}
+
+		/**
+		 * @return the frames whose {@link FrameInfo#TOTAL} is over {@link FrameStats#FRAME_INTERVAL_NS}.
+		 */
+		public int getJankyFrameCount() {
+			return mJankyFrameCount;
+		}
+
+		/**
+		 * @param field a duration of {@link FrameInfo}.
+		 * @param percentile 50, 95 or 99, 100 for the max.
+		 * @return the duration in ns, the upper bound of its histogram bucket.
+		 */
+		public long getPercentile(int field, int percentile) {
+			final int i = field * 4;
+			switch (percentile) {
+			case 50:
+				return mPercentiles[i];
+			case 95:
+				return mPercentiles[i + 1];
+			case 99:
+				return mPercentiles[i + 2];
+			case 100:
+				return mPercentiles[i + 3];
+			default:
+				throw new IllegalArgumentException("Unsupported percentile " + percentile);
+			}
+		}
+
+		/**
+		 * @return the average of a field of {@link FrameInfo} per frame.
+		 */
+		public long getAverage(int field) {
+			return mFrameCount > 0 ? mSums[field] / mFrameCount : 0;
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder sb = new StringBuilder();
+			sb.append("frames=").append(mFrameCount).append(", janky=").append(mJankyFrameCount);
+			appendPercentiles(sb, "record", FrameInfo.RECORD);
+			appendPercentiles(sb, "syncWait", FrameInfo.SYNC_WAIT);
+			appendPercentiles(sb, "sync", FrameInfo.SYNC);
+			appendPercentiles(sb, "replay", FrameInfo.REPLAY);
+			appendPercentiles(sb, "swap", FrameInfo.SWAP);
+			appendPercentiles(sb, "total", FrameInfo.TOTAL);
+			sb.append(", batchFlushes=").append(getAverage(FrameInfo.BATCH_FLUSHES));
+			sb.append(", fontFlushes=").append(getAverage(FrameInfo.FONT_FLUSHES));
+			sb.append(", uploadBytes=").append(getAverage(FrameInfo.UPLOAD_BYTES));
+			sb.append(", culledOps=").append(getAverage(FrameInfo.CULLED_OPS));
+			sb.append(", culledNodes=").append(getAverage(FrameInfo.CULLED_NODES));
+			sb.append(", glCallsSaved=").append(getAverage(FrameInfo.GL_CALLS_SAVED));
+			sb.append(", occludedOps=").append(getAverage(FrameInfo.OCCLUDED_OPS));
+			return sb.toString();
+		}
+
+		private void appendPercentiles(StringBuilder sb, String name, int field) {
+			sb.append(", ").append(name).append("(ms)=[")
+					.append(getPercentile(field, 50) / 1000000f).append(' ')
+					.append(getPercentile(field, 95) / 1000000f).append(' ')
+					.append(getPercentile(field, 99) / 1000000f).append(']');
+		}
+	}
+
+	/*
+	 * Buckets of 0.5ms up to 64ms and one for the longer durations.
+	 */
+	final static class Histogram {
+
+		final static long BUCKET_NS = 500000L;
+		final static int BUCKET_COUNT = 128;
+
+		final int[] mBuckets = new int[BUCKET_COUNT + 1];
+		int mCount;
+		long mMax;
+
+		void add(long ns) {
+			int i = (int) Math.min(ns / BUCKET_NS, BUCKET_COUNT);
+			mBuckets[i < 0 ? 0 : i] ++;
+			mCount ++;
+			if (ns > mMax) mMax = ns;
+		}
+
+		long percentile(int percentile) {
+			if (mCount == 0) return 0;
+			final int target = (mCount * percentile + 99) / 100;
+			int count = 0;
+			for (int i = 0; i < BUCKET_COUNT; i ++) {
+				count += mBuckets[i];
+				if (count >= target) {
+					return Math.min((i + 1) * BUCKET_NS, mMax);
+				}
+			}
+			return mMax;
+		}
+
+		void reset() {
+			for (int i = 0; i <= BUCKET_COUNT; i ++) {
+				mBuckets[i] = 0;
+			}
+			mCount = 0;
+			mMax = 0;
+		}
+	}
+
+	/*
+	 * Written by the RenderThread only, a slot is filled before mWritten
+	 * publishes it.
+	 */
+	final long[] mRing = new long[RING_SIZE * FrameInfo.FIELD_COUNT];
+	final AtomicLong mWritten = new AtomicLong();
+
+	final Histogram[] mHistograms = new Histogram[FrameInfo.DURATION_COUNT];
+	final long[] mSums = new long[FrameInfo.FIELD_COUNT];
+	int mReportFrames;
+	int mJankyFrames;
+
+	final AtomicReference<Report> mPendingReport = new AtomicReference<Report>();
+
+	FrameStats() {
+		for (int i = 0; i < mHistograms.length; i ++) {
+			mHistograms[i] = new Histogram();
+		}
+	}
+
+	/*
+	 * Run in RenderThread.
+	 * @return the report built by this frame, or null.
+	 */
+	Report addFrame(FrameInfo frameInfo) {
+		final long[] values = frameInfo.mValues;
+		final long written = mWritten.get();
+		System.arraycopy(values, 0, mRing, (int) (written % RING_SIZE) * FrameInfo.FIELD_COUNT, FrameInfo.FIELD_COUNT);
+		mWritten.lazySet(written + 1);
+
+		for (int i = 0; i < FrameInfo.DURATION_COUNT; i ++) {
+			mHistograms[i].add(values[i]);
+		}
+		for (int i = 0; i < FrameInfo.FIELD_COUNT; i ++) {
+			mSums[i] += values[i];
+		}
+		if (values[FrameInfo.TOTAL] > FRAME_INTERVAL_NS) {
+			mJankyFrames ++;
+		}
+		if (++ mReportFrames >= REPORT_INTERVAL) {
+			Report report = buildReport();
+			mPendingReport.set(report);
+			return report;
+		}
+		return null;
+	}
+
+	private Report buildReport() {
+		Report report = new Report(mReportFrames, mJankyFrames);
+		for (int i = 0; i < FrameInfo.DURATION_COUNT; i ++) {
+			final Histogram histogram = mHistograms[i];
+			report.mPercentiles[i * 4] = histogram.percentile(50);
+			report.mPercentiles[i * 4 + 1] = histogram.percentile(95);
+			report.mPercentiles[i * 4 + 2] = histogram.percentile(99);
+			report.mPercentiles[i * 4 + 3] = histogram.mMax;
+			histogram.reset();
+		}
+		System.arraycopy(mSums, 0, report.mSums, 0, FrameInfo.FIELD_COUNT);
+		for (int i = 0; i < FrameInfo.FIELD_COUNT; i ++) {
+			mSums[i] = 0;
+		}
+		mReportFrames = 0;
+		mJankyFrames = 0;
+		return report;
+	}
+
+	/**
+	 * @return the report built since the last call, or null.
+	 */
+	Report takeReport() {
+		return mPendingReport.getAndSet(null);
+	}
+
+	/**
+	 * @return the number of frames drawn.
+	 */
+	public long getFrameCount() {
+		return mWritten.get();
+	}
+
+	/**
+	 * Copy the last frames, oldest first, {@link FrameInfo#FIELD_COUNT} values
+	 * per frame. Can be called in any thread.
+	 * @param out room for at most {@link #RING_SIZE} frames.
+	 * @return the number of frames copied.
+	 */
+	public int getFrames(long[] out) {
+		final int maxFrames = Math.min(out.length / FrameInfo.FIELD_COUNT, RING_SIZE);
+		final long end = mWritten.get();
+		long start = Math.max(0, end - maxFrames);
+		for (long i = start; i < end; i ++) {
+			System.arraycopy(mRing, (int) (i % RING_SIZE) * FrameInfo.FIELD_COUNT,
+					out, (int) (i - start) * FrameInfo.FIELD_COUNT, FrameInfo.FIELD_COUNT);
+		}
+		// The frames overwritten while copying are dropped, the one being written
+		// now is in the slot of end' - RING_SIZE.
+		final long oldest = mWritten.get() + 1 - RING_SIZE;
+		if (oldest > start) {
+			final int dropped = (int) Math.min(oldest - start, end - start);
+			System.arraycopy(out, dropped * FrameInfo.FIELD_COUNT, out, 0,
+					(int) (end - start - dropped) * FrameInfo.FIELD_COUNT);
+			start += dropped;
+		}
+		return (int) (end - start);
+	}
+
+}
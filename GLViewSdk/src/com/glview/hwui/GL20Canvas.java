@@ -4,6 +4,7 @@ import android.opengl.Matrix;
 
 import com.glview.App;
 import com.glview.graphics.Bitmap;
+import com.glview.graphics.Path;
 import com.glview.graphics.Rect;
 import com.glview.graphics.RectF;
 import com.glview.graphics.drawable.ninepatch.NinePatch;
@@ -11,8 +12,11 @@ import com.glview.graphics.mesh.BasicMesh;
 import com.glview.graphics.shader.BaseShader;
 import com.glview.graphics.shader.DefaultColorShader;
 import com.glview.graphics.shader.DefaultTextureShader;
+import com.glview.hwui.DeferredDisplayList.DeferredOp;
 import com.glview.hwui.GLPaint.Style;
+import com.glview.hwui.cache.PathCache.PathMesh;
 import com.glview.hwui.font.FontRenderer;
+import com.glview.hwui.op.DisplayListData;
 import com.glview.libgdx.graphics.Mesh;
 import com.glview.libgdx.graphics.VertexAttribute;
 import com.glview.libgdx.graphics.VertexAttributes.Usage;
@@ -51,6 +55,19 @@ class GL20Canvas extends StatefullBaseCanvas implements InnerGLCanvas {
 	float mVertices[];
 	Batch mBatch;
 	FontRenderer mFontRenderer;
+	/*
+	 * Glyphs of this canvas are queued in the font batches, the sprites
+	 * queued after them must wait for them.
+	 */
+	boolean mFontQueued;
+	
+	/*
+	 * The batches are drawn with the clip, the viewport and the projection
+	 * of the current snapshot, flush them before a snapshot that changed
+	 * one of them is restored.
+	 */
+	private final static int FLUSH_SNAPSHOT_FLAGS = Snapshot.kFlagClipSet
+			| Snapshot.kFlagIsFboLayer | Snapshot.kFlagProjectionSet;
 
 	ShaderManager mShaderManager;
 
@@ -58,6 +75,22 @@ class GL20Canvas extends StatefullBaseCanvas implements InnerGLCanvas {
 	RenderState mRenderState;
 
 	Caches mCaches;
+	
+	/**
+	 * Not null if the draw ops of a frame may be deferred.
+	 * @see #setDeferEnabled(boolean)
+	 */
+	DeferredDisplayList mDeferredDisplayList;
+	/**
+	 * True while draw ops go to {@link #mDeferredDisplayList} instead of GL.
+	 */
+	boolean mDeferring = false;
+	private final RectF mDeferSourceRect = new RectF();
+	private final RectF mDeferTargetRect = new RectF();
+	private final Rect mDeferRect = new Rect();
+	private final Rect mDeferRect2 = new Rect();
+	private final RectF mDeferPathBounds = new RectF();
+	private final TextureRegion mTextureRegion = new TextureRegion();
 
 	public GL20Canvas(RenderState renderState) {
 		mCaches = Caches.getInstance();
@@ -168,21 +201,24 @@ class GL20Canvas extends StatefullBaseCanvas implements InnerGLCanvas {
 		float camera = 500;
 		float far = 5000;
 		
+		// The batches are drawn with the camera and projection, flush them
+		// before, and again when the snapshot is restored.
+		flushBatch();
+		flushFont();
+		currentSnapshot().flags |= Snapshot.kFlagProjectionSet;
 		// 调用此方法产生摄像机9参数位置矩阵
 		setCamera(centerX, centerY, camera, centerX, centerY, 0f, 0f, 1.0f, 0.0f);
 		setProjectFrustum(- centerX / camera, mWidth / camera - centerX / camera, - centerY / camera, mHeight / camera - centerY / camera, near, far);
 	}
 	
-	@Override
-	public void translate(float x, float y) {
-		flushBatch();
-		super.translate(x, y);
-	}
-	
+	/*
+	 * 2D transforms don't flush the batches, their vertices are transformed
+	 * when they are queued.
+	 */
 	@Override
 	public void translate(float x, float y, float z) {
-		flushBatch();
 		if (z != 0) {
+			stopDeferring();
 			float[] center = MatrixUtil.mapPoint(currentSnapshot().transform, 0, 0);
 			setCameraAndProject(center[0], center[1]);
 			mRenderState.setDepthEnabled(true);
@@ -193,8 +229,8 @@ class GL20Canvas extends StatefullBaseCanvas implements InnerGLCanvas {
 	@Override
 	public void rotate(float degrees, float x, float y, float z) {
 		if (degrees == 0) return;
-		flushBatch();
 		if (x != 0 || y != 0) {
+			stopDeferring();
 			float[] center = MatrixUtil.mapPoint(currentSnapshot().transform, 0, 0);
 			setCameraAndProject(center[0], center[1]);
 			mRenderState.setDepthEnabled(true);
@@ -202,27 +238,26 @@ class GL20Canvas extends StatefullBaseCanvas implements InnerGLCanvas {
 		super.rotate(degrees, x, y, z);
 	}
 	
-	@Override
-	public void rotate(float degrees) {
-		flushBatch();
-		super.rotate(degrees);
-	}
-	
-	@Override
-	public void scale(float sx, float sy, float sz) {
-		flushBatch();
-		super.scale(sx, sy, sz);
-	}
-	
 	@Override
 	public void restore() {
-		flushBatch();
+		if (mSaveCount > 1 && (currentSnapshot().flags & FLUSH_SNAPSHOT_FLAGS) != 0) {
+			flushBatch();
+			flushFont();
+		}
 		super.restore();
 	}
 	
 	@Override
 	public void restoreToCount(int saveCount) {
-		flushBatch();
+		Snapshot snapshot = currentSnapshot();
+		for (int i = mSaveCount; i > saveCount && i > 1; i --) {
+			if ((snapshot.flags & FLUSH_SNAPSHOT_FLAGS) != 0) {
+				flushBatch();
+				flushFont();
+				break;
+			}
+			snapshot = snapshot.previous;
+		}
 		super.restoreToCount(saveCount);
 	}
 
@@ -231,7 +266,23 @@ class GL20Canvas extends StatefullBaseCanvas implements InnerGLCanvas {
 
 	@Override
 	public void beginFrame() {
+		beginFrame(null);
+	}
+	
+	@Override
+	public void beginFrame(Rect dirty) {
+		mRenderState.prepare();
 		setupDraw();
+		if (dirty != null) {
+			// Everything is scissored to the dirty rect, the clear too.
+			// The clip is in GL coordinates, bottom-left origin.
+			mFirstSnapshot.setClip(dirty.left, mHeight - dirty.bottom, dirty.right, mHeight - dirty.top);
+			mRenderState.enableScissor();
+			setScissorFromClip();
+		} else {
+			mFirstSnapshot.setClip(0, 0, mWidth, mHeight);
+			mRenderState.disableScissor();
+		}
 		mGL.glClearColor(0.0f, 0.0f, 0.0f, 0.0f);
 		mGL.glClearDepthf(1f);
 		mGL.glClear(GL20.GL_COLOR_BUFFER_BIT | GL20.GL_DEPTH_BUFFER_BIT);
@@ -241,12 +292,20 @@ class GL20Canvas extends StatefullBaseCanvas implements InnerGLCanvas {
 		mRenderState.setDepthEnabled(false);
 		mRenderState.setBlendEnabled(false);
 		dirtyClip();
-		Caches.getInstance().disableScissor();
 //		mRenderState.setBlendEnabled(true);
+		if (mDeferredDisplayList != null) {
+			mDeferredDisplayList.beginFrame();
+			mDeferring = true;
+		}
 	}
 
 	@Override
 	public void endFrame() {
+		if (mDeferredDisplayList != null) {
+			flushDeferred();
+			mDeferring = false;
+			mDeferredDisplayList.endFrame();
+		}
 		flushBatch();
 		flushFont();
 		mFontRenderer.end(this);
@@ -255,7 +314,7 @@ class GL20Canvas extends StatefullBaseCanvas implements InnerGLCanvas {
 
 	private void setupDraw() {
 		if (mDirtyClip) {
-			if (mCaches.scissorEnabled) {
+			if (mRenderState.isScissorEnabled()) {
 	            setScissorFromClip();
 	        }
 		}
@@ -264,6 +323,12 @@ class GL20Canvas extends StatefullBaseCanvas implements InnerGLCanvas {
 	@Override
 	public void drawRect(float left, float top, float right, float bottom,
 			GLPaint paint) {
+		if (mDeferring) {
+			DeferredOp op = deferOp(DisplayListData.OP_DRAW_RECT, paint);
+			setDeferFloats(op, left, top, right, bottom);
+			commitOp(op);
+			return;
+		}
 		paint = getGLPaint(paint);
 		if (paint.getStyle() == Style.FILL) {
 			fillRect(left, top, right, bottom, paint);
@@ -283,6 +348,12 @@ class GL20Canvas extends StatefullBaseCanvas implements InnerGLCanvas {
 	}
 
 	public void drawLine(float x1, float y1, float x2, float y2, GLPaint paint) {
+		if (mDeferring) {
+			DeferredOp op = deferOp(DisplayListData.OP_DRAW_LINE, paint);
+			setDeferFloats(op, x1, y1, x2, y2);
+			commitOp(op);
+			return;
+		}
 		paint = getGLPaint(paint);
 		int color = paint.getColor();
 		mRenderState.setLineWidth(paint.getStrokeWidth());
@@ -304,7 +375,7 @@ class GL20Canvas extends StatefullBaseCanvas implements InnerGLCanvas {
 		
 		setupDraw();
 		
-		flushBatch();
+		flushQueued();
 		
 		// If a shader is set, preserve only the alpha
 		if (paint.getShader() != null) {
@@ -329,7 +400,7 @@ class GL20Canvas extends StatefullBaseCanvas implements InnerGLCanvas {
 		
 		setupDraw();
 		
-		flushBatch();
+		flushQueued();
 		
 		setVerticesXY(x, y, x + width, y + height);
 		mMesh.setVertices(mVertices);
@@ -347,6 +418,16 @@ class GL20Canvas extends StatefullBaseCanvas implements InnerGLCanvas {
 	}
 	
 	public void drawTexture(Texture texture, float x, float y, float width, float height, boolean hasAlpha, GLPaint paint) {
+		if (mDeferring) {
+			if (texture != null && texture.mId > 0) {
+				DeferredOp op = deferOp(DeferredDisplayList.OP_DRAW_TEXTURE, paint);
+				setDeferFloats(op, x, y, width, height);
+				op.mObject = texture;
+				op.mHasAlpha = hasAlpha;
+				commitOp(op);
+			}
+			return;
+		}
 		if (texture != null && texture.mId > 0) {
 			mCaches.bindTexture(texture);
 			setVerticesUV(0, 0, 1, 1);
@@ -356,18 +437,83 @@ class GL20Canvas extends StatefullBaseCanvas implements InnerGLCanvas {
 
 	@Override
 	public void drawBitmap(Bitmap bitmap, float x, float y, GLPaint paint) {
-		Texture texture = mCaches.textureCache.get(bitmap);
-		if (texture == null)
+		if (mDeferring) {
+			DeferredOp op = deferOp(DisplayListData.OP_DRAW_BITMAP, paint);
+			op.mFloats[0] = x;
+			op.mFloats[1] = y;
+			op.mObject = bitmap;
+			op.mMergeId = getMergeId(bitmap, paint);
+			op.mBounds.set(x, y, x + bitmap.getWidth(), y + bitmap.getHeight());
+			commitOp(op);
+			return;
+		}
+		paint = getGLPaint(paint);
+		if (paint.getShader() == null) {
+			setupDraw();
+			batchBitmap(bitmap, x, y, bitmap.getWidth(), bitmap.getHeight(),
+					0, 0, bitmap.getWidth(), bitmap.getHeight(), paint);
+			return;
+		}
+		TextureRegion region = getTextureRegion(bitmap, paint);
+		if (region == null)
 			return;
-		drawTexture(texture, x, y, bitmap.getWidth(), bitmap.getHeight(), bitmap.hasAlpha(), paint);
+		flushQueued();
+		mCaches.bindTexture(region.mTexture);
+		setVerticesUV(region.mRegion.left, region.mRegion.top, region.mRegion.right, region.mRegion.bottom);
+		textureRect(x, y, bitmap.getWidth(), bitmap.getHeight(), bitmap.hasAlpha(), paint);
+	}
+	
+	/*
+	 * Custom shaders may sample around the bitmap, they get a texture of its own.
+	 */
+	private TextureRegion getTextureRegion(Bitmap bitmap, GLPaint paint) {
+		if (paint.getShader() != null) {
+			Texture texture = mCaches.textureCache.get(bitmap);
+			if (texture == null)
+				return null;
+			mTextureRegion.set(texture, 0, 0, 1, 1);
+			return mTextureRegion;
+		}
+		return mCaches.textureCache.getRegion(bitmap);
+	}
+	
+	/*
+	 * Deferred bitmaps and patches drawn from the same texture, or atlas page, are merged.
+	 */
+	private Object getMergeId(Bitmap bitmap, GLPaint paint) {
+		if (paint != null && paint.getShader() != null)
+			return null;
+		TextureRegion region = mCaches.textureCache.getRegion(bitmap);
+		return region != null ? region.mTexture : null;
 	}
 
 	@Override
 	public void drawBitmap(Bitmap bitmap, RectF source, RectF target,
 			GLPaint paint) {
+		if (mDeferring) {
+			DeferredOp op = deferOp(DisplayListData.OP_DRAW_BITMAP_RECT_F, paint);
+			if (source != null) {
+				setDeferFloats(op, source.left, source.top, source.right, source.bottom);
+			} else {
+				setDeferFloats(op, 0, 0, 0, 0);
+			}
+			deferBitmapTarget(op, bitmap, target.left, target.top, target.right, target.bottom);
+			return;
+		}
 		paint = getGLPaint(paint);
-		Texture texture = mCaches.textureCache.get(bitmap);
-		if (texture == null)
+		if (paint.getShader() == null) {
+			setupDraw();
+			if (source != null && !source.isEmpty()) {
+				batchBitmap(bitmap, target.left, target.top, target.width(), target.height(),
+						source.left, source.top, source.width(), source.height(), paint);
+			} else {
+				batchBitmap(bitmap, target.left, target.top, target.width(), target.height(),
+						0, 0, bitmap.getWidth(), bitmap.getHeight(), paint);
+			}
+			return;
+		}
+		TextureRegion region = getTextureRegion(bitmap, paint);
+		if (region == null)
 			return;
 
 		// Copy the input to avoid changing it.
@@ -379,9 +525,11 @@ class GL20Canvas extends StatefullBaseCanvas implements InnerGLCanvas {
 		}
 		mDrawTextureTargetRect.set(target);
 
-		mCaches.bindTexture(texture);
+		// The batch binds its own texture when it is flushed.
+		flushQueued();
+		mCaches.bindTexture(region.mTexture);
 
-		convertCoordinate(mDrawTextureSourceRect, texture);
+		convertCoordinate(mDrawTextureSourceRect, region);
 		setVerticesUV(mDrawTextureSourceRect.left, mDrawTextureSourceRect.top,
 				mDrawTextureSourceRect.right, mDrawTextureSourceRect.bottom);
 
@@ -393,9 +541,24 @@ class GL20Canvas extends StatefullBaseCanvas implements InnerGLCanvas {
 	@Override
 	public void drawBitmap(Bitmap bitmap, Rect source, Rect target,
 			GLPaint paint) {
+		if (mDeferring) {
+			deferBitmapRect(DisplayListData.OP_DRAW_BITMAP_RECT, bitmap, source, target, paint);
+			return;
+		}
 		paint = getGLPaint(paint);
-		Texture texture = mCaches.textureCache.get(bitmap);
-		if (texture == null)
+		if (paint.getShader() == null) {
+			setupDraw();
+			if (source != null && !source.isEmpty()) {
+				batchBitmap(bitmap, target.left, target.top, target.width(), target.height(),
+						source.left, source.top, source.width(), source.height(), paint);
+			} else {
+				batchBitmap(bitmap, target.left, target.top, target.width(), target.height(),
+						0, 0, bitmap.getWidth(), bitmap.getHeight(), paint);
+			}
+			return;
+		}
+		TextureRegion region = getTextureRegion(bitmap, paint);
+		if (region == null)
 			return;
 
 		// Copy the input to avoid changing it.
@@ -407,9 +570,11 @@ class GL20Canvas extends StatefullBaseCanvas implements InnerGLCanvas {
 		}
 		mDrawTextureTargetRect.set(target);
 
-		mCaches.bindTexture(texture);
+		// The batch binds its own texture when it is flushed.
+		flushQueued();
+		mCaches.bindTexture(region.mTexture);
 
-		convertCoordinate(mDrawTextureSourceRect, texture);
+		convertCoordinate(mDrawTextureSourceRect, region);
 		setVerticesUV(mDrawTextureSourceRect.left, mDrawTextureSourceRect.top,
 				mDrawTextureSourceRect.right, mDrawTextureSourceRect.bottom);
 
@@ -421,11 +586,18 @@ class GL20Canvas extends StatefullBaseCanvas implements InnerGLCanvas {
 	@Override
 	public void drawBitmapBatch(Bitmap bitmap, Rect source, Rect target,
 			GLPaint paint) {
+		if (mDeferring) {
+			deferBitmapRect(DisplayListData.OP_DRAW_BITMAP_BATCH, bitmap, source, target, paint);
+			return;
+		}
 		paint = getGLPaint(paint);
+		setupDraw();
+		flushQueuedFont();
+		final float[] transform = currentSnapshot().transform;
 		if (source == null || source.isEmpty()) {
-			mBatch.drawBitmap(bitmap, target.left, target.top, target.width(), target.height(), 0, 0, bitmap.getWidth(), bitmap.getHeight(), currentSnapshot().alpha, paint);
+			mBatch.drawBitmap(bitmap, target.left, target.top, target.width(), target.height(), 0, 0, bitmap.getWidth(), bitmap.getHeight(), currentSnapshot().alpha, paint, transform);
 		} else {
-			mBatch.drawBitmap(bitmap, target.left, target.top, target.width(), target.height(), source.left, source.top, source.width(), source.height(), currentSnapshot().alpha, paint);
+			mBatch.drawBitmap(bitmap, target.left, target.top, target.width(), target.height(), source.left, source.top, source.width(), source.height(), currentSnapshot().alpha, paint, transform);
 		}
 	}
 	
@@ -436,36 +608,43 @@ class GL20Canvas extends StatefullBaseCanvas implements InnerGLCanvas {
 		shader.setupViewModelMatrices(m);
 	}
 
-	// This function changes the source coordinate to the texture coordinates.
-	// It also clips the source and target coordinates if it is beyond the
-	// bound of the texture.
-	private static void convertCoordinate(RectF source, Texture texture) {
-
-		int width = texture.getWidth();
-		int height = texture.getHeight();
-
-		float invTexWidth = 1.0f / width;
-		float invTexHeight = 1.0f / height;
-		// Convert to texture coordinates
-		source.left *= invTexWidth;
-		source.right *= invTexWidth;
-		source.top *= invTexHeight;
-		source.bottom *= invTexHeight;
+	// This function changes the source coordinate to the texture coordinates
+	// of the region the bitmap is drawn from.
+	private static void convertCoordinate(RectF source, TextureRegion region) {
+		source.left = region.mapU(source.left);
+		source.right = region.mapU(source.right);
+		source.top = region.mapV(source.top);
+		source.bottom = region.mapV(source.bottom);
 	}
 
 	@Override
 	public void drawPatch(NinePatch patch, Rect rect, GLPaint paint) {
+		if (mDeferring) {
+			DeferredOp op = deferOp(DisplayListData.OP_DRAW_PATCH, paint);
+			setDeferFloats(op, rect.left, rect.top, rect.right, rect.bottom);
+			op.mObject = patch;
+			op.mMergeId = getMergeId(patch.getBitmap(), paint);
+			commitOp(op);
+			return;
+		}
 		paint = getGLPaint(paint);
-		Texture texture = mCaches.textureCache.get(patch.getBitmap());
-		if (texture == null)
+		if (paint.getShader() == null) {
+			setupDraw();
+			flushQueuedFont();
+			mBatch.drawPatch(patch, rect, currentSnapshot().alpha, paint, currentSnapshot().transform);
 			return;
-		Mesh mesh = mCaches.patchCache.get(rect.width(), rect.height(), patch);
+		}
+		TextureRegion region = getTextureRegion(patch.getBitmap(), paint);
+		if (region == null)
+			return;
+		final Texture texture = region.mTexture;
+		Mesh mesh = mCaches.patchCache.get(rect.width(), rect.height(), patch, region);
 		if (mesh == null)
 			return;
 
 		setupDraw();
 		
-		flushBatch();
+		flushQueued();
 		
 		mCaches.bindTexture(texture);
 
@@ -483,6 +662,12 @@ class GL20Canvas extends StatefullBaseCanvas implements InnerGLCanvas {
 
 	@Override
 	public void drawMesh(BasicMesh basicMesh, GLPaint paint) {
+		if (mDeferring) {
+			DeferredOp op = deferOp(DisplayListData.OP_DRAW_MESH, paint);
+			op.mObject = basicMesh;
+			commitOp(op);
+			return;
+		}
 		paint = getGLPaint(paint);
 		Mesh mesh = mCaches.meshCache.get(basicMesh);
 		if (mesh == null)
@@ -490,7 +675,7 @@ class GL20Canvas extends StatefullBaseCanvas implements InnerGLCanvas {
 		
 		setupDraw();
 		
-		flushBatch();
+		flushQueued();
 		
 		mRenderState.setLineWidth(paint.getStrokeWidth());
 		
@@ -513,6 +698,13 @@ class GL20Canvas extends StatefullBaseCanvas implements InnerGLCanvas {
 
 	@Override
 	public void drawBitmapMesh(Bitmap bitmap, BasicMesh basicMesh, GLPaint paint) {
+		if (mDeferring) {
+			DeferredOp op = deferOp(DisplayListData.OP_DRAW_BITMAP_MESH, paint);
+			op.mObject = bitmap;
+			op.mObject2 = basicMesh;
+			commitOp(op);
+			return;
+		}
 		paint = getGLPaint(paint);
 		Texture texture = mCaches.textureCache.get(bitmap);
 		if (texture == null)
@@ -523,7 +715,7 @@ class GL20Canvas extends StatefullBaseCanvas implements InnerGLCanvas {
 			return;
 		setupDraw();
 
-		flushBatch();
+		flushQueued();
 
 		mCaches.bindTexture(texture);
 		BaseShader useShader = mShaderManager.setupTextureShader(paint, 0, 0,
@@ -533,6 +725,99 @@ class GL20Canvas extends StatefullBaseCanvas implements InnerGLCanvas {
 		mesh.render(useShader.getShaderProgram(), basicMesh.getDrawMode());
 		mRenderState.setDepthMask(true);
 	}
+	
+	@Override
+	public void drawOval(float left, float top, float right, float bottom,
+			GLPaint paint) {
+		if (mDeferring) {
+			DeferredOp op = deferOp(DisplayListData.OP_DRAW_OVAL, paint);
+			setDeferFloats(op, left, top, right, bottom);
+			commitOp(op);
+			return;
+		}
+		paint = getGLPaint(paint);
+		PathMesh pathMesh = mCaches.pathCache.getOval(right - left, bottom - top, paint, getPathScale());
+		if (pathMesh == null)
+			return;
+		translate(left, top);
+		drawPathMesh(pathMesh, paint);
+		translate(-left, -top);
+	}
+	
+	@Override
+	public void drawRoundRect(float left, float top, float right, float bottom,
+			float rx, float ry, GLPaint paint) {
+		if (mDeferring) {
+			DeferredOp op = deferOp(DisplayListData.OP_DRAW_ROUND_RECT, paint);
+			setDeferFloats(op, left, top, right, bottom);
+			op.mFloats[4] = rx;
+			op.mFloats[5] = ry;
+			commitOp(op);
+			return;
+		}
+		paint = getGLPaint(paint);
+		PathMesh pathMesh = mCaches.pathCache.getRoundRect(right - left, bottom - top, rx, ry,
+				paint, getPathScale());
+		if (pathMesh == null)
+			return;
+		translate(left, top);
+		drawPathMesh(pathMesh, paint);
+		translate(-left, -top);
+	}
+	
+	@Override
+	public void drawPath(Path path, GLPaint paint) {
+		if (mDeferring) {
+			DeferredOp op = deferOp(DisplayListData.OP_DRAW_PATH, paint);
+			// Replayed at the end of the frame, the path may change before.
+			path = path.snapshot();
+			path.computeBounds(mDeferPathBounds);
+			setDeferFloats(op, mDeferPathBounds.left, mDeferPathBounds.top,
+					mDeferPathBounds.right, mDeferPathBounds.bottom);
+			op.mObject = path;
+			commitOp(op);
+			return;
+		}
+		paint = getGLPaint(paint);
+		PathMesh pathMesh = mCaches.pathCache.get(path, paint, getPathScale());
+		if (pathMesh == null)
+			return;
+		drawPathMesh(pathMesh, paint);
+	}
+	
+	/*
+	 * The largest scale of the current transform, the paths are tessellated
+	 * for it.
+	 */
+	private float getPathScale() {
+		final float[] m = currentSnapshot().transform;
+		final float sx = m[0] * m[0] + m[1] * m[1];
+		final float sy = m[4] * m[4] + m[5] * m[5];
+		return (float) Math.sqrt(Math.max(sx, sy));
+	}
+	
+	private void drawPathMesh(PathMesh pathMesh, GLPaint paint) {
+		setupDraw();
+		
+		flushQueued();
+		
+		int color = paint.getColor();
+		// If a shader is set, preserve only the alpha
+		if (paint.getShader() != null) {
+			color |= 0x00ffffff;
+		}
+		
+		float alpha = currentSnapshot().alpha * paint.getAlpha() / 255;
+		float prealpha = ((color >>> 24) & 0xFF) * alpha / 255;
+		float colorR = Math.round(((color >> 16) & 0xFF) * prealpha) * 1.0f / 255;
+		float colorG = Math.round(((color >> 8) & 0xFF) * prealpha) * 1.0f / 255;
+		float colorB = Math.round((color & 0xFF) * prealpha) * 1.0f / 255;
+		float colorA = Math.round(255 * prealpha) * 1.0f / 255;
+		
+		BaseShader useShader = mShaderManager.setupColorShader(colorR, colorG, colorB, colorA, paint, false);
+		pathMesh.mesh.render(useShader.getShaderProgram(), GL20.GL_TRIANGLES, 0, pathMesh.vertexCount);
+		mRenderState.setDepthMask(true);
+	}
 
 	public void setTextureTarget(int target) {
 		mRenderState.setTextureTarget(target);
@@ -541,10 +826,223 @@ class GL20Canvas extends StatefullBaseCanvas implements InnerGLCanvas {
 	@Override
 	public void drawText(CharSequence text, int start, int end, float x, float y,
 			GLPaint paint, boolean drawDefer) {
+		if (mDeferring) {
+			DeferredOp op = deferOp(DisplayListData.OP_DRAW_TEXT, getGLPaint(paint));
+			op.mFloats[0] = x;
+			op.mFloats[1] = y;
+			op.mStart = start;
+			op.mEnd = end;
+			op.mDrawDefer = drawDefer;
+			op.mObject = text;
+			commitOp(op);
+			return;
+		}
 		setupDraw();
+		// The sprites queued before are under the text.
+		flushBatch();
+		mFontQueued = true;
 		mFontRenderer.renderText(this, text, start, end, x, y, currentSnapshot().alpha, getGLPaint(paint), currentSnapshot().clipRect, currentSnapshot().transform, !drawDefer);
 	}
 
+	///////////////////////////////////////////////////////////////////////////////
+	//Deferring
+	///////////////////////////////////////////////////////////////////////////////
+	
+	/**
+	 * Defer the draw ops of every frame so they can be reordered and merged,
+	 * only the main canvas of a window should do this.
+	 * @see DeferredDisplayList
+	 */
+	void setDeferEnabled(boolean enabled) {
+		if (enabled == (mDeferredDisplayList != null)) return;
+		flushDeferred();
+		mDeferring = false;
+		mDeferredDisplayList = enabled ? new DeferredDisplayList() : null;
+	}
+	
+	DeferredDisplayList getDeferredDisplayList() {
+		return mDeferredDisplayList;
+	}
+	
+	/*
+	 * 3D transforms change the camera and enable the depth test, the deferred
+	 * ops can't be reordered around them, so draw everything and stop deferring
+	 * until the next frame.
+	 */
+	private void stopDeferring() {
+		if (mDeferring) {
+			flushDeferred();
+			mDeferring = false;
+		}
+	}
+	
+	private void flushDeferred() {
+		if (mDeferredDisplayList != null && !mDeferredDisplayList.isEmpty()) {
+			final boolean deferring = mDeferring;
+			mDeferring = false;
+			mDeferredDisplayList.flush(this);
+			mDeferring = deferring;
+		}
+	}
+	
+	private DeferredOp deferOp(int kind, GLPaint paint) {
+		DeferredOp op = mDeferredDisplayList.obtainOp();
+		op.mOp = kind;
+		op.setPaint(paint);
+		return op;
+	}
+	
+	private static void setDeferFloats(DeferredOp op, float a, float b, float c, float d) {
+		final float[] f = op.mFloats;
+		f[0] = a;
+		f[1] = b;
+		f[2] = c;
+		f[3] = d;
+	}
+	
+	private void deferBitmapRect(int kind, Bitmap bitmap, Rect source, Rect target, GLPaint paint) {
+		DeferredOp op = deferOp(kind, paint);
+		if (source != null) {
+			setDeferFloats(op, source.left, source.top, source.right, source.bottom);
+		} else {
+			setDeferFloats(op, 0, 0, 0, 0);
+		}
+		deferBitmapTarget(op, bitmap, target.left, target.top, target.right, target.bottom);
+	}
+	
+	private void deferBitmapTarget(DeferredOp op, Bitmap bitmap, float left, float top, float right, float bottom) {
+		final float[] f = op.mFloats;
+		f[4] = left;
+		f[5] = top;
+		f[6] = right;
+		f[7] = bottom;
+		op.mObject = bitmap;
+		op.mMergeId = getMergeId(bitmap, op.paint());
+		op.mBounds.set(left, top, right, bottom);
+		commitOp(op);
+	}
+	
+	private void commitOp(DeferredOp op) {
+		DeferredDisplayList.setupBatch(op);
+		mDeferredDisplayList.add(op, currentSnapshot());
+	}
+	
+	/*
+	 * Called by DeferredDisplayList#flush, draws with the state of every op.
+	 */
+	void beginDeferredReplay() {
+		save(SAVE_FLAG_ALL);
+		// The clip is changed for every op, restore it afterwards.
+		currentSnapshot().flags |= Snapshot.kFlagClipSet;
+		mFontRenderer.setGLCanvas(this);
+		mRenderState.enableScissor();
+		mDirtyClip = true;
+	}
+	
+	void replayDeferredOp(DeferredOp op, boolean merge) {
+		final Snapshot snapshot = currentSnapshot();
+		System.arraycopy(op.mTransform, 0, snapshot.transform, 0, 16);
+		snapshot.alpha = op.mAlpha;
+		if (mDirtyClip || !snapshot.clipRect.equals(op.mClip)) {
+			flushBatch();
+			flushFont();
+			snapshot.clipRect.set(op.mClip);
+			setScissorFromClip();
+		}
+		final float[] f = op.mFloats;
+		final GLPaint paint = op.paint();
+		switch (op.mOp) {
+		case DisplayListData.OP_DRAW_RECT:
+			drawRect(f[0], f[1], f[2], f[3], paint);
+			break;
+		case DisplayListData.OP_DRAW_LINE:
+			drawLine(f[0], f[1], f[2], f[3], paint);
+			break;
+		case DisplayListData.OP_DRAW_BITMAP: {
+			Bitmap bitmap = (Bitmap) op.mObject;
+			if (merge) {
+				batchBitmap(bitmap, f[0], f[1], bitmap.getWidth(), bitmap.getHeight(),
+						0, 0, bitmap.getWidth(), bitmap.getHeight(), paint);
+			} else {
+				drawBitmap(bitmap, f[0], f[1], paint);
+			}
+			break;
+		}
+		case DisplayListData.OP_DRAW_BITMAP_RECT:
+		case DisplayListData.OP_DRAW_BITMAP_RECT_F:
+		case DisplayListData.OP_DRAW_BITMAP_BATCH: {
+			Bitmap bitmap = (Bitmap) op.mObject;
+			if (merge) {
+				if (f[2] > f[0] && f[3] > f[1]) {
+					batchBitmap(bitmap, f[4], f[5], f[6] - f[4], f[7] - f[5],
+							f[0], f[1], f[2] - f[0], f[3] - f[1], paint);
+				} else {
+					batchBitmap(bitmap, f[4], f[5], f[6] - f[4], f[7] - f[5],
+							0, 0, bitmap.getWidth(), bitmap.getHeight(), paint);
+				}
+			} else if (op.mOp == DisplayListData.OP_DRAW_BITMAP_BATCH) {
+				mDeferRect.set((int) f[0], (int) f[1], (int) f[2], (int) f[3]);
+				mDeferRect2.set((int) f[4], (int) f[5], (int) f[6], (int) f[7]);
+				drawBitmapBatch(bitmap, mDeferRect, mDeferRect2, paint);
+			} else {
+				mDeferSourceRect.set(f[0], f[1], f[2], f[3]);
+				mDeferTargetRect.set(f[4], f[5], f[6], f[7]);
+				drawBitmap(bitmap, mDeferSourceRect, mDeferTargetRect, paint);
+			}
+			break;
+		}
+		case DisplayListData.OP_DRAW_PATCH:
+			mDeferRect.set((int) f[0], (int) f[1], (int) f[2], (int) f[3]);
+			if (merge) {
+				mBatch.drawPatch((NinePatch) op.mObject, mDeferRect, snapshot.alpha,
+						getGLPaint(paint), snapshot.transform);
+			} else {
+				drawPatch((NinePatch) op.mObject, mDeferRect, paint);
+			}
+			break;
+		case DisplayListData.OP_DRAW_MESH:
+			drawMesh((BasicMesh) op.mObject, paint);
+			break;
+		case DisplayListData.OP_DRAW_BITMAP_MESH:
+			drawBitmapMesh((Bitmap) op.mObject, (BasicMesh) op.mObject2, paint);
+			break;
+		case DisplayListData.OP_DRAW_TEXT:
+			// Flushed once at the end of the batch.
+			mFontQueued = true;
+			mFontRenderer.renderText(this, (CharSequence) op.mObject, op.mStart, op.mEnd, f[0], f[1],
+					snapshot.alpha, paint, snapshot.clipRect, snapshot.transform, false);
+			break;
+		case DisplayListData.OP_DRAW_OVAL:
+			drawOval(f[0], f[1], f[2], f[3], paint);
+			break;
+		case DisplayListData.OP_DRAW_ROUND_RECT:
+			drawRoundRect(f[0], f[1], f[2], f[3], f[4], f[5], paint);
+			break;
+		case DisplayListData.OP_DRAW_PATH:
+			drawPath((Path) op.mObject, paint);
+			break;
+		case DeferredDisplayList.OP_DRAW_TEXTURE:
+			drawTexture((Texture) op.mObject, f[0], f[1], f[2], f[3], op.mHasAlpha, paint);
+			break;
+		}
+	}
+	
+	private void batchBitmap(Bitmap bitmap, float x, float y, float width, float height,
+			float srcX, float srcY, float srcWidth, float srcHeight, GLPaint paint) {
+		flushQueuedFont();
+		mBatch.drawBitmap(bitmap, x, y, width, height, srcX, srcY, srcWidth, srcHeight,
+				currentSnapshot().alpha, getGLPaint(paint), currentSnapshot().transform);
+	}
+	
+	void endDeferredBatch(int batchId) {
+		flushBatch();
+		flushFont();
+	}
+	
+	void endDeferredReplay() {
+		restore();
+	}
+
 	class ShaderManager {
 
 		private DefaultTextureShader mDefaultTextureShader;
@@ -617,7 +1115,8 @@ class GL20Canvas extends StatefullBaseCanvas implements InnerGLCanvas {
 			float colorG = Math.round(((color >> 8) & 0xFF) * prealpha) * 1.0f / 255;
 			float colorB = Math.round((color & 0xFF) * prealpha) * 1.0f / 255;
 			float colorA = Math.round(255 * prealpha) * 1.0f / 255;
-			if (hasAlpha) {
+			if (hasAlpha || paint.getShader() != null || colorAttr) {
+				// The shader or the colors of the vertices may be translucent.
 				mRenderState.setBlendEnabled(true);
 			} else {
 				mRenderState.setColorMode(colorA);
@@ -642,7 +1141,11 @@ class GL20Canvas extends StatefullBaseCanvas implements InnerGLCanvas {
 
 			mCaches.useProgram(useShader.getShaderProgram());
 			
-			mRenderState.setColorMode(a);
+			if (paint.getShader() != null || colorAttr) {
+				mRenderState.setBlendEnabled(true);
+			} else {
+				mRenderState.setColorMode(a);
+			}
 			useShader.setupColor(r, g, b, a);
 			// 将最终变换矩阵传入shader程序
 			float[] m = getFinalMatrix(mFinalMatrix, currentSnapshot().transform);
@@ -662,7 +1165,6 @@ class GL20Canvas extends StatefullBaseCanvas implements InnerGLCanvas {
 	    }
 	    
 	    if (restoreClip) {
-	    	flushFont();
 	    	dirtyClip();
 	    }
 	};
@@ -672,26 +1174,62 @@ class GL20Canvas extends StatefullBaseCanvas implements InnerGLCanvas {
 	///////////////////////////////////////////////////////////////////////////////
 	void setScissorFromClip() {
 	    Rect clip = currentClipRect();
-	    if (mCaches.setScissor(clip.left, clip.top, clip.width(), clip.height())) {
+	    if (mRenderState.setScissor(clip.left, clip.top, clip.width(), clip.height())) {
 	    }
 	    mDirtyClip = false;
 	}
 	
+	/*
+	 * Another canvas of this thread, a layer, has drawn and left the scissor
+	 * off, set it again from our clip before the next draw.
+	 */
+	void resumeClip() {
+		mRenderState.enableScissor();
+		dirtyClip();
+	}
+	
+	/*
+	 * Draw the queued sprites and glyphs before another canvas of this thread,
+	 * a layer, draws, the font renderer is shared.
+	 */
+	void suspendDraw() {
+		flushBatch();
+		flushFont();
+	}
+	
 	@Override
 	public void clipRect(float left, float top, float right, float bottom) {
 		flushBatch();
 		flushFont();
 		super.clipRect(left, top, right, bottom);
 		if (mDirtyClip) {
-			Caches.getInstance().enableScissor();
+			mRenderState.enableScissor();
 		}
 	}
 	
 	private void flushBatch() {
-		mBatch.flush();
+		if (!mBatch.isEmpty()) {
+			mBatch.flush();
+		}
 	}
 	
 	private void flushFont() {
+		mFontQueued = false;
 		mFontRenderer.flushBatch();
 	}
+	
+	private void flushQueuedFont() {
+		if (mFontQueued) {
+			flushFont();
+		}
+	}
+	
+	/*
+	 * Draw the queued sprites and glyphs before a draw going to GL right
+	 * away, so the z-order is the record order.
+	 */
+	private void flushQueued() {
+		flushBatch();
+		flushQueuedFont();
+	}
 }
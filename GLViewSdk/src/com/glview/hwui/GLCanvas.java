@@ -1,6 +1,7 @@
 package com.glview.hwui;
 
 import com.glview.graphics.Bitmap;
+import com.glview.graphics.Path;
 import com.glview.graphics.Rect;
 import com.glview.graphics.RectF;
 import com.glview.graphics.drawable.ninepatch.NinePatch;
@@ -25,6 +26,13 @@ public interface GLCanvas {
 	
 	void beginFrame();
 	
+	/**
+	 * Begin a frame which only redraws the dirty rect, in window coordinates.
+	 * The rest of the window keeps the content of the last frame.
+	 * @param dirty null to redraw the whole window.
+	 */
+	void beginFrame(Rect dirty);
+	
 	void endFrame();
 	
 	void getMatrix(float[] matrix);
@@ -95,12 +103,20 @@ public interface GLCanvas {
 	
 	public void drawRoundRect(float left, float top, float right, float bottom, float rx, float ry, GLPaint paint);
 	
+	public void drawPath(Path path, GLPaint paint);
+	
 	public void drawRenderNode(RenderNode renderNode);
 	
 	public void clipRect(Rect r);
 	
 	public void clipRect(float left, float top, float right, float bottom);
 	
+	/**
+	 * @return true if the rect, in local coordinates, is outside of the clip
+	 * and drawing it can be skipped. False doesn't mean it's visible.
+	 */
+	public boolean quickReject(float left, float top, float right, float bottom);
+	
 	public void applyMatrix(BaseShader shader, float[] transform);
 	
 }
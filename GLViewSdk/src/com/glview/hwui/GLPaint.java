@@ -13,6 +13,9 @@ public class GLPaint {
     int mAlpha;
     
     Style mStyle;
+    Cap mStrokeCap;
+    Join mStrokeJoin;
+    float mStrokeMiter;
     
     BaseShader mShader;
     
@@ -157,6 +160,9 @@ public class GLPaint {
     		mColor = paint.mColor;
     		mAlpha = paint.mAlpha;
     		mStyle = paint.mStyle;
+    		mStrokeCap = paint.mStrokeCap;
+    		mStrokeJoin = paint.mStrokeJoin;
+    		mStrokeMiter = paint.mStrokeMiter;
     		mTextSize = paint.mTextSize;
     		mTypeface = paint.mTypeface;
     		mShader = paint.mShader;
@@ -167,11 +173,35 @@ public class GLPaint {
     	}
     }
     
+    /**
+     * @return true if paint has the same attributes as this one, the ones
+     * copied by {@link #set(GLPaint)}.
+     */
+    public boolean hasEqualAttributes(GLPaint paint) {
+    	return mStrokeWidth == paint.mStrokeWidth
+    			&& mColor == paint.mColor
+    			&& mAlpha == paint.mAlpha
+    			&& mStyle == paint.mStyle
+    			&& mStrokeCap == paint.mStrokeCap
+    			&& mStrokeJoin == paint.mStrokeJoin
+    			&& mStrokeMiter == paint.mStrokeMiter
+    			&& mTextSize == paint.mTextSize
+    			&& mTypeface == paint.mTypeface
+    			&& mShader == paint.mShader
+    			&& mShadowRadius == paint.mShadowRadius
+    			&& mShadowDx == paint.mShadowDx
+    			&& mShadowDy == paint.mShadowDy
+    			&& mShadowColor == paint.mShadowColor;
+    }
+    
     public void reset() {
     	mStrokeWidth = 1f;
     	mColor = Color.WHITE;
     	mAlpha = 255;
     	mStyle = Style.FILL;
+    	mStrokeCap = Cap.BUTT;
+    	mStrokeJoin = Join.MITER;
+    	mStrokeMiter = 4;
     	mTextSize = 25;
     	mTypeface = null;
     	mShader = null;
@@ -280,6 +310,40 @@ public class GLPaint {
     	mStyle = style;
     }
     
+    public Cap getStrokeCap() {
+    	return mStrokeCap;
+    }
+    
+    /**
+     * Set the treatment of the ends of the open contours of stroked paths.
+     */
+    public void setStrokeCap(Cap cap) {
+    	mStrokeCap = cap;
+    }
+    
+    public Join getStrokeJoin() {
+    	return mStrokeJoin;
+    }
+    
+    /**
+     * Set the treatment of the corners of stroked paths.
+     */
+    public void setStrokeJoin(Join join) {
+    	mStrokeJoin = join;
+    }
+    
+    public float getStrokeMiter() {
+    	return mStrokeMiter;
+    }
+    
+    /**
+     * Set the limit of the ratio of a miter join length to the half stroke
+     * width, sharper corners are beveled. Must be >= 0.
+     */
+    public void setStrokeMiter(float miter) {
+    	mStrokeMiter = miter;
+    }
+    
     public int getTextSize() {
     	return mTextSize;
     }
@@ -418,4 +482,44 @@ public class GLPaint {
                     " leading=" + leading;
         }
     }
+    
+    /**
+     * The Cap specifies the treatment for the beginning and ending of
+     * stroked lines and paths. The default is BUTT.
+     */
+    public enum Cap {
+        /**
+         * The stroke ends with the path, and does not project beyond it.
+         */
+        BUTT,
+        /**
+         * The stroke projects out as a semicircle, with the center at the
+         * end of the path.
+         */
+        ROUND,
+        /**
+         * The stroke projects out as a square, with the center at the end
+         * of the path.
+         */
+        SQUARE;
+    }
+    
+    /**
+     * The Join specifies the treatment where lines and curve segments
+     * join on a stroked path. The default is MITER.
+     */
+    public enum Join {
+        /**
+         * The outer edges of a join meet at a sharp angle
+         */
+        MITER,
+        /**
+         * The outer edges of a join meet in a circular arc.
+         */
+        ROUND,
+        /**
+         * The outer edges of a join meet with a straight line
+         */
+        BEVEL;
+    }
 }
@@ -1,31 +1,15 @@
 package com.glview.hwui;
 
+import java.util.Arrays;
+
 import com.glview.graphics.Bitmap;
+import com.glview.graphics.Path;
 import com.glview.graphics.Rect;
 import com.glview.graphics.RectF;
 import com.glview.graphics.drawable.ninepatch.NinePatch;
 import com.glview.graphics.mesh.BasicMesh;
-import com.glview.hwui.op.ClipRectOp;
+import com.glview.hwui.font.FontRenderer;
 import com.glview.hwui.op.DisplayListData;
-import com.glview.hwui.op.DrawBitmapBatchRectOp;
-import com.glview.hwui.op.DrawBitmapMeshOp;
-import com.glview.hwui.op.DrawBitmapOp;
-import com.glview.hwui.op.DrawBitmapRectFOp;
-import com.glview.hwui.op.DrawBitmapRectOp;
-import com.glview.hwui.op.DrawLineOp;
-import com.glview.hwui.op.DrawMeshOp;
-import com.glview.hwui.op.DrawOp;
-import com.glview.hwui.op.DrawPatchOp;
-import com.glview.hwui.op.DrawRectOp;
-import com.glview.hwui.op.DrawTextOp;
-import com.glview.hwui.op.RenderNodeOp;
-import com.glview.hwui.op.RestoreOp;
-import com.glview.hwui.op.RestoreToCountOp;
-import com.glview.hwui.op.RotateOp;
-import com.glview.hwui.op.SaveOp;
-import com.glview.hwui.op.ScaleOp;
-import com.glview.hwui.op.StateOp;
-import com.glview.hwui.op.TranslateOp;
 import com.glview.pool.Pool;
 import com.glview.pool.Poolable;
 
@@ -41,13 +25,35 @@ class GLRecordingCanvas extends AbsGLCanvas implements Poolable {
 	static Pool<GLRecordingCanvas> sPoll = new Pool<GLRecordingCanvas>(false);
 	
 	DisplayListData mDisplayListData = null;
-	CanvasOp mLastCanvasNode = null;
 	
 	float mTranslateX = 0, mTranslateY = 0, mTranslateZ = 0;
 	boolean mHasDeferredTranslate = false;
 	int mRestoreSaveCount = -1;
 	
-	private GLRecordingCanvas() {}
+	/*
+	 * The scale x, scale y, translate x and translate y recorded so far, to
+	 * map the bounds of the ops to the node, scale x is NaN after a rotation.
+	 * Four floats per save, like the snapshots of the replaying canvas.
+	 * A save without SAVE_FLAG_MATRIX shares the matrix with the previous one.
+	 */
+	float[] mTransforms = new float[4 * 8];
+	boolean[] mTransformShared = new boolean[8];
+	int mTransformIndex = 0;
+	
+	final RectF mTmpPathBounds = new RectF();
+	final RectF mTmpTextBounds = new RectF();
+	
+	private GLRecordingCanvas() {
+		resetTransform();
+	}
+	
+	private void resetTransform() {
+		mTransformIndex = 0;
+		mTransforms[0] = 1;
+		mTransforms[1] = 1;
+		mTransforms[2] = 0;
+		mTransforms[3] = 0;
+	}
 	
 	static GLRecordingCanvas obtain(RenderNode renderNode) {
 		GLRecordingCanvas canvas = (GLRecordingCanvas) sPoll.poll(GLRecordingCanvas.class, false);
@@ -59,8 +65,8 @@ class GLRecordingCanvas extends AbsGLCanvas implements Poolable {
 	
 	void recycle() {
 		mDisplayListData = null;
-		mLastCanvasNode = null;
 		mTranslateX = mTranslateY = mTranslateZ = 0;
+		resetTransform();
 		sPoll.push(this);
 	}
 	
@@ -81,45 +87,91 @@ class GLRecordingCanvas extends AbsGLCanvas implements Poolable {
 	}
 	
 	/**
-	 * Record the CanvasOp to display list
-	 * @param op
+	 * Start recording a state op into the display list.
+	 * @see DisplayListData#addOp(int, int, int, int)
 	 */
-	private void addOpAndUpdateChunk(CanvasOp op) {
+	private DisplayListData addStateOp(int op, int ints, int floats, int objects) {
+		flush();
 		ensureDisplayListData();
-		if (mDisplayListData.mCanvasOps == null) {
-			mDisplayListData.mCanvasOps = op;
+		mDisplayListData.addOp(op, ints, floats, objects);
+		return mDisplayListData;
+	}
+	
+	/**
+	 * Start recording a draw op into the display list.
+	 * @see DisplayListData#addOp(int, int, int, int)
+	 */
+	private DisplayListData addDrawOp(int op, int ints, int floats, int objects) {
+		DisplayListData data = addStateOp(op, ints, floats, objects);
+		data.mHasDrawOp = true;
+		return data;
+	}
+	
+	/**
+	 * Set the bounds of the draw op just added, in the current coordinates.
+	 * NaN if they are unknown, the op is never skipped then.
+	 */
+	private void putBounds(DisplayListData data, float left, float top, float right, float bottom) {
+		data.putBounds(left, top, right, bottom);
+		if (data.mContentUnbounded) return;
+		final float[] t = mTransforms;
+		final int i = mTransformIndex;
+		final float sx = t[i], sy = t[i + 1];
+		if (Float.isNaN(left) || Float.isNaN(sx)) {
+			data.mContentUnbounded = true;
+			return;
 		}
-		if (mLastCanvasNode == null) {
-			mLastCanvasNode = op;
-		} else {
-			mLastCanvasNode.mNext = op;
-			mLastCanvasNode = op;
+		float l = sx * left + t[i + 2], r = sx * right + t[i + 2];
+		float tp = sy * top + t[i + 3], b = sy * bottom + t[i + 3];
+		if (Float.isNaN(l) || Float.isNaN(r) || Float.isNaN(tp) || Float.isNaN(b)) {
+			// An infinite bound scaled by 0.
+			data.mContentUnbounded = true;
+			return;
 		}
+		data.mContentBounds.union(Math.min(l, r), Math.min(tp, b), Math.max(l, r), Math.max(tp, b));
 	}
 	
-	private void flushAndAddOp(CanvasOp op) {
-		flushRestoreToCount();
-		flushTranslate();
-		addOpAndUpdateChunk(op);
+	private void putBounds(DisplayListData data, Rect rect) {
+		if (rect != null) {
+			putBounds(data, rect.left, rect.top, rect.right, rect.bottom);
+		} else {
+			putBounds(data, Float.NaN, 0, 0, 0);
+		}
 	}
 	
-	void addStateOp(StateOp op) {
-		flushAndAddOp(op);
+	/*
+	 * Bounds of a stroked or filled shape.
+	 */
+	private void putShapeBounds(DisplayListData data, float left, float top, float right, float bottom, GLPaint paint) {
+		float outset = 0;
+		if (paint != null && paint.getStyle() != GLPaint.Style.FILL) {
+			// Stroked and antialiased.
+			outset = Math.max(paint.getStrokeWidth(), 1) / 2 + 1;
+		}
+		putOutsetBounds(data, left, top, right, bottom, outset);
 	}
 	
-	void addDrawOp(DrawOp op) {
-		flushAndAddOp(op);
-		mDisplayListData.mHasDrawOp = true;
+	/*
+	 * A line is always stroked, whatever the style of the paint.
+	 */
+	private void putLineBounds(DisplayListData data, float x1, float y1, float x2, float y2, GLPaint paint) {
+		final float outset = (paint != null ? Math.max(paint.getStrokeWidth(), 1) : 1) / 2 + 1;
+		putOutsetBounds(data, x1, y1, x2, y2, outset);
 	}
 	
-	void addRenderNodeOp(RenderNodeOp op) {
-		addDrawOp(op);
+	private void putOutsetBounds(DisplayListData data, float left, float top, float right, float bottom, float outset) {
+		putBounds(data, Math.min(left, right) - outset, Math.min(top, bottom) - outset,
+				Math.max(left, right) + outset, Math.max(top, bottom) + outset);
 	}
 	
 	void flushTranslate() {
 		if (mHasDeferredTranslate) {
 			if (mTranslateX != 0.0f || mTranslateY != 0.0f || mTranslateZ != 0.0f) {
-				addOpAndUpdateChunk(TranslateOp.obtain(mTranslateX, mTranslateY, mTranslateZ));
+				ensureDisplayListData();
+				mDisplayListData.addOp(DisplayListData.OP_TRANSLATE, 0, 3, 0);
+				mDisplayListData.putFloat(mTranslateX);
+				mDisplayListData.putFloat(mTranslateY);
+				mDisplayListData.putFloat(mTranslateZ);
 	            mTranslateX = mTranslateY = mTranslateZ = 0.0f;
 	        }
 	        mHasDeferredTranslate = false;
@@ -128,7 +180,9 @@ class GLRecordingCanvas extends AbsGLCanvas implements Poolable {
 	
 	void flushRestoreToCount() {
 	    if (mRestoreSaveCount >= 0) {
-	        addOpAndUpdateChunk(RestoreToCountOp.obtain(mRestoreSaveCount));
+	    	ensureDisplayListData();
+	    	mDisplayListData.addOp(DisplayListData.OP_RESTORE_TO_COUNT, 1, 0, 0);
+	    	mDisplayListData.putInt(mRestoreSaveCount);
 	        mRestoreSaveCount = -1;
 	    }
 	}
@@ -140,6 +194,13 @@ class GLRecordingCanvas extends AbsGLCanvas implements Poolable {
 	
 	@Override
 	public void translate(float x, float y, float z) {
+		final int i = mTransformIndex;
+		if (z != 0) {
+			// Perspective.
+			mTransforms[i] = Float.NaN;
+		}
+		mTransforms[i + 2] += mTransforms[i] * x;
+		mTransforms[i + 3] += mTransforms[i + 1] * y;
 		mHasDeferredTranslate = true;
 	    mTranslateX += x;
 	    mTranslateY += y;
@@ -149,98 +210,243 @@ class GLRecordingCanvas extends AbsGLCanvas implements Poolable {
 	
 	@Override
 	public void scale(float sx, float sy, float sz) {
-		addStateOp(ScaleOp.obtain(sx, sy, sz));
+		mTransforms[mTransformIndex] *= sx;
+		mTransforms[mTransformIndex + 1] *= sy;
+		DisplayListData data = addStateOp(DisplayListData.OP_SCALE, 0, 3, 0);
+		data.putFloat(sx);
+		data.putFloat(sy);
+		data.putFloat(sz);
 	}
 	
 	@Override
 	public void rotate(float degrees, float x, float y, float z) {
-		addStateOp(RotateOp.obtain(degrees, x, y, z));
+		if (degrees % 360 != 0) {
+			mTransforms[mTransformIndex] = Float.NaN;
+		}
+		DisplayListData data = addStateOp(DisplayListData.OP_ROTATE, 0, 4, 0);
+		data.putFloat(degrees);
+		data.putFloat(x);
+		data.putFloat(y);
+		data.putFloat(z);
 	}
 	
 	@Override
 	public void clipRect(Rect r) {
-		addStateOp(ClipRectOp.obtain(r));
+		DisplayListData data = addStateOp(DisplayListData.OP_CLIP_RECT, 0, 4, 0);
+		data.putRect(r);
 	}
 	
 	@Override
 	public void clipRect(float left, float top, float right, float bottom) {
-		addStateOp(ClipRectOp.obtain(left, top, right, bottom));
+		DisplayListData data = addStateOp(DisplayListData.OP_CLIP_RECT, 0, 4, 0);
+		// Clip rects are integer, like Rect.
+		data.putRect((int) left, (int) top, (int) right, (int) bottom);
 	}
 	
 	@Override
 	public int save(int saveFlags) {
-		addStateOp(SaveOp.obtain(saveFlags));
+		DisplayListData data = addStateOp(DisplayListData.OP_SAVE, 1, 0, 0);
+		data.putInt(saveFlags);
+		final int i = mTransformIndex;
+		if (i + 8 > mTransforms.length) {
+			mTransforms = Arrays.copyOf(mTransforms, mTransforms.length << 1);
+			mTransformShared = Arrays.copyOf(mTransformShared, mTransformShared.length << 1);
+		}
+		System.arraycopy(mTransforms, i, mTransforms, i + 4, 4);
+		mTransformShared[i / 4 + 1] = (saveFlags & SAVE_FLAG_MATRIX) == 0;
+		mTransformIndex = i + 4;
 		return 0;
 	}
 	
 	@Override
 	public void restore() {
-		addStateOp(RestoreOp.obtain());
+		addStateOp(DisplayListData.OP_RESTORE, 0, 0, 0);
+		if (mTransformIndex > 0) {
+			popTransform(mTransformIndex - 4);
+		}
 	}
 	
 	@Override
 	public void restoreToCount(int saveCount) {
 		mRestoreSaveCount = saveCount;
 	    flushTranslate();
+	    // The replaying canvas restores to 1 at least.
+	    popTransform(Math.min(mTransformIndex, Math.max(saveCount - 1, 0) * 4));
+	}
+	
+	private void popTransform(int index) {
+		for (int i = mTransformIndex; i > index; i -= 4) {
+			if (mTransformShared[i / 4]) {
+				System.arraycopy(mTransforms, i, mTransforms, i - 4, 4);
+			}
+		}
+		mTransformIndex = index;
 	}
 	
 	@Override
 	public void drawRenderNode(RenderNode renderNode) {
-		addRenderNodeOp(RenderNodeOp.obtain(renderNode));
+		DisplayListData data = addDrawOp(DisplayListData.OP_DRAW_RENDER_NODE, 0, 0, 1);
+		data.putObject(renderNode);
+		final int i = mTransformIndex;
+		data.putNodeTransform(mTransforms[i], mTransforms[i + 1], mTransforms[i + 2], mTransforms[i + 3]);
 	}
 	
 	@Override
 	public void drawLine(float x1, float y1, float x2, float y2, GLPaint paint) {
-		addDrawOp(DrawLineOp.obtain(x1, y1, x2, y2, paint));
+		DisplayListData data = addDrawOp(DisplayListData.OP_DRAW_LINE, 0, 4, 1);
+		data.putRect(x1, y1, x2, y2);
+		data.putPaint(paint);
+		putLineBounds(data, x1, y1, x2, y2, paint);
 	}
 	
 	@Override
 	public void drawRect(float left, float top, float right, float bottom,
 			GLPaint paint) {
-		addDrawOp(DrawRectOp.obtain(left, top, right, bottom, paint));
+		DisplayListData data = addDrawOp(DisplayListData.OP_DRAW_RECT, 0, 4, 1);
+		data.putRect(left, top, right, bottom);
+		data.putPaint(paint);
+		putShapeBounds(data, left, top, right, bottom, paint);
+	}
+	
+	@Override
+	public void drawOval(float left, float top, float right, float bottom,
+			GLPaint paint) {
+		DisplayListData data = addDrawOp(DisplayListData.OP_DRAW_OVAL, 0, 4, 1);
+		data.putRect(left, top, right, bottom);
+		data.putPaint(paint);
+		putShapeBounds(data, left, top, right, bottom, paint);
+	}
+	
+	@Override
+	public void drawRoundRect(float left, float top, float right, float bottom,
+			float rx, float ry, GLPaint paint) {
+		DisplayListData data = addDrawOp(DisplayListData.OP_DRAW_ROUND_RECT, 0, 6, 1);
+		data.putRect(left, top, right, bottom);
+		data.putFloat(rx);
+		data.putFloat(ry);
+		data.putPaint(paint);
+		putShapeBounds(data, left, top, right, bottom, paint);
+	}
+	
+	@Override
+	public void drawPath(Path path, GLPaint paint) {
+		DisplayListData data = addDrawOp(DisplayListData.OP_DRAW_PATH, 0, 0, 2);
+		// The path may change after the recording, keep its contents.
+		path = path.snapshot();
+		data.putObject(path);
+		data.putPaint(paint);
+		final RectF bounds = mTmpPathBounds;
+		path.computeBounds(bounds);
+		float outset = 0;
+		if (paint != null && paint.getStyle() != GLPaint.Style.FILL) {
+			outset = PathTessellator.getStrokeOutset(paint);
+		}
+		putBounds(data, bounds.left - outset, bounds.top - outset,
+				bounds.right + outset, bounds.bottom + outset);
 	}
 	
 	@Override
 	public void drawBitmap(Bitmap bitmap, float x, float y, GLPaint paint) {
-		addDrawOp(DrawBitmapOp.obtain(bitmap, x, y, paint));
+		DisplayListData data = addDrawOp(DisplayListData.OP_DRAW_BITMAP, 0, 2, 2);
+		data.putFloat(x);
+		data.putFloat(y);
+		data.putBitmap(bitmap);
+		data.putPaint(paint);
+		if (bitmap != null) {
+			putBounds(data, x, y, x + bitmap.getWidth(), y + bitmap.getHeight());
+		} else {
+			putBounds(data, Float.NaN, 0, 0, 0);
+		}
 	}
 	
 	@Override
 	public void drawBitmap(Bitmap bitmap, RectF source, RectF target,
 			GLPaint paint) {
-		addDrawOp(DrawBitmapRectFOp.obtain(bitmap, source, target, paint));
+		DisplayListData data = addDrawOp(DisplayListData.OP_DRAW_BITMAP_RECT_F, 0, 8, 2);
+		data.putRect(source);
+		data.putRect(target);
+		data.putBitmap(bitmap);
+		data.putPaint(paint);
+		if (target != null) {
+			putBounds(data, target.left, target.top, target.right, target.bottom);
+		} else {
+			putBounds(data, Float.NaN, 0, 0, 0);
+		}
 	}
 	
 	@Override
 	public void drawBitmap(Bitmap bitmap, Rect source, Rect target,
 			GLPaint paint) {
-		addDrawOp(DrawBitmapRectOp.obtain(bitmap, source, target, paint));
+		DisplayListData data = addDrawOp(DisplayListData.OP_DRAW_BITMAP_RECT, 0, 8, 2);
+		data.putRect(source);
+		data.putRect(target);
+		data.putBitmap(bitmap);
+		data.putPaint(paint);
+		putBounds(data, target);
 	}
 	
 	@Override
 	public void drawBitmapBatch(Bitmap bitmap, Rect source, Rect target,
 			GLPaint paint) {
-		addDrawOp(DrawBitmapBatchRectOp.obtain(bitmap, source, target, paint));
+		DisplayListData data = addDrawOp(DisplayListData.OP_DRAW_BITMAP_BATCH, 0, 8, 2);
+		data.putRect(source);
+		data.putRect(target);
+		data.putBitmap(bitmap);
+		data.putPaint(paint);
+		putBounds(data, target);
 	}
 	
 	@Override
 	public void drawPatch(NinePatch patch, Rect rect, GLPaint paint) {
-		addDrawOp(DrawPatchOp.obtain(patch, rect, paint));
+		DisplayListData data = addDrawOp(DisplayListData.OP_DRAW_PATCH, 0, 4, 2);
+		data.putRect(rect);
+		data.putBitmap(patch);
+		data.putPaint(paint);
+		putBounds(data, rect);
 	}
 	
 	@Override
 	public void drawMesh(BasicMesh mesh, GLPaint paint) {
-		addDrawOp(DrawMeshOp.obtain(mesh, paint));
+		DisplayListData data = addDrawOp(DisplayListData.OP_DRAW_MESH, 0, 0, 2);
+		data.putObject(mesh);
+		data.putPaint(paint);
+		// The vertices are not looked at.
+		putBounds(data, Float.NaN, 0, 0, 0);
 	}
 	
 	@Override
 	public void drawBitmapMesh(Bitmap bitmap, BasicMesh mesh, GLPaint paint) {
-		addDrawOp(DrawBitmapMeshOp.obtain(bitmap, mesh, paint));
+		DisplayListData data = addDrawOp(DisplayListData.OP_DRAW_BITMAP_MESH, 0, 0, 3);
+		data.putBitmap(bitmap);
+		data.putObject(mesh);
+		data.putPaint(paint);
+		// The vertices are not looked at.
+		putBounds(data, Float.NaN, 0, 0, 0);
 	}
 	
 	@Override
 	public void drawText(CharSequence text, int start, int end, float x,
 			float y, GLPaint paint, boolean drawDefer) {
-		addDrawOp(DrawTextOp.obtain(text, start, end, x, y, paint, drawDefer));
+		DisplayListData data = addDrawOp(DisplayListData.OP_DRAW_TEXT, 3, 2, 2);
+		if (text != null && !(text instanceof String)) {
+			// An Editable may change while it is replayed, keep the run drawn.
+			text = text.subSequence(start, end).toString();
+			end -= start;
+			start = 0;
+		}
+		data.putInt(start);
+		data.putInt(end);
+		data.putInt(drawDefer ? 1 : 0);
+		data.putFloat(x);
+		data.putFloat(y);
+		data.putObject(text);
+		data.putPaint(paint);
+		if (paint != null && text != null) {
+			final RectF bounds = mTmpTextBounds;
+			FontRenderer.getTextBounds(text, start, end, x, y, paint, bounds);
+			putBounds(data, bounds.left, bounds.top, bounds.right, bounds.bottom);
+		} else {
+			putBounds(data, Float.NaN, 0, 0, 0);
+		}
 	}
 }
@@ -94,6 +94,9 @@ public final class Layer {
 	void updateLayer(GLCanvas canvas, RenderNode renderNode) {
 		ensureLayerRenderer(canvas);
 		if (mLayerRenderer == null) return;
+		if (canvas instanceof GL20Canvas) {
+			((GL20Canvas) canvas).suspendDraw();
+		}
 		canvas.save();
 		((StatefullBaseCanvas) canvas).saveViewport();
 		if (mTexture.mId <= 0) {
@@ -103,11 +106,17 @@ public final class Layer {
 		mLayerRenderer.setSize(mWidth, mHeight);
 		mLayerValid = mLayerRenderer.updateTextureLayer(this, mTexture, renderNode);
 		canvas.restore();
+		if (canvas instanceof GL20Canvas) {
+			((GL20Canvas) canvas).resumeClip();
+		}
 	}
 	
 	Bitmap buildDrawingCache(GLCanvas canvas, RenderNode renderNode) {
 		ensureLayerRenderer(canvas);
 		if (mLayerRenderer == null) return null;
+		if (canvas instanceof GL20Canvas) {
+			((GL20Canvas) canvas).suspendDraw();
+		}
 		canvas.save();
 		((StatefullBaseCanvas) canvas).saveViewport();
 		if (mTexture.mId <= 0) {
@@ -117,6 +126,9 @@ public final class Layer {
 		mLayerRenderer.setSize(mWidth, mHeight);
 		Bitmap bitmap = mLayerRenderer.buildDrawingCache(this, mTexture, renderNode);
 		canvas.restore();
+		if (canvas instanceof GL20Canvas) {
+			((GL20Canvas) canvas).resumeClip();
+		}
 		return bitmap;
 	}
 }
@@ -54,9 +54,14 @@ public class LayerRenderer extends GL20Canvas {
 		}
 		int preFrameBuffer = mRenderState.getFrameBuffer();
 		mRenderState.bindFrameBuffer(framebufferHandle);
+		// The layer is kept, it can't be drawn with bitmaps still uploading.
+		final boolean asyncUpload = mCaches.textureCache.setAsyncUploadEnabled(false);
+		final boolean asyncRaster = mFontRenderer.setAsyncRasterEnabled(false);
 		beginFrame();
 		renderNode.renderWithoutLayer(this);
 		endFrame();
+		mFontRenderer.setAsyncRasterEnabled(asyncRaster);
+		mCaches.textureCache.setAsyncUploadEnabled(asyncUpload);
 		mRenderState.bindFrameBuffer(preFrameBuffer);
 		
 		deleteFrameBuffer(framebufferHandle);
@@ -84,9 +89,11 @@ public class LayerRenderer extends GL20Canvas {
 		}
 		int preFrameBuffer = mRenderState.getFrameBuffer();
 		mRenderState.bindFrameBuffer(framebufferHandle);
+		final boolean asyncRaster = mFontRenderer.setAsyncRasterEnabled(false);
 		beginFrame();
 		renderNode.renderWithoutLayer(this);
 		endFrame();
+		mFontRenderer.setAsyncRasterEnabled(asyncRaster);
 		Bitmap bitmap = null;
 		
 		int[] pixels = new int[size];
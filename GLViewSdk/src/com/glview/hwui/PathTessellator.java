@@ -1,87 +1,1072 @@
 package com.glview.hwui;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 
 import com.glview.graphics.Path;
-import com.glview.graphics.PointF;
 import com.glview.graphics.Path.Verb;
 
+/**
+ * Turns a {@link Path} into triangles, x and y per vertex, drawn with
+ * GL_TRIANGLES and no index.
+ * <p>
+ * The curves are flattened with as many segments as the scale of the
+ * transform needs to stay within {@link #TOLERANCE} pixel of the curve. A
+ * filled path is a fan when it is a single convex contour. Else the contours
+ * are sorted by the non-zero winding rule in outer contours and holes, the
+ * holes are bridged into their outer contour and the polygon is ear clipped.
+ * A stroke is a strip
+ * of quads per contour, the quads of a corner share the inner point so a
+ * translucent stroke is not blended twice, with the joins and the caps of the
+ * paint.
+ */
 public class PathTessellator {
-	
-	final static int MAX_POOL_SIZE = 10000;
-	
-	static ThreadLocal<List<PointF>> sThreadLocal = new ThreadLocal<List<PointF>>() {
+
+	/**
+	 * The max distance in pixels between a curve or an arc and its segments.
+	 */
+	final static float TOLERANCE = 0.5f;
+	final static int MAX_CURVE_SEGMENTS = 100;
+	final static float EPSILON = 1e-5f;
+
+	/**
+	 * A growable array of triangle vertices.
+	 */
+	public final static class VertexBuffer {
+
+		float[] mVertices = new float[256];
+		int mSize;
+
+		public float[] getVertices() {
+			return mVertices;
+		}
+
+		/**
+		 * @return the number of floats, 2 per vertex.
+		 */
+		public int size() {
+			return mSize;
+		}
+
+		public int getVertexCount() {
+			return mSize / 2;
+		}
+
+		public void reset() {
+			mSize = 0;
+		}
+
+		void triangle(float x1, float y1, float x2, float y2, float x3, float y3) {
+			if (mSize + 6 > mVertices.length) {
+				mVertices = Arrays.copyOf(mVertices, mVertices.length << 1);
+			}
+			final float[] v = mVertices;
+			int i = mSize;
+			v[i ++] = x1; v[i ++] = y1;
+			v[i ++] = x2; v[i ++] = y2;
+			v[i ++] = x3; v[i ++] = y3;
+			mSize = i;
+		}
+
+		void quad(float x1, float y1, float x2, float y2, float x3, float y3, float x4, float y4) {
+			triangle(x1, y1, x2, y2, x3, y3);
+			triangle(x1, y1, x3, y3, x4, y4);
+		}
+	}
+
+	/*
+	 * The scratch arrays of one thread.
+	 */
+	static ThreadLocal<PathTessellator> sThreadLocal = new ThreadLocal<PathTessellator>() {
 		@Override
-		protected List<PointF> initialValue() {
-			return new ArrayList<PointF>();
+		protected PathTessellator initialValue() {
+			return new PathTessellator();
 		}
 	};
-	
-	public static void tessellatePath(Path path, GLPaint paint) {
-		boolean forceClose = paint.getStyle() != GLPaint.Style.STROKE;
-	}
-
-	static boolean approximatePathOutlineVertices(Path path, boolean forceClose,
-	        float sqrInvScaleX, float sqrInvScaleY, float thresholdSquared,
-	        List<PointF> outputVertices) {
-    	PointF lastPoint = obtainPoint();
-    	int srcPts = 0;
-    	PointF fMoveTo = new PointF();
-    	PointF pt;
-    	for (Verb verb : path.fVerbs()) {
-    		switch (verb) {
-            case kMove_Verb:
-            	pt = obtainPoint();
-            	pt.set(path.fPointFs().get(srcPts));
-            	lastPoint.set(pt);
-            	fMoveTo.set(lastPoint);
-            	srcPts += 1;
-            	pushToVector(outputVertices, pt.x, pt.y);
-                break;
-            case kLine_Verb:
-            	pt = obtainPoint();
-            	pt.set(path.fPointFs().get(srcPts));
-            	lastPoint.set(pt);
-            	srcPts += 1;
-            	pushToVector(outputVertices, pt.x, pt.y);
-                break;
-            case kQuad_Verb:
-                srcPts += 2;
-                break;
-            case kCubic_Verb:
-                srcPts += 3;
-                break;
-            case kClose_Verb:
-            	lastPoint.set(fMoveTo);
-            	break;
-            default:
-            	break;
-    		}
-    	}
-		return false;
-	}
-	
-	static void pushToVector(List<PointF> vertices, float x, float y) {
-		PointF pt = obtainPoint();
-		pt.set(x, y);
-		vertices.add(pt);
-	}
-	
-	static PointF obtainPoint() {
-		List<PointF> pts = sThreadLocal.get();
-		int size = pts.size();
-		if (size > 0) {
-			return pts.remove(size - 1);
-		}
-		return new PointF();
-	}
-	
-	static void recyclePoint(PointF pt) {
-		List<PointF> pts = sThreadLocal.get();
-		if (pts.size() >= MAX_POOL_SIZE) {
+
+	/*
+	 * The flattened contours, the points of contour i are
+	 * mPoints[mContourStarts[i] * 2, mContourStarts[i + 1] * 2).
+	 */
+	float[] mPoints = new float[256];
+	int mPointCount;
+	int[] mContourStarts = new int[8];
+	boolean[] mContourClosed = new boolean[8];
+	int mContourCount;
+
+	/*
+	 * The signed area of every contour and what the fill does with it.
+	 */
+	float[] mContourAreas = new float[8];
+	int[] mContourKinds = new int[8];
+	int[] mHoles = new int[8];
+	float[] mHoleX = new float[8];
+
+	/*
+	 * The polygon being ear clipped, a ring of nodes linked by mPrev and
+	 * mNext, a node is the index of its point. A bridge to a hole adds a
+	 * second node for two points.
+	 */
+	int[] mNodePoints = new int[64];
+	int[] mPrev = new int[64];
+	int[] mNext = new int[64];
+	int mNodeCount;
+	/*
+	 * The reflex nodes, the only ones which can be in an ear. A reflex node
+	 * may become convex but never the other way, the list only shrinks.
+	 */
+	boolean[] mReflex = new boolean[64];
+	int[] mReflexNodes = new int[64];
+	int mReflexCount;
+	/*
+	 * Above GRID_MIN_REFLEX reflex nodes, they are also put in the cells of a
+	 * grid over the polygon, an ear only looks at the cells it covers.
+	 */
+	final static int GRID_MIN_REFLEX = 64;
+	int[] mCellHeads = new int[64];
+	int[] mCellNext = new int[64];
+	int mGridSize;
+	float mGridLeft, mGridTop, mGridScaleX, mGridScaleY;
+
+	/*
+	 * Stroking.
+	 */
+	float[] mSegments = new float[192];
+	float[] mJoins = new float[96];
+
+	final Path.Iter mIter = new Path.Iter();
+	final float[] mVerbPoints = new float[8];
+
+	private PathTessellator() {
+	}
+
+	/**
+	 * Append the triangles of the path drawn with the paint.
+	 * @param scale the scale of the transform the path is drawn with.
+	 * @return the number of vertices appended.
+	 */
+	public static int tessellatePath(Path path, GLPaint paint, float scale, VertexBuffer out) {
+		final int start = out.size();
+		final GLPaint.Style style = paint.getStyle();
+		PathTessellator tessellator = sThreadLocal.get();
+		tessellator.flatten(path, scale);
+		if (style != GLPaint.Style.STROKE) {
+			tessellator.fill(path.isConvex(), out);
+		}
+		if (style != GLPaint.Style.FILL) {
+			tessellator.stroke(paint, scale, out);
+		}
+		return (out.size() - start) / 2;
+	}
+
+	/**
+	 * @return how far the stroke of the paint may go out of the points of a
+	 * path, for its bounds.
+	 */
+	public static float getStrokeOutset(GLPaint paint) {
+		// A hairline is one pixel wide, one more for the rounding.
+		final float halfWidth = Math.max(paint.getStrokeWidth(), 1) / 2;
+		float outset = halfWidth;
+		if (paint.getStrokeJoin() == GLPaint.Join.MITER) {
+			outset = halfWidth * Math.max(paint.getStrokeMiter(), 1);
+		}
+		if (paint.getStrokeCap() == GLPaint.Cap.SQUARE) {
+			outset = Math.max(outset, halfWidth * 1.4143f);
+		}
+		return outset + 1;
+	}
+
+	///////////////////////////////////////////////////////////////////////////////
+	//Flattening
+	///////////////////////////////////////////////////////////////////////////////
+
+	void flatten(Path path, float scale) {
+		mPointCount = 0;
+		mContourCount = 0;
+		mContourStarts[0] = 0;
+		final Path.Iter iter = mIter;
+		final float[] pts = mVerbPoints;
+		iter.setPath(path);
+		boolean inContour = false;
+		Verb verb;
+		while ((verb = iter.next(pts)) != Verb.kDone_Verb) {
+			switch (verb) {
+			case kMove_Verb:
+				endContour(false);
+				beginContour();
+				inContour = true;
+				addPoint(pts[0], pts[1]);
+				break;
+			case kLine_Verb:
+				addPoint(pts[2], pts[3]);
+				break;
+			case kQuad_Verb:
+			case kConic_Verb:
+				// The weight of a conic is not stored, it is drawn as a quad.
+				addQuad(pts[0], pts[1], pts[2], pts[3], pts[4], pts[5], scale);
+				break;
+			case kCubic_Verb:
+				addCubic(pts[0], pts[1], pts[2], pts[3], pts[4], pts[5], pts[6], pts[7], scale);
+				break;
+			case kClose_Verb:
+				if (inContour) {
+					endContour(true);
+					inContour = false;
+				}
+				break;
+			default:
+				break;
+			}
+		}
+		iter.setPath(null);
+		endContour(false);
+	}
+
+	private void beginContour() {
+		mContourStarts[mContourCount] = mPointCount;
+	}
+
+	/*
+	 * Keep the current contour if it has points, a closed one without its last
+	 * point when it is the first one again.
+	 */
+	private void endContour(boolean closed) {
+		final int start = mContourStarts[mContourCount];
+		if (mPointCount <= start) {
 			return;
 		}
-		pts.add(pt);
+		if (closed && mPointCount - start > 1) {
+			final int last = (mPointCount - 1) * 2;
+			if (samePoint(mPoints[last], mPoints[last + 1], mPoints[start * 2], mPoints[start * 2 + 1])) {
+				mPointCount --;
+			}
+		}
+		if (mContourCount + 2 > mContourStarts.length) {
+			mContourStarts = Arrays.copyOf(mContourStarts, mContourStarts.length << 1);
+			mContourClosed = Arrays.copyOf(mContourClosed, mContourClosed.length << 1);
+		}
+		mContourClosed[mContourCount] = closed;
+		mContourCount ++;
+		mContourStarts[mContourCount] = mPointCount;
+	}
+
+	private void addPoint(float x, float y) {
+		final int count = mPointCount;
+		if (count > mContourStarts[mContourCount]) {
+			// Skip the repeated points, they have no direction.
+			if (samePoint(mPoints[count * 2 - 2], mPoints[count * 2 - 1], x, y)) {
+				return;
+			}
+		}
+		if (count * 2 + 2 > mPoints.length) {
+			mPoints = Arrays.copyOf(mPoints, mPoints.length << 1);
+		}
+		mPoints[count * 2] = x;
+		mPoints[count * 2 + 1] = y;
+		mPointCount = count + 1;
+	}
+
+	private static boolean samePoint(float x1, float y1, float x2, float y2) {
+		final float dx = x2 - x1, dy = y2 - y1;
+		return dx * dx + dy * dy < EPSILON * EPSILON;
+	}
+
+	/*
+	 * Wang's formula, the segments needed by a curve of degree d whose second
+	 * differences are up to dd long: sqrt(d * (d - 1) / 8 * dd / tolerance).
+	 */
+	private static int curveSegments(float factor, float dd, float scale) {
+		final float n = (float) Math.ceil(Math.sqrt(factor * dd * scale / TOLERANCE));
+		if (!(n > 1)) return 1;
+		return n > MAX_CURVE_SEGMENTS ? MAX_CURVE_SEGMENTS : (int) n;
+	}
+
+	private void addQuad(float x0, float y0, float x1, float y1, float x2, float y2, float scale) {
+		final float ddx = x0 - 2 * x1 + x2, ddy = y0 - 2 * y1 + y2;
+		final int n = curveSegments(0.25f, (float) Math.sqrt(ddx * ddx + ddy * ddy), scale);
+		for (int i = 1; i < n; i ++) {
+			final float t = (float) i / n, u = 1 - t;
+			addPoint(u * u * x0 + 2 * u * t * x1 + t * t * x2,
+					u * u * y0 + 2 * u * t * y1 + t * t * y2);
+		}
+		addPoint(x2, y2);
+	}
+
+	private void addCubic(float x0, float y0, float x1, float y1, float x2, float y2,
+			float x3, float y3, float scale) {
+		float ddx = x0 - 2 * x1 + x2, ddy = y0 - 2 * y1 + y2;
+		final float dd1 = ddx * ddx + ddy * ddy;
+		ddx = x1 - 2 * x2 + x3;
+		ddy = y1 - 2 * y2 + y3;
+		final float dd2 = ddx * ddx + ddy * ddy;
+		final int n = curveSegments(0.75f, (float) Math.sqrt(Math.max(dd1, dd2)), scale);
+		for (int i = 1; i < n; i ++) {
+			final float t = (float) i / n, u = 1 - t;
+			final float a = u * u * u, b = 3 * u * u * t, c = 3 * u * t * t, d = t * t * t;
+			addPoint(a * x0 + b * x1 + c * x2 + d * x3, a * y0 + b * y1 + c * y2 + d * y3);
+		}
+		addPoint(x3, y3);
+	}
+
+	///////////////////////////////////////////////////////////////////////////////
+	//Fill
+	///////////////////////////////////////////////////////////////////////////////
+
+	final static int CONTOUR_SKIP = 0;
+	final static int CONTOUR_OUTER = 1;
+	final static int CONTOUR_HOLE = 2;
+
+	/*
+	 * @param convex the path knows it is convex.
+	 */
+	void fill(boolean convex, VertexBuffer out) {
+		if (mContourCount == 1 && (convex || isConvex(0, mContourStarts[1]))) {
+			fan(0, mContourStarts[1], out);
+			return;
+		}
+		classifyContours();
+		for (int c = 0; c < mContourCount; c ++) {
+			if (mContourKinds[c] == CONTOUR_OUTER) {
+				fillOuter(c, out);
+			}
+		}
+	}
+
+	private void fan(int start, int end, VertexBuffer out) {
+		final float[] p = mPoints;
+		final float x0 = p[start * 2], y0 = p[start * 2 + 1];
+		for (int i = start + 1; i < end - 1; i ++) {
+			out.triangle(x0, y0, p[i * 2], p[i * 2 + 1], p[i * 2 + 2], p[i * 2 + 3]);
+		}
+	}
+
+	/*
+	 * Every corner turns the same way and the x direction changes at most
+	 * twice, a star turns the same way too.
+	 */
+	private boolean isConvex(int start, int end) {
+		final int n = end - start;
+		if (n < 3) return false;
+		final float[] p = mPoints;
+		int sign = 0;
+		int xChanges = 0;
+		float lastDx = 0;
+		for (int i = 0; i < n; i ++) {
+			final int a = (start + i) * 2;
+			final int b = (start + (i + 1) % n) * 2;
+			final int c = (start + (i + 2) % n) * 2;
+			final float dx1 = p[b] - p[a], dy1 = p[b + 1] - p[a + 1];
+			final float dx2 = p[c] - p[b], dy2 = p[c + 1] - p[b + 1];
+			final float cross = dx1 * dy2 - dy1 * dx2;
+			if (cross > EPSILON) {
+				if (sign < 0) return false;
+				sign = 1;
+			} else if (cross < - EPSILON) {
+				if (sign > 0) return false;
+				sign = -1;
+			}
+			if (dx1 != 0) {
+				if (lastDx != 0 && (dx1 > 0) != (lastDx > 0)) {
+					xChanges ++;
+				}
+				lastDx = dx1;
+			}
+		}
+		// The change between the last and the first edges is counted by the
+		// first one seen again.
+		for (int i = 0; i < n && lastDx != 0; i ++) {
+			final int a = (start + i) * 2;
+			final int b = (start + (i + 1) % n) * 2;
+			final float dx = p[b] - p[a];
+			if (dx != 0) {
+				if ((dx > 0) != (lastDx > 0)) xChanges ++;
+				break;
+			}
+		}
+		return sign != 0 && xChanges <= 2;
+	}
+
+	/*
+	 * A contour is a hole where the winding of the other contours is cancelled
+	 * by its own, it is skipped inside a filled area it doesn't change, else
+	 * it is filled. A contour is assumed to be inside or outside of another
+	 * one, the crossings of two contours are not handled.
+	 */
+	private void classifyContours() {
+		final int count = mContourCount;
+		if (mContourAreas.length < count) {
+			mContourAreas = new float[mContourStarts.length];
+			mContourKinds = new int[mContourStarts.length];
+			mHoles = new int[mContourStarts.length];
+			mHoleX = new float[mContourStarts.length];
+		}
+		final float[] areas = mContourAreas;
+		final int[] kinds = mContourKinds;
+		final int[] starts = mContourStarts;
+		for (int c = 0; c < count; c ++) {
+			areas[c] = starts[c + 1] - starts[c] < 3 ? 0 : contourArea(c);
+			kinds[c] = areas[c] == 0 ? CONTOUR_SKIP : CONTOUR_OUTER;
+		}
+		if (count == 1) return;
+		final float[] p = mPoints;
+		for (int c = 0; c < count; c ++) {
+			if (areas[c] == 0) continue;
+			final float x = p[starts[c] * 2], y = p[starts[c] * 2 + 1];
+			int winding = 0;
+			for (int o = 0; o < count; o ++) {
+				if (o != c && areas[o] != 0) {
+					winding += winding(o, x, y);
+				}
+			}
+			if (winding != 0) {
+				kinds[c] = winding + (areas[c] > 0 ? 1 : -1) == 0 ? CONTOUR_HOLE : CONTOUR_SKIP;
+			}
+		}
+	}
+
+	/*
+	 * Twice the signed area, positive when the contour turns counterclockwise
+	 * with y up.
+	 */
+	private float contourArea(int c) {
+		final float[] p = mPoints;
+		final int start = mContourStarts[c], end = mContourStarts[c + 1];
+		float area = 0;
+		for (int i = start, j = end - 1; i < end; j = i ++) {
+			area += p[j * 2] * p[i * 2 + 1] - p[i * 2] * p[j * 2 + 1];
+		}
+		return area;
+	}
+
+	/*
+	 * The winding number of the contour around the point, +1 inside a contour
+	 * of positive area.
+	 */
+	private int winding(int c, float x, float y) {
+		final float[] p = mPoints;
+		final int start = mContourStarts[c], end = mContourStarts[c + 1];
+		int winding = 0;
+		for (int i = start, j = end - 1; i < end; j = i ++) {
+			final float ax = p[j * 2], ay = p[j * 2 + 1];
+			final float bx = p[i * 2], by = p[i * 2 + 1];
+			if (ay <= y) {
+				if (by > y && side(ax, ay, bx, by, x, y) > 0) winding ++;
+			} else if (by <= y && side(ax, ay, bx, by, x, y) < 0) {
+				winding --;
+			}
+		}
+		return winding;
+	}
+
+	/*
+	 * Ear clip the outer contour with the holes in the smallest outer contour
+	 * around them bridged into it, from the leftmost hole.
+	 */
+	private void fillOuter(int outer, VertexBuffer out) {
+		final float[] p = mPoints;
+		final float[] areas = mContourAreas;
+		final int[] starts = mContourStarts;
+		int nodes = starts[outer + 1] - starts[outer];
+		int holeCount = 0;
+		for (int h = 0; h < mContourCount; h ++) {
+			if (mContourKinds[h] != CONTOUR_HOLE) continue;
+			final float x = p[starts[h] * 2], y = p[starts[h] * 2 + 1];
+			if (winding(outer, x, y) == 0) continue;
+			boolean inner = false;
+			for (int o = 0; o < mContourCount && !inner; o ++) {
+				inner = o != outer && mContourKinds[o] == CONTOUR_OUTER
+						&& Math.abs(areas[o]) < Math.abs(areas[outer]) && winding(o, x, y) != 0;
+			}
+			if (!inner) {
+				mHoles[holeCount ++] = h;
+				nodes += starts[h + 1] - starts[h] + 2;
+			}
+		}
+		ensureNodes(nodes);
+		mNodeCount = 0;
+		// The outer contour counterclockwise, the holes clockwise.
+		final int first = linkContour(outer, areas[outer] < 0);
+		nodes = starts[outer + 1] - starts[outer];
+		final int[] holes = mHoles;
+		final float[] minX = mHoleX;
+		for (int i = 0; i < holeCount; i ++) {
+			minX[i] = p[leftmost(starts[holes[i]], starts[holes[i] + 1]) * 2];
+		}
+		for (int i = 1; i < holeCount; i ++) {
+			final int h = holes[i];
+			final float x = minX[i];
+			int j = i - 1;
+			for (; j >= 0 && minX[j] > x; j --) {
+				holes[j + 1] = holes[j];
+				minX[j + 1] = minX[j];
+			}
+			holes[j + 1] = h;
+			minX[j + 1] = x;
+		}
+		for (int i = 0; i < holeCount; i ++) {
+			final int h = holes[i];
+			final int hole = linkContour(h, areas[h] > 0);
+			if (bridge(leftmostNode(hole), first)) {
+				nodes += starts[h + 1] - starts[h] + 2;
+			}
+		}
+		earClip(first, nodes, out);
+	}
+
+	private void ensureNodes(int count) {
+		if (mNodePoints.length < count) {
+			final int length = Math.max(count, mNodePoints.length << 1);
+			mNodePoints = new int[length];
+			mPrev = new int[length];
+			mNext = new int[length];
+			mReflex = new boolean[length];
+			mReflexNodes = new int[length];
+			mCellNext = new int[length];
+		}
+	}
+
+	private int newNode(int point) {
+		final int node = mNodeCount ++;
+		mNodePoints[node] = point;
+		return node;
+	}
+
+	/*
+	 * Link the points of the contour in a ring, backwards if reverse.
+	 * @return the node of the first point.
+	 */
+	private int linkContour(int c, boolean reverse) {
+		final int start = mContourStarts[c], end = mContourStarts[c + 1];
+		final int first = mNodeCount;
+		final int n = end - start;
+		for (int i = 0; i < n; i ++) {
+			final int node = newNode(reverse ? end - 1 - i : start + i);
+			mPrev[node] = i == 0 ? first + n - 1 : node - 1;
+			mNext[node] = i == n - 1 ? first : node + 1;
+		}
+		return first;
+	}
+
+	private int leftmost(int start, int end) {
+		final float[] p = mPoints;
+		int left = start;
+		for (int i = start + 1; i < end; i ++) {
+			if (p[i * 2] < p[left * 2] || (p[i * 2] == p[left * 2] && p[i * 2 + 1] < p[left * 2 + 1])) {
+				left = i;
+			}
+		}
+		return left;
+	}
+
+	private int leftmostNode(int node) {
+		final float[] p = mPoints;
+		int left = node;
+		int n = mNext[node];
+		while (n != node) {
+			final int a = mNodePoints[n] * 2, b = mNodePoints[left] * 2;
+			if (p[a] < p[b] || (p[a] == p[b] && p[a + 1] < p[b + 1])) {
+				left = n;
+			}
+			n = mNext[n];
+		}
+		return left;
+	}
+
+	/*
+	 * Join the hole to the polygon by two edges between its leftmost node and
+	 * a node of the polygon it sees: outer -> hole ... hole' -> outer'.
+	 * @return false if no node of the polygon was found left of the hole.
+	 */
+	private boolean bridge(int hole, int polygon) {
+		final int outer = findBridge(hole, polygon);
+		if (outer < 0) {
+			return false;
+		}
+		final int hole2 = newNode(mNodePoints[hole]);
+		final int outer2 = newNode(mNodePoints[outer]);
+		final int outerNext = mNext[outer];
+		final int holePrev = mPrev[hole];
+		mNext[outer] = hole;
+		mPrev[hole] = outer;
+		mNext[holePrev] = hole2;
+		mPrev[hole2] = holePrev;
+		mNext[hole2] = outer2;
+		mPrev[outer2] = hole2;
+		mNext[outer2] = outerNext;
+		mPrev[outerNext] = outer2;
+		return true;
+	}
+
+	/*
+	 * Cast a ray left of the hole point to the nearest edge of the polygon
+	 * with the inside on its right, its left end is seen from the hole unless
+	 * a reflex node is in the triangle of the hole point, the hit and that
+	 * end, then the one of them closest to the ray is.
+	 */
+	private int findBridge(int hole, int polygon) {
+		final float hx = x(hole), hy = y(hole);
+		float qx = Float.NEGATIVE_INFINITY;
+		int m = -1;
+		int n = polygon;
+		do {
+			final int next = mNext[n];
+			final float ny = y(n), nextY = y(next);
+			if (hy <= ny && hy >= nextY && nextY != ny) {
+				final float nx = x(n), nextX = x(next);
+				final float x = nx + (hy - ny) * (nextX - nx) / (nextY - ny);
+				if (x <= hx && x > qx) {
+					qx = x;
+					m = nx < nextX ? n : next;
+					if (x == hx) {
+						// The hole touches the edge.
+						return m;
+					}
+				}
+			}
+			n = next;
+		} while (n != polygon);
+		if (m < 0) {
+			return -1;
+		}
+		final int stop = m;
+		final float mx = x(m), my = y(m);
+		final float ax = hy < my ? hx : qx, cx = hy < my ? qx : hx;
+		float tanMin = Float.POSITIVE_INFINITY;
+		n = m;
+		do {
+			final float nx = x(n), ny = y(n);
+			if (hx >= nx && nx >= mx && hx != nx
+					&& inTriangle(ax, hy, mx, my, cx, hy, nx, ny)) {
+				final float tan = Math.abs(hy - ny) / (hx - nx);
+				if (locallyInside(n, hx, hy) && (tan < tanMin || (tan == tanMin && nx > x(m)))) {
+					m = n;
+					tanMin = tan;
+				}
+			}
+			n = mNext[n];
+		} while (n != stop);
+		return m;
+	}
+
+	private float x(int node) {
+		return mPoints[mNodePoints[node] * 2];
+	}
+
+	private float y(int node) {
+		return mPoints[mNodePoints[node] * 2 + 1];
+	}
+
+	private float cross(int a, int b, int c) {
+		return side(x(a), y(a), x(b), y(b), x(c), y(c));
+	}
+
+	/*
+	 * The point is on the inner side of the corner of the node.
+	 */
+	private boolean locallyInside(int node, float x, float y) {
+		final int prev = mPrev[node], next = mNext[node];
+		final float px = x(prev), py = y(prev), bx = x(node), by = y(node), nx = x(next), ny = y(next);
+		if (side(px, py, bx, by, nx, ny) >= 0) {
+			return side(px, py, bx, by, x, y) >= 0 && side(bx, by, nx, ny, x, y) >= 0;
+		}
+		return side(px, py, bx, by, x, y) >= 0 || side(bx, by, nx, ny, x, y) >= 0;
+	}
+
+	/*
+	 * Inside or on the triangle, whatever its orientation.
+	 */
+	private static boolean inTriangle(float ax, float ay, float bx, float by, float cx, float cy,
+			float px, float py) {
+		final float s1 = side(ax, ay, bx, by, px, py);
+		final float s2 = side(bx, by, cx, cy, px, py);
+		final float s3 = side(cx, cy, ax, ay, px, py);
+		return (s1 >= 0 && s2 >= 0 && s3 >= 0) || (s1 <= 0 && s2 <= 0 && s3 <= 0);
+	}
+
+	/*
+	 * Clip the convex corners with no reflex node inside until a triangle is
+	 * left, the flat corners are dropped. A self intersecting polygon may
+	 * have no ear left, what remains is fanned.
+	 */
+	private void earClip(int node, int count, VertexBuffer out) {
+		if (count < 3) return;
+		final float[] p = mPoints;
+		final boolean[] reflex = mReflex;
+		mReflexCount = 0;
+		float left = Float.POSITIVE_INFINITY, top = Float.POSITIVE_INFINITY;
+		float right = Float.NEGATIVE_INFINITY, bottom = Float.NEGATIVE_INFINITY;
+		int n = node;
+		do {
+			reflex[n] = cross(mPrev[n], n, mNext[n]) <= 0;
+			if (reflex[n]) {
+				mReflexNodes[mReflexCount ++] = n;
+			}
+			final float x = x(n), y = y(n);
+			if (x < left) left = x;
+			if (x > right) right = x;
+			if (y < top) top = y;
+			if (y > bottom) bottom = y;
+			n = mNext[n];
+		} while (n != node);
+		buildGrid(left, top, right, bottom);
+		int stale = 0;
+		int stop = node;
+		while (count > 3) {
+			final int a = mPrev[node], c = mNext[node];
+			final float cross = cross(a, node, c);
+			if (cross == 0 || (cross > 0 && isEar(a, node, c))) {
+				if (cross != 0) {
+					final int pa = mNodePoints[a] * 2, pb = mNodePoints[node] * 2, pc = mNodePoints[c] * 2;
+					out.triangle(p[pa], p[pa + 1], p[pb], p[pb + 1], p[pc], p[pc + 1]);
+				}
+				mNext[a] = c;
+				mPrev[c] = a;
+				if (reflex[node]) {
+					reflex[node] = false;
+					stale ++;
+				}
+				count --;
+				if (reflex[a] && cross(mPrev[a], a, c) > 0) {
+					reflex[a] = false;
+					stale ++;
+				}
+				if (reflex[c] && cross(a, c, mNext[c]) > 0) {
+					reflex[c] = false;
+					stale ++;
+				}
+				if (mGridSize == 0 && stale > 16 && stale > mReflexCount >> 1) {
+					compactReflexNodes();
+					stale = 0;
+				}
+				node = stop = c;
+			} else {
+				node = c;
+				if (node == stop) {
+					break;
+				}
+			}
+		}
+		int b = mNext[node];
+		final int pa = mNodePoints[node] * 2;
+		for (int k = 0; k < count - 2; k ++) {
+			final int c = mNext[b];
+			final int pb = mNodePoints[b] * 2, pc = mNodePoints[c] * 2;
+			out.triangle(p[pa], p[pa + 1], p[pb], p[pb + 1], p[pc], p[pc + 1]);
+			b = c;
+		}
+	}
+
+	private void compactReflexNodes() {
+		int count = 0;
+		for (int i = 0; i < mReflexCount; i ++) {
+			final int n = mReflexNodes[i];
+			if (mReflex[n]) {
+				mReflexNodes[count ++] = n;
+			}
+		}
+		mReflexCount = count;
+	}
+
+	private void buildGrid(float left, float top, float right, float bottom) {
+		mGridSize = 0;
+		if (mReflexCount < GRID_MIN_REFLEX || !(right > left) || !(bottom > top)) {
+			return;
+		}
+		final int size = (int) Math.ceil(Math.sqrt(mReflexCount));
+		if (mCellHeads.length < size * size) {
+			mCellHeads = new int[size * size];
+		}
+		Arrays.fill(mCellHeads, 0, size * size, -1);
+		mGridSize = size;
+		mGridLeft = left;
+		mGridTop = top;
+		mGridScaleX = size / (right - left);
+		mGridScaleY = size / (bottom - top);
+		for (int k = 0; k < mReflexCount; k ++) {
+			final int r = mReflexNodes[k];
+			final int cell = cellY(y(r)) * size + cellX(x(r));
+			mCellNext[r] = mCellHeads[cell];
+			mCellHeads[cell] = r;
+		}
+	}
+
+	private int cellX(float x) {
+		final int cell = (int) ((x - mGridLeft) * mGridScaleX);
+		return cell < 0 ? 0 : cell >= mGridSize ? mGridSize - 1 : cell;
+	}
+
+	private int cellY(float y) {
+		final int cell = (int) ((y - mGridTop) * mGridScaleY);
+		return cell < 0 ? 0 : cell >= mGridSize ? mGridSize - 1 : cell;
+	}
+
+	private boolean isEar(int a, int b, int c) {
+		final float ax = x(a), ay = y(a);
+		final float bx = x(b), by = y(b);
+		final float cx = x(c), cy = y(c);
+		if (mGridSize == 0) {
+			final int[] nodes = mReflexNodes;
+			for (int k = 0; k < mReflexCount; k ++) {
+				if (inEar(nodes[k], a, b, c, ax, ay, bx, by, cx, cy)) {
+					return false;
+				}
+			}
+			return true;
+		}
+		final int left = cellX(Math.min(ax, Math.min(bx, cx)));
+		final int right = cellX(Math.max(ax, Math.max(bx, cx)));
+		final int top = cellY(Math.min(ay, Math.min(by, cy)));
+		final int bottom = cellY(Math.max(ay, Math.max(by, cy)));
+		for (int j = top; j <= bottom; j ++) {
+			for (int i = left; i <= right; i ++) {
+				for (int r = mCellHeads[j * mGridSize + i]; r >= 0; r = mCellNext[r]) {
+					if (inEar(r, a, b, c, ax, ay, bx, by, cx, cy)) {
+						return false;
+					}
+				}
+			}
+		}
+		return true;
+	}
+
+	/*
+	 * The reflex node is inside or on the ear.
+	 */
+	private boolean inEar(int r, int a, int b, int c, float ax, float ay, float bx, float by,
+			float cx, float cy) {
+		if (!mReflex[r] || r == a || r == b || r == c) return false;
+		final float px = x(r), py = y(r);
+		// The second node of a bridge is on a corner of the ear.
+		if ((px == ax && py == ay) || (px == bx && py == by) || (px == cx && py == cy)) return false;
+		return side(ax, ay, bx, by, px, py) >= 0
+				&& side(bx, by, cx, cy, px, py) >= 0
+				&& side(cx, cy, ax, ay, px, py) >= 0;
+	}
+
+	private static float side(float ax, float ay, float bx, float by, float px, float py) {
+		return (bx - ax) * (py - ay) - (by - ay) * (px - ax);
+	}
+
+	///////////////////////////////////////////////////////////////////////////////
+	//Stroke
+	///////////////////////////////////////////////////////////////////////////////
+
+	/*
+	 * Per segment: dx, dy (unit), length.
+	 */
+	final static int SEGMENT_SIZE = 3;
+	/*
+	 * Per corner: inner side (1 left, -1 right, 0 none), inner x, inner y.
+	 */
+	final static int JOIN_SIZE = 3;
+
+	void stroke(GLPaint paint, float scale, VertexBuffer out) {
+		float halfWidth = paint.getStrokeWidth() / 2;
+		if (!(halfWidth > 0)) {
+			// A hairline is one pixel wide whatever the scale.
+			halfWidth = 0.5f / scale;
+		}
+		final GLPaint.Cap cap = paint.getStrokeCap();
+		for (int c = 0; c < mContourCount; c ++) {
+			final int start = mContourStarts[c], end = mContourStarts[c + 1];
+			final boolean closed = mContourClosed[c] && end - start > 2;
+			if (end - start == 1) {
+				dot(mPoints[start * 2], mPoints[start * 2 + 1], halfWidth, cap, scale, out);
+				continue;
+			}
+			strokeContour(start, end, closed, halfWidth, paint, scale, out);
+		}
+	}
+
+	private void strokeContour(int start, int end, boolean closed, float h, GLPaint paint,
+			float scale, VertexBuffer out) {
+		final float[] p = mPoints;
+		final int n = end - start;
+		final int segments = closed ? n : n - 1;
+		if (mSegments.length < segments * SEGMENT_SIZE) {
+			mSegments = new float[segments * SEGMENT_SIZE * 2];
+		}
+		if (mJoins.length < n * JOIN_SIZE) {
+			mJoins = new float[n * JOIN_SIZE * 2];
+		}
+		final float[] seg = mSegments;
+		final float[] joins = mJoins;
+		for (int i = 0; i < segments; i ++) {
+			final int a = (start + i) * 2, b = (start + (i + 1) % n) * 2;
+			final float dx = p[b] - p[a], dy = p[b + 1] - p[a + 1];
+			final float length = (float) Math.sqrt(dx * dx + dy * dy);
+			seg[i * SEGMENT_SIZE] = dx / length;
+			seg[i * SEGMENT_SIZE + 1] = dy / length;
+			seg[i * SEGMENT_SIZE + 2] = length;
+		}
+
+		// The inner points of the corners, where the inner edges of the two
+		// segments cross.
+		for (int v = 0; v < n; v ++) {
+			joins[v * JOIN_SIZE] = 0;
+			if (!closed && (v == 0 || v == n - 1)) continue;
+			final int s0 = (v + segments - 1) % segments, s1 = v % segments;
+			final float dx0 = seg[s0 * SEGMENT_SIZE], dy0 = seg[s0 * SEGMENT_SIZE + 1];
+			final float dx1 = seg[s1 * SEGMENT_SIZE], dy1 = seg[s1 * SEGMENT_SIZE + 1];
+			final float cross = dx0 * dy1 - dy0 * dx1;
+			final float dot = dx0 * dx1 + dy0 * dy1;
+			if (Math.abs(cross) < EPSILON || dot <= - 1 + EPSILON) continue;
+			// tan of half the turn, how far back the inner edges cross.
+			final float cut = h * Math.abs(cross) / (1 + dot);
+			if (cut > seg[s0 * SEGMENT_SIZE + 2] / 2 || cut > seg[s1 * SEGMENT_SIZE + 2] / 2) {
+				// Too short, the quads overlap instead.
+				continue;
+			}
+			final float side = cross > 0 ? 1 : -1;
+			final float px = p[(start + v) * 2], py = p[(start + v) * 2 + 1];
+			// The left normal is (-dy, dx), the inner side is the one turned to.
+			joins[v * JOIN_SIZE] = side;
+			joins[v * JOIN_SIZE + 1] = px - side * dy0 * h - dx0 * cut;
+			joins[v * JOIN_SIZE + 2] = py + side * dx0 * h - dy0 * cut;
+		}
+
+		for (int i = 0; i < segments; i ++) {
+			final int va = i, vb = (i + 1) % n;
+			final float ax = p[(start + va) * 2], ay = p[(start + va) * 2 + 1];
+			final float bx = p[(start + vb) * 2], by = p[(start + vb) * 2 + 1];
+			final float nx = - seg[i * SEGMENT_SIZE + 1] * h, ny = seg[i * SEGMENT_SIZE] * h;
+			float alx = ax + nx, aly = ay + ny, arx = ax - nx, ary = ay - ny;
+			float blx = bx + nx, bly = by + ny, brx = bx - nx, bry = by - ny;
+			final float sideA = joins[va * JOIN_SIZE], sideB = joins[vb * JOIN_SIZE];
+			if (sideA > 0) {
+				alx = joins[va * JOIN_SIZE + 1]; aly = joins[va * JOIN_SIZE + 2];
+			} else if (sideA < 0) {
+				arx = joins[va * JOIN_SIZE + 1]; ary = joins[va * JOIN_SIZE + 2];
+			}
+			if (sideB > 0) {
+				blx = joins[vb * JOIN_SIZE + 1]; bly = joins[vb * JOIN_SIZE + 2];
+			} else if (sideB < 0) {
+				brx = joins[vb * JOIN_SIZE + 1]; bry = joins[vb * JOIN_SIZE + 2];
+			}
+			out.quad(alx, aly, blx, bly, brx, bry, arx, ary);
+		}
+
+		final GLPaint.Join join = paint.getStrokeJoin();
+		final float miter = paint.getStrokeMiter();
+		for (int v = 0; v < n; v ++) {
+			if (!closed && (v == 0 || v == n - 1)) continue;
+			final int s0 = (v + segments - 1) % segments, s1 = v % segments;
+			joinCorner(start + v, seg[s0 * SEGMENT_SIZE], seg[s0 * SEGMENT_SIZE + 1],
+					seg[s1 * SEGMENT_SIZE], seg[s1 * SEGMENT_SIZE + 1], v, h, join, miter, scale, out);
+		}
+
+		if (!closed) {
+			final GLPaint.Cap cap = paint.getStrokeCap();
+			cap(p[start * 2], p[start * 2 + 1], - seg[0], - seg[1], h, cap, scale, out);
+			final int last = (segments - 1) * SEGMENT_SIZE;
+			cap(p[(end - 1) * 2], p[(end - 1) * 2 + 1], seg[last], seg[last + 1], h, cap, scale, out);
+		}
+	}
+
+	/*
+	 * Fill the outer side of a corner, from the end of the quad of the first
+	 * segment to the start of the quad of the second one.
+	 */
+	private void joinCorner(int point, float dx0, float dy0, float dx1, float dy1, int v,
+			float h, GLPaint.Join join, float miter, float scale, VertexBuffer out) {
+		final float cross = dx0 * dy1 - dy0 * dx1;
+		final float dot = dx0 * dx1 + dy0 * dy1;
+		if (Math.abs(cross) < EPSILON && dot > 0) {
+			return;
+		}
+		final float px = mPoints[point * 2], py = mPoints[point * 2 + 1];
+		// The outer side is the one turned away from.
+		final float side = cross >= 0 ? -1 : 1;
+		final float ox0 = - dy0 * side * h, oy0 = dx0 * side * h;
+		final float ox1 = - dy1 * side * h, oy1 = dx1 * side * h;
+		final float[] joins = mJoins;
+		float cx = px, cy = py;
+		if (joins[v * JOIN_SIZE] != 0) {
+			cx = joins[v * JOIN_SIZE + 1];
+			cy = joins[v * JOIN_SIZE + 2];
+		}
+		switch (join) {
+		case MITER: {
+			// 1 / cos of half the angle between the normals.
+			final float cosHalf = (float) Math.sqrt((1 + dot) / 2);
+			if (cosHalf > EPSILON && 1 / cosHalf <= miter) {
+				final float cut = h * Math.abs(cross) / (1 + dot);
+				final float tipX = px + ox0 + dx0 * cut, tipY = py + oy0 + dy0 * cut;
+				out.quad(cx, cy, px + ox0, py + oy0, tipX, tipY, px + ox1, py + oy1);
+				return;
+			}
+			out.triangle(cx, cy, px + ox0, py + oy0, px + ox1, py + oy1);
+			break;
+		}
+		case ROUND: {
+			final float angle = (float) Math.acos(Math.max(-1, Math.min(1, dot)));
+			arc(cx, cy, px, py, ox0, oy0, - side * angle, h, scale, out);
+			break;
+		}
+		default:
+			out.triangle(cx, cy, px + ox0, py + oy0, px + ox1, py + oy1);
+			break;
+		}
+	}
+
+	/*
+	 * Fan from (cx, cy) along the arc of center (px, py) starting at the
+	 * offset (ox, oy) and turning sweep radians.
+	 */
+	private static void arc(float cx, float cy, float px, float py, float ox, float oy,
+			float sweep, float radius, float scale, VertexBuffer out) {
+		final int steps = arcSteps(Math.abs(sweep), radius, scale);
+		final float step = sweep / steps;
+		final float cos = (float) Math.cos(step), sin = (float) Math.sin(step);
+		float x = ox, y = oy;
+		for (int i = 0; i < steps; i ++) {
+			final float nx = x * cos - y * sin, ny = x * sin + y * cos;
+			out.triangle(cx, cy, px + x, py + y, px + nx, py + ny);
+			x = nx;
+			y = ny;
+		}
+	}
+
+	static int arcSteps(float angle, float radius, float scale) {
+		final float r = radius * scale;
+		if (r <= TOLERANCE) return 1;
+		final float step = (float) (2 * Math.acos(1 - TOLERANCE / r));
+		final int steps = (int) Math.ceil(angle / step);
+		return steps < 1 ? 1 : (steps > MAX_CURVE_SEGMENTS ? MAX_CURVE_SEGMENTS : steps);
+	}
+
+	/*
+	 * The end of an open contour going towards (dx, dy).
+	 */
+	private static void cap(float x, float y, float dx, float dy, float h, GLPaint.Cap cap,
+			float scale, VertexBuffer out) {
+		final float nx = - dy * h, ny = dx * h;
+		switch (cap) {
+		case SQUARE: {
+			final float ex = dx * h, ey = dy * h;
+			out.quad(x - nx, y - ny, x + nx, y + ny, x + nx + ex, y + ny + ey, x - nx + ex, y - ny + ey);
+			break;
+		}
+		case ROUND:
+			arc(x, y, x, y, nx, ny, (float) - Math.PI, h, scale, out);
+			break;
+		default:
+			break;
+		}
+	}
+
+	/*
+	 * A contour of a single point, only drawn with a round or a square cap.
+	 */
+	private static void dot(float x, float y, float h, GLPaint.Cap cap, float scale, VertexBuffer out) {
+		switch (cap) {
+		case SQUARE:
+			out.quad(x - h, y - h, x + h, y - h, x + h, y + h, x - h, y + h);
+			break;
+		case ROUND:
+			arc(x, y, x, y, h, 0, (float) (2 * Math.PI), h, scale, out);
+			break;
+		default:
+			break;
+		}
 	}
 }
@@ -0,0 +1,169 @@
+package com.glview.hwui;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+
+import com.glview.libgdx.graphics.glutils.ShaderProgram;
+import com.glview.libgdx.graphics.opengl.GL20;
+import com.glview.utils.BufferUtils;
+
+/**
+ * The vertex buffer the sprite and glyph batches stream their quads to, and
+ * the quad index buffer they share.
+ * <p>
+ * A flush writes its vertices after the ones of the previous flushes with
+ * glBufferSubData and draws them with the indices of their place in the
+ * buffer, so the vertices still read by the previous draw calls are never
+ * overwritten. When the buffer is full it is orphaned with glBufferData, the
+ * driver gives a new storage and frees the old one when the GPU is done.
+ * <p>
+ * A quad is 4 vertices of position x and y, packed color, u and v, drawn as
+ * two triangles. Runs in RenderThread.
+ * @hide
+ */
+public final class QuadStream {
+
+	public final static int FLOATS_PER_VERTEX = 5;
+	public final static int FLOATS_PER_QUAD = FLOATS_PER_VERTEX * 4;
+	final static int VERTEX_SIZE = FLOATS_PER_VERTEX * 4;
+	final static int QUAD_SIZE = VERTEX_SIZE * 4;
+
+	/*
+	 * The vertices of 16384 quads are indexed by unsigned shorts, more need
+	 * GL_OES_element_index_uint.
+	 */
+	public final static int MAX_SHORT_QUADS = 65536 / 4;
+
+	final GL20 mGL;
+	final RenderState mState;
+	final int mMaxQuads;
+	final int mIndexType;
+	final int mIndexSize;
+
+	/*
+	 * The vertices of one flush, copied to the buffer object.
+	 */
+	final ByteBuffer mVertices;
+
+	int mArrayBuffer, mElementBuffer;
+	/*
+	 * The first free quad of the buffer object.
+	 */
+	int mQuad;
+
+	final int[] mHandles = new int[2];
+
+	/**
+	 * @param maxQuads the quads of the buffer, at most {@link #MAX_SHORT_QUADS}
+	 * unless elementIndexUint.
+	 * @param elementIndexUint the indices can be unsigned ints, see
+	 * {@link Extensions#hasElementIndexUint()}.
+	 */
+	QuadStream(GL20 gl, RenderState state, int maxQuads, boolean elementIndexUint) {
+		if (maxQuads > MAX_SHORT_QUADS && !elementIndexUint) {
+			throw new IllegalArgumentException("Can't have more than " + MAX_SHORT_QUADS
+					+ " quads without GL_OES_element_index_uint: " + maxQuads);
+		}
+		mGL = gl;
+		mState = state;
+		mMaxQuads = maxQuads;
+		if (maxQuads > MAX_SHORT_QUADS) {
+			mIndexType = GL20.GL_UNSIGNED_INT;
+			mIndexSize = 4;
+		} else {
+			mIndexType = GL20.GL_UNSIGNED_SHORT;
+			mIndexSize = 2;
+		}
+		mVertices = BufferUtils.newByteBuffer(maxQuads * QUAD_SIZE);
+	}
+
+	/**
+	 * @return the most quads drawn by one {@link #draw(ShaderProgram, float[], int)}.
+	 */
+	public int getMaxQuads() {
+		return mMaxQuads;
+	}
+
+	/**
+	 * Draw the quads of the vertices with the program, which must be in use.
+	 * @param count the number of floats, {@link #FLOATS_PER_QUAD} per quad.
+	 */
+	public void draw(ShaderProgram program, float[] vertices, int count) {
+		final int quads = count / FLOATS_PER_QUAD;
+		if (quads == 0) return;
+		if (quads > mMaxQuads) {
+			throw new IllegalArgumentException("Can't draw more than " + mMaxQuads + " quads: " + quads);
+		}
+		final GL20 gl = mGL;
+		if (mArrayBuffer == 0) {
+			createBuffers();
+		}
+		mState.bindArrayBuffer(mArrayBuffer);
+		if (mQuad + quads > mMaxQuads) {
+			// Orphan the storage read by the draw calls in flight.
+			gl.glBufferData(GL20.GL_ARRAY_BUFFER, mMaxQuads * QUAD_SIZE, null, GL20.GL_STREAM_DRAW);
+			mQuad = 0;
+		}
+		BufferUtils.copy(vertices, mVertices, count, 0);
+		gl.glBufferSubData(GL20.GL_ARRAY_BUFFER, mQuad * QUAD_SIZE, count << 2, mVertices);
+
+		int mask = 0;
+		int location = program.getAttributeLocation(ShaderProgram.POSITION_ATTRIBUTE);
+		if (location >= 0) {
+			mask |= 1 << location;
+			program.setVertexAttribute(location, 2, GL20.GL_FLOAT, false, VERTEX_SIZE, 0);
+		}
+		location = program.getAttributeLocation(ShaderProgram.COLOR_ATTRIBUTE);
+		if (location >= 0) {
+			mask |= 1 << location;
+			program.setVertexAttribute(location, 4, GL20.GL_UNSIGNED_BYTE, true, VERTEX_SIZE, 8);
+		}
+		location = program.getAttributeLocation(ShaderProgram.TEXCOORD_ATTRIBUTE);
+		if (location >= 0) {
+			mask |= 1 << location;
+			program.setVertexAttribute(location, 2, GL20.GL_FLOAT, false, VERTEX_SIZE, 12);
+		}
+		mState.enableVertexAttributes(mask);
+
+		mState.bindElementBuffer(mElementBuffer);
+		gl.glDrawElements(GL20.GL_TRIANGLES, quads * 6, mIndexType, mQuad * 6 * mIndexSize);
+		mQuad += quads;
+	}
+
+	private void createBuffers() {
+		GLId.glGenBuffers(2, mHandles, 0);
+		mArrayBuffer = mHandles[0];
+		mElementBuffer = mHandles[1];
+		mQuad = 0;
+
+		mState.bindArrayBuffer(mArrayBuffer);
+		mGL.glBufferData(GL20.GL_ARRAY_BUFFER, mMaxQuads * QUAD_SIZE, null, GL20.GL_STREAM_DRAW);
+
+		final int len = mMaxQuads * 6;
+		final ByteBuffer indices = BufferUtils.newByteBuffer(len * mIndexSize);
+		if (mIndexType == GL20.GL_UNSIGNED_INT) {
+			final IntBuffer buffer = indices.asIntBuffer();
+			for (int j = 0; j < mMaxQuads * 4; j += 4) {
+				buffer.put(j).put(j + 1).put(j + 2).put(j + 2).put(j + 3).put(j);
+			}
+		} else {
+			final ShortBuffer buffer = indices.asShortBuffer();
+			for (int j = 0; j < mMaxQuads * 4; j += 4) {
+				buffer.put((short) j).put((short) (j + 1)).put((short) (j + 2))
+						.put((short) (j + 2)).put((short) (j + 3)).put((short) j);
+			}
+		}
+		mState.bindElementBuffer(mElementBuffer);
+		mGL.glBufferData(GL20.GL_ELEMENT_ARRAY_BUFFER, indices.capacity(), indices, GL20.GL_STATIC_DRAW);
+	}
+
+	/**
+	 * The context was recreated, the buffers are created again by the next
+	 * draw.
+	 */
+	void invalidate() {
+		mArrayBuffer = mElementBuffer = 0;
+		mQuad = 0;
+	}
+}
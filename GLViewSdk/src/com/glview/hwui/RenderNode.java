@@ -1,8 +1,12 @@
 package com.glview.hwui;
 
 import com.glview.graphics.Bitmap;
+import com.glview.graphics.Path;
+import com.glview.graphics.Rect;
+import com.glview.graphics.RectF;
+import com.glview.graphics.drawable.ninepatch.NinePatch;
+import com.glview.graphics.mesh.BasicMesh;
 import com.glview.hwui.op.DisplayListData;
-import com.glview.hwui.op.RenderNodeOp;
 
 /**
  * 
@@ -33,7 +37,7 @@ public class RenderNode {
 	
 	/**
 	 * The cached display list which needs to sync to {@link #mDisplayListData}.
-	 * @see #replay(GLCanvas)
+	 * @see #prepareTree()
 	 * @see #mNeedsDisplayListDataSync
 	 */
 	DisplayListData mStageDisplayListData = null;
@@ -46,7 +50,23 @@ public class RenderNode {
 	final byte[] mDisplayListDataLock = new byte[0];
 	final byte[] mStageDisplayListDataLock = new byte[0];
 	
-	RenderProperties mRenderProperties = new RenderProperties(this);
+	/**
+	 * Set by the UI thread and the RenderThread-driven animations, copied to
+	 * {@link #mRenderProperties} by {@link #prepareTree()}.
+	 */
+	final RenderProperties mStagingProperties = new RenderProperties(this);
+	/**
+	 * The properties the RenderThread draws with.
+	 */
+	final RenderProperties mRenderProperties = new RenderProperties(this);
+	
+	/**
+	 * What the node draws, in its coordinates, unless {@link #mContentUnbounded}.
+	 * Computed by {@link #prepareTree()} from the bounds of the ops and the
+	 * children, a node out of the clip is skipped.
+	 */
+	final RectF mContentBounds = new RectF();
+	boolean mContentUnbounded = true;
 	
 	public RenderNode() {
 	}
@@ -78,14 +98,13 @@ public class RenderNode {
 	
 	void recycleDisplayListData(DisplayListData displayListData, boolean destory) {
 		if (displayListData != null) {
-			CanvasOp op = displayListData.mCanvasOps;
-			while (op != null) {
-				if (destory && (op instanceof RenderNodeOp)) {
-					((RenderNodeOp) op).destroyRenderNode();
+			if (destory) {
+				Object[] objects = displayListData.mObjects;
+				for (int i = 0; i < displayListData.mObjectsSize; i ++) {
+					if (objects[i] instanceof RenderNode) {
+						((RenderNode) objects[i]).destroy();
+					}
 				}
-				CanvasOp next = op.mNext;
-				op.recycle();
-				op = next;
 			}
 			displayListData.recycle();
 		}
@@ -98,7 +117,7 @@ public class RenderNode {
 	 * @return
 	 */
 	public GLCanvas start(int w, int h) {
-		mRenderProperties.setSize(w, h);
+		mStagingProperties.setSize(w, h);
 		return GLRecordingCanvas.obtain(this);
 	}
 
@@ -126,59 +145,59 @@ public class RenderNode {
 	}
 	
 	public float getTranslationX() {
-		return mRenderProperties.getTranslationX();
+		return mStagingProperties.getTranslationX();
 	}
 
 	public boolean setTranslationX(float translationX) {
-		return mRenderProperties.setTranslationX(translationX);
+		return mStagingProperties.setTranslationX(translationX);
 	}
 
 	public float getTranslationY() {
-		return mRenderProperties.getTranslationY();
+		return mStagingProperties.getTranslationY();
 	}
 
 	public boolean setTranslationY(float translationY) {
-		return mRenderProperties.setTranslationY(translationY);
+		return mStagingProperties.setTranslationY(translationY);
 	}
 
 	public float getTranslationZ() {
-		return mRenderProperties.getTranslationZ();
+		return mStagingProperties.getTranslationZ();
 	}
 
 	public boolean setTranslationZ(float translationZ) {
-		return mRenderProperties.setTranslationZ(translationZ);
+		return mStagingProperties.setTranslationZ(translationZ);
 	}
 	
 	public float getLeft() {
-		return mRenderProperties.getLeft();
+		return mStagingProperties.getLeft();
 	}
 
 	public boolean setLeft(float left) {
-		return mRenderProperties.setLeft(left);
+		return mStagingProperties.setLeft(left);
 	}
 
 	public float getTop() {
-		return mRenderProperties.getTop();
+		return mStagingProperties.getTop();
 	}
 
 	public boolean setTop(float top) {
-		return mRenderProperties.setTop(top);
+		return mStagingProperties.setTop(top);
 	}
 	
 	public float getRight() {
-		return mRenderProperties.getRight();
+		return mStagingProperties.getRight();
 	}
 	
 	public boolean setRight(float right) {
-		return mRenderProperties.setRight(right);
+		return mStagingProperties.setRight(right);
 	}
 	
 	public float getBottom() {
-		return mRenderProperties.getBottom();
+		return mStagingProperties.getBottom();
 	}
 	
 	public boolean setBottom(float bottom) {
-		return mRenderProperties.setBottom(bottom);
+		return mStagingProperties.setBottom(bottom);
 	}
 	
 	public boolean setLeftTopRightBottom(float left, float top, float right, float bottom) {
@@ -186,85 +205,193 @@ public class RenderNode {
 	}
 	
 	public float getScaleX() {
-		return mRenderProperties.getScaleX();
+		return mStagingProperties.getScaleX();
 	}
 	
 	public boolean setScaleX(float scaleX) {
-		return mRenderProperties.setScaleX(scaleX);
+		return mStagingProperties.setScaleX(scaleX);
 	}
 	
 	public float getScaleY() {
-		return mRenderProperties.getScaleY();
+		return mStagingProperties.getScaleY();
 	}
 	
 	public boolean setScaleY(float scaleY) {
-		return mRenderProperties.setScaleY(scaleY);
+		return mStagingProperties.setScaleY(scaleY);
 	}
 	
 	public float getRotation() {
-		return mRenderProperties.getRotation();
+		return mStagingProperties.getRotation();
 	}
 	
 	public boolean setRotation(float rotation) {
-		return mRenderProperties.setRotation(rotation);
+		return mStagingProperties.setRotation(rotation);
 	}
 	
 	public float getRotationX() {
-		return mRenderProperties.getRotationX();
+		return mStagingProperties.getRotationX();
 	}
 	
 	public boolean setRotationX(float rotationX) {
-		return mRenderProperties.setRotationX(rotationX);
+		return mStagingProperties.setRotationX(rotationX);
 	}
 	
 	public float getRotationY() {
-		return mRenderProperties.getRotationY();
+		return mStagingProperties.getRotationY();
 	}
 	
 	public boolean setRotationY(float rotationY) {
-		return mRenderProperties.setRotationY(rotationY);
+		return mStagingProperties.setRotationY(rotationY);
 	}
 	
 	public float getAlpha() {
-		return mRenderProperties.getAlpha();
+		return mStagingProperties.getAlpha();
 	}
 	
 	public boolean setAlpha(float alpha) {
-		return mRenderProperties.setAlpha(alpha);
+		return mStagingProperties.setAlpha(alpha);
 	}
 	
 	public int getLayerType() {
-		return mRenderProperties.getLayerType();
+		return mStagingProperties.getLayerType();
 	}
 	
 	public boolean setLayerType(int layerType) {
-		return mRenderProperties.setLayerType(layerType);
+		return mStagingProperties.setLayerType(layerType);
+	}
+	
+	public boolean getClipToBounds() {
+		return mStagingProperties.getClipToBounds();
+	}
+	
+	/**
+	 * Tell the node its content never draws out of its bounds, so it can be
+	 * skipped when they are out of the clip.
+	 */
+	public boolean setClipToBounds(boolean clipToBounds) {
+		return mStagingProperties.setClipToBounds(clipToBounds);
 	}
 	
 	public RenderProperties properties() {
-		return mRenderProperties;
+		return mStagingProperties;
+	}
+	
+	/*
+	 * This method runs in RenderThread, before the frame is drawn.
+	 * Take the display list and the properties staged for this node, then the
+	 * ones of its children. The UI thread is blocked meanwhile unless the frame
+	 * is driven by a RenderThread animation.
+	 */
+	void prepareTree() {
+		// DisplayList has been changed by GLThread, sync it to RenderThread
+		if (mNeedsDisplayListDataSync) {
+			syncDisplayListData();
+		}
+		mRenderProperties.syncFrom(mStagingProperties);
+		
+		synchronized (mDisplayListDataLock) {
+			final DisplayListData displayListData = mDisplayListData;
+			if (displayListData != null) {
+				mContentBounds.set(displayListData.mContentBounds);
+				mContentUnbounded = displayListData.mContentUnbounded;
+				final Object[] objects = displayListData.mObjects;
+				final float[] nodeTransforms = displayListData.mNodeTransforms;
+				int n = 0;
+				for (int i = 0; i < displayListData.mObjectsSize; i ++) {
+					if (objects[i] instanceof RenderNode) {
+						final RenderNode child = (RenderNode) objects[i];
+						child.prepareTree();
+						if (!mContentUnbounded && !child.unionContentBounds(mContentBounds, nodeTransforms, n)) {
+							mContentUnbounded = true;
+						}
+						n += 4;
+					}
+				}
+			} else {
+				mContentBounds.setEmpty();
+				mContentUnbounded = false;
+			}
+		}
+		final RenderProperties properties = mRenderProperties;
+		if (properties.mClipToBounds) {
+			if (mContentUnbounded) {
+				mContentBounds.set(0, 0, properties.mWidth, properties.mHeight);
+				mContentUnbounded = false;
+			} else if (!mContentBounds.intersect(0, 0, properties.mWidth, properties.mHeight)) {
+				mContentBounds.setEmpty();
+			}
+		}
 	}
 	
 	/*
-	 * This method runs in RenderThread.
+	 * Union the content bounds of this node, in the coordinates of the node
+	 * drawing it with the transform at nodeTransforms[n].
+	 * @return false if they can't be known.
+	 */
+	private boolean unionContentBounds(RectF out, float[] nodeTransforms, int n) {
+		final RenderProperties p = mRenderProperties;
+		if (p.skipRender() || (!mContentUnbounded && mContentBounds.isEmpty())) {
+			return true;
+		}
+		final float sx = nodeTransforms[n], sy = nodeTransforms[n + 1];
+		if (mContentUnbounded || Float.isNaN(sx) || p.mRotation != 0 || p.mRotationX != 0
+				|| p.mRotationY != 0 || p.mTranslationZ != 0) {
+			return false;
+		}
+		// See RenderProperties#applyRenderProperties(GLCanvas).
+		final float x = p.mLeft + p.mTranslationX + p.mPivotX * (1 - p.mScaleX);
+		final float y = p.mTop + p.mTranslationY + p.mPivotY * (1 - p.mScaleY);
+		final RectF bounds = mContentBounds;
+		float l = sx * (x + p.mScaleX * bounds.left) + nodeTransforms[n + 2];
+		float r = sx * (x + p.mScaleX * bounds.right) + nodeTransforms[n + 2];
+		float t = sy * (y + p.mScaleY * bounds.top) + nodeTransforms[n + 3];
+		float b = sy * (y + p.mScaleY * bounds.bottom) + nodeTransforms[n + 3];
+		if (Float.isNaN(l) || Float.isNaN(r) || Float.isNaN(t) || Float.isNaN(b)) {
+			return false;
+		}
+		out.union(Math.min(l, r), Math.min(t, b), Math.max(l, r), Math.max(t, b));
+		return true;
+	}
+	
+	/*
+	 * After the properties are applied.
+	 */
+	private boolean quickRejectContent(GLCanvas canvas) {
+		if (mContentUnbounded) return false;
+		final RectF bounds = mContentBounds;
+		return bounds.isEmpty() || canvas.quickReject(bounds.left, bounds.top, bounds.right, bounds.bottom);
+	}
+	
+	private void syncDisplayListData() {
+		recycleDisplayListData(false);
+		
+		final DisplayListData displayListData;
+		synchronized (mStageDisplayListDataLock) {
+			displayListData = mStageDisplayListData;
+			mStageDisplayListData = null;
+			mNeedsDisplayListDataSync = false;
+		}
+		synchronized (mDisplayListDataLock) {
+			mDisplayListData = displayListData;
+		}
+		mRenderProperties.mNeedsLayerSync = true;
+	}
+	
+	/*
+	 * This method runs in RenderThread, after prepareTree().
 	 */
 	void replay(GLCanvas canvas) {
 		if (mRenderProperties.skipRender()) return;
 		
 		// apply properties transform
 		mRenderProperties.applyRenderProperties(canvas);
-		// DisplayList has been changed by GLThread, sync it to RenderThread
-		if (mNeedsDisplayListDataSync) {
-			recycleDisplayListData(false);
-			
-			mDisplayListData = mStageDisplayListData;
-			synchronized (mStageDisplayListDataLock) {
-				mStageDisplayListData = null;
-				mNeedsDisplayListDataSync = false;
-			}
-			mRenderProperties.mNeedsLayerSync = true;
+		if (quickRejectContent(canvas)) {
+			// Out of the dirty area, or scrolled out.
+			mRenderProperties.restoreRenderProperties(canvas);
+			Caches.getInstance().frameInfo.add(FrameInfo.CULLED_NODES, 1);
+			return;
 		}
-		
+		// The display list was synced by prepareTree()
 		mRenderProperties.updateRenderLayer(canvas);
 		
 		render(canvas);
@@ -282,29 +409,151 @@ public class RenderNode {
 		synchronized (mDisplayListDataLock) {
 			DisplayListData displayListData = mDisplayListData;
 			if (displayListData != null) {
-				CanvasOp op = displayListData.mCanvasOps;
-				while (op != null) {
-					op.replay(canvas);
-					op = op.mNext;
+				replayDisplayListData(displayListData, canvas);
+			}
+		}
+	}
+	
+	/**
+	 * Decode the ops of the display list and apply them to the canvas.
+	 * @see DisplayListData
+	 */
+	static void replayDisplayListData(DisplayListData data, GLCanvas canvas) {
+		final int[] ops = data.mOps;
+		final float[] floats = data.mFloats;
+		final Object[] objects = data.mObjects;
+		final int opsSize = data.mOpsSize;
+		final Rect source = data.mTempSource, target = data.mTempTarget;
+		final RectF sourceF = data.mTempSourceF, targetF = data.mTempTargetF;
+		final float[] bounds = data.mBounds;
+		int i = 0, f = 0, o = 0, b = 0;
+		int culled = 0;
+		while (i < opsSize) {
+			final int op = ops[i ++];
+			if (op >= DisplayListData.FIRST_BOUNDED_OP) {
+				final float left = bounds[b];
+				if (!Float.isNaN(left) && canvas.quickReject(left, bounds[b + 1], bounds[b + 2], bounds[b + 3])) {
+					i += DisplayListData.OP_INTS[op];
+					f += DisplayListData.OP_FLOATS[op];
+					o += DisplayListData.OP_OBJECTS[op];
+					b += 4;
+					culled ++;
+					continue;
 				}
+				b += 4;
+			}
+			switch (op) {
+			case DisplayListData.OP_SAVE:
+				canvas.save(ops[i ++]);
+				break;
+			case DisplayListData.OP_RESTORE:
+				canvas.restore();
+				break;
+			case DisplayListData.OP_RESTORE_TO_COUNT:
+				canvas.restoreToCount(ops[i ++]);
+				break;
+			case DisplayListData.OP_TRANSLATE:
+				canvas.translate(floats[f], floats[f + 1], floats[f + 2]);
+				f += 3;
+				break;
+			case DisplayListData.OP_SCALE:
+				canvas.scale(floats[f], floats[f + 1], floats[f + 2]);
+				f += 3;
+				break;
+			case DisplayListData.OP_ROTATE:
+				canvas.rotate(floats[f], floats[f + 1], floats[f + 2], floats[f + 3]);
+				f += 4;
+				break;
+			case DisplayListData.OP_CLIP_RECT:
+				canvas.clipRect(floats[f], floats[f + 1], floats[f + 2], floats[f + 3]);
+				f += 4;
+				break;
+			case DisplayListData.OP_DRAW_RENDER_NODE:
+				canvas.drawRenderNode((RenderNode) objects[o ++]);
+				break;
+			case DisplayListData.OP_DRAW_LINE:
+				canvas.drawLine(floats[f], floats[f + 1], floats[f + 2], floats[f + 3], (GLPaint) objects[o ++]);
+				f += 4;
+				break;
+			case DisplayListData.OP_DRAW_RECT:
+				canvas.drawRect(floats[f], floats[f + 1], floats[f + 2], floats[f + 3], (GLPaint) objects[o ++]);
+				f += 4;
+				break;
+			case DisplayListData.OP_DRAW_BITMAP:
+				canvas.drawBitmap((Bitmap) objects[o], floats[f], floats[f + 1], (GLPaint) objects[o + 1]);
+				f += 2;
+				o += 2;
+				break;
+			case DisplayListData.OP_DRAW_BITMAP_RECT:
+				f = readRect(floats, f, source);
+				f = readRect(floats, f, target);
+				canvas.drawBitmap((Bitmap) objects[o], source, target, (GLPaint) objects[o + 1]);
+				o += 2;
+				break;
+			case DisplayListData.OP_DRAW_BITMAP_RECT_F:
+				sourceF.set(floats[f], floats[f + 1], floats[f + 2], floats[f + 3]);
+				targetF.set(floats[f + 4], floats[f + 5], floats[f + 6], floats[f + 7]);
+				f += 8;
+				canvas.drawBitmap((Bitmap) objects[o], sourceF, targetF, (GLPaint) objects[o + 1]);
+				o += 2;
+				break;
+			case DisplayListData.OP_DRAW_BITMAP_BATCH:
+				f = readRect(floats, f, source);
+				f = readRect(floats, f, target);
+				canvas.drawBitmapBatch((Bitmap) objects[o], source, target, (GLPaint) objects[o + 1]);
+				o += 2;
+				break;
+			case DisplayListData.OP_DRAW_PATCH:
+				f = readRect(floats, f, target);
+				canvas.drawPatch((NinePatch) objects[o], target, (GLPaint) objects[o + 1]);
+				o += 2;
+				break;
+			case DisplayListData.OP_DRAW_MESH:
+				canvas.drawMesh((BasicMesh) objects[o], (GLPaint) objects[o + 1]);
+				o += 2;
+				break;
+			case DisplayListData.OP_DRAW_BITMAP_MESH:
+				canvas.drawBitmapMesh((Bitmap) objects[o], (BasicMesh) objects[o + 1], (GLPaint) objects[o + 2]);
+				o += 3;
+				break;
+			case DisplayListData.OP_DRAW_TEXT:
+				canvas.drawText((CharSequence) objects[o], ops[i], ops[i + 1], floats[f], floats[f + 1],
+						(GLPaint) objects[o + 1], ops[i + 2] != 0);
+				i += 3;
+				f += 2;
+				o += 2;
+				break;
+			case DisplayListData.OP_DRAW_OVAL:
+				canvas.drawOval(floats[f], floats[f + 1], floats[f + 2], floats[f + 3], (GLPaint) objects[o ++]);
+				f += 4;
+				break;
+			case DisplayListData.OP_DRAW_ROUND_RECT:
+				canvas.drawRoundRect(floats[f], floats[f + 1], floats[f + 2], floats[f + 3],
+						floats[f + 4], floats[f + 5], (GLPaint) objects[o ++]);
+				f += 6;
+				break;
+			case DisplayListData.OP_DRAW_PATH:
+				canvas.drawPath((Path) objects[o], (GLPaint) objects[o + 1]);
+				o += 2;
+				break;
+			default:
+				throw new IllegalStateException("Unknown display list op " + op);
 			}
 		}
+		if (culled > 0) {
+			Caches.getInstance().frameInfo.add(FrameInfo.CULLED_OPS, culled);
+		}
+	}
+	
+	private static int readRect(float[] floats, int f, Rect rect) {
+		rect.set((int) floats[f], (int) floats[f + 1], (int) floats[f + 2], (int) floats[f + 3]);
+		return f + 4;
 	}
 	
 	public Bitmap buildDrawingCache(GLCanvas canvas) {
 		try {
+			prepareTree();
 			if (mRenderProperties.skipRender()) return null;
-			// DisplayList has been changed by GLThread, sync it to RenderThread
-			if (mNeedsDisplayListDataSync) {
-				recycleDisplayListData(false);
-				
-				mDisplayListData = mStageDisplayListData;
-				synchronized (mStageDisplayListDataLock) {
-					mStageDisplayListData = null;
-					mNeedsDisplayListDataSync = false;
-				}
-				mRenderProperties.mNeedsLayerSync = true;
-			}
 			return mRenderProperties.buildDrawingCache(canvas);
 		} finally {
 			canvas.restoreToCount(0);
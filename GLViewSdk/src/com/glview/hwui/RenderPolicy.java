@@ -1,5 +1,6 @@
 package com.glview.hwui;
 
+import java.io.File;
 import java.util.List;
 
 import android.util.Log;
@@ -9,6 +10,8 @@ import android.view.Surface;
 
 import com.glview.animation.Animator;
 import com.glview.graphics.Bitmap;
+import com.glview.graphics.Rect;
+import com.glview.hwui.cache.ProgramCache;
 import com.glview.hwui.task.Task;
 import com.glview.hwui.task.TaskHandler;
 import com.glview.view.GLRootView;
@@ -43,12 +46,15 @@ public final class RenderPolicy {
 	boolean mExited = false;
 	
 	/**
-	 * Draw frame task, it's a sync task, called from the GLThread {@link GLRootView#onDrawFrame()}.
-	 * Our GLThread may be blocked by the render thread.
+	 * Draw frame task, posted from the GLThread {@link GLRootView#onDrawFrame()}.
+	 * Our GLThread is blocked until the render thread has synced the frame,
+	 * not until it's drawn, so it records the next frame meanwhile.
 	 * @see #syncAndDrawFrame()
 	 */
 	DrawTask mDrawTask = new DrawTask();
 	
+	FrameStats.OnFrameStatsListener mFrameStatsListener;
+	
 	public RenderPolicy(RenderNode rootRenderNode) {
 		mRootNode = rootRenderNode;
 		init();
@@ -101,12 +107,59 @@ public final class RenderPolicy {
 	}
 	
 	public void syncAndDrawFrame() {
+		syncAndDrawFrame(0, null);
+	}
+	
+	/**
+	 * @param recordTime the time spent building the display lists of this frame, ns.
+	 */
+	public void syncAndDrawFrame(long recordTime) {
+		syncAndDrawFrame(recordTime, null);
+	}
+	
+	/**
+	 * @param recordTime the time spent building the display lists of this frame, ns.
+	 * @param dirty the area changed since the last frame in window coordinates,
+	 * null if the whole window is dirty.
+	 */
+	public void syncAndDrawFrame(long recordTime, Rect dirty) {
 		if (mExited) return;
 		if (isEnable()) {
 			if (DEBUG_DRAW) Log.d(TAG, "sync and draw frame begin!");
-			mHandler.postAndWait(mDrawTask);
+			mDrawTask.mRecordTime = recordTime;
+			mDrawTask.mPostTime = System.nanoTime();
+			mDrawTask.mFullDamage = dirty == null;
+			if (dirty != null) {
+				mDrawTask.mDirty.set(dirty);
+			}
+			mDrawTask.postAndWaitForSync();
 			if (DEBUG_DRAW) Log.d(TAG, "sync and draw frame end!");
 //			scheduleAnimatingDrawTask();
+			deliverFrameStats();
+		}
+	}
+	
+	/**
+	 * The listener is called in this thread, after a frame is drawn.
+	 */
+	public void setOnFrameStatsListener(FrameStats.OnFrameStatsListener listener) {
+		mFrameStatsListener = listener;
+	}
+	
+	/**
+	 * @return the timings of the frames drawn, null before the render thread is ready.
+	 */
+	public FrameStats getFrameStats() {
+		return mCanvasContext != null ? mCanvasContext.mFrameStats : null;
+	}
+	
+	private void deliverFrameStats() {
+		final FrameStats.OnFrameStatsListener listener = mFrameStatsListener;
+		if (listener != null && mCanvasContext != null) {
+			FrameStats.Report report = mCanvasContext.mFrameStats.takeReport();
+			if (report != null) {
+				listener.onFrameStats(report);
+			}
 		}
 	}
 	
@@ -121,7 +174,7 @@ public final class RenderPolicy {
 				scheduleAnimatingDrawTask();
 			}
 		}*/
-		if (mCanvasContext.draw() && fromGLThread) {
+		if (mCanvasContext.drawFrame() && fromGLThread) {
 //			mHandler.remove(mDrawTask);
 		}
 	}
@@ -166,9 +219,54 @@ public final class RenderPolicy {
 		}
 	}
 	
+	/*
+	 * Two phases like a blocking task, but the caller is released once the
+	 * frame state is synced, the replay and the swap go on in background.
+	 */
 	class DrawTask extends Task {
+		long mRecordTime;
+		long mPostTime;
+		final Rect mDirty = new Rect();
+		boolean mFullDamage = true;
+		boolean mSynced;
+		
+		void postAndWaitForSync() {
+			if (mHandler.isCurrentThread()) {
+				run();
+				return;
+			}
+			synchronized (this) {
+				mSynced = false;
+			}
+			if (!mHandler.post(this)) {
+				return;
+			}
+			synchronized (this) {
+				while (!mSynced) {
+					try {
+						wait();
+					} catch (InterruptedException e) {
+					}
+				}
+			}
+		}
+		
+		private void unblockUiThread() {
+			synchronized (this) {
+				mSynced = true;
+				notifyAll();
+			}
+		}
+		
 		@Override
 		public void doTask() {
+			try {
+				mCanvasContext.setFrameTimes(mRecordTime, System.nanoTime() - mPostTime);
+				mCanvasContext.setDamage(mFullDamage ? null : mDirty);
+				mCanvasContext.syncFrameState();
+			} finally {
+				unblockUiThread();
+			}
 			innerDraw(true);
 		}
 	}
@@ -190,4 +288,33 @@ public final class RenderPolicy {
 	public static void trimMemory(int level) {
 		CanvasContext.trimMemory(level);
 	}
+	
+	/**
+	 * Rasterize and pack the glyphs of the text drawn with the paint into the
+	 * font cache in background, so the first frames showing it don't. The
+	 * text can be a label or a set of chars, like "0123456789" for a counter.
+	 * Can be called in any thread, the paint and the text are copied.
+	 */
+	public static void precacheText(GLPaint paint, CharSequence text) {
+		if (paint == null || text == null || text.length() == 0) return;
+		CanvasContext.precacheText(paint, text);
+	}
+	
+	/**
+	 * Keep the linked shader programs in a file of the directory, the next
+	 * starts load them instead of compiling their sources. Needs a GLES 3.0
+	 * driver. Call before the first frame, with Context.getCacheDir() for example.
+	 */
+	public static void setupDiskCache(File cacheDir) {
+		ProgramCache.setDiskCacheDirectory(cacheDir);
+	}
+	
+	/**
+	 * Compile the shader programs of the canvas in the RenderThread, at
+	 * startup or when idle, so the first frames drawing with them don't.
+	 * Can be called in any thread.
+	 */
+	public static void precachePrograms() {
+		CanvasContext.precachePrograms();
+	}
 }
@@ -15,6 +15,12 @@ final public class RenderProperties {
 	float mPivotX, mPivotY;
 	float mAlpha = 1;
 	
+	/**
+	 * The content of the node is clipped to its bounds, see
+	 * {@link RenderNode#prepareTree()}.
+	 */
+	boolean mClipToBounds = false;
+	
 	Layer mLayer = null;
 	
 	int mLayerType = Layer.LAYER_TYPE_NONE;
@@ -26,7 +32,7 @@ final public class RenderProperties {
 		mRenderNode = renderNode;
 	}
 	
-	public void setSize(int w, int h) {
+	public synchronized void setSize(int w, int h) {
 		mWidth = w;
 		mHeight = h;
 		mPivotX = w / 2f;
@@ -36,6 +42,40 @@ final public class RenderProperties {
 	void updateNodeMatrix() {
 	}
 	
+	/**
+	 * Copy the values set on the staging properties of the node, in RenderThread.
+	 * A new size or layer type updates the layer. The frames of the RenderThread
+	 * animations sync while the UI thread runs, the copy is atomic.
+	 */
+	void syncFrom(RenderProperties staging) {
+		// The UI thread and the RenderThread animations set the staging values
+		// under its monitor, see the setters.
+		synchronized (staging) {
+			if (mWidth != staging.mWidth || mHeight != staging.mHeight || mLayerType != staging.mLayerType) {
+				mNeedsLayerSync = true;
+			}
+			mWidth = staging.mWidth;
+			mHeight = staging.mHeight;
+			mTranslationX = staging.mTranslationX;
+			mTranslationY = staging.mTranslationY;
+			mTranslationZ = staging.mTranslationZ;
+			mLeft = staging.mLeft;
+			mTop = staging.mTop;
+			mRight = staging.mRight;
+			mBottom = staging.mBottom;
+			mScaleX = staging.mScaleX;
+			mScaleY = staging.mScaleY;
+			mRotation = staging.mRotation;
+			mRotationX = staging.mRotationX;
+			mRotationY = staging.mRotationY;
+			mPivotX = staging.mPivotX;
+			mPivotY = staging.mPivotY;
+			mAlpha = staging.mAlpha;
+			mLayerType = staging.mLayerType;
+			mClipToBounds = staging.mClipToBounds;
+		}
+	}
+	
 	boolean skipRender() {
 		return mWidth <= 0 || mHeight <= 0;
 	}
@@ -44,7 +84,7 @@ final public class RenderProperties {
 		return mTranslationX;
 	}
 
-	public boolean setTranslationX(float translationX) {
+	public synchronized boolean setTranslationX(float translationX) {
 		if (mTranslationX != translationX) {
 			mTranslationX = translationX;
 			updateNodeMatrix();
@@ -57,7 +97,7 @@ final public class RenderProperties {
 		return mTranslationY;
 	}
 
-	public boolean setTranslationY(float translationY) {
+	public synchronized boolean setTranslationY(float translationY) {
 		if (mTranslationY != translationY) {
 			mTranslationY = translationY;
 			updateNodeMatrix();
@@ -70,7 +110,7 @@ final public class RenderProperties {
 		return mTranslationZ;
 	}
 
-	public boolean setTranslationZ(float translationZ) {
+	public synchronized boolean setTranslationZ(float translationZ) {
 		if (mTranslationZ != translationZ) {
 			mTranslationZ = translationZ;
 			updateNodeMatrix();
@@ -83,7 +123,7 @@ final public class RenderProperties {
 		return mLeft;
 	}
 	
-	public boolean setLeft(float left) {
+	public synchronized boolean setLeft(float left) {
 		if (mLeft != left) {
 			mLeft = left;
 			updateNodeMatrix();
@@ -96,7 +136,7 @@ final public class RenderProperties {
 		return mRight;
 	}
 	
-	public boolean setRight(float right) {
+	public synchronized boolean setRight(float right) {
 		if (mRight != right) {
 			mRight = right;
 			updateNodeMatrix();
@@ -109,7 +149,7 @@ final public class RenderProperties {
 		return mBottom;
 	}
 	
-	public boolean setBottom(float bottom) {
+	public synchronized boolean setBottom(float bottom) {
 		if (mBottom != bottom) {
 			mBottom = bottom;
 			updateNodeMatrix();
@@ -122,7 +162,7 @@ final public class RenderProperties {
 		return mTop;
 	}
 	
-	public boolean setTop(float top) {
+	public synchronized boolean setTop(float top) {
 		if (mTop != top) {
 			mTop = top;
 			updateNodeMatrix();
@@ -135,7 +175,7 @@ final public class RenderProperties {
 		return mScaleX;
 	}
 	
-	public boolean setScaleX(float scaleX) {
+	public synchronized boolean setScaleX(float scaleX) {
 		if (mScaleX != scaleX) {
 			mScaleX = scaleX;
 			updateNodeMatrix();
@@ -148,7 +188,7 @@ final public class RenderProperties {
 		return mScaleY;
 	}
 	
-	public boolean setScaleY(float scaleY) {
+	public synchronized boolean setScaleY(float scaleY) {
 		if (mScaleY != scaleY) {
 			mScaleY =scaleY;
 			updateNodeMatrix();
@@ -161,7 +201,7 @@ final public class RenderProperties {
 		return mRotation;
 	}
 	
-	public boolean setRotation(float rotation) {
+	public synchronized boolean setRotation(float rotation) {
 		if (mRotation != rotation) {
 			mRotation = rotation;
 			updateNodeMatrix();
@@ -174,7 +214,7 @@ final public class RenderProperties {
 		return mRotationX;
 	}
 	
-	public boolean setRotationX(float rotationX) {
+	public synchronized boolean setRotationX(float rotationX) {
 		if (mRotationX != rotationX) {
 			mRotationX = rotationX;
 			updateNodeMatrix();
@@ -187,7 +227,7 @@ final public class RenderProperties {
 		return mRotationY;
 	}
 	
-	public boolean setRotationY(float rotationY) {
+	public synchronized boolean setRotationY(float rotationY) {
 		if (mRotationY != rotationY) {
 			mRotationY = rotationY;
 			updateNodeMatrix();
@@ -200,7 +240,7 @@ final public class RenderProperties {
 		return mAlpha;
 	}
 	
-	public boolean setAlpha(float alpha) {
+	public synchronized boolean setAlpha(float alpha) {
 		if (mAlpha != alpha) {
 			if (alpha < 0) {
 				alpha = 0;
@@ -214,7 +254,7 @@ final public class RenderProperties {
 		return false;
 	}
 	
-	public boolean setLayerType(int layerType) {
+	public synchronized boolean setLayerType(int layerType) {
 		if (mLayerType != layerType) {
 			mLayerType = layerType;
 			mNeedsLayerSync = true;
@@ -227,6 +267,18 @@ final public class RenderProperties {
 		return mLayerType;
 	}
 	
+	public synchronized boolean setClipToBounds(boolean clipToBounds) {
+		if (mClipToBounds != clipToBounds) {
+			mClipToBounds = clipToBounds;
+			return true;
+		}
+		return false;
+	}
+	
+	public boolean getClipToBounds() {
+		return mClipToBounds;
+	}
+	
 	/**
 	 * Apply render node transformation to canvas at the beginning of replay.
 	 * @param canvas
@@ -1,25 +1,77 @@
 package com.glview.hwui;
 
+import com.glview.App;
+import com.glview.libgdx.graphics.glutils.ShaderProgram;
 import com.glview.libgdx.graphics.opengl.GL20;
 
-class RenderState {
-	
-	public static final float OPAQUE_ALPHA = 0.95f;
-	
-	GL20 mGL;
-	
+/**
+ * The GL state of the context of the RenderThread, one per {@link Caches}.
+ * <p>
+ * Every piece of state the library sets goes through here and a call is
+ * only issued when the value changes. The meshes of libgdx get it with
+ * {@link #current()}: their buffers and vertex attributes stay bound after a
+ * draw, the next draw only binds the ones that differ. The calls skipped are
+ * counted in {@link FrameInfo#GL_CALLS_SAVED}.
+ * @hide
+ */
+public final class RenderState {
+
+	static RenderState sInstance;
+
+	final GL20 mGL;
+	final Thread mThread;
+	final FrameInfo mFrameInfo;
+
 	private int mTextureTarget = GL20.GL_TEXTURE_2D;
-    private boolean mBlendEnabled = false;
-    private boolean mDepthEnabled = false;
-    private boolean mDepthMask = true;
-    private float mLineWidth = 1.0f;
-	
+    private boolean mBlendEnabled;
+    private int mBlendSrc, mBlendDst;
+    private boolean mDepthEnabled;
+    private boolean mDepthMask;
+    private float mLineWidth;
+
+    private boolean mScissorEnabled;
+    private int mScissorX, mScissorY, mScissorWidth, mScissorHeight;
+
+    private int mArrayBuffer, mElementBuffer;
+    private int mEnabledAttributes;
+
+    private int mActiveTexture;
+    private final int[] mTextures = new int[Caches.gTextureUnits.length];
+
+    private int mProgram;
+
+    private int mFrameBuffer;
+
+    private boolean mSetupPending;
+
     GLPaint mDefaultPaint = new GLPaint();
-    
+
     int mViewportWidth, mViewportHeight;
-    
-	public RenderState(GL20 gl) {
+
+	RenderState(GL20 gl, FrameInfo frameInfo) {
 		mGL = gl;
+		mThread = Thread.currentThread();
+		mFrameInfo = frameInfo;
+		invalidate();
+		mScissorEnabled = mGL.glIsEnabled(GL20.GL_SCISSOR_TEST);
+		setup();
+		sInstance = this;
+	}
+
+	/**
+	 * @return the state of the context of the calling thread, null if it
+	 * isn't the RenderThread or another GL is installed in {@link App}.
+	 */
+	public static RenderState current() {
+		final RenderState state = sInstance;
+		if (state != null && state.mThread == Thread.currentThread() && state.mGL == App.getGL20()) {
+			return state;
+		}
+		return null;
+	}
+
+	private void setup() {
+		mSetupPending = false;
 		// 设置屏幕背景色RGBA
 		mGL.glClearColor(0.0f, 0.0f, 0.0f, 0.0f);
 		mGL.glClearStencil(0);
@@ -28,49 +80,107 @@ class RenderState {
 		mGL.glEnable(GL20.GL_DITHER);
 
 		// 关闭深度测试
-		mGL.glDisable(GL20.GL_DEPTH_TEST);
+		setDepthEnabled(false);
 		mGL.glDepthFunc(GL20.GL_LEQUAL);
 
-		mGL.glEnable(GL20.GL_BLEND);
-		mGL.glBlendFunc(GL20.GL_ONE, GL20.GL_ONE_MINUS_SRC_ALPHA);
+		setBlendEnabled(true);
+		setBlendFunc(GL20.GL_ONE, GL20.GL_ONE_MINUS_SRC_ALPHA);
 
 		// We use 565 or 8888 format, so set the alignment to 2 bytes/pixel.
 		mGL.glPixelStorei(GL20.GL_UNPACK_ALIGNMENT, 2);
 	}
-	
+
+	/**
+	 * The context was recreated, its state is the one of a new context. The
+	 * state of the library is set again by {@link #prepare()}.
+	 */
+	void invalidate() {
+		mSetupPending = true;
+		mBlendEnabled = false;
+		mBlendSrc = GL20.GL_ONE;
+		mBlendDst = GL20.GL_ZERO;
+		mDepthEnabled = false;
+		mDepthMask = true;
+		mLineWidth = 1.0f;
+		mScissorEnabled = false;
+		// The box of a new context is the size of the first surface.
+		mScissorX = mScissorY = mScissorWidth = mScissorHeight = -1;
+		mArrayBuffer = mElementBuffer = 0;
+		mEnabledAttributes = 0;
+		mActiveTexture = 0;
+		for (int i = 0; i < mTextures.length; i ++) {
+			mTextures[i] = 0;
+		}
+		mProgram = 0;
+		mFrameBuffer = 0;
+		mViewportWidth = mViewportHeight = -1;
+	}
+
+	/**
+	 * Called before a frame is drawn.
+	 */
+	void prepare() {
+		if (mSetupPending) {
+			setup();
+		}
+	}
+
+	private void saved(int count) {
+		mFrameInfo.add(FrameInfo.GL_CALLS_SAVED, count);
+	}
+
+	/**
+	 * The caller skipped calls because the state they set is kept, counted
+	 * in the calls saved.
+	 */
+	public void skipped(int count) {
+		saved(count);
+	}
+
 	public void setViewport(int width, int height) {
+		if (mViewportWidth == width && mViewportHeight == height) {
+			saved(1);
+			return;
+		}
 	    mViewportWidth = width;
 	    mViewportHeight = height;
 	    mGL.glViewport(0, 0, mViewportWidth, mViewportHeight);
 	}
-	
+
 	public GLPaint getDefaultPaint() {
 		return mDefaultPaint;
 	}
 
-	int mFrameBuffer = 0;
-	
 	public int getFrameBuffer() {
 		return mFrameBuffer;
 	}
-	
+
 	public void bindFrameBuffer(int buffer) {
 		if (mFrameBuffer != buffer) {
 			mFrameBuffer = buffer;
 			mGL.glBindFramebuffer(GL20.GL_FRAMEBUFFER, mFrameBuffer);
+		} else {
+			saved(1);
 		}
 	}
-	
+
 	public void setLineWidth(float width) {
-        if (mLineWidth == width) return;
+        if (mLineWidth == width) {
+        	saved(1);
+        	return;
+        }
         mLineWidth = width;
         mGL.glLineWidth(width);
     }
-	
+
+	/**
+	 * Blend unless the color drawn is opaque, alpha is the one of the
+	 * color after the alpha of the paint and of the snapshot.
+	 */
 	public void setColorMode(float alpha) {
-        setBlendEnabled(alpha < OPAQUE_ALPHA);
+        setBlendEnabled(alpha < 1.0f);
     }
-	
+
 	// target is a value like GL_TEXTURE_2D. If target = 0, texturing is disabled.
     public void setTextureTarget(int target) {
         if (mTextureTarget == target) return;
@@ -82,22 +192,38 @@ class RenderState {
         	mGL.glEnable(mTextureTarget);
         }
     }
-	
-	public void setBlendEnabled(boolean enabled) { 	
+
+	/**
+	 * Opaque draws are drawn with blending off, the fill rate of the full
+	 * screen backgrounds is the one of a copy.
+	 */
+	public void setBlendEnabled(boolean enabled) {
         if (mBlendEnabled == enabled) {
+        	saved(1);
         	return;
         }
         setDepthMask(!enabled);
         mBlendEnabled = enabled;
-//        if (enabled) {
-//        	mGL.glEnable(GL20.GL_BLEND);
-//        } else {
-//        	mGL.glDisable(GL20.GL_BLEND);
-//        }
+        if (enabled) {
+        	mGL.glEnable(GL20.GL_BLEND);
+        } else {
+        	mGL.glDisable(GL20.GL_BLEND);
+        }
     }
-	
+
+	public void setBlendFunc(int src, int dst) {
+		if (mBlendSrc == src && mBlendDst == dst) {
+			saved(1);
+			return;
+		}
+		mBlendSrc = src;
+		mBlendDst = dst;
+		mGL.glBlendFunc(src, dst);
+	}
+
 	public void setDepthEnabled(boolean enabled) {
 		if (mDepthEnabled == enabled) {
+			saved(1);
 			return;
 		}
 		mDepthEnabled = enabled;
@@ -107,12 +233,209 @@ class RenderState {
         	mGL.glDisable(GL20.GL_DEPTH_TEST);
         }
 	}
-	
+
 	public void setDepthMask(boolean mask) {
 		if (mDepthMask == mask) {
+			saved(1);
 			return;
 		}
 		mDepthMask = mask;
 		mGL.glDepthMask(mask);
 	}
+
+	///////////////////////////////////////////////////////////////////////////////
+	//Scissor
+	///////////////////////////////////////////////////////////////////////////////
+
+	public boolean isScissorEnabled() {
+		return mScissorEnabled;
+	}
+
+	/**
+	 * The box is kept by GL while the test is off, the callers set it
+	 * again from their clip after enabling it.
+	 * @return true if the scissor was disabled.
+	 */
+	public boolean enableScissor() {
+	    if (!mScissorEnabled) {
+	    	mGL.glEnable(GL20.GL_SCISSOR_TEST);
+	        mScissorEnabled = true;
+	        return true;
+	    }
+	    saved(1);
+	    return false;
+	}
+
+	public boolean disableScissor() {
+	    if (mScissorEnabled) {
+	        mGL.glDisable(GL20.GL_SCISSOR_TEST);
+	        mScissorEnabled = false;
+	        return true;
+	    }
+	    saved(1);
+	    return false;
+	}
+
+	public void setScissorEnabled(boolean enabled) {
+	    if (enabled) {
+	    	enableScissor();
+	    } else {
+	    	disableScissor();
+	    }
+	}
+
+	/**
+	 * Ignored while the scissor is disabled.
+	 * @return true if the box changed.
+	 */
+	public boolean setScissor(int x, int y, int width, int height) {
+		if (!mScissorEnabled) {
+			return false;
+		}
+        if (x < 0) {
+            width += x;
+            x = 0;
+        }
+        if (y < 0) {
+            height += y;
+            y = 0;
+        }
+        if (width < 0) {
+            width = 0;
+        }
+        if (height < 0) {
+            height = 0;
+        }
+        if (x == mScissorX && y == mScissorY && width == mScissorWidth && height == mScissorHeight) {
+        	saved(1);
+        	return false;
+        }
+        mGL.glScissor(x, y, width, height);
+
+        mScissorX = x;
+        mScissorY = y;
+        mScissorWidth = width;
+        mScissorHeight = height;
+        return true;
+	}
+
+	///////////////////////////////////////////////////////////////////////////////
+	//Buffers and vertex attributes
+	///////////////////////////////////////////////////////////////////////////////
+
+	public void bindArrayBuffer(int buffer) {
+		if (mArrayBuffer != buffer) {
+			mArrayBuffer = buffer;
+			mGL.glBindBuffer(GL20.GL_ARRAY_BUFFER, buffer);
+		} else {
+			saved(1);
+		}
+	}
+
+	public void bindElementBuffer(int buffer) {
+		if (mElementBuffer != buffer) {
+			mElementBuffer = buffer;
+			mGL.glBindBuffer(GL20.GL_ELEMENT_ARRAY_BUFFER, buffer);
+		} else {
+			saved(1);
+		}
+	}
+
+	/**
+	 * The buffer is deleted by the caller, GL unbinds it.
+	 */
+	public void deleteBuffer(int buffer) {
+		if (mArrayBuffer == buffer) mArrayBuffer = 0;
+		if (mElementBuffer == buffer) mElementBuffer = 0;
+	}
+
+	/**
+	 * Enable the vertex attribute arrays of the locations set in the mask
+	 * and disable the others, a draw must not read an array left enabled by
+	 * the previous one.
+	 */
+	public void enableVertexAttributes(int mask) {
+		int changed = mEnabledAttributes ^ mask;
+		saved(Integer.bitCount(mask & mEnabledAttributes));
+		while (changed != 0) {
+			final int location = Integer.numberOfTrailingZeros(changed);
+			if ((mask & (1 << location)) != 0) {
+				mGL.glEnableVertexAttribArray(location);
+			} else {
+				mGL.glDisableVertexAttribArray(location);
+			}
+			changed &= changed - 1;
+		}
+		mEnabledAttributes = mask;
+	}
+
+	///////////////////////////////////////////////////////////////////////////////
+	//Textures
+	///////////////////////////////////////////////////////////////////////////////
+
+	/**
+	 * @param unit the index of the unit in {@link Caches#gTextureUnits}.
+	 */
+	public void activeTexture(int unit) {
+		if (mActiveTexture != unit) {
+			mActiveTexture = unit;
+			mGL.glActiveTexture(Caches.gTextureUnits[unit]);
+		} else {
+			saved(1);
+		}
+	}
+
+	/**
+	 * Bind the texture to the active unit.
+	 */
+	public void bindTexture(int texture) {
+		if (mTextures[mActiveTexture] != texture) {
+			mTextures[mActiveTexture] = texture;
+			mGL.glBindTexture(GL20.GL_TEXTURE_2D, texture);
+		} else {
+			saved(1);
+		}
+	}
+
+	/**
+	 * Unbind the texture from the active unit if it is bound.
+	 */
+	public void unbindTexture(int texture) {
+		if (mTextures[mActiveTexture] == texture) {
+			bindTexture(0);
+		}
+	}
+
+	/**
+	 * The texture is deleted by the caller, GL unbinds it from every unit.
+	 */
+	public void deleteTexture(int texture) {
+		for (int i = 0; i < mTextures.length; i ++) {
+			if (mTextures[i] == texture) mTextures[i] = 0;
+		}
+	}
+
+	///////////////////////////////////////////////////////////////////////////////
+	//Program
+	///////////////////////////////////////////////////////////////////////////////
+
+	public void useProgram(ShaderProgram program) {
+		final int handle = program != null ? program.getProgram() : 0;
+		if (mProgram != handle) {
+			mProgram = handle;
+			mGL.glUseProgram(handle);
+		} else {
+			saved(1);
+		}
+	}
+
+	/**
+	 * The program is deleted by the caller, a new one may get its handle.
+	 */
+	public void deleteProgram(int program) {
+		if (mProgram == program) {
+			// Still used by GL until another program is, issue the next use.
+			mProgram = -1;
+		}
+	}
 }
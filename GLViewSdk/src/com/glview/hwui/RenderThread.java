@@ -65,7 +65,10 @@ class RenderThread extends Thread {
 //			Looper.prepare();
 //		}
 		Looper.prepare1();
-		App.setGL20(new AndroidGL20());
+		// A GL20 backend installed before the render thread started (e.g. HeadlessGL20) wins.
+		if (App.getGL20() == null) {
+			App.setGL20(new AndroidGL20());
+		}
 		synchronized (this) {
             mLooper = Looper.myLooper();
             notifyAll();
@@ -34,6 +34,11 @@ public class Snapshot implements Poolable {
      * an FBO layer.
      */
 	public final static int kFlagFboTarget = 0x8;
+	/**
+	 * Indicates that the camera or the projection of the transform was
+	 * modified, for a 3D transform.
+	 */
+	public final static int kFlagProjectionSet = 0x10;
 	
 	Snapshot previous;
 	int flags;
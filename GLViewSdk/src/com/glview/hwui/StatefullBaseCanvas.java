@@ -256,6 +256,31 @@ abstract class StatefullBaseCanvas extends AbsGLCanvas {
 	protected void dirtyClip() {
 		mDirtyClip = true;
 	}
+
+	@Override
+	public boolean quickReject(float left, float top, float right, float bottom) {
+		final Rect clip = currentSnapshot().clipRect;
+		if (clip.isEmpty()) {
+			return true;
+		}
+		final float[] m = currentSnapshot().transform;
+		// The clip is only exact for 2D scales and translations.
+		if (m[1] != 0 || m[2] != 0 || m[3] != 0 || m[4] != 0 || m[6] != 0 || m[7] != 0
+				|| m[8] != 0 || m[9] != 0 || m[11] != 0 || m[14] != 0 || m[15] != 1) {
+			return false;
+		}
+		float l = m[0] * left + m[12];
+		float r = m[0] * right + m[12];
+		float t = m[5] * top + m[13];
+		float b = m[5] * bottom + m[13];
+		if (l > r) {
+			float tmp = l; l = r; r = tmp;
+		}
+		if (t > b) {
+			float tmp = t; t = b; b = tmp;
+		}
+		return l >= clip.right || r <= clip.left || t >= clip.bottom || b <= clip.top;
+	}
 	
 	@Override
     public void restore() {
@@ -2,9 +2,40 @@ package com.glview.hwui;
 
 import com.glview.graphics.RectF;
 
+/**
+ * A part of a texture, {@link #mRegion} is in texture coordinates.
+ * A bitmap packed in an atlas page is drawn from its region of the page,
+ * a bitmap with a texture of its own from the whole texture.
+ */
 public class TextureRegion {
 
 	public Texture mTexture;
-	public RectF mRegion;
+	public RectF mRegion = new RectF(0, 0, 1, 1);
+
+	public TextureRegion() {
+	}
+
+	public TextureRegion(Texture texture) {
+		mTexture = texture;
+	}
+
+	public void set(Texture texture, float u, float v, float u2, float v2) {
+		mTexture = texture;
+		mRegion.set(u, v, u2, v2);
+	}
+
+	/**
+	 * Map a position in the pixels of the bitmap to a texture coordinate.
+	 */
+	public float mapU(float x) {
+		return mRegion.left + x / mTexture.getWidth();
+	}
+
+	/**
+	 * Map a position in the pixels of the bitmap to a texture coordinate.
+	 */
+	public float mapV(float y) {
+		return mRegion.top + y / mTexture.getHeight();
+	}
 
 }
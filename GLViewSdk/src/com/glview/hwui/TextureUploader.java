@@ -0,0 +1,244 @@
+package com.glview.hwui;
+
+import javax.microedition.khronos.egl.EGLContext;
+import javax.microedition.khronos.egl.EGLSurface;
+
+import android.os.Build;
+import android.os.Process;
+import android.util.Log;
+
+import com.glview.App;
+import com.glview.graphics.Bitmap;
+import com.glview.hwui.cache.TextureCache;
+import com.glview.hwui.task.Task;
+import com.glview.hwui.task.TaskHandler;
+import com.glview.libgdx.graphics.opengl.GL20;
+import com.glview.libgdx.graphics.opengl.GL30;
+import com.glview.thread.Looper;
+
+/**
+ * Uploads bitmaps to textures in a background thread, on an EGL context sharing
+ * the textures of the RenderThread's context, so a frame is not stalled by the
+ * upload of a big bitmap the first time it is drawn.
+ * <p>
+ * Every upload is waited for in the upload thread, with a fence on GLES 3.0 and
+ * glFinish otherwise, before it is handed back to the RenderThread, so the
+ * RenderThread only ever draws completed textures.
+ * @see TextureCache#setAsyncUploadEnabled(boolean)
+ */
+public final class TextureUploader {
+
+	final static String TAG = "TextureUploader";
+	final static boolean DEBUG = false;
+
+	/*
+	 * How long the upload thread waits for the fence of one upload.
+	 */
+	final static long FENCE_TIMEOUT_NS = 1000 * 1000 * 1000L;
+
+	/**
+	 * Called in RenderThread when an upload is done.
+	 */
+	public interface Callback {
+		void onUploadFinished(Upload upload);
+	}
+
+	/**
+	 * A bitmap to upload to a new texture.
+	 */
+	public final static class Upload {
+		public final Bitmap mBitmap;
+		public final Texture mTexture = new Texture();
+		final boolean mMipMap;
+
+		/**
+		 * Set before the callback, false if the bitmap was recycled or freed.
+		 */
+		public boolean mSucceeded;
+
+		public Upload(Bitmap bitmap, boolean mipMap) {
+			mBitmap = bitmap;
+			mMipMap = mipMap;
+		}
+	}
+
+	final EglManager mEglManager;
+	final TaskHandler mRenderHandler;
+
+	UploadThread mThread;
+	TaskHandler mHandler;
+
+	/*
+	 * Only used in the upload thread.
+	 */
+	final int[] mIds = new int[1];
+	/*
+	 * Null before GLES 3.0, the uploads wait with glFinish.
+	 */
+	final GL30 mGL30;
+
+	volatile boolean mRunning = false;
+
+	TextureUploader(EglManager eglManager) {
+		mEglManager = eglManager;
+		mRenderHandler = new TaskHandler(RenderThread.getRenderThreadLooper());
+		// The upload context is shared with ours, it has the same version.
+		mGL30 = Caches.getInstance().extensions.getGL30();
+	}
+
+	/**
+	 * Start the upload thread and wait for its context.
+	 * Must be called in RenderThread while our context is current.
+	 * @return false if the shared context can't be created.
+	 */
+	boolean start() {
+		if (mThread != null) return mRunning;
+		EGLContext context = mEglManager.createSharedContext();
+		if (context == null) {
+			return false;
+		}
+		EGLSurface surface = mEglManager.createPbufferSurface();
+		mThread = new UploadThread(context, surface);
+		mThread.start();
+		synchronized (this) {
+			while (mThread.isAlive() && mHandler == null) {
+				try {
+					wait();
+				} catch (InterruptedException e) {
+				}
+			}
+		}
+		return mRunning;
+	}
+
+	boolean isRunning() {
+		return mRunning;
+	}
+
+	/**
+	 * Queue an upload, the callback is called in RenderThread when it's done.
+	 * @return false if the upload thread is not running.
+	 */
+	public boolean upload(final Upload upload, final Callback callback) {
+		if (!mRunning) return false;
+		return mHandler.post(new Task() {
+			@Override
+			public void doTask() {
+				performUpload(upload);
+				mRenderHandler.post(new Task() {
+					@Override
+					public void doTask() {
+						callback.onUploadFinished(upload);
+					}
+				});
+			}
+		});
+	}
+
+	/**
+	 * Stop the upload thread, the uploads still queued are dropped.
+	 */
+	void quit() {
+		if (mThread == null) return;
+		mRunning = false;
+		if (mHandler != null) {
+			mHandler.removeCallbacksAndMessages(null);
+			mHandler.getLooper().quit();
+		}
+		mThread = null;
+		mHandler = null;
+	}
+
+	/*
+	 * Run in the upload thread, the same steps as TextureCache#generateTexture.
+	 */
+	void performUpload(Upload upload) {
+		final Bitmap bitmap = upload.mBitmap;
+		android.graphics.Bitmap aBitmap = bitmap.getBitmap();
+		if (aBitmap == null || aBitmap.isRecycled()) {
+			upload.mSucceeded = false;
+			return;
+		}
+		final GL20 gl = App.getGL20();
+		final Texture texture = upload.mTexture;
+
+		GLId.glGenTextures(1, mIds, 0);
+		texture.mId = mIds[0];
+		texture.mGenerationId = Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB_MR1 ? aBitmap.getGenerationId() : 0;
+		texture.setWidth(aBitmap.getWidth());
+		texture.setHeight(aBitmap.getHeight());
+		texture.setByteCount(aBitmap.getRowBytes() * aBitmap.getHeight());
+		texture.setFormat(TextureCache.getInternalFormat(aBitmap));
+		texture.setType(TextureCache.getType(aBitmap));
+
+		gl.glBindTexture(GL20.GL_TEXTURE_2D, texture.mId);
+		gl.glTexImage2D(GL20.GL_TEXTURE_2D, 0, texture.getFormat(), aBitmap, texture.getType(), 0);
+		if (upload.mMipMap) {
+			texture.setMipMap(true);
+			gl.glGenerateMipmap(GL20.GL_TEXTURE_2D);
+		}
+		gl.glTexParameterf(GL20.GL_TEXTURE_2D, GL20.GL_TEXTURE_WRAP_S,
+				GL20.GL_CLAMP_TO_EDGE);
+		gl.glTexParameterf(GL20.GL_TEXTURE_2D, GL20.GL_TEXTURE_WRAP_T,
+				GL20.GL_CLAMP_TO_EDGE);
+		gl.glTexParameterf(GL20.GL_TEXTURE_2D,
+				GL20.GL_TEXTURE_MIN_FILTER, GL20.GL_LINEAR);
+		gl.glTexParameterf(GL20.GL_TEXTURE_2D,
+				GL20.GL_TEXTURE_MAG_FILTER, GL20.GL_LINEAR);
+		gl.glBindTexture(GL20.GL_TEXTURE_2D, 0);
+
+		waitForCompletion(gl);
+		bitmap.freeBitmap();
+		upload.mSucceeded = true;
+		if (DEBUG) Log.d(TAG, "uploaded " + bitmap + ", bytes=" + texture.getByteCount());
+	}
+
+	/*
+	 * The texture may only be drawn by the other context once the upload is complete.
+	 */
+	private void waitForCompletion(GL20 gl) {
+		final GL30 gl30 = mGL30;
+		if (gl30 != null) {
+			long fence = gl30.glFenceSync(GL30.GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+			if (fence != 0) {
+				gl30.glClientWaitSync(fence, GL30.GL_SYNC_FLUSH_COMMANDS_BIT, FENCE_TIMEOUT_NS);
+				gl30.glDeleteSync(fence);
+				return;
+			}
+		}
+		gl.glFinish();
+	}
+
+	class UploadThread extends Thread {
+
+		final EGLContext mContext;
+		final EGLSurface mSurface;
+
+		UploadThread(EGLContext context, EGLSurface surface) {
+			mContext = context;
+			mSurface = surface;
+		}
+
+		@Override
+		public void run() {
+			setName("TextureUploader " + getId());
+			Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+			final boolean current = EglManager.makeCurrent(mSurface, mContext);
+			if (!current) {
+				Log.w(TAG, "Can't make the shared context current, upload in RenderThread.");
+			}
+			Looper.prepare();
+			synchronized (TextureUploader.this) {
+				mHandler = new TaskHandler(Looper.myLooper());
+				mRunning = current;
+				TextureUploader.this.notifyAll();
+			}
+			if (current) {
+				Looper.loop();
+			}
+			EglManager.destroySharedContext(mSurface, mContext);
+			Log.i(TAG, "quit tid=" + getId());
+		}
+	}
+
+}
@@ -2,7 +2,7 @@ package com.glview.hwui.cache;
 
 import java.nio.IntBuffer;
 
-import android.opengl.GLES20;
+import com.glview.App;
 
 public class FboCache {
 	
@@ -16,17 +16,17 @@ public class FboCache {
 	public int get() {
 		if (mSize <= 0) {
 			mIntBuffer.clear();
-			GLES20.glGenFramebuffers(1, mIntBuffer);
+			App.getGL20().glGenFramebuffers(1, mIntBuffer);
 			return mIntBuffer.get(0);
 		}
-		return mCaches[mSize --];
+		return mCaches[-- mSize];
 	}
 	
 	public boolean push(int frameBuffer) {
 		if (mSize >= MAX_SIZE) {
 			mIntBuffer.clear();
 			mIntBuffer.put(0, frameBuffer);
-			GLES20.glDeleteFramebuffers(1, mIntBuffer);
+			App.getGL20().glDeleteFramebuffers(1, mIntBuffer);
 			return false;
 		}
 		mCaches[mSize ++] = frameBuffer;
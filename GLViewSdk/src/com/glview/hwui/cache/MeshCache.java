@@ -27,9 +27,8 @@ public class MeshCache {
 			mCache.put(basicMesh.getKey(), entry);
 		}
 		entry.basicMesh = basicMesh;
-		if (!entry.valid || basicMesh.needReload()) {
-			entry.mesh.setVertices(basicMesh.getVertices());
-			entry.mesh.setIndices(basicMesh.getIndices());
+		if (!entry.valid || basicMesh.needReload() || entry.generationId != basicMesh.getGenerationId()) {
+			entry.generationId = basicMesh.copyTo(entry.mesh);
 			entry.valid = true;
 		}
 		return entry.mesh;
@@ -39,6 +38,7 @@ public class MeshCache {
 		Mesh mesh;
 		BasicMesh basicMesh;
 		boolean valid = false;
+		int generationId;
 	}
 	
 	class MeshLruCache extends LruCache<Object, MeshDescription> {
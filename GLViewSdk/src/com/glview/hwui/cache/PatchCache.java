@@ -7,6 +7,7 @@ import android.support.v4.util.LruCache;
 
 import com.glview.graphics.drawable.ninepatch.NinePatch;
 import com.glview.graphics.drawable.ninepatch.NinePatchChunk;
+import com.glview.hwui.TextureRegion;
 import com.glview.libgdx.graphics.Mesh;
 import com.glview.libgdx.graphics.Mesh.VertexDataType;
 import com.glview.libgdx.graphics.VertexAttribute;
@@ -45,10 +46,20 @@ public class PatchCache {
 	}
 	
 	public Mesh get(int drawWidth, int drawHeight, NinePatch ninePatch) {
+		return get(drawWidth, drawHeight, ninePatch, null);
+	}
+	
+	/**
+	 * @param region the part of the texture the patch is drawn from, null for all of it.
+	 */
+	public Mesh get(int drawWidth, int drawHeight, NinePatch ninePatch, TextureRegion region) {
 		String key = "" + drawWidth + "*" + drawHeight + "+" + ninePatch.getBitmap();
+		if (region != null) {
+			key += "@" + region.mRegion.left + "," + region.mRegion.top;
+		}
 		Mesh mesh = mCache.get(key);
 		if (mesh == null) {
-			mesh = create(drawWidth, drawHeight, ninePatch);
+			mesh = create(drawWidth, drawHeight, ninePatch, region);
 			if (mesh != null) {
 				mCache.put(key, mesh);
 			}
@@ -56,7 +67,29 @@ public class PatchCache {
 		return mesh;
 	}
 	
-	private Mesh create(int width, int height, NinePatch patch) {
+	/**
+	 * Compute the horizontal dividers of the patch drawn with the width, the same as
+	 * its mesh, for drawing it as quads.
+	 * @param x output, the positions of the dividers from the left of the patch
+	 * @param u output, the texture coordinates of the dividers in the bitmap
+	 * @return the number of dividers, 0 if the patch can't be drawn
+	 */
+	public static int stretchX(NinePatch patch, int drawWidth, float[] x, float[] u) {
+		if (drawWidth < 0) return 0;
+		final int size = patch.getBitmap().getWidth();
+		return stretch(x, u, patch.getChunk().mDivX, size, drawWidth, size);
+	}
+	
+	/**
+	 * The vertical dividers, see {@link #stretchX(NinePatch, int, float[], float[])}.
+	 */
+	public static int stretchY(NinePatch patch, int drawHeight, float[] y, float[] v) {
+		if (drawHeight < 0) return 0;
+		final int size = patch.getBitmap().getHeight();
+		return stretch(y, v, patch.getChunk().mDivY, size, drawHeight, size);
+	}
+	
+	private Mesh create(int width, int height, NinePatch patch, TextureRegion region) {
 		
 		NinePatchChunk chunk = patch.getChunk();
 		
@@ -66,6 +99,10 @@ public class PatchCache {
 		
 	     int nx = stretch(mDivX, mDivU, chunk.mDivX, patch.getBitmap().getWidth(), drawWidth, patch.getBitmap().getWidth());
 	     int ny = stretch(mDivY, mDivV, chunk.mDivY, patch.getBitmap().getHeight(), drawHeight, patch.getBitmap().getHeight());
+	     if (region != null) {
+	    	 mapToRegion(mDivU, nx, region.mRegion.left, region.mRegion.right);
+	    	 mapToRegion(mDivV, ny, region.mRegion.top, region.mRegion.bottom);
+	     }
 	
 	     prepareVertexData(mDivX, mDivY, mDivU, mDivV, nx, ny, chunk.mColor);
 	     
@@ -78,6 +115,13 @@ public class PatchCache {
 		return mesh;
 	}
 	
+	private static void mapToRegion(float[] u, int count, float start, float end) {
+		final float size = end - start;
+		for (int i = 0; i < count; i ++) {
+			u[i] = start + u[i] * size;
+		}
+	}
+	
 	private void prepareVertexData(float x[], float y[], float u[], float v[],
 			int nx, int ny, int[] color) {
 		/*
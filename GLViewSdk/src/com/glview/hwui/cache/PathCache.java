@@ -2,25 +2,243 @@ package com.glview.hwui.cache;
 
 import android.support.v4.util.LruCache;
 
-import com.glview.graphics.mesh.BasicMesh;
+import com.glview.graphics.Path;
+import com.glview.graphics.Path.Direction;
 import com.glview.hwui.GLPaint;
+import com.glview.hwui.PathTessellator;
+import com.glview.hwui.PathTessellator.VertexBuffer;
+import com.glview.libgdx.graphics.Mesh;
+import com.glview.libgdx.graphics.VertexAttribute;
+import com.glview.libgdx.graphics.VertexAttributes;
+import com.glview.libgdx.graphics.VertexAttributes.Usage;
+import com.glview.libgdx.graphics.glutils.ShaderProgram;
 
+/**
+ * The tessellated paths, kept in static vertex buffers until the path or the
+ * paint changes.
+ * <p>
+ * A path is keyed by its {@link Path#getGenerationId()}, so an unchanged path
+ * is not looked at again, the shapes of the canvas by their size at the
+ * origin. The stroke of the paint is in the key, and the scale of the
+ * transform rounded up to a power of 2, so animating a scale tessellates a
+ * path a few times only.
+ */
 public class PathCache {
-	
+
 	final static int DEFAULT_VERTEX_CACHE_SIZE = 10 * 1024 * 1024; //10MB
-	
+
+	final static int TYPE_PATH = 0;
+	final static int TYPE_OVAL = 1;
+	final static int TYPE_ROUND_RECT = 2;
+
+	final static VertexAttributes sAttributes = new VertexAttributes(new VertexAttribute(Usage.Position,
+			2, ShaderProgram.POSITION_ATTRIBUTE));
+
 	PathLruCache mCache = new PathLruCache(DEFAULT_VERTEX_CACHE_SIZE);
 
-	public BasicMesh getCircle(float xradius, float yradius, GLPaint paint) {
-		
-		return null;
+	final PathDescription mLookup = new PathDescription();
+	final VertexBuffer mVertices = new VertexBuffer();
+
+	/*
+	 * The last path too large to be cached, disposed by the next one.
+	 */
+	PathMesh mUncached;
+
+	public void clear() {
+		mCache.evictAll();
+		if (mUncached != null) {
+			mUncached.mesh.dispose();
+			mUncached = null;
+		}
+	}
+
+	/**
+	 * @param scale the scale of the transform the path is drawn with.
+	 * @return the triangles of the path, null if there are none.
+	 */
+	public PathMesh get(Path path, GLPaint paint, float scale) {
+		final PathDescription key = mLookup;
+		key.set(TYPE_PATH, path.getGenerationId(), 0, 0, 0, 0, paint, scale);
+		PathMesh entry = mCache.get(key);
+		if (entry == null) {
+			entry = tessellate(path, paint, key);
+		}
+		return entry;
 	}
-	
-	class PathLruCache extends LruCache<Object, BasicMesh> {
+
+	/**
+	 * @return the triangles of an oval of the size at the origin.
+	 */
+	public PathMesh getOval(float width, float height, GLPaint paint, float scale) {
+		final PathDescription key = mLookup;
+		key.set(TYPE_OVAL, 0, width, height, 0, 0, paint, scale);
+		PathMesh entry = mCache.get(key);
+		if (entry == null) {
+			Path path = new Path();
+			path.addOval(0, 0, width, height, Direction.CW);
+			entry = tessellate(path, paint, key);
+		}
+		return entry;
+	}
+
+	/**
+	 * @return the triangles of a round rect of the size at the origin.
+	 */
+	public PathMesh getRoundRect(float width, float height, float rx, float ry, GLPaint paint, float scale) {
+		final PathDescription key = mLookup;
+		key.set(TYPE_ROUND_RECT, 0, width, height, rx, ry, paint, scale);
+		PathMesh entry = mCache.get(key);
+		if (entry == null) {
+			Path path = new Path();
+			path.addRoundRect(0, 0, width, height, rx, ry, Direction.CW);
+			entry = tessellate(path, paint, key);
+		}
+		return entry;
+	}
+
+	private PathMesh tessellate(Path path, GLPaint paint, PathDescription key) {
+		final VertexBuffer vertices = mVertices;
+		vertices.reset();
+		final int count = PathTessellator.tessellatePath(path, paint, key.scale, vertices);
+		if (count == 0) {
+			return null;
+		}
+		Mesh mesh = new Mesh(true, count, 0, sAttributes);
+		mesh.setVertices(vertices.getVertices(), 0, vertices.size());
+		PathMesh entry = new PathMesh(mesh, count);
+		if (entry.sizeOf() > DEFAULT_VERTEX_CACHE_SIZE / 4) {
+			if (mUncached != null) {
+				mUncached.mesh.dispose();
+			}
+			mUncached = entry;
+		} else {
+			mCache.put(new PathDescription(key), entry);
+		}
+		return entry;
+	}
+
+	/**
+	 * Vertices of 2 floats drawn with GL_TRIANGLES.
+	 */
+	public static final class PathMesh {
+		public final Mesh mesh;
+		public final int vertexCount;
+
+		PathMesh(Mesh mesh, int vertexCount) {
+			this.mesh = mesh;
+			this.vertexCount = vertexCount;
+		}
+
+		int sizeOf() {
+			return vertexCount * 2 * 4;
+		}
+	}
+
+	static final class PathDescription {
+		int type;
+		int generationId;
+		float width, height, rx, ry;
+		GLPaint.Style style;
+		float strokeWidth;
+		GLPaint.Cap cap;
+		GLPaint.Join join;
+		float miter;
+		float scale;
+
+		PathDescription() {
+		}
+
+		PathDescription(PathDescription src) {
+			type = src.type;
+			generationId = src.generationId;
+			width = src.width;
+			height = src.height;
+			rx = src.rx;
+			ry = src.ry;
+			style = src.style;
+			strokeWidth = src.strokeWidth;
+			cap = src.cap;
+			join = src.join;
+			miter = src.miter;
+			scale = src.scale;
+		}
+
+		void set(int type, int generationId, float width, float height, float rx, float ry,
+				GLPaint paint, float scale) {
+			this.type = type;
+			this.generationId = generationId;
+			this.width = width;
+			this.height = height;
+			this.rx = rx;
+			this.ry = ry;
+			style = paint.getStyle();
+			if (style == GLPaint.Style.FILL) {
+				// The stroke is not drawn.
+				strokeWidth = 0;
+				cap = null;
+				join = null;
+				miter = 0;
+			} else {
+				strokeWidth = paint.getStrokeWidth();
+				cap = paint.getStrokeCap();
+				join = paint.getStrokeJoin();
+				miter = join == GLPaint.Join.MITER ? paint.getStrokeMiter() : 0;
+			}
+			this.scale = scaleBucket(scale);
+		}
+
+		static float scaleBucket(float scale) {
+			float bucket = 1;
+			while (bucket < scale) bucket *= 2;
+			while (bucket / 2 >= scale && bucket > 1f / 16) bucket /= 2;
+			return bucket;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) return true;
+			if (!(o instanceof PathDescription)) return false;
+			PathDescription d = (PathDescription) o;
+			return type == d.type && generationId == d.generationId
+					&& width == d.width && height == d.height && rx == d.rx && ry == d.ry
+					&& style == d.style && strokeWidth == d.strokeWidth
+					&& cap == d.cap && join == d.join && miter == d.miter
+					&& scale == d.scale;
+		}
+
+		@Override
+		public int hashCode() {
+			int hash = type;
+			hash = hash * 31 + generationId;
+			hash = hash * 31 + Float.floatToIntBits(width);
+			hash = hash * 31 + Float.floatToIntBits(height);
+			hash = hash * 31 + Float.floatToIntBits(rx);
+			hash = hash * 31 + Float.floatToIntBits(ry);
+			hash = hash * 31 + style.ordinal();
+			hash = hash * 31 + Float.floatToIntBits(strokeWidth);
+			hash = hash * 31 + (cap != null ? cap.ordinal() + 1 : 0);
+			hash = hash * 31 + (join != null ? join.ordinal() + 1 : 0);
+			hash = hash * 31 + Float.floatToIntBits(miter);
+			hash = hash * 31 + Float.floatToIntBits(scale);
+			return hash;
+		}
+	}
+
+	class PathLruCache extends LruCache<PathDescription, PathMesh> {
 
 		public PathLruCache(int maxSize) {
 			super(maxSize);
 		}
-		
+
+		@Override
+		protected int sizeOf(PathDescription key, PathMesh value) {
+			return value.sizeOf();
+		}
+
+		@Override
+		protected void entryRemoved(boolean evicted, PathDescription key, PathMesh oldValue,
+				PathMesh newValue) {
+			oldValue.mesh.dispose();
+		}
 	}
 }
@@ -0,0 +1,247 @@
+package com.glview.hwui.cache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import android.os.Process;
+import android.util.Log;
+
+import com.glview.libgdx.graphics.glutils.ShaderProgram;
+import com.glview.libgdx.graphics.opengl.GL30;
+
+/**
+ * The linked programs of the {@link ProgramCache} kept in a file, so the
+ * next start of the app loads them with glProgramBinary instead of compiling
+ * their sources.
+ * <p>
+ * A binary is keyed by a hash of the sources of its program. The file is
+ * only used by the same driver, it starts empty when the GL_VENDOR,
+ * GL_RENDERER or GL_VERSION strings change. The file is written in a
+ * background thread after new programs are linked.
+ */
+class ProgramBinaryCache {
+
+	final static String TAG = "ProgramBinaryCache";
+
+	final static String FILE_NAME = "glview_programs.bin";
+
+	final static int MAGIC = 0x474c5642; // "GLVB"
+	final static int VERSION = 1;
+
+	/*
+	 * Shaders generating their sources, a blur of any radius for example,
+	 * can't fill the file.
+	 */
+	final static int MAX_SIZE = 2 * 1024 * 1024; //2MB
+
+	final static int KEEP_ALIVE_SECONDS = 10;
+
+	final static ThreadPoolExecutor sExecutor = new ThreadPoolExecutor(1, 1, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+			new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+				@Override
+				public Thread newThread(final Runnable r) {
+					return new Thread(TAG) {
+						@Override
+						public void run() {
+							Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+							r.run();
+						}
+					};
+				}
+			});
+	static {
+		sExecutor.allowCoreThreadTimeOut(true);
+	}
+
+	final GL30 mGL;
+	final File mFile;
+	final String mDriver;
+
+	/*
+	 * Read by the RenderThread and the saving thread.
+	 */
+	final Map<Long, Binary> mBinaries = new HashMap<Long, Binary>();
+	int mSize;
+
+	volatile boolean mSaveScheduled;
+
+	final int[] mFormat = new int[1];
+
+	ProgramBinaryCache(GL30 gl, File dir, String driver) {
+		mGL = gl;
+		mFile = new File(dir, FILE_NAME);
+		mDriver = driver;
+		load();
+	}
+
+	/**
+	 * @return a hash of the sources of the program, the key of its binary.
+	 */
+	static long hashSources(String vertexShader, String fragmentShader) {
+		// 64 bits FNV-1a.
+		long hash = 0xcbf29ce484222325L;
+		hash = hash(hash, vertexShader);
+		hash = (hash ^ 0xff) * 0x100000001b3L;
+		return hash(hash, fragmentShader);
+	}
+
+	private static long hash(long hash, String s) {
+		final int length = s.length();
+		for (int i = 0; i < length; i ++) {
+			hash = (hash ^ s.charAt(i)) * 0x100000001b3L;
+		}
+		return hash;
+	}
+
+	/**
+	 * Link the program from its binary if there is one.
+	 * @return false if the program must be compiled.
+	 */
+	boolean load(long key, ShaderProgram program) {
+		Binary binary;
+		synchronized (mBinaries) {
+			binary = mBinaries.get(key);
+		}
+		if (binary == null) {
+			return false;
+		}
+		if (program.compileBinary(mGL, binary.format, binary.data)) {
+			return true;
+		}
+		Log.w(TAG, "Binary of program " + Long.toHexString(key) + " rejected, compile it");
+		synchronized (mBinaries) {
+			if (mBinaries.remove(key) != null) {
+				mSize -= binary.data.length;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Keep the binary of the compiled program, saved in the file later.
+	 */
+	void store(long key, ShaderProgram program) {
+		final byte[] data = program.getProgramBinary(mGL, mFormat);
+		if (data == null) {
+			return;
+		}
+		synchronized (mBinaries) {
+			if (mSize + data.length > MAX_SIZE) {
+				return;
+			}
+			Binary old = mBinaries.put(key, new Binary(mFormat[0], data));
+			mSize += data.length - (old != null ? old.data.length : 0);
+		}
+		scheduleSave();
+	}
+
+	private void scheduleSave() {
+		if (mSaveScheduled) return;
+		mSaveScheduled = true;
+		sExecutor.execute(new Runnable() {
+			@Override
+			public void run() {
+				mSaveScheduled = false;
+				save();
+			}
+		});
+	}
+
+	private void load() {
+		if (!mFile.exists()) {
+			return;
+		}
+		DataInputStream in = null;
+		try {
+			in = new DataInputStream(new BufferedInputStream(new FileInputStream(mFile)));
+			if (in.readInt() != MAGIC || in.readInt() != VERSION || !mDriver.equals(in.readUTF())) {
+				Log.i(TAG, "Discard the binaries of another driver");
+				return;
+			}
+			final int count = in.readInt();
+			for (int i = 0; i < count; i ++) {
+				final long key = in.readLong();
+				final int format = in.readInt();
+				final int length = in.readInt();
+				if (length <= 0 || mSize + length > MAX_SIZE) {
+					throw new IOException("Bad binary length " + length);
+				}
+				final byte[] data = new byte[length];
+				in.readFully(data);
+				mBinaries.put(key, new Binary(format, data));
+				mSize += length;
+			}
+		} catch (IOException e) {
+			Log.w(TAG, "Load " + mFile + " fail", e);
+			mBinaries.clear();
+			mSize = 0;
+		} finally {
+			close(in);
+		}
+	}
+
+	private void save() {
+		final HashMap<Long, Binary> binaries;
+		synchronized (mBinaries) {
+			binaries = new HashMap<Long, Binary>(mBinaries);
+		}
+		final File tmp = new File(mFile.getPath() + ".tmp");
+		DataOutputStream out = null;
+		try {
+			out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeUTF(mDriver);
+			out.writeInt(binaries.size());
+			for (Map.Entry<Long, Binary> entry : binaries.entrySet()) {
+				final Binary binary = entry.getValue();
+				out.writeLong(entry.getKey());
+				out.writeInt(binary.format);
+				out.writeInt(binary.data.length);
+				out.write(binary.data);
+			}
+			out.close();
+			out = null;
+			if (!tmp.renameTo(mFile)) {
+				throw new IOException("Rename " + tmp + " fail");
+			}
+		} catch (IOException e) {
+			Log.w(TAG, "Save " + mFile + " fail", e);
+			tmp.delete();
+		} finally {
+			close(out);
+		}
+	}
+
+	private static void close(Closeable closeable) {
+		if (closeable != null) {
+			try {
+				closeable.close();
+			} catch (IOException e) {
+			}
+		}
+	}
+
+	static final class Binary {
+		final int format;
+		final byte[] data;
+
+		Binary(int format, byte[] data) {
+			this.format = format;
+			this.data = data;
+		}
+	}
+}
@@ -1,41 +1,174 @@
 package com.glview.hwui.cache;
 
+import java.io.File;
+import java.nio.IntBuffer;
 import java.util.HashMap;
 import java.util.Map;
 
+import android.util.Log;
+
+import com.glview.graphics.shader.A8TextureShader;
 import com.glview.graphics.shader.BaseShader;
+import com.glview.graphics.shader.DefaultColorShader;
+import com.glview.graphics.shader.DefaultTextureShader;
+import com.glview.hwui.Caches;
 import com.glview.libgdx.graphics.glutils.ShaderProgram;
+import com.glview.libgdx.graphics.opengl.GL20;
+import com.glview.libgdx.graphics.opengl.GL30;
+import com.glview.utils.BufferUtils;
 import com.glview.view.GLRootView.CalledFromWrongThreadException;
 
+/**
+ * The programs of the shaders.
+ * <p>
+ * The shaders with a {@link BaseShader#getDescription()} share the program of
+ * their description, the others the program of their sources. With a
+ * directory set by {@link #setDiskCacheDirectory(File)} and a GLES 3.0
+ * driver, the linked programs are kept in a {@link ProgramBinaryCache}.
+ */
 public class ProgramCache {
-	
+
+	final static String TAG = "ProgramCache";
+
+	static volatile File sDiskCacheDirectory;
+
+	private Map<Long, ShaderProgram> mPrograms = new HashMap<Long, ShaderProgram>();
 	private Map<BaseShader, ShaderDescription> mCaches = new HashMap<BaseShader, ProgramCache.ShaderDescription>();
-	
+
+	ProgramBinaryCache mBinaryCache;
+	boolean mBinaryCacheInitialized = false;
+
 	Thread mTargetThread;
-	
+
 	public ProgramCache() {
 		mTargetThread = Thread.currentThread();
 	}
-	
+
+	/**
+	 * Keep the linked programs in a file of the directory, read when the
+	 * first program is linked. Can be called in any thread.
+	 */
+	public static void setDiskCacheDirectory(File dir) {
+		sDiskCacheDirectory = dir;
+	}
+
 	public ShaderProgram get(BaseShader shader) {
-		String vertexShader = shader.getVertexShader();
-		String fragmentShader = shader.getFragmentShader();
-		ShaderDescription program = mCaches.get(shader);
-		if (program == null) {
-			program = new ShaderDescription();
-			program.baseShader = shader;
-			program.program = new ShaderProgram(vertexShader, fragmentShader);
-			mCaches.put(shader, program);
-		}
-		program.baseShader = shader;
-		program.program.compile();
-		return program.program;
-	}
-	
+		final long description = shader.getDescription();
+		ShaderProgram program;
+		if (description != 0) {
+			program = mPrograms.get(description);
+			if (program == null) {
+				program = new ShaderProgram(shader.getVertexShader(), shader.getFragmentShader(), false);
+				mPrograms.put(description, program);
+			}
+		} else {
+			ShaderDescription entry = mCaches.get(shader);
+			if (entry == null) {
+				entry = new ShaderDescription();
+				entry.program = new ShaderProgram(shader.getVertexShader(), shader.getFragmentShader(), false);
+				mCaches.put(shader, entry);
+			}
+			entry.baseShader = shader;
+			program = entry.program;
+		}
+		compile(program);
+		return program;
+	}
+
+	/**
+	 * Compile the programs of the canvas, the text and the batches, so the
+	 * first frames drawing them don't. Our context must be current.
+	 */
+	public void precache() {
+		final long start = System.nanoTime();
+		for (int i = 0; i < 2; i ++) {
+			DefaultColorShader shader = new DefaultColorShader();
+			shader.setHasColorAttr(i == 1);
+			get(shader);
+		}
+		for (int i = 0; i < 4; i ++) {
+			DefaultTextureShader shader = new DefaultTextureShader();
+			shader.setHasTexcoordsAttr((i & 1) != 0);
+			shader.setHasColorAttr((i & 2) != 0);
+			get(shader);
+		}
+		for (int i = 0; i < 2; i ++) {
+			// The batches of bitmaps and of glyphs.
+			DefaultTextureShader shader = new DefaultTextureShader();
+			shader.setHasTexcoordsAttr(true);
+			shader.setHasColorAttr(true);
+			shader.setHasTotalColor(false);
+			shader.setA8Format(i == 1);
+			get(shader);
+		}
+		get(new A8TextureShader());
+		Log.i(TAG, "precache " + mPrograms.size() + " programs in "
+				+ (System.nanoTime() - start) / 1000000 + "ms");
+	}
+
+	private void compile(ShaderProgram program) {
+		if (program.isCompiled()) {
+			return;
+		}
+		final ProgramBinaryCache binaryCache = getBinaryCache();
+		if (binaryCache == null) {
+			program.compile();
+			return;
+		}
+		final long key = ProgramBinaryCache.hashSources(program.getVertexShaderSource(),
+				program.getFragmentShaderSource());
+		if (!binaryCache.load(key, program)) {
+			program.compile();
+			binaryCache.store(key, program);
+		}
+	}
+
+	private ProgramBinaryCache getBinaryCache() {
+		if (!mBinaryCacheInitialized) {
+			final File dir = sDiskCacheDirectory;
+			if (dir == null) {
+				// Set later, the next program may use it.
+				return null;
+			}
+			mBinaryCacheInitialized = true;
+			final GL30 gl = getGL30();
+			if (gl != null) {
+				mBinaryCache = new ProgramBinaryCache(gl, dir, getDriver(gl));
+			}
+		}
+		return mBinaryCache;
+	}
+
+	/*
+	 * glProgramBinary is in GLES 3.0.
+	 */
+	private static GL30 getGL30() {
+		final GL30 gl30 = Caches.getInstance().extensions.getGL30();
+		if (gl30 == null) {
+			return null;
+		}
+		final IntBuffer intbuf = BufferUtils.newIntBuffer(1);
+		gl30.glGetIntegerv(GL30.GL_NUM_PROGRAM_BINARY_FORMATS, intbuf);
+		if (intbuf.get(0) <= 0) {
+			Log.i(TAG, "No program binary format");
+			return null;
+		}
+		return gl30;
+	}
+
+	private static String getDriver(GL20 gl) {
+		return gl.glGetString(GL20.GL_VENDOR) + "/" + gl.glGetString(GL20.GL_RENDERER)
+				+ "/" + gl.glGetString(GL20.GL_VERSION);
+	}
+
 	public void clear() {
 		if (Thread.currentThread() != mTargetThread) {
 			throw new CalledFromWrongThreadException("Called from wrong thread.");
 		}
+		for (ShaderProgram program : mPrograms.values()) {
+			program.dispose();
+		}
+		mPrograms.clear();
 		for (BaseShader shader : mCaches.keySet()) {
 			ShaderDescription program = mCaches.get(shader);
 			if (program != null) {
@@ -44,17 +177,24 @@ public class ProgramCache {
 		}
 		mCaches.clear();
 	}
-	
+
+	/**
+	 * The shader changed its sources. The program of a description is kept,
+	 * other shaders may still be described the same.
+	 */
 	public void remove(BaseShader shader) {
 		if (Thread.currentThread() != mTargetThread) {
 			throw new CalledFromWrongThreadException("Called from wrong thread.");
 		}
+		if (shader.getDescription() != 0) {
+			return;
+		}
 		ShaderDescription program = mCaches.remove(shader);
 		if (program != null) {
 			program.program.dispose();
 		}
 	}
-	
+
 	static class ShaderDescription {
 		ShaderProgram program;
 		BaseShader baseShader;
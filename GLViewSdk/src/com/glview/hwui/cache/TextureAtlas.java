@@ -0,0 +1,253 @@
+package com.glview.hwui.cache;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.WeakHashMap;
+
+import android.graphics.Canvas;
+import android.util.Log;
+
+import com.glview.App;
+import com.glview.graphics.Bitmap;
+import com.glview.hwui.Caches;
+import com.glview.hwui.FrameInfo;
+import com.glview.hwui.Texture;
+import com.glview.hwui.TextureRegion;
+import com.glview.hwui.packer.MaxRectsPacker;
+import com.glview.hwui.packer.PackerRect;
+import com.glview.libgdx.graphics.opengl.GL20;
+
+/**
+ * Packs small immutable bitmaps into a few shared textures with a {@link MaxRectsPacker},
+ * so icons and nine-patches drawn one after another use the same texture and
+ * can go in one draw call of the sprite batch.
+ * <p>
+ * Every bitmap keeps a border of 1 pixel, a copy of its edge pixels, so linear
+ * filtering never samples its neighbours. The packer can't free space, a page
+ * is only given back as a whole: the pages are entries of the LRU of the
+ * {@link TextureCache}, counted in its budget, and a page evicted or holding
+ * no live bitmap anymore is deleted with its regions. The regions are keyed
+ * weakly, a bitmap gone drops its region. When all the pages are full the
+ * bitmaps get textures of their own again.
+ * Runs in RenderThread.
+ */
+class TextureAtlas {
+
+	final static String TAG = "TextureAtlas";
+
+	final static boolean DEBUG = false;
+
+	final static int PAGE_SIZE = 1024;
+	final static int PAGE_BYTE_COUNT = PAGE_SIZE * PAGE_SIZE * 4;
+	final static int MAX_PAGES = 2;
+	/*
+	 * Bigger bitmaps waste too much of a page and rarely repeat in a list.
+	 */
+	final static int MAX_BITMAP_SIZE = 192;
+	final static int BORDER = 1;
+
+	static class Page {
+		final Texture mTexture = new Texture();
+		final MaxRectsPacker mPacker = new MaxRectsPacker(PAGE_SIZE, PAGE_SIZE);
+		/*
+		 * Set when an insert failed, a full page is not searched again.
+		 */
+		boolean mFull;
+	}
+
+	final TextureCache mTextureCache;
+	final ArrayList<Page> mPages = new ArrayList<Page>(MAX_PAGES);
+	final WeakHashMap<Bitmap, TextureRegion> mRegions = new WeakHashMap<Bitmap, TextureRegion>();
+
+	final android.graphics.Rect mSrc = new android.graphics.Rect();
+	final android.graphics.Rect mDst = new android.graphics.Rect();
+
+	TextureAtlas(TextureCache textureCache) {
+		mTextureCache = textureCache;
+	}
+
+	/**
+	 * @return the region of a bitmap packed already, or null.
+	 */
+	TextureRegion peek(Bitmap bitmap) {
+		final TextureRegion region = mRegions.get(bitmap);
+		if (region != null) {
+			// Keep the page recent in the LRU.
+			mTextureCache.touch(getPage(region));
+		}
+		return region;
+	}
+
+	Page getPage(TextureRegion region) {
+		for (int i = 0; i < mPages.size(); i ++) {
+			final Page page = mPages.get(i);
+			if (page.mTexture == region.mTexture) {
+				return page;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Pack and upload the bitmap.
+	 * @return the region of the bitmap in a page, or null if it can't be packed.
+	 */
+	TextureRegion pack(Bitmap bitmap) {
+		if (!canPack(bitmap)) {
+			return null;
+		}
+		android.graphics.Bitmap aBitmap = bitmap.getBitmap();
+		if (aBitmap == null || aBitmap.isRecycled() || aBitmap.getConfig() != android.graphics.Bitmap.Config.ARGB_8888) {
+			return null;
+		}
+		final int width = aBitmap.getWidth() + BORDER * 2;
+		final int height = aBitmap.getHeight() + BORDER * 2;
+		Page page = null;
+		PackerRect rect = null;
+		for (int i = 0; i < mPages.size() && rect == null; i ++) {
+			page = mPages.get(i);
+			if (!page.mFull) {
+				rect = page.mPacker.insert(width, height);
+				page.mFull = rect == null;
+			}
+		}
+		if (rect == null) {
+			if (mPages.size() == MAX_PAGES || !mTextureCache.canCachePage(PAGE_BYTE_COUNT)) {
+				return null;
+			}
+			page = createPage();
+			rect = page.mPacker.insert(width, height);
+			if (rect == null) {
+				return null;
+			}
+		}
+		upload(page, rect.rect().left, rect.rect().top, aBitmap);
+
+		TextureRegion region = new TextureRegion();
+		final float inv = 1.0f / PAGE_SIZE;
+		final int left = rect.rect().left + BORDER;
+		final int top = rect.rect().top + BORDER;
+		region.set(page.mTexture, left * inv, top * inv,
+				(left + bitmap.getWidth()) * inv, (top + bitmap.getHeight()) * inv);
+		mRegions.put(bitmap, region);
+		bitmap.freeBitmap();
+		if (DEBUG) Log.d(TAG, "pack " + bitmap + " to page " + mPages.indexOf(page) + ", " + rect);
+		return region;
+	}
+
+	/*
+	 * Mutable bitmaps may change, mipmaps can't be built for a part of a texture.
+	 */
+	boolean canPack(Bitmap bitmap) {
+		return !bitmap.isRecycled() && !bitmap.isMutable() && !bitmap.hasMipMap()
+				&& bitmap.getWidth() <= MAX_BITMAP_SIZE && bitmap.getHeight() <= MAX_BITMAP_SIZE
+				&& bitmap.getWidth() > 0 && bitmap.getHeight() > 0;
+	}
+
+	Page createPage() {
+		Page page = new Page();
+		Texture texture = page.mTexture;
+		texture.setWidth(PAGE_SIZE);
+		texture.setHeight(PAGE_SIZE);
+		texture.setFormat(GL20.GL_RGBA);
+		texture.setType(GL20.GL_UNSIGNED_BYTE);
+		texture.setByteCount(PAGE_BYTE_COUNT);
+		mTextureCache.generateTexture(texture);
+		mPages.add(page);
+		mTextureCache.putPage(page, texture);
+		Log.d(TAG, "create atlas page " + mPages.size());
+		return page;
+	}
+
+	/*
+	 * Copy the bitmap with its extruded border and upload it in one call.
+	 */
+	void upload(Page page, int x, int y, android.graphics.Bitmap aBitmap) {
+		final int w = aBitmap.getWidth();
+		final int h = aBitmap.getHeight();
+		android.graphics.Bitmap padded = android.graphics.Bitmap.createBitmap(w + BORDER * 2, h + BORDER * 2,
+				android.graphics.Bitmap.Config.ARGB_8888);
+		Canvas canvas = new Canvas(padded);
+		canvas.drawBitmap(aBitmap, BORDER, BORDER, null);
+		// Edges
+		extrude(canvas, aBitmap, 0, 0, w, 1, 1, 0, w + 1, 1);
+		extrude(canvas, aBitmap, 0, h - 1, w, h, 1, h + 1, w + 1, h + 2);
+		extrude(canvas, aBitmap, 0, 0, 1, h, 0, 1, 1, h + 1);
+		extrude(canvas, aBitmap, w - 1, 0, w, h, w + 1, 1, w + 2, h + 1);
+		// Corners
+		extrude(canvas, aBitmap, 0, 0, 1, 1, 0, 0, 1, 1);
+		extrude(canvas, aBitmap, w - 1, 0, w, 1, w + 1, 0, w + 2, 1);
+		extrude(canvas, aBitmap, 0, h - 1, 1, h, 0, h + 1, 1, h + 2);
+		extrude(canvas, aBitmap, w - 1, h - 1, w, h, w + 1, h + 1, w + 2, h + 2);
+
+		final Caches caches = Caches.getInstance();
+		caches.bindTexture(page.mTexture);
+		App.getGL20().glTexSubImage2D(GL20.GL_TEXTURE_2D, 0, x, y, padded,
+				page.mTexture.getFormat(), page.mTexture.getType());
+		caches.frameInfo.add(FrameInfo.UPLOAD_BYTES, padded.getRowBytes() * padded.getHeight());
+		padded.recycle();
+	}
+
+	private void extrude(Canvas canvas, android.graphics.Bitmap aBitmap, int sl, int st, int sr, int sb,
+			int dl, int dt, int dr, int db) {
+		mSrc.set(sl, st, sr, sb);
+		mDst.set(dl, dt, dr, db);
+		canvas.drawBitmap(aBitmap, mSrc, mDst, null);
+	}
+
+	int getPageCount() {
+		return mPages.size();
+	}
+
+	int getRegionCount() {
+		return mRegions.size();
+	}
+
+	/**
+	 * Called by the {@link TextureCache} when the page left its LRU, the
+	 * texture is deleted by the cache. The regions of the page are dropped,
+	 * their bitmaps are packed again or get textures of their own.
+	 */
+	void onPageRemoved(Page page) {
+		if (!mPages.remove(page)) {
+			return;
+		}
+		for (Iterator<TextureRegion> it = mRegions.values().iterator(); it.hasNext();) {
+			if (it.next().mTexture == page.mTexture) {
+				it.remove();
+			}
+		}
+		if (DEBUG) Log.d(TAG, "remove atlas page, " + mPages.size() + " left");
+	}
+
+	/**
+	 * Give back the pages none of the live bitmaps is packed in.
+	 */
+	void trim() {
+		if (mPages.isEmpty()) {
+			return;
+		}
+		final ArrayList<Page> unused = new ArrayList<Page>(mPages);
+		for (TextureRegion region : mRegions.values()) {
+			unused.remove(getPage(region));
+			if (unused.isEmpty()) {
+				return;
+			}
+		}
+		for (int i = 0; i < unused.size(); i ++) {
+			mTextureCache.removePage(unused.get(i));
+		}
+	}
+
+	/**
+	 * Delete all the pages, the regions handed out are no longer valid.
+	 */
+	void reset() {
+		final ArrayList<Page> pages = new ArrayList<Page>(mPages);
+		for (int i = 0; i < pages.size(); i ++) {
+			mTextureCache.removePage(pages.get(i));
+		}
+		mRegions.clear();
+	}
+
+}
@@ -2,7 +2,10 @@ package com.glview.hwui.cache;
 
 import javax.microedition.khronos.opengles.GL11;
 
-import android.opengl.GLUtils;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+
 import android.os.Build;
 import android.support.v4.util.LruCache;
 import android.util.Log;
@@ -10,11 +13,19 @@ import android.util.Log;
 import com.glview.App;
 import com.glview.content.GLContext;
 import com.glview.graphics.Bitmap;
+import com.glview.graphics.bitmap.BitmapDecoder;
 import com.glview.hwui.Caches;
+import com.glview.hwui.FrameInfo;
 import com.glview.hwui.GLId;
 import com.glview.hwui.Texture;
+import com.glview.hwui.TextureRegion;
+import com.glview.hwui.TextureUploader;
+import com.glview.hwui.TextureUploader.Upload;
+import com.glview.hwui.task.Task;
+import com.glview.hwui.task.TaskHandler;
 import com.glview.libgdx.graphics.opengl.GL;
 import com.glview.libgdx.graphics.opengl.GL20;
+import com.glview.thread.Looper;
 
 public class TextureCache {
 	
@@ -26,8 +37,64 @@ public class TextureCache {
 	final static int LARGER_TEXTURE_CACHE_SIZE = 64 * MB; //64MB
 	final static float DEFAULT_TEXTURE_CACHE_FLUSH_RATE = 0.6f;
 	
+	/*
+	 * Pack small bitmaps in shared textures, see TextureAtlas.
+	 */
+	final static boolean USE_ATLAS = true;
+	
+	/*
+	 * Bytes handed to the uploader in one frame, one bitmap is always allowed.
+	 */
+	final static int MAX_UPLOAD_BYTES_PER_FRAME = 4 * MB;
+	
+	/**
+	 * Notified in RenderThread when a texture uploaded or a bitmap decoded in
+	 * background is ready, the bitmaps drawn without it can be drawn again.
+	 */
+	public interface OnTextureUploadedListener {
+		void onTextureUploaded();
+	}
+	
 	TextureLruCache mCache;
 	
+	TextureAtlas mAtlas = new TextureAtlas(this);
+	
+	/*
+	 * Returned for the bitmaps with a texture of their own.
+	 */
+	final TextureRegion mFullRegion = new TextureRegion();
+	
+	TextureUploader mUploader;
+	boolean mAsyncUploadEnabled = false;
+	final HashMap<Bitmap, Upload> mPending = new HashMap<Bitmap, Upload>();
+	int mFrameUploadBytes;
+	final ArrayList<OnTextureUploadedListener> mListeners = new ArrayList<OnTextureUploadedListener>();
+	
+	final TextureUploader.Callback mUploadCallback = new TextureUploader.Callback() {
+		@Override
+		public void onUploadFinished(Upload upload) {
+			uploadFinished(upload);
+		}
+	};
+	
+	/*
+	 * The bitmaps decoded by the BitmapDecoder for a window frame.
+	 */
+	final HashSet<Bitmap> mDecoding = new HashSet<Bitmap>();
+	TaskHandler mHandler;
+	
+	final BitmapDecoder.OnDecodedListener mDecodeListener = new BitmapDecoder.OnDecodedListener() {
+		@Override
+		public void onBitmapDecoded(final Bitmap bitmap, final boolean succeeded) {
+			mHandler.post(new Task() {
+				@Override
+				public void doTask() {
+					decodeFinished(bitmap, succeeded);
+				}
+			});
+		}
+	};
+	
 	int[] mBuffer = new int[1];
 	
 	float mFlushRate;
@@ -56,6 +123,14 @@ public class TextureCache {
 			Texture texture = mCache.get(bitmap);
 			boolean sizeChanged = false;
 			if (texture == null) {
+				if (mAsyncUploadEnabled && decodeAsync(bitmap)) {
+					// Nothing to draw until it's decoded.
+					return null;
+				}
+				if (mAsyncUploadEnabled && uploadAsync(bitmap)) {
+					// Nothing to draw until it's uploaded.
+					return null;
+				}
 				if (!canMakeTextureFromBitmap(bitmap)) {
 					return null;
 				}
@@ -65,6 +140,10 @@ public class TextureCache {
 				}
 				sizeChanged = true;
 			} else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB_MR1 && texture.mGenerationId != bitmap.getGenerationId()) {
+				if (mAsyncUploadEnabled && uploadAsync(bitmap)) {
+					// Draw the previous content until the new one is uploaded.
+					return texture;
+				}
 				if (bitmap.getRowBytes() * bitmap.getHeight() != texture.getByteCount()) {
 					sizeChanged = true;
 					mCache.remove(bitmap);
@@ -75,12 +154,7 @@ public class TextureCache {
 				}
 			}
 			if (sizeChanged) {
-				if (mCache.maxSize() < texture.getByteCount()) {
-					mCache.resize(texture.getByteCount());
-				} else if (mCache.maxSize() > mSize) {
-					mCache.resize(mSize);
-				}
-				mCache.put(bitmap, texture);
+				put(bitmap, texture);
 			}
 			return texture;
 		} catch (Throwable throwable) {
@@ -89,6 +163,165 @@ public class TextureCache {
 		return null;
 	}
 	
+	void put(Bitmap bitmap, Texture texture) {
+		if (mCache.maxSize() < texture.getByteCount()) {
+			mCache.resize(texture.getByteCount());
+		} else if (mCache.maxSize() > mSize) {
+			mCache.resize(mSize);
+		}
+		mCache.put(bitmap, texture);
+	}
+	
+	/**
+	 * Upload the bitmaps drawn for the first time in the uploader thread while
+	 * enabled, {@link #get(Bitmap)} returns null or the previous texture of the
+	 * bitmap until it's done. Only for the frames of a window, the content of
+	 * a layer or drawing cache must be complete.
+	 * @return the previous value.
+	 */
+	public boolean setAsyncUploadEnabled(boolean enabled) {
+		final boolean previous = mAsyncUploadEnabled;
+		mAsyncUploadEnabled = enabled && mUploader != null;
+		return previous;
+	}
+	
+	/**
+	 * Set by the RenderThread once the uploader thread is running, null to upload synchronously.
+	 */
+	public void setUploader(TextureUploader uploader) {
+		mUploader = uploader;
+		if (uploader == null) {
+			mAsyncUploadEnabled = false;
+		}
+	}
+	
+	public void addOnTextureUploadedListener(OnTextureUploadedListener listener) {
+		if (!mListeners.contains(listener)) {
+			mListeners.add(listener);
+		}
+	}
+	
+	public void removeOnTextureUploadedListener(OnTextureUploadedListener listener) {
+		mListeners.remove(listener);
+	}
+	
+	/**
+	 * Start the upload budget of a new frame.
+	 */
+	public void beginFrame() {
+		mFrameUploadBytes = 0;
+	}
+	
+	/*
+	 * @return false if the bitmap must be uploaded synchronously.
+	 */
+	private boolean uploadAsync(Bitmap bitmap) {
+		if (mPending.containsKey(bitmap)) {
+			return true;
+		}
+		if (bitmap.isRecycled()) {
+			return false;
+		}
+		final int byteCount = bitmap.getWidth() * bitmap.getHeight() * 4;
+		if (mFrameUploadBytes > 0 && mFrameUploadBytes + byteCount > MAX_UPLOAD_BYTES_PER_FRAME) {
+			// Over budget, try again in the next frame.
+			return true;
+		}
+		Upload upload = new Upload(bitmap, hasNpot() && bitmap.hasMipMap());
+		if (!mUploader.upload(upload, mUploadCallback)) {
+			return false;
+		}
+		mPending.put(bitmap, upload);
+		mFrameUploadBytes += byteCount;
+		return true;
+	}
+	
+	/*
+	 * The pixels freed after an upload are decoded by the BitmapDecoder
+	 * and not in RenderThread.
+	 * @return false if the bitmap is decoded already.
+	 */
+	private boolean decodeAsync(Bitmap bitmap) {
+		if (mDecoding.contains(bitmap)) {
+			return true;
+		}
+		if (!BitmapDecoder.needsDecode(bitmap)) {
+			return false;
+		}
+		if (mHandler == null) {
+			mHandler = new TaskHandler(Looper.myLooper());
+		}
+		if (!BitmapDecoder.getInstance().decode(bitmap, BitmapDecoder.PRIORITY_VISIBLE, mDecodeListener)) {
+			return false;
+		}
+		mDecoding.add(bitmap);
+		return true;
+	}
+	
+	/*
+	 * Called in RenderThread.
+	 */
+	void decodeFinished(Bitmap bitmap, boolean succeeded) {
+		if (!mDecoding.remove(bitmap) || !succeeded) {
+			return;
+		}
+		notifyListeners();
+	}
+	
+	private void notifyListeners() {
+		for (int i = 0; i < mListeners.size(); i ++) {
+			mListeners.get(i).onTextureUploaded();
+		}
+	}
+	
+	/*
+	 * Called in RenderThread.
+	 */
+	void uploadFinished(Upload upload) {
+		if (mPending.get(upload.mBitmap) != upload) {
+			// Dropped by clear().
+			deleteTexture(upload.mTexture);
+			return;
+		}
+		mPending.remove(upload.mBitmap);
+		if (!upload.mSucceeded) {
+			return;
+		}
+		put(upload.mBitmap, upload.mTexture);
+		Caches.getInstance().frameInfo.add(FrameInfo.UPLOAD_BYTES, upload.mTexture.getByteCount());
+		notifyListeners();
+	}
+	
+	/**
+	 * Get the texture to draw the bitmap from, the atlas page it is packed
+	 * in for a small immutable bitmap, else its own texture.
+	 * The returned region may be reused by the next call.
+	 */
+	public TextureRegion getRegion(Bitmap bitmap) {
+		if (bitmap == null) return null;
+		
+		TextureRegion region = mAtlas.peek(bitmap);
+		if (region != null) {
+			return region;
+		}
+		// A bitmap with a texture already is not moved into the atlas.
+		if (!mPending.containsKey(bitmap) && mCache.get(bitmap) == null) {
+			if (mAsyncUploadEnabled && decodeAsync(bitmap)) {
+				return null;
+			}
+			region = USE_ATLAS ? mAtlas.pack(bitmap) : null;
+			if (region != null) {
+				return region;
+			}
+		}
+		Texture texture = get(bitmap);
+		if (texture == null) {
+			return null;
+		}
+		mFullRegion.set(texture, 0, 0, 1, 1);
+		return mFullRegion;
+	}
+	
 	boolean canMakeTextureFromBitmap(Bitmap bitmap) {
 		if (bitmap.isRecycled() || bitmap.getBitmap() == null) {
 			return false;
@@ -102,14 +335,45 @@ public class TextureCache {
 		texture.setHeight(bitmap.getHeight());
 		android.graphics.Bitmap aBitmap = bitmap.getBitmap();
 		if (aBitmap != null && !aBitmap.isRecycled()) {
-			int format = GLUtils.getInternalFormat(aBitmap);
-			int type = GLUtils.getType(aBitmap);
-			texture.setFormat(format);
-			texture.setType(type);
+			texture.setFormat(getInternalFormat(aBitmap));
+			texture.setType(getType(aBitmap));
 		}
 		return texture;
 	}
 	
+	/**
+	 * Same mapping as android.opengl.GLUtils#getInternalFormat,
+	 * but without going through the platform so any {@link GL20} backend works.
+	 */
+	public static int getInternalFormat(android.graphics.Bitmap bitmap) {
+		android.graphics.Bitmap.Config config = bitmap.getConfig();
+		if (config == null) return GL20.GL_RGBA;
+		switch (config) {
+		case ALPHA_8:
+			return GL20.GL_ALPHA;
+		case RGB_565:
+			return GL20.GL_RGB;
+		default:
+			return GL20.GL_RGBA;
+		}
+	}
+	
+	/**
+	 * Same mapping as android.opengl.GLUtils#getType.
+	 */
+	public static int getType(android.graphics.Bitmap bitmap) {
+		android.graphics.Bitmap.Config config = bitmap.getConfig();
+		if (config == null) return GL20.GL_UNSIGNED_BYTE;
+		switch (config) {
+		case ARGB_4444:
+			return GL20.GL_UNSIGNED_SHORT_4_4_4_4;
+		case RGB_565:
+			return GL20.GL_UNSIGNED_SHORT_5_6_5;
+		default:
+			return GL20.GL_UNSIGNED_BYTE;
+		}
+	}
+	
 	void deleteTexture(Texture texture) {
 		Caches.getInstance().deleteTexture(texture);
 	}
@@ -170,19 +434,20 @@ public class TextureCache {
 
 		Caches.getInstance().bindTexture(texture);
 		
-		GL gl = App.getGL();
+		GL20 gl = App.getGL20();
 		
 		
 		if (resize) {
-			GLUtils.texImage2D(GL20.GL_TEXTURE_2D, 0, texture.getFormat(), aBitmap, texture.getType(), 0);
+			gl.glTexImage2D(GL20.GL_TEXTURE_2D, 0, texture.getFormat(), aBitmap, texture.getType(), 0);
 		} else {
-			GLUtils.texSubImage2D(GL20.GL_TEXTURE_2D, 0, 0, 0, aBitmap, texture.getFormat(), texture.getType());
+			gl.glTexSubImage2D(GL20.GL_TEXTURE_2D, 0, 0, 0, aBitmap, texture.getFormat(), texture.getType());
 		}
+		Caches.getInstance().frameInfo.add(FrameInfo.UPLOAD_BYTES, texture.getByteCount());
 		
 		if (canMipMap) {
 			texture.setMipMap(bitmap.hasMipMap());
-			if (texture.isMipMap() && (gl instanceof GL20)) {
-				((GL20) gl).glGenerateMipmap(GL20.GL_TEXTURE_2D);
+			if (texture.isMipMap()) {
+				gl.glGenerateMipmap(GL20.GL_TEXTURE_2D);
 			}
 		}
 		
@@ -201,10 +466,15 @@ public class TextureCache {
 	}
 	
 	public void clear() {
+		// The pages of the atlas are evicted too.
 		mCache.evictAll();
+		mAtlas.reset();
+		mPending.clear();
+		mDecoding.clear();
 	}
 	
 	public void flush() {
+		mAtlas.trim();
 		if (mFlushRate > 1f || mCache.size() == 0) {
 			return;
 		}
@@ -218,6 +488,30 @@ public class TextureCache {
 		}
 	}
 	
+	/*
+	 * The pages of the atlas are in the LRU with the textures of the bitmaps,
+	 * keyed by the page. A page larger than the configured size is never
+	 * created, see {@link #canCachePage(int)}.
+	 */
+	void putPage(TextureAtlas.Page page, Texture texture) {
+		mCache.put(page, texture);
+	}
+	
+	boolean canCachePage(int byteCount) {
+		return byteCount <= mSize;
+	}
+	
+	void touch(TextureAtlas.Page page) {
+		if (page != null) {
+			mCache.get(page);
+		}
+	}
+	
+	void removePage(TextureAtlas.Page page) {
+		// Deleted and dropped from the atlas by entryRemoved.
+		mCache.remove(page);
+	}
+	
 	int getEntrySize(Bitmap bitmap) {
 		return bitmap.getRowBytes() * bitmap.getHeight();
 	}
@@ -239,6 +533,9 @@ public class TextureCache {
 			if (oldValue != newValue) {
 				deleteTexture(oldValue);
 			}
+			if (bitmap instanceof TextureAtlas.Page && newValue == null) {
+				mAtlas.onPageRemoved((TextureAtlas.Page) bitmap);
+			}
 		}
 		
 		@Override
@@ -4,6 +4,7 @@ import com.glview.graphics.Rect;
 import com.glview.hwui.Caches;
 import com.glview.hwui.Texture;
 import com.glview.hwui.packer.Packer;
+import com.glview.internal.util.GrowingArrayUtils;
 import com.glview.libgdx.graphics.opengl.GL20;
 
 class CacheTexture {
@@ -25,6 +26,17 @@ class CacheTexture {
 	final FontRenderer mFontRenderer;
 	
 	FontBatch mFontBatch;
+	
+	/*
+	 * The keys of the glyphs packed in this page, removed from the index
+	 * when the page is evicted.
+	 */
+	long[] mKeys = new long[64];
+	int mKeyCount;
+	/*
+	 * The frame of FontRenderer a glyph of this page was last drawn in.
+	 */
+	long mLastUsedFrame;
 
 	public CacheTexture(FontRenderer fontRenderer, int width, int height, int format) {
 		mFontRenderer = fontRenderer;
@@ -63,10 +75,13 @@ class CacheTexture {
 	    }
 	}
 	
+	void addKey(long key) {
+		mKeys = GrowingArrayUtils.append(mKeys, mKeyCount, key);
+		mKeyCount ++;
+	}
+	
 	void release() {
-		if (mFontBatch != null) {
-			mFontBatch.dispose();
-		}
+		mKeyCount = 0;
 		mPacker.reset();
 		mFontBatch = null;
 		mCaches.deleteTexture(mTexture);
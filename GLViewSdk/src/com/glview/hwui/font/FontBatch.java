@@ -5,19 +5,14 @@ import android.opengl.Matrix;
 import com.glview.graphics.shader.BaseShader;
 import com.glview.graphics.shader.DefaultTextureShader;
 import com.glview.hwui.Caches;
+import com.glview.hwui.FrameInfo;
 import com.glview.hwui.GLPaint;
-import com.glview.libgdx.graphics.Mesh;
-import com.glview.libgdx.graphics.VertexAttribute;
-import com.glview.libgdx.graphics.VertexAttributes.Usage;
+import com.glview.hwui.QuadStream;
 import com.glview.libgdx.graphics.glutils.ShaderProgram;
 import com.glview.libgdx.graphics.math.NumberUtils;
-import com.glview.libgdx.graphics.opengl.GL20;
-import com.glview.libgdx.graphics.utils.Disposable;
 import com.glview.util.MatrixUtil;
 
-class FontBatch implements Disposable {
-	
-	private Mesh mMesh;
+class FontBatch {
 	
 	final float[] mVertices;
 	int mIndex = 0;
@@ -32,7 +27,12 @@ class FontBatch implements Disposable {
 	Caches mCaches;
 	
 	float[] mIdentityMatrix = new float[16];
-	float[] mTmpPoint = new float[2];
+	/*
+	 * The transform of the queued glyphs when it is not a 2D affine one,
+	 * see Batch.
+	 */
+	final float[] mModelMatrix = new float[16];
+	boolean mHasModelMatrix = false;
 	float mPackedColor;
 	float mCachedAlpha;
 	int mCachedColor;
@@ -42,8 +42,10 @@ class FontBatch implements Disposable {
 	}
 	
 	public FontBatch(FontRenderer fontRenderer, CacheTexture texture, int size) {
-		// 32767 is max index, so 32767 / 6 - (32767 / 6 % 3) = 5460.
-		if (size > 5460) throw new IllegalArgumentException("Can't have more than 5460 sprites per batch: " + size);
+		mCaches = Caches.getInstance();
+		// The glyphs of a flush are drawn at once from the quad stream.
+		final int maxSize = mCaches.quadStream.getMaxQuads();
+		if (size > maxSize) throw new IllegalArgumentException("Can't have more than " + maxSize + " sprites per batch: " + size);
 		mFontRenderer = fontRenderer;
 		mTexture = texture;
 		mInvTexWidth = 1.0f / texture.getWidth();
@@ -51,29 +53,7 @@ class FontBatch implements Disposable {
 		
 		Matrix.setIdentityM(mIdentityMatrix, 0);
 		
-		mCaches = Caches.getInstance();
-		
-		mMesh = new Mesh(false, size * 4, size * 6, new VertexAttribute(
-				Usage.Position, 2, ShaderProgram.POSITION_ATTRIBUTE), // position
-				 new VertexAttribute(Usage.ColorPacked, 4,
-						 ShaderProgram.COLOR_ATTRIBUTE),
-				new VertexAttribute(Usage.TextureCoordinates, 2,
-						ShaderProgram.TEXCOORD_ATTRIBUTE));// texture position
-		
-		mVertices = new float[size * 20];
-		
-		int len = size * 6;
-		short[] indices = new short[len];
-		short j = 0;
-		for (int i = 0; i < len; i += 6, j += 4) {
-			indices[i] = j;
-			indices[i + 1] = (short)(j + 1);
-			indices[i + 2] = (short)(j + 2);
-			indices[i + 3] = (short)(j + 2);
-			indices[i + 4] = (short)(j + 3);
-			indices[i + 5] = j;
-		}
-		mMesh.setIndices(indices);
+		mVertices = new float[size * QuadStream.FLOATS_PER_QUAD];
 		mDefaultShader = new DefaultTextureShader();
 		mDefaultShader.setHasTexcoordsAttr(true);
 		mDefaultShader.setHasColorAttr(true);
@@ -81,18 +61,30 @@ class FontBatch implements Disposable {
 		mDefaultShader.setA8Format(true);
 	}
 	
-	@Override
-	public void dispose() {
-		mMesh.dispose();
-	}
-	
 	public boolean full() {
 		return this.mIndex == this.mVertices.length;
 	}
 	
+	/**
+	 * Queue a glyph, the corners are mapped with transformation when it is a
+	 * 2D affine one so the glyphs of every transform go in one draw call.
+	 */
 	public void draw(float x, float y, float width, float height, float srcX, float srcY, float srcWidth, float srcHeight, float[] transformation, float alpha, int color, GLPaint paint) {
+		if (!MatrixUtil.isAffine2D(transformation)) {
+			if (!mHasModelMatrix || !MatrixUtil.equals(mModelMatrix, transformation)) {
+				flush();
+				System.arraycopy(transformation, 0, mModelMatrix, 0, 16);
+				mHasModelMatrix = true;
+			}
+			draw(x, y, width, height, srcX, srcY, srcWidth, srcHeight, alpha, color, paint);
+			return;
+		}
 		float[] vertices = this.mVertices;
 
+		if (mHasModelMatrix) {
+			flush();
+			mHasModelMatrix = false;
+		}
 		if (this.mIndex == vertices.length) //
 			flush();
 
@@ -104,14 +96,12 @@ class FontBatch implements Disposable {
 		final float fx2 = x + width;
 		final float fy2 = y + height;
 		
-		float[] pt = MatrixUtil.mapPoint(transformation, mTmpPoint, x, y);
-		float x1 = pt[0], y1 = pt[1];
-		pt = MatrixUtil.mapPoint(transformation, mTmpPoint, x, fy2);
-		float x2 = pt[0], y2 = pt[1];
-		pt = MatrixUtil.mapPoint(transformation, mTmpPoint, fx2, fy2);
-		float x3 = pt[0], y3 = pt[1];
-		pt = MatrixUtil.mapPoint(transformation, mTmpPoint, fx2, y);
-		float x4 = pt[0], y4 = pt[1];
+		final float sx = transformation[0], kx = transformation[4], tx = transformation[12];
+		final float ky = transformation[1], sy = transformation[5], ty = transformation[13];
+		float x1 = sx * x + kx * y + tx, y1 = ky * x + sy * y + ty;
+		float x2 = sx * x + kx * fy2 + tx, y2 = ky * x + sy * fy2 + ty;
+		float x3 = sx * fx2 + kx * fy2 + tx, y3 = ky * fx2 + sy * fy2 + ty;
+		float x4 = sx * fx2 + kx * y + tx, y4 = ky * fx2 + sy * y + ty;
 
 		if (alpha != mCachedAlpha || color != mCachedColor) {
 			mCachedAlpha = alpha;
@@ -191,24 +181,21 @@ class FontBatch implements Disposable {
 	public void flush() {
 		if (mIndex == 0) return;
 		mTexture.upload();
-		int count = mIndex / 20 * 6;
 
 		mCaches.bindTexture(mTexture.mTexture);
-		Mesh mesh = this.mMesh;
-		mesh.setVertices(mVertices, 0, mIndex);
-		mesh.getIndicesBuffer().position(0);
-		mesh.getIndicesBuffer().limit(count);
 		
 		ShaderProgram program = mDefaultShader.getShaderProgram();
 		mCaches.useProgram(program);
 		mDefaultShader.setupColor(1, 1, 1, 1);
 		if (mFontRenderer.getGLCanvas() != null) {
-			mFontRenderer.getGLCanvas().applyMatrix(mDefaultShader, mIdentityMatrix);
+			mFontRenderer.getGLCanvas().applyMatrix(mDefaultShader, mHasModelMatrix ? mModelMatrix : mIdentityMatrix);
 		}
 		mDefaultShader.setupCustomValues();
+		mCaches.renderState.setBlendEnabled(true);
 		
-		mesh.render(program, GL20.GL_TRIANGLES, 0, count);
+		mCaches.quadStream.draw(program, mVertices, mIndex);
 		mIndex = 0;
+		mCaches.frameInfo.add(FrameInfo.FONT_FLUSHES, 1);
 	}
 	
 	int packColor(float alpha, int color) {
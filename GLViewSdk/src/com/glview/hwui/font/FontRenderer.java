@@ -1,7 +1,10 @@
 package com.glview.hwui.font;
 
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import android.graphics.Color;
 import android.support.v4.util.LongSparseArray;
@@ -11,18 +14,21 @@ import com.glview.freetype.FreeType;
 import com.glview.freetype.FreeType.Face;
 import com.glview.freetype.FreeType.SizeMetrics;
 import com.glview.graphics.Rect;
+import com.glview.graphics.RectF;
 import com.glview.graphics.Typeface;
+import com.glview.graphics.font.GlyphAdvanceCache;
 import com.glview.graphics.font.GlyphSlot;
 import com.glview.graphics.shader.A8TextureShader;
 import com.glview.hwui.GLCanvas;
 import com.glview.hwui.GLPaint;
 import com.glview.hwui.InnerGLCanvas;
 import com.glview.hwui.packer.PackerRect;
-import com.glview.internal.util.GrowingArrayUtils;
+import com.glview.hwui.task.Task;
+import com.glview.hwui.task.TaskHandler;
 import com.glview.libgdx.graphics.opengl.GL20;
-import com.glview.stackblur.BlurProcess;
-import com.glview.stackblur.NativeBlurProcess;
 import com.glview.text.TextUtils;
+import com.glview.thread.Looper;
+import com.glview.util.LongHashMap;
 
 public class FontRenderer {
 	
@@ -36,32 +42,207 @@ public class FontRenderer {
 		return sInstance;
 	}
 	
+	/**
+	 * Set out to the area the glyphs and the shadow of the run may draw to,
+	 * loose around the baseline, the same for the recording and the replay.
+	 */
+	public static void getTextBounds(CharSequence text, int start, int end, float x, float y,
+			GLPaint paint, RectF out) {
+		final float size = paint.getTextSize();
+		final float width = paint.measureText(text, start, end);
+		out.set(x - size / 4, y - size * 1.25f, x + width + size / 4, y + size / 2);
+		if (paint.hasShadow()) {
+			final float r = paint.getShadowRadius();
+			out.left += Math.min(0, paint.getShadowDx()) - r;
+			out.right += Math.max(0, paint.getShadowDx()) + r;
+			out.top += Math.min(0, paint.getShadowDy()) - r;
+			out.bottom += Math.max(0, paint.getShadowDy()) + r;
+		}
+	}
+	
 	private boolean mInitialized;
 	
 	int mSmallCacheWidth = 1024;
 	int mSmallCacheHeight = 512;
 	int mLargeCacheWidth = 2048;
 	int mLargeCacheHeight = 1024;
-	byte[] mBuffer = new byte[2048];
 	
+	/*
+	 * Bytes of the pages of glyphs and of shadows, pages of
+	 * mLargeCacheWidth x mLargeCacheHeight / 2 are added up to them.
+	 */
+	final static int MAX_CACHE_BYTES = 8 * 1024 * 1024;
+	final static int MAX_SHADOW_CACHE_BYTES = 5 * 1024 * 1024;
+	
+	/**
+	 * The pages of an atlas of glyphs and the index of the glyphs packed in them.
+	 * <p>
+	 * When a glyph doesn't fit any page a page is added while the budget allows,
+	 * else only the least recently drawn page is evicted, its glyphs are removed
+	 * from the index and will be rasterized again when drawn.
+	 */
 	class FontCaches {
 		Vector<CacheTexture> mACacheTextures = new Vector<CacheTexture>();
-		LongSparseArray<FontRect> mCacheRects = new LongSparseArray<FontRect>();
+		LongHashMap<FontRect> mCacheRects = new LongHashMap<FontRect>(1024);
+		final int mMaxBytes;
+		int mBytes;
+		/*
+		 * The page of the rect returned by the last insert(int, int).
+		 */
+		CacheTexture mInsertTexture;
+		
+		FontCaches(int maxBytes) {
+			mMaxBytes = maxBytes;
+		}
+		
+		void addPage(CacheTexture cacheTexture) {
+			mACacheTextures.add(cacheTexture);
+			mBytes += cacheTexture.mWidth * cacheTexture.mHeight;
+		}
+		
+		void put(long key, FontRect r) {
+			mCacheRects.put(key, r);
+			r.mTexture.addKey(key);
+		}
+		
+		PackerRect insert(int width, int height) {
+			for (CacheTexture cacheTexture : mACacheTextures) {
+				PackerRect rect = cacheTexture.mPacker.insert(width, height);
+				if (rect != null) {
+					mInsertTexture = cacheTexture;
+					return rect;
+				}
+			}
+			final int pageWidth = mLargeCacheWidth, pageHeight = mLargeCacheHeight >> 1;
+			if (mBytes + pageWidth * pageHeight <= mMaxBytes) {
+				CacheTexture cacheTexture = createCacheTexture(pageWidth, pageHeight, GL20.GL_ALPHA, false);
+				addPage(cacheTexture);
+				PackerRect rect = cacheTexture.mPacker.insert(width, height);
+				if (rect != null) {
+					mInsertTexture = cacheTexture;
+					return rect;
+				}
+			}
+			CacheTexture lru = null;
+			for (CacheTexture cacheTexture : mACacheTextures) {
+				if (cacheTexture.mWidth >= width && cacheTexture.mHeight >= height
+						&& (lru == null || cacheTexture.mLastUsedFrame < lru.mLastUsedFrame)) {
+					lru = cacheTexture;
+				}
+			}
+			if (lru == null) {
+				return null;
+			}
+			evict(lru);
+			mInsertTexture = lru;
+			return lru.mPacker.insert(width, height);
+		}
+		
+		private void evict(CacheTexture cacheTexture) {
+			// The glyphs queued from this page are drawn before they are overwritten.
+			if (cacheTexture.mFontBatch != null) {
+				cacheTexture.mFontBatch.flush();
+			}
+			final long[] keys = cacheTexture.mKeys;
+			for (int i = 0; i < cacheTexture.mKeyCount; i ++) {
+				mCacheRects.remove(keys[i]);
+			}
+			cacheTexture.mKeyCount = 0;
+			cacheTexture.setDirty(false);
+			cacheTexture.mPacker.reset();
+			mEvictionCount ++;
+		}
 	}
 	
-	FontCaches mCacheTextures = new FontCaches();
-	FontCaches mShadowCacheTextures = new FontCaches();
+	FontCaches mCacheTextures = new FontCaches(MAX_CACHE_BYTES);
+	FontCaches mShadowCacheTextures = new FontCaches(MAX_SHADOW_CACHE_BYTES);
+	
+	/*
+	 * Counted by end(), the pages are stamped with it when drawn.
+	 */
+	long mFrame;
+	long mHitCount, mMissCount, mEvictionCount;
+
+	long mDeferredCount;
 
     LongSparseArray<FontData> mFontDatas = new LongSparseArray<FontData>();
     
     GLCanvas mCanvas = null;
     
-    BlurProcess mBlurProcess = new NativeBlurProcess();
+    /**
+     * Called in the RenderThread when glyphs skipped by a frame are rasterized.
+     */
+    public interface OnGlyphsRasterizedListener {
+    	void onGlyphsRasterized();
+    }
+    
+	/*
+	 * A glyph still rasterizing is skipped by the window frames, the frame
+	 * waits for it once it's pending for longer than this.
+	 */
+	final static long MAX_PENDING_NS = 100 * 1000000L;
+	
+	boolean mAsyncRasterEnabled = false;
+	/*
+	 * The requests queued and not cached yet, looked up before queuing the same
+	 * glyph again, RenderThread only.
+	 */
+	final LongHashMap<GlyphRasterizer.Request> mPendingGlyphs = new LongHashMap<GlyphRasterizer.Request>();
+	final LongHashMap<GlyphRasterizer.Request> mPendingShadows = new LongHashMap<GlyphRasterizer.Request>();
+	/*
+	 * Set by getFontRect() when the glyph is still rasterizing.
+	 */
+	boolean mGlyphPending;
+	
+	final ConcurrentLinkedQueue<GlyphRasterizer.Request> mFinished = new ConcurrentLinkedQueue<GlyphRasterizer.Request>();
+	final AtomicBoolean mNotifyPosted = new AtomicBoolean();
+	final ArrayList<OnGlyphsRasterizedListener> mListeners = new ArrayList<OnGlyphsRasterizedListener>();
+	TaskHandler mHandler;
+	
+	/*
+	 * A glyph skipped by a frame was cached since the last notification.
+	 */
+	boolean mRedrawNeeded;
+	
+	final Task mNotifyTask = new Task() {
+		@Override
+		public void doTask() {
+			mNotifyPosted.set(false);
+			// Without a frame drawn yet the GL context may not be current, the
+			// glyphs are packed at the end of the first frame.
+			if (mInitialized) {
+				collectFinishedGlyphs();
+			}
+			if (!mRedrawNeeded) {
+				return;
+			}
+			mRedrawNeeded = false;
+			for (int i = 0; i < mListeners.size(); i ++) {
+				mListeners.get(i).onGlyphsRasterized();
+			}
+		}
+	};
+	
+	final GlyphRasterizer.Callback mRasterizerCallback = new GlyphRasterizer.Callback() {
+		@Override
+		public void onGlyphRasterized(GlyphRasterizer.Request request) {
+			mFinished.add(request);
+			if (mNotifyPosted.compareAndSet(false, true)) {
+				mHandler.post(mNotifyTask);
+			}
+		}
+	};
+	
+	final GlyphRasterizer mRasterizer = new GlyphRasterizer(mRasterizerCallback);
     
     public void release() {
     	clearCacheTextures(mCacheTextures);
     	clearCacheTextures(mShadowCacheTextures);
+    	mPendingGlyphs.clear();
+    	mPendingShadows.clear();
+    	mFinished.clear();
     	mFontDatas.clear();
+    	GlyphAdvanceCache.clearAll();
     	mInitialized = false;
     }
     
@@ -80,19 +261,19 @@ public class FontRenderer {
 	    clearCacheTextures(mCacheTextures);
 	    clearCacheTextures(mShadowCacheTextures);
 
-	    mCacheTextures.mACacheTextures.add(createCacheTexture(mSmallCacheWidth, mSmallCacheHeight,
+	    mCacheTextures.addPage(createCacheTexture(mSmallCacheWidth, mSmallCacheHeight,
 	    		GL20.GL_ALPHA, true));
-	    mCacheTextures.mACacheTextures.add(createCacheTexture(mLargeCacheWidth, mLargeCacheHeight >> 1,
+	    mCacheTextures.addPage(createCacheTexture(mLargeCacheWidth, mLargeCacheHeight >> 1,
 	    		GL20.GL_ALPHA, false));
-	    mCacheTextures.mACacheTextures.add(createCacheTexture(mLargeCacheWidth, mLargeCacheHeight >> 1,
+	    mCacheTextures.addPage(createCacheTexture(mLargeCacheWidth, mLargeCacheHeight >> 1,
 	            GL20.GL_ALPHA, false));
-	    mCacheTextures.mACacheTextures.add(createCacheTexture(mLargeCacheWidth, mLargeCacheHeight,
+	    mCacheTextures.addPage(createCacheTexture(mLargeCacheWidth, mLargeCacheHeight,
 	    		GL20.GL_ALPHA, false));
-	    mShadowCacheTextures.mACacheTextures.add(createCacheTexture(mSmallCacheWidth, mSmallCacheHeight,
+	    mShadowCacheTextures.addPage(createCacheTexture(mSmallCacheWidth, mSmallCacheHeight,
 	    		GL20.GL_ALPHA, false));
-	    mShadowCacheTextures.mACacheTextures.add(createCacheTexture(mLargeCacheWidth, mLargeCacheHeight >> 1,
+	    mShadowCacheTextures.addPage(createCacheTexture(mLargeCacheWidth, mLargeCacheHeight >> 1,
 	    		GL20.GL_ALPHA, false));
-	    mShadowCacheTextures.mACacheTextures.add(createCacheTexture(mLargeCacheWidth, mLargeCacheHeight,
+	    mShadowCacheTextures.addPage(createCacheTexture(mLargeCacheWidth, mLargeCacheHeight,
 	    		GL20.GL_ALPHA, false));
 	}
 	
@@ -102,6 +283,8 @@ public class FontRenderer {
 	    }
 	    caches.mACacheTextures.clear();
 	    caches.mCacheRects.clear();
+	    caches.mBytes = 0;
+	    caches.mInsertTexture = null;
 	}
 	
 	CacheTexture createCacheTexture(int width, int height, int format,
@@ -137,10 +320,35 @@ public class FontRenderer {
 		return mCanvas;
 	}
 	
+	/**
+	 * Rasterize the glyphs drawn for the first time in the rasterizer threads
+	 * while enabled, a frame skips them until they are done or pending for
+	 * longer than {@link #MAX_PENDING_NS}. Only for the frames of a window, the
+	 * content of a layer or drawing cache must be complete.
+	 * @return the previous value.
+	 */
+	public boolean setAsyncRasterEnabled(boolean enabled) {
+		final boolean previous = mAsyncRasterEnabled;
+		mAsyncRasterEnabled = enabled;
+		return previous;
+	}
+	
+	public void addOnGlyphsRasterizedListener(OnGlyphsRasterizedListener listener) {
+		if (!mListeners.contains(listener)) {
+			mListeners.add(listener);
+		}
+	}
+	
+	public void removeOnGlyphsRasterizedListener(OnGlyphsRasterizedListener listener) {
+		mListeners.remove(listener);
+	}
+	
 	private final static boolean DEBUG_FONT_CACHE = false;
 	private final static boolean DEBUG_FONT_SHADOW_CACHE = false;
 	GLPaint mTestPaint = null, mTestPaint2 = null;
 	public void end(InnerGLCanvas canvas) {
+		mFrame ++;
+		collectFinishedGlyphs();
 		if (DEBUG_FONT_CACHE) {
 			if (mTestPaint == null) {
 				mTestPaint = new GLPaint();
@@ -184,6 +392,7 @@ public class FontRenderer {
 		int shadowColor = paint.getShadowColor();
 		boolean hasShadow = paint.hasShadow();
 		alpha = alpha * paint.getAlpha() / 255;
+		GlyphAdvanceCache advanceCache = GlyphAdvanceCache.get(typeface, textSize);
 		synchronized (face) {
 			face.setPixelSizes(0, textSize);
 			long k = typeface.index() * 10000L + textSize;
@@ -209,52 +418,29 @@ public class FontRenderer {
 					x += fontData.spaceWidth;
 					continue;
 				}
-				int charIndex = face.getCharIndex(c);
-				if (charIndex == 0) {
-					c = 0;
-					charIndex = face.getCharIndex(c);
+				int charIndex = advanceCache.getGlyphIndex(c);
+				if (charIndex == GlyphAdvanceCache.MISSING) {
+					advanceCache.load(face, c);
+					charIndex = advanceCache.getGlyphIndex(c);
 				}
 				if (charIndex == 0) continue;
 				long key = charIndex * 10000000000L + typeface.index() * 10000000L + textSize * 10000L;
-				FontRect r = mCacheTextures.mCacheRects.get(key);
+				mGlyphPending = false;
+				FontRect r = getFontRect(false, key, typeface, textSize, charIndex, 0);
 				FontRect shadowR = null;
 				if (hasShadow) {
-					shadowR = mShadowCacheTextures.mCacheRects.get(key + shadowRadius);
+					shadowR = getFontRect(true, key + shadowRadius, typeface, textSize, charIndex, shadowRadius);
 				}
-				if (r == null || (hasShadow && shadowR == null)) {
-					if (!face.loadGlyph(charIndex, FreeType.FT_LOAD_DEFAULT)) {
-						continue;
-					}
-					FreeType.GlyphSlot slot = face.getGlyph();
-					FreeType.Glyph glyph = slot.getGlyph();
-					try {
-						glyph.toBitmap(FreeType.FT_RENDER_MODE_NORMAL);
-					} catch (RuntimeException e) {
-						glyph.dispose();
-						continue;
-					}
-					FreeType.Bitmap bitmap = glyph.getBitmap();
-					int w = bitmap.getWidth();
-					int h = bitmap.getRows();
-					if (w <= 0 || h <= 0) {
-						continue;
-					}
-					if (r == null) {
-						r = cacheBitmap(mCacheTextures, w, h, FONT_BORDER_SIZE, slot, glyph, bitmap, true);
-						if (r != null) {
-							mCacheTextures.mCacheRects.put(key, r);
-						}
-					}
-					if (shadowR == null && hasShadow) {
-						shadowR = cacheBitmapShadow(mShadowCacheTextures, w, h, shadowRadius, slot, glyph, bitmap, true);
-						if (shadowR != null) {
-							mShadowCacheTextures.mCacheRects.put(key + shadowRadius, shadowR);
-						}
-					}
-					glyph.dispose();
+				if (mGlyphPending) {
+					// Drawn by a later frame, the glyphs after it keep their place.
+					mDeferredCount ++;
+					x += advanceCache.getAdvance(c);
+					continue;
 				}
 				if (r != null) {
+					r.mTexture.mLastUsedFrame = mFrame;
 					if (shadowR != null) {
+						shadowR.mTexture.mLastUsedFrame = mFrame;
 						shadowR.mTexture.allocateMesh();
 						if (shadowR.mTexture.mFontBatch.full()) {
 							flushBatch();
@@ -281,95 +467,187 @@ public class FontRenderer {
 		
 	}
 	
-	private void flushAndInvalidate(FontCaches caches) {
-		for (CacheTexture cacheTexture : caches.mACacheTextures) {
-			if (cacheTexture.mFontBatch != null) {
-				cacheTexture.mFontBatch.flush();
+	/**
+	 * @return the glyph lookups found in the cache since the start.
+	 */
+	public long getHitCount() {
+		return mHitCount;
+	}
+	
+	/**
+	 * @return the glyph lookups that rasterized the glyph since the start.
+	 */
+	public long getMissCount() {
+		return mMissCount;
+	}
+	
+	/**
+	 * @return the pages evicted to make room for a glyph since the start.
+	 */
+	public long getEvictionCount() {
+		return mEvictionCount;
+	}
+	
+	/**
+	 * @return the glyphs skipped by a frame because they were still rasterizing, since the start.
+	 */
+	public long getDeferredCount() {
+		return mDeferredCount;
+	}
+	
+	/**
+	 * @return the ratio of the glyph lookups found in the cache.
+	 */
+	public float getHitRate() {
+		final long lookups = mHitCount + mMissCount;
+		return lookups > 0 ? (float) mHitCount / lookups : 0;
+	}
+	
+	/**
+	 * Rasterize and pack the glyphs of the text drawn with the paint before
+	 * they are first drawn, like the labels of a screen or the digits of a
+	 * counter. Run in RenderThread, see
+	 * {@link com.glview.hwui.RenderPolicy#precacheText(GLPaint, CharSequence)}.
+	 * @param text the text, or a set of chars.
+	 * @param async rasterize in the rasterizer threads, else in the calling thread.
+	 */
+	public void precache(GLPaint paint, CharSequence text, int start, int end, boolean async) {
+		Typeface typeface = paint.getTypeface();
+		Face face = typeface.face();
+		int textSize = paint.getTextSize();
+		if (textSize < 5) return;
+		int shadowRadius = (int) (paint.getShadowRadius() + 0.5f);
+		boolean hasShadow = paint.hasShadow();
+		GlyphAdvanceCache advanceCache = GlyphAdvanceCache.get(typeface, textSize);
+		synchronized (face) {
+			face.setPixelSizes(0, textSize);
+			for (int index = start; index < end; index ++) {
+				char c = text.charAt(index);
+				if (TextUtils.isSpace(c)) {
+					continue;
+				}
+				int charIndex = advanceCache.getGlyphIndex(c);
+				if (charIndex == GlyphAdvanceCache.MISSING) {
+					advanceCache.load(face, c);
+					charIndex = advanceCache.getGlyphIndex(c);
+				}
+				if (charIndex == 0) continue;
+				long key = charIndex * 10000000000L + typeface.index() * 10000000L + textSize * 10000L;
+				precacheGlyph(false, key, typeface, textSize, charIndex, 0, async);
+				if (hasShadow) {
+					precacheGlyph(true, key + shadowRadius, typeface, textSize, charIndex, shadowRadius, async);
+				}
 			}
-			cacheTexture.setDirty(false);
-			cacheTexture.mPacker.reset();
 		}
-		caches.mCacheRects.clear();
 	}
 	
-	private FontRect cacheBitmap(FontCaches caches, int w, int h, int border, FreeType.GlyphSlot slot, FreeType.Glyph glyph, FreeType.Bitmap bitmap, boolean c) {
-		for (CacheTexture cacheTexture : caches.mACacheTextures) {
-			PackerRect rect = cacheTexture.mPacker.insert(w + border * 2, h + border * 2);
-			if (rect != null) {
-				FontRect r = new FontRect(cacheTexture, rect, new GlyphSlot(FreeType.toInt(slot.getAdvanceX()), FreeType.toInt(slot.getAdvanceY())), glyph.getLeft(), glyph.getTop());
-				if (cacheTexture.getPixelBuffer() == null) {
-					cacheTexture.allocateTexture();
-				}
-				ByteBuffer byteBuffer = cacheTexture.getPixelBuffer().map();
-				ByteBuffer buffer = bitmap.getBuffer();
-				int pitch = bitmap.getPitch();
-//				for (int i = 0; i < rect.height(); i ++) {
-//					for (int j = 0; j < rect.width(); j ++) {
-//						if (i < border || i >= rect.height() - border || j < border || j >= rect.width() - border) {
-//							byteBuffer.put((i + rect.rect().top) * cacheTexture.mWidth + j + rect.rect().left, (byte) 0);
-//						} else {
-//							byteBuffer.put((i + rect.rect().top) * cacheTexture.mWidth + j + rect.rect().left, buffer.get((i - border) * pitch + j - border));
-//						}
-//					}
-//				}
-				FontUtils.loadGlyphBitmap(buffer, w, h, pitch, border, byteBuffer, cacheTexture.mWidth, cacheTexture.mHeight, rect.rect().left, rect.rect().top);
-				cacheTexture.mDirtyRect.union(rect.rect());
-				cacheTexture.setDirty(true);
-				return r;
+	private void precacheGlyph(boolean shadow, long key, Typeface typeface, int textSize, int charIndex,
+			int shadowRadius, boolean async) {
+		final FontCaches caches = shadow ? mShadowCacheTextures : mCacheTextures;
+		final LongHashMap<GlyphRasterizer.Request> pending = shadow ? mPendingShadows : mPendingGlyphs;
+		if (caches.mCacheRects.containsKey(key) || pending.containsKey(key)) {
+			return;
+		}
+		if (async) {
+			queueGlyph(pending, key, typeface, textSize, charIndex, shadow, shadowRadius);
+			return;
+		}
+		GlyphRasterizer.Request request = mRasterizer.rasterizeNow(key, typeface, textSize, charIndex, shadow, shadowRadius);
+		if (mInitialized) {
+			cacheGlyph(caches, request);
+		} else {
+			mFinished.add(request);
+		}
+	}
+	
+	/*
+	 * @return the glyph or its shadow from the cache, rasterized if missing,
+	 * null if it has nothing to draw or is still rasterizing, see mGlyphPending.
+	 */
+	private FontRect getFontRect(boolean shadow, long key, Typeface typeface, int textSize, int charIndex, int shadowRadius) {
+		final FontCaches caches = shadow ? mShadowCacheTextures : mCacheTextures;
+		FontRect r = caches.mCacheRects.get(key);
+		if (r != null) {
+			mHitCount ++;
+			return r;
+		}
+		mMissCount ++;
+		final LongHashMap<GlyphRasterizer.Request> pending = shadow ? mPendingShadows : mPendingGlyphs;
+		GlyphRasterizer.Request request = pending.get(key);
+		if (request == null) {
+			if (!mAsyncRasterEnabled) {
+				return cacheGlyph(caches, mRasterizer.rasterizeNow(key, typeface, textSize, charIndex, shadow, shadowRadius));
+			}
+			request = queueGlyph(pending, key, typeface, textSize, charIndex, shadow, shadowRadius);
+		}
+		if (!request.mDone) {
+			if (mAsyncRasterEnabled && System.nanoTime() - request.mSubmitTime < MAX_PENDING_NS) {
+				request.mSkipped = true;
+				mGlyphPending = true;
+				return null;
 			}
+			mRasterizer.await(request);
 		}
-		if (c) {
-			flushAndInvalidate(caches);
-			return cacheBitmap(caches, w, h, border, slot, glyph, bitmap, false);
+		pending.remove(key);
+		return cacheGlyph(caches, request);
+	}
+	
+	private GlyphRasterizer.Request queueGlyph(LongHashMap<GlyphRasterizer.Request> pending, long key,
+			Typeface typeface, int textSize, int charIndex, boolean shadow, int shadowRadius) {
+		if (mHandler == null) {
+			mHandler = new TaskHandler(Looper.myLooper());
 		}
-		return null;
+		GlyphRasterizer.Request request = mRasterizer.rasterize(key, typeface, textSize, charIndex, shadow, shadowRadius);
+		pending.put(key, request);
+		return request;
 	}
 	
 	/*
-	 * TODO 较耗时，需要优化。可以考虑将模糊操作通过其他工作线程处理
+	 * Cache the glyphs rasterized in background and not drawn again since,
+	 * and the ones precached.
 	 */
-	private FontRect cacheBitmapShadow(FontCaches caches, int w, int h, int shadowRadius, FreeType.GlyphSlot slot, FreeType.Glyph glyph, FreeType.Bitmap bitmap, boolean c) {
-		for (CacheTexture cacheTexture : caches.mACacheTextures) {
-			PackerRect rect = cacheTexture.mPacker.insert(w + shadowRadius * 2, h + shadowRadius * 2);
-			if (rect != null) {
-				FontRect r = new FontRect(cacheTexture, rect, new GlyphSlot(FreeType.toInt(slot.getAdvanceX()), FreeType.toInt(slot.getAdvanceY())), glyph.getLeft(), glyph.getTop());
-				if (cacheTexture.getPixelBuffer() == null) {
-					cacheTexture.allocateTexture();
-				}
-				ByteBuffer byteBuffer = cacheTexture.getPixelBuffer().map();
-				ByteBuffer buffer = bitmap.getBuffer();
-				int pitch = bitmap.getPitch();
-				int size = rect.width() * rect.height();
-				if (mBuffer.length < size) {
-					mBuffer = new byte[GrowingArrayUtils.growSize(size)];
-				}
-//				for (int i = 0; i < rect.height(); i ++) {
-//					for (int j = 0; j < rect.width(); j ++) {
-//						if (i < shadowRadius || i >= rect.height() - shadowRadius || j < shadowRadius || j >= rect.width() - shadowRadius) {
-//							mBuffer[i* rect.width() + j] = (byte) 0;
-//						} else {
-//							mBuffer[i * rect.width() + j] = buffer.get((i - shadowRadius) * pitch + j - shadowRadius);
-//						}
-//					}
-//				}
-				FontUtils.loadGlyphBlurBitmap(buffer, w, h, pitch, mBuffer, shadowRadius);
-				mBlurProcess.blur(mBuffer, rect.width(), rect.height(), rect.width(), shadowRadius);
-//				for (int i = 0; i < rect.height(); i ++) {
-//					for (int j = 0; j < rect.width(); j ++) {
-//						byteBuffer.put((i + rect.rect().top) * cacheTexture.mWidth + j + rect.rect().left, mBuffer[i * rect.width() + j]);
-//					}
-//				}
-				FontUtils.loadGlyphBitmap(mBuffer, rect.width(), rect.height(), rect.width(), 0, byteBuffer, cacheTexture.mWidth, cacheTexture.mHeight, rect.rect().left, rect.rect().top);
-				cacheTexture.mDirtyRect.union(rect.rect());
-				cacheTexture.setDirty(true);
-				return r;
+	private void collectFinishedGlyphs() {
+		GlyphRasterizer.Request request;
+		while ((request = mFinished.poll()) != null) {
+			final LongHashMap<GlyphRasterizer.Request> pending = request.mShadow ? mPendingShadows : mPendingGlyphs;
+			final FontCaches caches = request.mShadow ? mShadowCacheTextures : mCacheTextures;
+			final GlyphRasterizer.Request queued = pending.get(request.mKey);
+			if (queued == request) {
+				pending.remove(request.mKey);
+			} else if (queued != null || caches.mCacheRects.containsKey(request.mKey)) {
+				continue;
+			}
+			if (cacheGlyph(caches, request) != null && request.mSkipped) {
+				mRedrawNeeded = true;
 			}
 		}
-		if (c) {
-			flushAndInvalidate(caches);
-			return cacheBitmapShadow(caches, w, h, shadowRadius, slot, glyph, bitmap, false);
+	}
+	
+	/*
+	 * Copy the pixels of a finished request into a page, a shadow is padded by
+	 * its radius already and a glyph gets a border.
+	 */
+	private FontRect cacheGlyph(FontCaches caches, GlyphRasterizer.Request request) {
+		if (!request.hasPixels()) {
+			return null;
+		}
+		final int w = request.mWidth, h = request.mHeight;
+		final int border = request.mShadow ? 0 : FONT_BORDER_SIZE;
+		PackerRect rect = caches.insert(w + border * 2, h + border * 2);
+		if (rect == null) {
+			return null;
+		}
+		final CacheTexture cacheTexture = caches.mInsertTexture;
+		FontRect r = new FontRect(cacheTexture, rect, new GlyphSlot(request.mAdvanceX, request.mAdvanceY), request.mLeft, request.mTop);
+		if (cacheTexture.getPixelBuffer() == null) {
+			cacheTexture.allocateTexture();
 		}
-		return null;
+		ByteBuffer byteBuffer = cacheTexture.getPixelBuffer().map();
+		FontUtils.loadGlyphBitmap(request.mPixels, w, h, w, border, byteBuffer, cacheTexture.mWidth, cacheTexture.mHeight, rect.rect().left, rect.rect().top);
+		cacheTexture.mDirtyRect.union(rect.rect());
+		cacheTexture.setDirty(true);
+		caches.put(request.mKey, r);
+		return r;
 	}
 	
 	private static class FontData {
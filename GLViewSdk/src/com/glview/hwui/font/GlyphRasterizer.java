@@ -0,0 +1,307 @@
+package com.glview.hwui.font;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import android.os.Process;
+import android.util.Log;
+
+import com.glview.font.FontUtils;
+import com.glview.freetype.FreeType;
+import com.glview.freetype.FreeType.Face;
+import com.glview.graphics.Typeface;
+import com.glview.stackblur.BlurProcess;
+import com.glview.stackblur.NativeBlurProcess;
+
+/**
+ * Rasterizes the glyphs and blurs the shadows of the {@link FontRenderer} in a
+ * small pool of threads, so the RenderThread only copies the finished pixels
+ * into the pages of the font cache.
+ * <p>
+ * Every rasterizer thread opens the typefaces with a FreeType library of its
+ * own, the faces are never shared with the RenderThread and need no lock. An
+ * idle thread exits after {@link #KEEP_ALIVE_SECONDS} and disposes them. A
+ * request run by the calling thread uses the face of the typeface under its
+ * lock instead.
+ */
+final class GlyphRasterizer {
+
+	final static String TAG = "GlyphRasterizer";
+
+	final static int THREAD_COUNT = 2;
+	final static int KEEP_ALIVE_SECONDS = 10;
+
+	/**
+	 * Called in a rasterizer thread when a request queued by
+	 * {@link GlyphRasterizer#rasterize(long, Typeface, int, int, boolean, int)} is done.
+	 */
+	interface Callback {
+		void onGlyphRasterized(Request request);
+	}
+
+	/*
+	 * The FreeType state of one thread. A face reads the font data of its
+	 * typeface, the typeface is kept until the face is disposed.
+	 */
+	final static class Rasterizer {
+		final FreeType.Library mLibrary = FreeType.initFreeType();
+		final HashMap<Typeface, Face> mFaces = new HashMap<Typeface, Face>();
+		final BlurProcess mBlurProcess = new NativeBlurProcess();
+
+		Face face(Typeface typeface) {
+			Face face = mFaces.get(typeface);
+			if (face == null) {
+				// The font data is only read by FreeType, a duplicate keeps the
+				// position of the buffer of the typeface untouched.
+				face = mLibrary.newMemoryFace(typeface.face().buffer.duplicate(), 0);
+				mFaces.put(typeface, face);
+			}
+			return face;
+		}
+
+		void dispose() {
+			for (Face face : mFaces.values()) {
+				face.dispose();
+			}
+			mFaces.clear();
+			mLibrary.dispose();
+		}
+	}
+
+	/*
+	 * A rasterizer thread, creates its FreeType state on its first request.
+	 */
+	final static class RasterizerThread extends Thread {
+		final Runnable mRunnable;
+		Rasterizer mRasterizer;
+
+		RasterizerThread(Runnable r, String name) {
+			super(name);
+			mRunnable = r;
+		}
+
+		Rasterizer rasterizer() {
+			if (mRasterizer == null) {
+				mRasterizer = new Rasterizer();
+			}
+			return mRasterizer;
+		}
+
+		@Override
+		public void run() {
+			Process.setThreadPriority(Process.THREAD_PRIORITY_DISPLAY);
+			try {
+				mRunnable.run();
+			} finally {
+				// The worker timed out or the pool is shut down.
+				if (mRasterizer != null) {
+					mRasterizer.dispose();
+					mRasterizer = null;
+				}
+			}
+		}
+	}
+
+	/*
+	 * Stateless, for the requests run by the calling thread.
+	 */
+	final static BlurProcess sBlurProcess = new NativeBlurProcess();
+
+	final ThreadPoolExecutor mExecutor;
+	final Callback mCallback;
+
+	GlyphRasterizer(Callback callback) {
+		mCallback = callback;
+		mExecutor = new ThreadPoolExecutor(THREAD_COUNT, THREAD_COUNT, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+					int mCount = 0;
+					@Override
+					public Thread newThread(final Runnable r) {
+						return new RasterizerThread(r, "GlyphRasterizer #" + (++ mCount));
+					}
+				});
+		mExecutor.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * Queue the glyph, the caller keeps the request to coalesce the next lookups.
+	 * @param shadow true for the shadow of the glyph, blurred by shadowRadius.
+	 */
+	Request rasterize(long key, Typeface typeface, int textSize, int charIndex, boolean shadow, int shadowRadius) {
+		Request request = new Request(key, typeface, textSize, charIndex, shadow, shadowRadius);
+		mExecutor.execute(request);
+		return request;
+	}
+
+	/**
+	 * Wait for the request, it runs in the calling thread if no rasterizer
+	 * thread has started it yet.
+	 */
+	void await(Request request) {
+		synchronized (request) {
+			if (!request.mStarted && mExecutor.remove(request)) {
+				request.mStarted = true;
+				request.mNotify = false;
+			}
+		}
+		if (!request.mNotify) {
+			request.rasterize();
+			return;
+		}
+		boolean interrupted = false;
+		synchronized (request) {
+			while (!request.mDone) {
+				try {
+					request.wait();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Rasterize the glyph in the calling thread.
+	 */
+	Request rasterizeNow(long key, Typeface typeface, int textSize, int charIndex, boolean shadow, int shadowRadius) {
+		Request request = new Request(key, typeface, textSize, charIndex, shadow, shadowRadius);
+		request.mStarted = true;
+		request.mNotify = false;
+		request.rasterize();
+		return request;
+	}
+
+	/**
+	 * A glyph or a shadow and its pixels once done, {@link #mPixels} holds
+	 * {@link #mWidth} x {@link #mHeight} bytes, a row after the other. A shadow
+	 * is already padded by its radius and blurred.
+	 */
+	final class Request implements Runnable {
+
+		final long mKey;
+		final Typeface mTypeface;
+		final int mTextSize;
+		final int mCharIndex;
+		final boolean mShadow;
+		final int mShadowRadius;
+		final long mSubmitTime = System.nanoTime();
+
+		boolean mStarted;
+		/*
+		 * False when run by the thread waiting for it.
+		 */
+		boolean mNotify = true;
+		volatile boolean mDone;
+		/*
+		 * A frame skipped the glyph, RenderThread only.
+		 */
+		boolean mSkipped;
+
+		byte[] mPixels;
+		int mWidth, mHeight;
+		int mLeft, mTop;
+		int mAdvanceX, mAdvanceY;
+
+		Request(long key, Typeface typeface, int textSize, int charIndex, boolean shadow, int shadowRadius) {
+			mKey = key;
+			mTypeface = typeface;
+			mTextSize = textSize;
+			mCharIndex = charIndex;
+			mShadow = shadow;
+			mShadowRadius = shadowRadius;
+		}
+
+		/**
+		 * @return false if the glyph has nothing to draw.
+		 */
+		boolean hasPixels() {
+			return mPixels != null;
+		}
+
+		@Override
+		public void run() {
+			synchronized (this) {
+				if (mStarted) {
+					return;
+				}
+				mStarted = true;
+			}
+			rasterize();
+			mCallback.onGlyphRasterized(this);
+		}
+
+		void rasterize() {
+			try {
+				final Thread thread = Thread.currentThread();
+				if (thread instanceof RasterizerThread) {
+					final Rasterizer rasterizer = ((RasterizerThread) thread).rasterizer();
+					rasterize(rasterizer.face(mTypeface), rasterizer.mBlurProcess);
+				} else {
+					final Face face = mTypeface.face();
+					synchronized (face) {
+						rasterize(face, sBlurProcess);
+					}
+				}
+			} catch (Throwable e) {
+				Log.w(TAG, "rasterize " + mKey + " fail", e);
+				mPixels = null;
+			}
+			synchronized (this) {
+				mDone = true;
+				notifyAll();
+			}
+		}
+
+		private void rasterize(Face face, BlurProcess blurProcess) {
+			face.setPixelSizes(0, mTextSize);
+			if (!face.loadGlyph(mCharIndex, FreeType.FT_LOAD_DEFAULT)) {
+				return;
+			}
+			final FreeType.GlyphSlot slot = face.getGlyph();
+			final FreeType.Glyph glyph = slot.getGlyph();
+			try {
+				glyph.toBitmap(FreeType.FT_RENDER_MODE_NORMAL);
+				final FreeType.Bitmap bitmap = glyph.getBitmap();
+				final int w = bitmap.getWidth();
+				final int h = bitmap.getRows();
+				if (w <= 0 || h <= 0) {
+					return;
+				}
+				mLeft = glyph.getLeft();
+				mTop = glyph.getTop();
+				mAdvanceX = FreeType.toInt(slot.getAdvanceX());
+				mAdvanceY = FreeType.toInt(slot.getAdvanceY());
+				final ByteBuffer buffer = bitmap.getBuffer();
+				final int pitch = bitmap.getPitch();
+				if (mShadow) {
+					final int radius = mShadowRadius;
+					mWidth = w + radius * 2;
+					mHeight = h + radius * 2;
+					final byte[] pixels = new byte[mWidth * mHeight];
+					FontUtils.loadGlyphBlurBitmap(buffer, w, h, pitch, pixels, radius);
+					blurProcess.blur(pixels, mWidth, mHeight, mWidth, radius);
+					mPixels = pixels;
+				} else {
+					mWidth = w;
+					mHeight = h;
+					final byte[] pixels = new byte[w * h];
+					for (int i = 0; i < h; i ++) {
+						buffer.position(i * pitch);
+						buffer.get(pixels, i * w, w);
+					}
+					mPixels = pixels;
+				}
+			} finally {
+				glyph.dispose();
+			}
+		}
+	}
+
+}
@@ -1,24 +1,401 @@
 package com.glview.hwui.op;
 
-import com.glview.hwui.CanvasOp;
+import java.util.Arrays;
 
+import com.glview.graphics.Bitmap;
+import com.glview.graphics.Rect;
+import com.glview.graphics.RectF;
+import com.glview.graphics.drawable.ninepatch.NinePatch;
+import com.glview.hwui.GLPaint;
+
+/**
+ * The recorded display list of one render node, written by the recording canvas
+ * and decoded by {@link com.glview.hwui.RenderNode} in the render thread.
+ * <p>
+ * The ops are stored flat instead of as objects:
+ * <ul>
+ * <li>{@link #mOps} holds the opcode of every op followed by its int operands</li>
+ * <li>{@link #mFloats} holds the float operands, rects are stored as 4 floats</li>
+ * <li>{@link #mObjects} holds the referenced bitmaps, texts, nodes and paints</li>
+ * </ul>
+ * Every op reads its operands in the order they were written, see the OP_* constants.
+ * <p>
+ * The draw ops also have local bounds in {@link #mBounds}, so the ones out of
+ * the clip are skipped when replayed.
+ * The paints are copied once per display list and shared by the ops recorded
+ * with equal ones, see {@link #putPaint(GLPaint)}. The arrays and the paint
+ * copies are kept when the data is recycled, so recording the same screen
+ * again does not allocate.
+ */
 public class DisplayListData extends NonOp {
-	
-	public CanvasOp mCanvasOps;
-	
+
+	private final static OpPool<DisplayListData> sPool = new OpPool<DisplayListData>(DisplayListData.class, new OpPool.Factory<DisplayListData>() {
+		@Override
+		public DisplayListData create() {
+			return new DisplayListData();
+		}
+	});
+
+	/** ints: saveFlags */
+	public final static int OP_SAVE = 1;
+	public final static int OP_RESTORE = 2;
+	/** ints: saveCount */
+	public final static int OP_RESTORE_TO_COUNT = 3;
+	/** floats: x, y, z */
+	public final static int OP_TRANSLATE = 4;
+	/** floats: sx, sy, sz */
+	public final static int OP_SCALE = 5;
+	/** floats: degrees, x, y, z */
+	public final static int OP_ROTATE = 6;
+	/** floats: left, top, right, bottom */
+	public final static int OP_CLIP_RECT = 7;
+	/** objects: render node */
+	public final static int OP_DRAW_RENDER_NODE = 8;
+	/** floats: x1, y1, x2, y2; objects: paint */
+	public final static int OP_DRAW_LINE = 9;
+	/** floats: left, top, right, bottom; objects: paint */
+	public final static int OP_DRAW_RECT = 10;
+	/** floats: x, y; objects: bitmap, paint */
+	public final static int OP_DRAW_BITMAP = 11;
+	/** floats: source rect, target rect; objects: bitmap, paint */
+	public final static int OP_DRAW_BITMAP_RECT = 12;
+	/** floats: source rect, target rect; objects: bitmap, paint */
+	public final static int OP_DRAW_BITMAP_RECT_F = 13;
+	/** floats: source rect, target rect; objects: bitmap, paint */
+	public final static int OP_DRAW_BITMAP_BATCH = 14;
+	/** floats: rect; objects: patch, paint */
+	public final static int OP_DRAW_PATCH = 15;
+	/** objects: mesh, paint */
+	public final static int OP_DRAW_MESH = 16;
+	/** objects: bitmap, mesh, paint */
+	public final static int OP_DRAW_BITMAP_MESH = 17;
+	/** ints: start, end, drawDefer; floats: x, y; objects: text, paint */
+	public final static int OP_DRAW_TEXT = 18;
+	/** floats: left, top, right, bottom; objects: paint */
+	public final static int OP_DRAW_OVAL = 19;
+	/** floats: left, top, right, bottom, rx, ry; objects: paint */
+	public final static int OP_DRAW_ROUND_RECT = 20;
+	/** objects: path, paint */
+	public final static int OP_DRAW_PATH = 21;
+
+	/**
+	 * The draw ops from this one on have bounds in {@link #mBounds}.
+	 */
+	public final static int FIRST_BOUNDED_OP = OP_DRAW_LINE;
+
+	/*
+	 * The operands of every op, to skip a draw op out of the clip.
+	 */
+	public final static int[] OP_INTS = new int[OP_DRAW_PATH + 1];
+	public final static int[] OP_FLOATS = new int[OP_DRAW_PATH + 1];
+	public final static int[] OP_OBJECTS = new int[OP_DRAW_PATH + 1];
+
+	static {
+		setOperands(OP_SAVE, 1, 0, 0);
+		setOperands(OP_RESTORE_TO_COUNT, 1, 0, 0);
+		setOperands(OP_TRANSLATE, 0, 3, 0);
+		setOperands(OP_SCALE, 0, 3, 0);
+		setOperands(OP_ROTATE, 0, 4, 0);
+		setOperands(OP_CLIP_RECT, 0, 4, 0);
+		setOperands(OP_DRAW_RENDER_NODE, 0, 0, 1);
+		setOperands(OP_DRAW_LINE, 0, 4, 1);
+		setOperands(OP_DRAW_RECT, 0, 4, 1);
+		setOperands(OP_DRAW_BITMAP, 0, 2, 2);
+		setOperands(OP_DRAW_BITMAP_RECT, 0, 8, 2);
+		setOperands(OP_DRAW_BITMAP_RECT_F, 0, 8, 2);
+		setOperands(OP_DRAW_BITMAP_BATCH, 0, 8, 2);
+		setOperands(OP_DRAW_PATCH, 0, 4, 2);
+		setOperands(OP_DRAW_MESH, 0, 0, 2);
+		setOperands(OP_DRAW_BITMAP_MESH, 0, 0, 3);
+		setOperands(OP_DRAW_TEXT, 3, 2, 2);
+		setOperands(OP_DRAW_OVAL, 0, 4, 1);
+		setOperands(OP_DRAW_ROUND_RECT, 0, 6, 1);
+		setOperands(OP_DRAW_PATH, 0, 0, 2);
+	}
+
+	private static void setOperands(int op, int ints, int floats, int objects) {
+		OP_INTS[op] = ints;
+		OP_FLOATS[op] = floats;
+		OP_OBJECTS[op] = objects;
+	}
+
+	final static int INITIAL_CAPACITY = 64;
+	/*
+	 * Arrays grown above this are dropped on recycle instead of being pooled.
+	 */
+	final static int MAX_RETAINED_CAPACITY = 16 * 1024;
+
+	public int[] mOps = new int[INITIAL_CAPACITY];
+	public int mOpsSize;
+	/*
+	 * The ops recorded, an op takes a variable number of ints.
+	 */
+	int mOpCount;
+
+	public float[] mFloats = new float[INITIAL_CAPACITY];
+	public int mFloatsSize;
+
+	public Object[] mObjects = new Object[INITIAL_CAPACITY];
+	public int mObjectsSize;
+
+	/*
+	 * How many of the last paint copies are compared with a recorded paint,
+	 * keeps recording a paint O(1).
+	 */
+	final static int MAX_SEARCH_PAINTS = 8;
+
+	/*
+	 * The attributes of a null paint.
+	 */
+	private final static GLPaint DEFAULT_PAINT = new GLPaint();
+
+	/*
+	 * Copies of the recorded paints, all different from each other but the
+	 * ones too far apart, reused across recordings.
+	 */
+	GLPaint[] mPaints = new GLPaint[INITIAL_CAPACITY];
+	int mPaintsSize;
+	/*
+	 * The copy the last paint was recorded with.
+	 */
+	int mLastPaint = -1;
+
+	/**
+	 * Left, top, right, bottom of every draw op from {@link #FIRST_BOUNDED_OP}
+	 * in the coordinates it's drawn with, left is NaN if they are unknown.
+	 */
+	public float[] mBounds = new float[INITIAL_CAPACITY];
+	public int mBoundsSize;
+
+	/**
+	 * Scale x, scale y, translate x, translate y every render node is drawn
+	 * with, scale x is NaN if it's rotated.
+	 */
+	public float[] mNodeTransforms = new float[INITIAL_CAPACITY];
+	public int mNodeTransformsSize;
+
+	/**
+	 * The union of the bounds of the draw ops but the render nodes, in the
+	 * coordinates of the node, unless {@link #mContentUnbounded}.
+	 */
+	public final RectF mContentBounds = new RectF();
+	public boolean mContentUnbounded = false;
+
 	public boolean mHasDrawOp = false;
-	
+
+	/*
+	 * Scratch rects used while decoding, the canvas copies what it keeps.
+	 */
+	public final Rect mTempSource = new Rect(), mTempTarget = new Rect();
+	public final RectF mTempSourceF = new RectF(), mTempTargetF = new RectF();
+
 	public DisplayListData() {
 	}
-	
+
 	public static DisplayListData obtain() {
-		return (DisplayListData) OpFactory.get().poll(DisplayListData.class);
+		return sPool.acquire();
+	}
+
+	/**
+	 * Start a new op, makes room for all of its operands.
+	 */
+	public void addOp(int op, int ints, int floats, int objects) {
+		if (mOpsSize + ints + 1 > mOps.length) {
+			mOps = Arrays.copyOf(mOps, Math.max(mOps.length << 1, mOpsSize + ints + 1));
+		}
+		if (mFloatsSize + floats > mFloats.length) {
+			mFloats = Arrays.copyOf(mFloats, Math.max(mFloats.length << 1, mFloatsSize + floats));
+		}
+		if (mObjectsSize + objects > mObjects.length) {
+			mObjects = Arrays.copyOf(mObjects, Math.max(mObjects.length << 1, mObjectsSize + objects));
+		}
+		mOps[mOpsSize ++] = op;
+		mOpCount ++;
+	}
+
+	public void putInt(int value) {
+		mOps[mOpsSize ++] = value;
+	}
+
+	public void putFloat(float value) {
+		mFloats[mFloatsSize ++] = value;
+	}
+
+	public void putRect(float left, float top, float right, float bottom) {
+		float[] floats = mFloats;
+		int i = mFloatsSize;
+		floats[i] = left;
+		floats[i + 1] = top;
+		floats[i + 2] = right;
+		floats[i + 3] = bottom;
+		mFloatsSize = i + 4;
+	}
+
+	/**
+	 * A null rect is stored as an empty one.
+	 */
+	public void putRect(Rect rect) {
+		if (rect == null) {
+			putRect(0, 0, 0, 0);
+		} else {
+			putRect(rect.left, rect.top, rect.right, rect.bottom);
+		}
+	}
+
+	/**
+	 * A null rect is stored as an empty one.
+	 */
+	public void putRect(RectF rect) {
+		if (rect == null) {
+			putRect(0, 0, 0, 0);
+		} else {
+			putRect(rect.left, rect.top, rect.right, rect.bottom);
+		}
+	}
+
+	/**
+	 * Set the bounds of the draw op just added.
+	 */
+	public void putBounds(float left, float top, float right, float bottom) {
+		mBounds = putFloats(mBounds, mBoundsSize, left, top, right, bottom);
+		mBoundsSize += 4;
+	}
+
+	/**
+	 * Set the transform of the render node op just added.
+	 */
+	public void putNodeTransform(float sx, float sy, float tx, float ty) {
+		mNodeTransforms = putFloats(mNodeTransforms, mNodeTransformsSize, sx, sy, tx, ty);
+		mNodeTransformsSize += 4;
+	}
+
+	private static float[] putFloats(float[] floats, int size, float a, float b, float c, float d) {
+		if (size + 4 > floats.length) {
+			floats = Arrays.copyOf(floats, floats.length << 1);
+		}
+		floats[size] = a;
+		floats[size + 1] = b;
+		floats[size + 2] = c;
+		floats[size + 3] = d;
+		return floats;
+	}
+
+	public void putObject(Object object) {
+		mObjects[mObjectsSize ++] = object;
+	}
+
+	/**
+	 * Store a bitmap or a nine-patch, its bitmap is pinned until the data is
+	 * recycled, so the UI thread can't free it while it is replayed.
+	 */
+	public void putBitmap(Object object) {
+		final Bitmap bitmap = object instanceof NinePatch ? ((NinePatch) object).getBitmap() : (Bitmap) object;
+		if (bitmap != null) {
+			bitmap.pin();
+		}
+		mObjects[mObjectsSize ++] = object;
+	}
+
+	/**
+	 * Store a copy of the paint, the caller may change it after the op is recorded.
+	 * The copies are immutable once stored, so an op recorded with the same
+	 * attributes as one of the last {@link #MAX_SEARCH_PAINTS} copies shares it.
+	 */
+	public void putPaint(GLPaint paint) {
+		if (paint == null) {
+			paint = DEFAULT_PAINT;
+		}
+		final GLPaint[] paints = mPaints;
+		if (mLastPaint >= 0 && paints[mLastPaint].hasEqualAttributes(paint)) {
+			putObject(paints[mLastPaint]);
+			return;
+		}
+		final int end = Math.max(0, mPaintsSize - MAX_SEARCH_PAINTS);
+		for (int i = mPaintsSize - 1; i >= end; i --) {
+			if (i != mLastPaint && paints[i].hasEqualAttributes(paint)) {
+				mLastPaint = i;
+				putObject(paints[i]);
+				return;
+			}
+		}
+		if (mPaintsSize == mPaints.length) {
+			mPaints = Arrays.copyOf(mPaints, mPaints.length << 1);
+		}
+		GLPaint copy = mPaints[mPaintsSize];
+		if (copy == null) {
+			copy = new GLPaint();
+			mPaints[mPaintsSize] = copy;
+		}
+		mLastPaint = mPaintsSize ++;
+		copy.set(paint);
+		putObject(copy);
+	}
+
+	/**
+	 * @return the number of ops recorded in this display list.
+	 */
+	public int getOpCount() {
+		return mOpCount;
+	}
+
+	/**
+	 * @return the number of paint copies of this display list.
+	 */
+	public int getPaintCount() {
+		return mPaintsSize;
 	}
 
 	@Override
 	protected void recycleInner() {
-		mCanvasOps = null;
+		final Object[] objects = mObjects;
+		for (int i = 0; i < mObjectsSize; i ++) {
+			if (objects[i] instanceof Bitmap) {
+				((Bitmap) objects[i]).unpin();
+			} else if (objects[i] instanceof NinePatch) {
+				final Bitmap bitmap = ((NinePatch) objects[i]).getBitmap();
+				if (bitmap != null) bitmap.unpin();
+			}
+		}
+		if (mOps.length > MAX_RETAINED_CAPACITY) {
+			mOps = new int[INITIAL_CAPACITY];
+		}
+		if (mFloats.length > MAX_RETAINED_CAPACITY) {
+			mFloats = new float[INITIAL_CAPACITY];
+		}
+		if (mObjects.length > MAX_RETAINED_CAPACITY) {
+			mObjects = new Object[INITIAL_CAPACITY];
+		} else {
+			Arrays.fill(mObjects, 0, mObjectsSize, null);
+		}
+		if (mBounds.length > MAX_RETAINED_CAPACITY) {
+			mBounds = new float[INITIAL_CAPACITY];
+		}
+		if (mNodeTransforms.length > MAX_RETAINED_CAPACITY) {
+			mNodeTransforms = new float[INITIAL_CAPACITY];
+		}
+		if (mPaints.length > MAX_RETAINED_CAPACITY) {
+			mPaints = new GLPaint[INITIAL_CAPACITY];
+		} else {
+			for (int i = 0; i < mPaintsSize; i ++) {
+				mPaints[i].reset();
+			}
+		}
+		mOpsSize = 0;
+		mOpCount = 0;
+		mFloatsSize = 0;
+		mObjectsSize = 0;
+		mPaintsSize = 0;
+		mLastPaint = -1;
+		mBoundsSize = 0;
+		mNodeTransformsSize = 0;
+		mContentBounds.setEmpty();
+		mContentUnbounded = false;
 		mHasDrawOp = false;
 	}
 
+	@Override
+	protected OpPool<DisplayListData> pool() {
+		return sPool;
+	}
+
 }
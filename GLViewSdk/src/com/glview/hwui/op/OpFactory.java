@@ -1,21 +1,68 @@
 package com.glview.hwui.op;
 
-import com.glview.hwui.CanvasOp;
-import com.glview.pool.Pool;
+import java.util.ArrayList;
+
+import android.util.Log;
+
+/**
+ * Registry of the {@link OpPool} of every op type, every op class owns a static
+ * pool which registers itself here when the class is initialized.
+ */
+public final class OpFactory {
+
+	private final static String TAG = "OpFactory";
+
+	private final static ArrayList<OpPool<?>> sPools = new ArrayList<OpPool<?>>();
 
-public final class OpFactory extends Pool<CanvasOp> {
-	
-	private static OpFactory sInstance;
-	
 	private OpFactory() {
-		super(true);
 	}
-	
-	public synchronized static OpFactory get() {
-		if (sInstance == null) {
-			sInstance = new OpFactory();
+
+	static void register(OpPool<?> pool) {
+		synchronized (sPools) {
+			sPools.add(pool);
+		}
+	}
+
+	/**
+	 * @return the number of ops reused from the pools.
+	 */
+	public static long getHitCount() {
+		long count = 0;
+		synchronized (sPools) {
+			for (int i = 0; i < sPools.size(); i ++) {
+				count += sPools.get(i).getHitCount();
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * @return the number of ops allocated because their pool was empty.
+	 */
+	public static long getMissCount() {
+		long count = 0;
+		synchronized (sPools) {
+			for (int i = 0; i < sPools.size(); i ++) {
+				count += sPools.get(i).getMissCount();
+			}
+		}
+		return count;
+	}
+
+	public static void resetStats() {
+		synchronized (sPools) {
+			for (int i = 0; i < sPools.size(); i ++) {
+				sPools.get(i).resetStats();
+			}
+		}
+	}
+
+	public static void dump() {
+		synchronized (sPools) {
+			for (int i = 0; i < sPools.size(); i ++) {
+				Log.d(TAG, sPools.get(i).toString());
+			}
 		}
-		return sInstance;
 	}
 
 }
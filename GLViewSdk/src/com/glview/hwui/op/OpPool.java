@@ -0,0 +1,136 @@
+package com.glview.hwui.op;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.glview.hwui.CanvasOp;
+
+/**
+ * Lock free pool of one concrete {@link CanvasOp} type.
+ * <p>
+ * Ops are recorded on the UI thread and recycled on either the UI thread or
+ * the render thread, so {@link #release(CanvasOp)} may be called from any thread.
+ * Released ops are pushed onto a shared stack linked through
+ * {@link CanvasOp#mNext}. {@link #acquire()} never pops the shared stack one by
+ * one: it takes the whole stack at once into a free list owned by the calling
+ * thread, so there is no ABA problem and the common path touches no shared state
+ * but the pooled count.
+ * <p>
+ * Every pool registers itself in {@link OpFactory}, which reports the hit and
+ * miss counters of all the pools.
+ */
+public final class OpPool<T extends CanvasOp> {
+
+	public interface Factory<T extends CanvasOp> {
+		T create();
+	}
+
+	final static int DEFAULT_MAX_POOL_SIZE = 2048;
+
+	private final Class<T> mType;
+	private final Factory<T> mFactory;
+	private final int mMaxPoolSize;
+
+	/*
+	 * Ops released by any thread, linked through CanvasOp.mNext.
+	 */
+	private final AtomicReference<CanvasOp> mReleased = new AtomicReference<CanvasOp>();
+
+	/*
+	 * Ops held by this pool, released or taken into a thread free list.
+	 */
+	private final AtomicInteger mPooledCount = new AtomicInteger();
+
+	private final ThreadLocal<FreeList> mFreeList = new ThreadLocal<FreeList>() {
+		@Override
+		protected FreeList initialValue() {
+			return new FreeList();
+		}
+	};
+
+	/*
+	 * Statistics only, they may lose updates when several threads acquire at once.
+	 */
+	private volatile long mHitCount;
+	private volatile long mMissCount;
+
+	public OpPool(Class<T> type, Factory<T> factory) {
+		this(type, factory, DEFAULT_MAX_POOL_SIZE);
+	}
+
+	public OpPool(Class<T> type, Factory<T> factory, int maxPoolSize) {
+		mType = type;
+		mFactory = factory;
+		mMaxPoolSize = maxPoolSize;
+		OpFactory.register(this);
+	}
+
+	@SuppressWarnings("unchecked")
+	public T acquire() {
+		FreeList freeList = mFreeList.get();
+		CanvasOp op = freeList.mHead;
+		if (op == null) {
+			op = mReleased.getAndSet(null);
+		}
+		if (op != null) {
+			freeList.mHead = op.mNext;
+			op.mNext = null;
+			mPooledCount.decrementAndGet();
+			mHitCount ++;
+			return (T) op;
+		}
+		mMissCount ++;
+		return mFactory.create();
+	}
+
+	/**
+	 * Give the op back to the pool, the caller must not touch it any more.
+	 *
+	 * @return false if the pool is full and the op is dropped.
+	 */
+	public boolean release(CanvasOp op) {
+		// The bound is approximate, a few more ops may get in under contention.
+		if (mPooledCount.get() >= mMaxPoolSize) {
+			return false;
+		}
+		mPooledCount.incrementAndGet();
+		CanvasOp head;
+		do {
+			head = mReleased.get();
+			op.mNext = head;
+		} while (!mReleased.compareAndSet(head, op));
+		return true;
+	}
+
+	public Class<T> getType() {
+		return mType;
+	}
+
+	public long getHitCount() {
+		return mHitCount;
+	}
+
+	public long getMissCount() {
+		return mMissCount;
+	}
+
+	public int getPooledCount() {
+		return mPooledCount.get();
+	}
+
+	public void resetStats() {
+		mHitCount = 0;
+		mMissCount = 0;
+	}
+
+	@Override
+	public String toString() {
+		return mType.getSimpleName() + " hit=" + mHitCount + " miss=" + mMissCount
+				+ " pooled=" + mPooledCount.get();
+	}
+
+	private final static class FreeList {
+		CanvasOp mHead;
+	}
+
+}
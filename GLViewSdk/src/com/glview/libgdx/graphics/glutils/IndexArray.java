@@ -20,6 +20,7 @@ import java.nio.ByteBuffer;
 import java.nio.IntBuffer;
 import java.nio.ShortBuffer;
 
+import com.glview.hwui.RenderState;
 import com.glview.utils.BufferUtils;
 
 public class IndexArray implements IndexData {
@@ -80,6 +81,9 @@ public class IndexArray implements IndexData {
 
 	/** Binds this IndexArray for rendering with glDrawElements. */
 	public void bind () {
+		// The indices are read from the client memory, not from the last buffer bound.
+		final RenderState state = RenderState.current();
+		if (state != null) state.bindElementBuffer(0);
 	}
 
 	/** Unbinds this IndexArray. */
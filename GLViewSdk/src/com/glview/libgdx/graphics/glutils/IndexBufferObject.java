@@ -23,6 +23,7 @@ import java.nio.ShortBuffer;
 import com.glview.App;
 import com.glview.exception.GLViewRuntimeException;
 import com.glview.hwui.GLId;
+import com.glview.hwui.RenderState;
 import com.glview.libgdx.graphics.opengl.GL20;
 import com.glview.utils.BufferUtils;
 
@@ -154,7 +155,9 @@ public class IndexBufferObject implements IndexData {
 		if (bufferHandle == 0) throw new GLViewRuntimeException("No buffer allocated!");
 
 		GL20 gl = App.getGL20();
-		gl.glBindBuffer(GL20.GL_ELEMENT_ARRAY_BUFFER, bufferHandle);
+		final RenderState state = RenderState.current();
+		if (state != null) state.bindElementBuffer(bufferHandle);
+		else gl.glBindBuffer(GL20.GL_ELEMENT_ARRAY_BUFFER, bufferHandle);
 		if (isDirty) {
 			byteBuffer.limit(buffer.limit() * 2);
 			gl.glBufferData(GL20.GL_ELEMENT_ARRAY_BUFFER, byteBuffer.limit(), byteBuffer, usage);
@@ -165,7 +168,11 @@ public class IndexBufferObject implements IndexData {
 
 	/** Unbinds this IndexBufferObject. */
 	public void unbind () {
-		if (App.getGL20() != null) {
+		final RenderState state = RenderState.current();
+		if (state != null) {
+			// Left bound for the next draw.
+			state.skipped(1);
+		} else if (App.getGL20() != null) {
 			App.getGL20().glBindBuffer(GL20.GL_ELEMENT_ARRAY_BUFFER, 0);
 		}
 		isBound = false;
@@ -185,7 +192,9 @@ public class IndexBufferObject implements IndexData {
 			tmpHandle.flip();
 			
 			GL20 gl = App.getGL20();
-			gl.glBindBuffer(GL20.GL_ELEMENT_ARRAY_BUFFER, 0);
+			final RenderState state = RenderState.current();
+			if (state != null) state.deleteBuffer(bufferHandle);
+			else gl.glBindBuffer(GL20.GL_ELEMENT_ARRAY_BUFFER, 0);
 			gl.glDeleteBuffers(1, tmpHandle);
 			
 //			if(Gdx.canvas != null){
@@ -23,6 +23,7 @@ import java.nio.ShortBuffer;
 import com.glview.App;
 import com.glview.exception.GLViewRuntimeException;
 import com.glview.hwui.GLId;
+import com.glview.hwui.RenderState;
 import com.glview.libgdx.graphics.opengl.GL20;
 import com.glview.utils.BufferUtils;
 
@@ -156,7 +157,9 @@ public class IndexBufferObjectSubData implements IndexData {
 		if (bufferHandle == 0) throw new GLViewRuntimeException("buuh");
 
 		GL20 gl = App.getGL20();
-		gl.glBindBuffer(GL20.GL_ELEMENT_ARRAY_BUFFER, bufferHandle);
+		final RenderState state = RenderState.current();
+		if (state != null) state.bindElementBuffer(bufferHandle);
+		else gl.glBindBuffer(GL20.GL_ELEMENT_ARRAY_BUFFER, bufferHandle);
 		if (isDirty) {
 			byteBuffer.limit(buffer.limit() * 2);
 			gl.glBufferSubData(GL20.GL_ELEMENT_ARRAY_BUFFER, 0, byteBuffer.limit(), byteBuffer);
@@ -167,7 +170,11 @@ public class IndexBufferObjectSubData implements IndexData {
 
 	/** Unbinds this IndexBufferObject. */
 	public void unbind () {
-		if (App.getGL20() != null) {
+		final RenderState state = RenderState.current();
+		if (state != null) {
+			// Left bound for the next draw.
+			state.skipped(1);
+		} else if (App.getGL20() != null) {
 			App.getGL20().glBindBuffer(GL20.GL_ELEMENT_ARRAY_BUFFER, 0);
 		}
 		isBound = false;
@@ -186,7 +193,9 @@ public class IndexBufferObjectSubData implements IndexData {
 			tmpHandle.put(bufferHandle);
 			tmpHandle.flip();
 			GL20 gl = App.getGL20();
-			gl.glBindBuffer(GL20.GL_ELEMENT_ARRAY_BUFFER, 0);
+			final RenderState state = RenderState.current();
+			if (state != null) state.deleteBuffer(bufferHandle);
+			else gl.glBindBuffer(GL20.GL_ELEMENT_ARRAY_BUFFER, 0);
 			gl.glDeleteBuffers(1, tmpHandle);
 			bufferHandle = 0;
 		}
@@ -21,16 +21,19 @@ import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
+import java.util.Arrays;
 
 import android.os.Build;
 
 import com.glview.App;
+import com.glview.hwui.RenderState;
 import com.glview.libgdx.graphics.Color;
 import com.glview.libgdx.graphics.math.Matrix3;
 import com.glview.libgdx.graphics.math.Matrix4;
 import com.glview.libgdx.graphics.math.Vector2;
 import com.glview.libgdx.graphics.math.Vector3;
 import com.glview.libgdx.graphics.opengl.GL20;
+import com.glview.libgdx.graphics.opengl.GL30;
 import com.glview.libgdx.graphics.utils.Disposable;
 import com.glview.libgdx.graphics.utils.ObjectIntMap;
 import com.glview.utils.BufferUtils;
@@ -139,19 +142,43 @@ public class ShaderProgram implements Disposable {
 	/** reference count **/
 	private int refCount = 0;
 
+	/** whether the programs keep the values of the uniforms set by {@link HandleInfo} and skip the glUniform calls not
+	 * changing them **/
+	public static boolean shadowUniforms = true;
+
+	/** the slots of the names of the {@link HandleInfo}s, shared by all programs **/
+	private static final ObjectIntMap<String> slots = new ObjectIntMap<String>();
+
+	/** uniform and attribute locations by slot, -2 == not yet fetched **/
+	private int[] uniformSlots = new int[0];
+	private int[] attributeSlots = new int[0];
+	/** the values of the uniforms by slot as int or float bits, null == unknown **/
+	private int[][] uniformValues = new int[0][];
+
 	/** Construcs a new ShaderProgram and immediately compiles it.
 	 * 
 	 * @param vertexShader the vertex shader
 	 * @param fragmentShader the fragment shader */
 
 	public ShaderProgram (String vertexShader, String fragmentShader) {
+		this(vertexShader, fragmentShader, true);
+	}
+
+	/** Construcs a new ShaderProgram.
+	 * 
+	 * @param vertexShader the vertex shader
+	 * @param fragmentShader the fragment shader
+	 * @param compile false to compile it with {@link #compile()} or {@link #compileBinary(GL30, int, byte[])} later */
+	public ShaderProgram (String vertexShader, String fragmentShader, boolean compile) {
 		if (vertexShader == null) throw new IllegalArgumentException("vertex shader must not be null");
 		if (fragmentShader == null) throw new IllegalArgumentException("fragment shader must not be null");
 
 		this.vertexShaderSource = vertexShader;
 		this.fragmentShaderSource = fragmentShader;
 		this.matrix = BufferUtils.newFloatBuffer(16);
-		compile();
+		if (compile) {
+			compile();
+		}
 	}
 	
 	public boolean compile() {
@@ -173,11 +200,62 @@ public class ShaderProgram implements Disposable {
 		return program;
 	}
 
+	/** Links the program from a binary of {@link #getProgramBinary(GL30, int[])} instead of compiling the sources.
+	 * 
+	 * @return false if the driver rejects the binary, after an update of the driver for example. */
+	public boolean compileBinary (GL30 gl, int binaryFormat, byte[] binary) {
+		if (isCompiled()) return true;
+		int program = gl.glCreateProgram();
+		if (program == 0) return false;
+
+		ByteBuffer buffer = ByteBuffer.allocateDirect(binary.length);
+		buffer.order(ByteOrder.nativeOrder());
+		buffer.put(binary);
+		buffer.position(0);
+		gl.glProgramBinary(program, binaryFormat, buffer, binary.length);
+
+		gl.glGetProgramiv(program, GL20.GL_LINK_STATUS, intbuf);
+		if (intbuf.get(0) == 0) {
+			gl.glDeleteProgram(program);
+			return false;
+		}
+
+		this.program = program;
+		resetSlots();
+		vertexShaderHandle = 0;
+		fragmentShaderHandle = 0;
+		isCompiled = true;
+		fetchAttributes();
+		fetchUniforms();
+		return true;
+	}
+
+	/** @param binaryFormat receives the format of the binary
+	 * @return the binary of the linked program, null if the driver doesn't give it. */
+	public byte[] getProgramBinary (GL30 gl, int[] binaryFormat) {
+		if (!isCompiled()) return null;
+		gl.glGetProgramiv(program, GL30.GL_PROGRAM_BINARY_LENGTH, intbuf);
+		int length = intbuf.get(0);
+		if (length <= 0) return null;
+
+		ByteBuffer buffer = ByteBuffer.allocateDirect(length);
+		buffer.order(ByteOrder.nativeOrder());
+		int[] written = new int[1];
+		gl.glGetProgramBinary(program, length, written, 0, binaryFormat, 0, buffer);
+		if (written[0] <= 0) return null;
+
+		byte[] binary = new byte[written[0]];
+		buffer.position(0);
+		buffer.get(binary);
+		return binary;
+	}
+
 	/** Loads and compiles the shaders, creates a new program and links the shaders.
 	 * 
 	 * @param vertexShader
 	 * @param fragmentShader */
 	private void compileShaders (String vertexShader, String fragmentShader) {
+		resetSlots();
 		vertexShaderHandle = loadShader(GL20.GL_VERTEX_SHADER, vertexShader);
 		fragmentShaderHandle = loadShader(GL20.GL_FRAGMENT_SHADER, fragmentShader);
 
@@ -271,13 +349,17 @@ public class ShaderProgram implements Disposable {
 	}
 	
 	public int fetchAttributeLocation(HandleInfo handle){
-		if(!handle.checkLocationValid()){
+		final int slot = handle.slot;
+		if (slot >= attributeSlots.length) {
+			attributeSlots = growSlots(attributeSlots);
+		}
+		int location = attributeSlots[slot];
+		if (location == -2) {
 			checkManaged();
-			int location = fetchAttributeLocation (handle.name);
-			handle.location = location;
+			location = fetchAttributeLocation (handle.name);
+			attributeSlots[slot] = location;
 		}
-		
-		return handle.location;
+		return location;
 	}
 
 	private int fetchAttributeLocation (String name) {
@@ -293,12 +375,104 @@ public class ShaderProgram implements Disposable {
 	}
 
 	private int fetchUniformLocation (HandleInfo handle) {
-		if(!handle.checkLocationValid()){
+		final int slot = handle.slot;
+		if (slot >= uniformSlots.length) {
+			uniformSlots = growSlots(uniformSlots);
+			uniformValues = growValues(uniformValues);
+		}
+		int location = uniformSlots[slot];
+		if (location == -2) {
 			checkManaged();
-			int location = fetchUniformLocation (handle.name);
-			handle.location = location;
-		}		
-		return handle.location;
+			location = fetchUniformLocation (handle.name);
+			uniformSlots[slot] = location;
+		}
+		return location;
+	}
+
+	/** @return the slot of the uniform or attribute name, the same in all programs. */
+	public static int slotOf (String name) {
+		synchronized (slots) {
+			int slot = slots.get(name, -1);
+			if (slot == -1) {
+				slot = slots.size;
+				slots.put(name, slot);
+			}
+			return slot;
+		}
+	}
+
+	private static int slotCount () {
+		synchronized (slots) {
+			return slots.size;
+		}
+	}
+
+	private static int[] growSlots (int[] slots) {
+		int[] grown = new int[slotCount()];
+		System.arraycopy(slots, 0, grown, 0, slots.length);
+		Arrays.fill(grown, slots.length, grown.length, -2);
+		return grown;
+	}
+
+	private static int[][] growValues (int[][] values) {
+		int[][] grown = new int[slotCount()][];
+		System.arraycopy(values, 0, grown, 0, values.length);
+		return grown;
+	}
+
+	/** Forgets the locations and the values of the uniforms and attributes, the program is linked again. */
+	private void resetSlots () {
+		uniformSlots = new int[slotCount()];
+		Arrays.fill(uniformSlots, -2);
+		uniformValues = new int[uniformSlots.length][];
+		attributeSlots = new int[uniformSlots.length];
+		Arrays.fill(attributeSlots, -2);
+	}
+
+	/** Keeps the values of the uniform, with {@link #shadowUniforms}.
+	 * 
+	 * @return false if the uniform already has them, the glUniform call can be skipped. */
+	private boolean setUniformValues (int slot, int count, int value1, int value2, int value3, int value4) {
+		if (!shadowUniforms) return true;
+		int[] values = uniformValues[slot];
+		if (values != null && values.length == count && values[0] == value1 && (count < 2 || values[1] == value2)
+			&& (count < 3 || values[2] == value3) && (count < 4 || values[3] == value4)) {
+			return false;
+		}
+		if (values == null || values.length != count) {
+			values = uniformValues[slot] = new int[count];
+		}
+		values[0] = value1;
+		if (count > 1) values[1] = value2;
+		if (count > 2) values[2] = value3;
+		if (count > 3) values[3] = value4;
+		return true;
+	}
+
+	private boolean setUniformValues (int slot, float[] array, int offset, int length) {
+		if (!shadowUniforms) return true;
+		int[] values = uniformValues[slot];
+		if (values != null && values.length == length) {
+			int i = 0;
+			while (i < length && values[i] == Float.floatToRawIntBits(array[offset + i])) i++;
+			if (i == length) return false;
+		} else {
+			values = uniformValues[slot] = new int[length];
+		}
+		for (int i = 0; i < length; i++) {
+			values[i] = Float.floatToRawIntBits(array[offset + i]);
+		}
+		return true;
+	}
+
+	/** The uniform at the location is set without its {@link HandleInfo}, its values are unknown. */
+	private void forgetUniformValue (int location) {
+		final int[] slots = uniformSlots;
+		for (int i = 0; i < slots.length; i++) {
+			if (slots[i] == location) {
+				uniformValues[i] = null;
+			}
+		}
 	}
 	
 	private int fetchUniformLocation (String name) {
@@ -327,19 +501,22 @@ public class ShaderProgram implements Disposable {
 		GL20 gl = App.getGL20();
 		checkManaged();
 		int location = fetchUniformLocation(name);
+		forgetUniformValue(location);
 		gl.glUniform1i(location, value);
 	}
 	
 	public void setUniformi (int location, int value) {
 		GL20 gl = App.getGL20();
 		checkManaged();
+		forgetUniformValue(location);
 		gl.glUniform1i(location, value);
 	}
 	
 	public void setUniformi (HandleInfo handle, int value) {
 		checkManaged();
 		int location = fetchUniformLocation(handle);
-		setUniformi (location, value);
+		if (location == -1 || !setUniformValues(handle.slot, 1, value, 0, 0, 0)) return;
+		App.getGL20().glUniform1i(location, value);
 	}
 
 	/** Sets the uniform with the given name. Throws an IllegalArgumentException in case it is not called in between a
@@ -352,12 +529,14 @@ public class ShaderProgram implements Disposable {
 		GL20 gl = App.getGL20();
 		checkManaged();
 		int location = fetchUniformLocation(name);
+		forgetUniformValue(location);
 		gl.glUniform2i(location, value1, value2);
 	}
 	
 	public void setUniformi (int location, int value1, int value2) {
 		GL20 gl = App.getGL20();
 		checkManaged();
+		forgetUniformValue(location);
 		gl.glUniform2i(location, value1, value2);
 	}
 	
@@ -365,7 +544,8 @@ public class ShaderProgram implements Disposable {
 	public void setUniformi (HandleInfo handle, int value1, int value2) {
 		checkManaged();
 		int location = fetchUniformLocation(handle);
-		setUniformf (location, value1, value2);
+		if (location == -1 || !setUniformValues(handle.slot, 2, value1, value2, 0, 0)) return;
+		App.getGL20().glUniform2i(location, value1, value2);
 	}
 
 	/** Sets the uniform with the given name. Throws an IllegalArgumentException in case it is not called in between a
@@ -379,12 +559,14 @@ public class ShaderProgram implements Disposable {
 		GL20 gl = App.getGL20();
 		checkManaged();
 		int location = fetchUniformLocation(name);
+		forgetUniformValue(location);
 		gl.glUniform3i(location, value1, value2, value3);
 	}
 	
 	public void setUniformi (int location, int value1, int value2, int value3) {
 		GL20 gl = App.getGL20();
 		checkManaged();
+		forgetUniformValue(location);
 		gl.glUniform3i(location, value1, value2, value3);
 	}
 	
@@ -392,7 +574,8 @@ public class ShaderProgram implements Disposable {
 	public void setUniformi (HandleInfo handle, int value1, int value2, int value3) {
 		checkManaged();
 		int location = fetchUniformLocation(handle);
-		setUniformf (location, value1, value2, value3);
+		if (location == -1 || !setUniformValues(handle.slot, 3, value1, value2, value3, 0)) return;
+		App.getGL20().glUniform3i(location, value1, value2, value3);
 	}
 
 	/** Sets the uniform with the given name. Throws an IllegalArgumentException in case it is not called in between a
@@ -407,19 +590,22 @@ public class ShaderProgram implements Disposable {
 		GL20 gl = App.getGL20();
 		checkManaged();
 		int location = fetchUniformLocation(name);
+		forgetUniformValue(location);
 		gl.glUniform4i(location, value1, value2, value3, value4);
 	}
 	
 	public void setUniformi (int location, int value1, int value2, int value3, int value4) {
 		GL20 gl = App.getGL20();
 		checkManaged();
+		forgetUniformValue(location);
 		gl.glUniform4i(location, value1, value2, value3, value4);
 	}
 	
 	public void setUniformi (HandleInfo handle, int value1, int value2, int value3, int value4) {
 		checkManaged();
 		int location = fetchUniformLocation(handle);
-		setUniformf (location, value1, value2, value3, value4);
+		if (location == -1 || !setUniformValues(handle.slot, 4, value1, value2, value3, value4)) return;
+		App.getGL20().glUniform4i(location, value1, value2, value3, value4);
 	}
 
 	/** Sets the uniform with the given name. Throws an IllegalArgumentException in case it is not called in between a
@@ -431,19 +617,22 @@ public class ShaderProgram implements Disposable {
 		GL20 gl = App.getGL20();
 		checkManaged();
 		int location = fetchUniformLocation(name);
+		forgetUniformValue(location);
 		gl.glUniform1f(location, value);
 	}
 	
 	public void setUniformf (int location, float value) {
 		GL20 gl = App.getGL20();
 		checkManaged();
+		forgetUniformValue(location);
 		gl.glUniform1f(location, value);
 	}
 	
 	public void setUniformf (HandleInfo handle, float value) {
 		checkManaged();
 		int location = fetchUniformLocation(handle);
-		setUniformf (location, value);
+		if (location == -1 || !setUniformValues(handle.slot, 1, Float.floatToRawIntBits(value), 0, 0, 0)) return;
+		App.getGL20().glUniform1f(location, value);
 	}
 
 	/** Sets the uniform with the given name. Throws an IllegalArgumentException in case it is not called in between a
@@ -456,19 +645,23 @@ public class ShaderProgram implements Disposable {
 		GL20 gl = App.getGL20();
 		checkManaged();
 		int location = fetchUniformLocation(name);
+		forgetUniformValue(location);
 		gl.glUniform2f(location, value1, value2);
 	}
 	
 	public void setUniformf (int location, float value1, float value2) {
 		GL20 gl = App.getGL20();
 		checkManaged();
+		forgetUniformValue(location);
 		gl.glUniform2f(location, value1, value2);
 	}
 	
 	public void setUniformf (HandleInfo handle, float value1, float value2) {
 		checkManaged();
 		int location = fetchUniformLocation(handle);
-		setUniformf (location, value1, value2);
+		if (location == -1 || !setUniformValues(handle.slot, 2, Float.floatToRawIntBits(value1),
+				Float.floatToRawIntBits(value2), 0, 0)) return;
+		App.getGL20().glUniform2f(location, value1, value2);
 	}
 
 	/** Sets the uniform with the given name. Throws an IllegalArgumentException in case it is not called in between a
@@ -482,12 +675,14 @@ public class ShaderProgram implements Disposable {
 		GL20 gl = App.getGL20();
 		checkManaged();
 		int location = fetchUniformLocation(name);
+		forgetUniformValue(location);
 		gl.glUniform3f(location, value1, value2, value3);
 	}
 	
 	public void setUniformf (int location, float value1, float value2, float value3) {
 		GL20 gl = App.getGL20();
 		checkManaged();
+		forgetUniformValue(location);
 		gl.glUniform3f(location, value1, value2, value3);
 	}
 	
@@ -495,7 +690,9 @@ public class ShaderProgram implements Disposable {
 	public void setUniformf (HandleInfo handle, float value1, float value2, float value3) {
 		checkManaged();
 		int location = fetchUniformLocation(handle);
-		setUniformf (location, value1, value2, value3);
+		if (location == -1 || !setUniformValues(handle.slot, 3, Float.floatToRawIntBits(value1),
+				Float.floatToRawIntBits(value2), Float.floatToRawIntBits(value3), 0)) return;
+		App.getGL20().glUniform3f(location, value1, value2, value3);
 	}
 
 	/** Sets the uniform with the given name. Throws an IllegalArgumentException in case it is not called in between a
@@ -510,19 +707,23 @@ public class ShaderProgram implements Disposable {
 		GL20 gl = App.getGL20();
 		checkManaged();
 		int location = fetchUniformLocation(name);
+		forgetUniformValue(location);
 		gl.glUniform4f(location, value1, value2, value3, value4);
 	}
 	
 	public void setUniformf (int location, float value1, float value2, float value3, float value4) {
 		GL20 gl = App.getGL20();
 		checkManaged();
+		forgetUniformValue(location);
 		gl.glUniform4f(location, value1, value2, value3, value4);
 	}
 	
 	public void setUniformf (HandleInfo handle, float value1, float value2, float value3, float value4) {
 		checkManaged();
 		int location = fetchUniformLocation(handle);
-		setUniformf (location, value1, value2, value3, value4);
+		if (location == -1 || !setUniformValues(handle.slot, 4, Float.floatToRawIntBits(value1),
+				Float.floatToRawIntBits(value2), Float.floatToRawIntBits(value3), Float.floatToRawIntBits(value4))) return;
+		App.getGL20().glUniform4f(location, value1, value2, value3, value4);
 	}
 
 	public void setUniform1fv (String name, float[] values, int offset, int length) {
@@ -532,6 +733,7 @@ public class ShaderProgram implements Disposable {
 		ensureBufferCapacity(length << 2);
 		floatBuffer.clear();
 		BufferUtils.copy(values, floatBuffer, length, offset);
+		forgetUniformValue(location);
 		gl.glUniform1fv(location, length, floatBuffer);
 	}
 	
@@ -541,6 +743,7 @@ public class ShaderProgram implements Disposable {
 		ensureBufferCapacity(length << 2);
 		floatBuffer.clear();
 		BufferUtils.copy(values, floatBuffer, length, offset);
+		forgetUniformValue(location);
 		gl.glUniform1fv(location, length, floatBuffer);
 	}
 	
@@ -559,6 +762,7 @@ public class ShaderProgram implements Disposable {
 		ensureBufferCapacity(length << 2);
 		floatBuffer.clear();
 		BufferUtils.copy(values, floatBuffer, length, offset);
+		forgetUniformValue(location);
 		gl.glUniform2fv(location, length / 2, floatBuffer);
 	}
 	
@@ -568,6 +772,7 @@ public class ShaderProgram implements Disposable {
 		ensureBufferCapacity(length << 2);
 		floatBuffer.clear();
 		BufferUtils.copy(values, floatBuffer, length, offset);
+		forgetUniformValue(location);
 		gl.glUniform2fv(location, length / 2, floatBuffer);
 	}
 	
@@ -584,6 +789,7 @@ public class ShaderProgram implements Disposable {
 		ensureBufferCapacity(length << 2);
 		floatBuffer.clear();
 		BufferUtils.copy(values, floatBuffer, length, offset);
+		forgetUniformValue(location);
 		gl.glUniform3fv(location, length / 3, floatBuffer);
 	}
 	
@@ -593,6 +799,7 @@ public class ShaderProgram implements Disposable {
 		ensureBufferCapacity(length << 2);
 		floatBuffer.clear();
 		BufferUtils.copy(values, floatBuffer, length, offset);
+		forgetUniformValue(location);
 		gl.glUniform3fv(location, length / 3, floatBuffer);
 	}
 	
@@ -609,6 +816,7 @@ public class ShaderProgram implements Disposable {
 		ensureBufferCapacity(length << 2);
 		floatBuffer.clear();
 		BufferUtils.copy(values, floatBuffer, length, offset);
+		forgetUniformValue(location);
 		gl.glUniform4fv(location, length / 4, floatBuffer);
 	}
 	
@@ -618,6 +826,7 @@ public class ShaderProgram implements Disposable {
 		ensureBufferCapacity(length << 2);
 		floatBuffer.clear();
 		BufferUtils.copy(values, floatBuffer, length, offset);
+		forgetUniformValue(location);
 		gl.glUniform4fv(location, length / 4, floatBuffer);
 	}
 
@@ -651,6 +860,7 @@ public class ShaderProgram implements Disposable {
 		int location = fetchUniformLocation(name);
 		this.matrix.clear();
 		BufferUtils.copy(matrix.val, this.matrix, matrix.val.length, 0);
+		forgetUniformValue(location);
 		gl.glUniformMatrix4fv(location, 1, transpose, this.matrix);
 	}
 	
@@ -669,6 +879,7 @@ public class ShaderProgram implements Disposable {
 		checkManaged();
 		this.matrix.clear();
 		BufferUtils.copy(matrix.val, this.matrix, matrix.val.length, 0);
+		forgetUniformValue(location);
 		gl.glUniformMatrix4fv(location, 1, transpose, this.matrix);
 	}
 
@@ -701,6 +912,7 @@ public class ShaderProgram implements Disposable {
 		float[] vals = matrix.getValues();
 		this.matrix.clear();
 		BufferUtils.copy(vals, this.matrix, vals.length, 0);
+		forgetUniformValue(location);
 		gl.glUniformMatrix3fv(location, 1, transpose, this.matrix);
 	}
 	
@@ -718,6 +930,7 @@ public class ShaderProgram implements Disposable {
 		float[] vals = matrix.getValues();
 		this.matrix.clear();
 		BufferUtils.copy(vals, this.matrix, vals.length, 0);
+		forgetUniformValue(location);
 		gl.glUniformMatrix3fv(location, 1, transpose, this.matrix);
 	}
 	
@@ -738,6 +951,7 @@ public class ShaderProgram implements Disposable {
 		checkManaged();
 		buffer.position(0);
 		int location = fetchUniformLocation(name);
+		forgetUniformValue(location);
 		gl.glUniformMatrix3fv(location, count, transpose, buffer);
 	}
 
@@ -752,6 +966,7 @@ public class ShaderProgram implements Disposable {
 		checkManaged();
 		buffer.position(0);
 		int location = fetchUniformLocation(name);
+		forgetUniformValue(location);
 		gl.glUniformMatrix4fv(location, count, transpose, buffer);
 	}
 	
@@ -761,6 +976,7 @@ public class ShaderProgram implements Disposable {
 		ensureBufferCapacity(length << 2);
 		floatBuffer.clear();
 		BufferUtils.copy(values, floatBuffer, length, offset);
+		forgetUniformValue(location);
 		gl.glUniformMatrix4fv(location, length / 16, false, floatBuffer);
 	}
 	
@@ -771,6 +987,7 @@ public class ShaderProgram implements Disposable {
 		floatBuffer.clear();
 		BufferUtils.copy(values, floatBuffer, length, offset);
 		int location = fetchUniformLocation(name);
+		forgetUniformValue(location);
 		gl.glUniformMatrix4fv(location, length / 16, false, floatBuffer);
 	}
 	
@@ -778,8 +995,11 @@ public class ShaderProgram implements Disposable {
 	public void setUniformMatrix4fv (HandleInfo handle, float[] values, int offset, int length) {
 		checkManaged();
 		int location = fetchUniformLocation(handle);
-		
-		setUniformMatrix4fv (location, values, offset, length);
+		if (location == -1 || !setUniformValues(handle.slot, values, offset, length)) return;
+		ensureBufferCapacity(length << 2);
+		floatBuffer.clear();
+		BufferUtils.copy(values, floatBuffer, length, offset);
+		App.getGL20().glUniformMatrix4fv(location, length / 16, false, floatBuffer);
 	}
 
 	/** Sets the uniform with the given name. Throws an IllegalArgumentException in case it is not called in between a
@@ -903,6 +1123,8 @@ public class ShaderProgram implements Disposable {
 		gl.glDeleteShader(vertexShaderHandle);
 		gl.glDeleteShader(fragmentShaderHandle);
 		gl.glDeleteProgram(program);
+		final RenderState state = RenderState.current();
+		if (state != null) state.deleteProgram(program);
 		isCompiled = false;
 	}
 
@@ -1000,6 +1222,7 @@ public class ShaderProgram implements Disposable {
 		int numUniforms = params.get(0);
 		
 		uniformNames = new String[numUniforms];
+		uniforms.clear();
 		
 		for (int i = 0; i < numUniforms; i++) {
 			String name = getActiveUniform(i);
@@ -1009,6 +1232,15 @@ public class ShaderProgram implements Disposable {
 			uniformSizes.put(name, params.get(0));
 			uniformNames[i] = name;
 		}
+		// The handles of the active uniforms need no lookup.
+		for (int i = 0; i < numUniforms; i++) {
+			int slot = slotOf(uniformNames[i]);
+			if (slot >= uniformSlots.length) {
+				uniformSlots = growSlots(uniformSlots);
+				uniformValues = growValues(uniformValues);
+			}
+			uniformSlots[slot] = uniforms.get(uniformNames[i], -1);
+		}
 	}
 	
 	private String getActiveUniform(int index) {
@@ -1035,6 +1267,7 @@ public class ShaderProgram implements Disposable {
 		int numAttributes = params.get(0);
 
 		attributeNames = new String[numAttributes];
+		attributes.clear();
 
 		for (int i = 0; i < numAttributes; i++) {
 			String name = getActiveAttrib(i);
@@ -1044,6 +1277,13 @@ public class ShaderProgram implements Disposable {
 			attributeSizes.put(name, params.get(0));
 			attributeNames[i] = name;
 		}
+		for (int i = 0; i < numAttributes; i++) {
+			int slot = slotOf(attributeNames[i]);
+			if (slot >= attributeSlots.length) {
+				attributeSlots = growSlots(attributeSlots);
+			}
+			attributeSlots[slot] = attributes.get(attributeNames[i], -1);
+		}
 	}
 	
 	private String getActiveAttrib(int index) {
@@ -1137,20 +1377,15 @@ public class ShaderProgram implements Disposable {
 	}
 	
 	
+	/** The slot of the name of a uniform or an attribute, its location in a program is looked up once when the program is
+	 * linked. */
 	static public class HandleInfo{
-		public String name;
-		public static final int INVALID = -1;
-		public int location = INVALID;
-		public boolean checkLocationValid(){
-			return location == INVALID ? false : true;
-		}
+		public final String name;
+		public final int slot;
 		
 		public HandleInfo(String name){
 			this.name = name;
-		}
-		
-		public void setInvalide(){
-			this.location = INVALID;
+			this.slot = slotOf(name);
 		}
 	}
 }
@@ -20,6 +20,7 @@ import java.nio.ByteBuffer;
 import java.nio.FloatBuffer;
 
 import com.glview.App;
+import com.glview.hwui.RenderState;
 import com.glview.libgdx.graphics.VertexAttribute;
 import com.glview.libgdx.graphics.VertexAttributes;
 import com.glview.libgdx.graphics.VertexAttributes.Usage;
@@ -102,6 +103,10 @@ public class VertexArray implements VertexData {
 	public void bind (final ShaderProgram shader, final int[] locations) {
 		final GL20 gl = App.getGL20();
 		final int numAttributes = attributes.size();
+		// The vertices are read from the client memory, not from the last buffer bound.
+		final RenderState state = RenderState.current();
+		if (state != null) state.bindArrayBuffer(0);
+		int mask = 0;
 		byteBuffer.limit(buffer.limit() * 4);
 		if (locations == null) {
 			for (int i = 0; i < numAttributes; i++) {
@@ -109,7 +114,8 @@ public class VertexArray implements VertexData {
 				final int location = shader.getAttributeLocation(attribute.alias);
 				if (location < 0)
 					continue;
-				shader.enableVertexAttribute(location);
+				if (state != null) mask |= 1 << location;
+				else shader.enableVertexAttribute(location);
 				
 				byteBuffer.position(attribute.offset);
 				if (attribute.usage == Usage.ColorPacked)
@@ -125,7 +131,8 @@ public class VertexArray implements VertexData {
 				final int location = locations[i];
 				if (location < 0)
 					continue;
-				shader.enableVertexAttribute(location);
+				if (state != null) mask |= 1 << location;
+				else shader.enableVertexAttribute(location);
 				
 				byteBuffer.position(attribute.offset);
 				if (attribute.usage == Usage.ColorPacked)
@@ -136,6 +143,7 @@ public class VertexArray implements VertexData {
 						attributes.vertexSize, byteBuffer);
 			}
 		}
+		if (state != null) state.enableVertexAttributes(mask);
 		isBound = true;
 	}
 	
@@ -151,6 +159,13 @@ public class VertexArray implements VertexData {
 	public void unbind (ShaderProgram shader, int[] locations) {
 		final GL20 gl = App.getGL20();
 		final int numAttributes = attributes.size();
+		final RenderState state = RenderState.current();
+		if (state != null) {
+			// Left enabled, the next draw only changes the attributes that differ.
+			state.skipped(numAttributes);
+			isBound = false;
+			return;
+		}
 		if (locations == null) {
 			for (int i = 0; i < numAttributes; i++) {
 				shader.disableVertexAttribute(attributes.get(i).alias);
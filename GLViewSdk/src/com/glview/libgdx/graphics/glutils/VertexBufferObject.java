@@ -23,6 +23,7 @@ import java.nio.IntBuffer;
 import com.glview.App;
 import com.glview.exception.GLViewRuntimeException;
 import com.glview.hwui.GLId;
+import com.glview.hwui.RenderState;
 import com.glview.libgdx.graphics.VertexAttribute;
 import com.glview.libgdx.graphics.VertexAttributes;
 import com.glview.libgdx.graphics.VertexAttributes.Usage;
@@ -151,8 +152,10 @@ public class VertexBufferObject implements VertexData {
 		if (bufferHandle == 0) throw new GLViewRuntimeException("No buffer allocated!");
 		
 		final GL20 gl = App.getGL20();
+		final RenderState state = RenderState.current();
 
-		gl.glBindBuffer(GL20.GL_ARRAY_BUFFER, bufferHandle);
+		if (state != null) state.bindArrayBuffer(bufferHandle);
+		else gl.glBindBuffer(GL20.GL_ARRAY_BUFFER, bufferHandle);
 		if (isDirty) {
 			byteBuffer.limit(buffer.limit() * 4);
 			gl.glBufferData(GL20.GL_ARRAY_BUFFER, byteBuffer.limit(), byteBuffer, usage);
@@ -160,13 +163,15 @@ public class VertexBufferObject implements VertexData {
 		}
 
 		final int numAttributes = attributes.size();
+		int mask = 0;
 		if (locations == null) {
 			for (int i = 0; i < numAttributes; i++) {
 				final VertexAttribute attribute = attributes.get(i);
 				final int location = shader.getAttributeLocation(attribute.alias);
 				if (location < 0)
 					continue;
-				shader.enableVertexAttribute(location);
+				if (state != null) mask |= 1 << location;
+				else shader.enableVertexAttribute(location);
 	
 				if (attribute.usage == Usage.ColorPacked)
 					shader.setVertexAttribute(location, attribute.numComponents, GL20.GL_UNSIGNED_BYTE, true, attributes.vertexSize,
@@ -181,7 +186,8 @@ public class VertexBufferObject implements VertexData {
 				final int location = locations[i];
 				if (location < 0)
 					continue;
-				shader.enableVertexAttribute(location);
+				if (state != null) mask |= 1 << location;
+				else shader.enableVertexAttribute(location);
 	
 				if (attribute.usage == Usage.ColorPacked)
 					shader.setVertexAttribute(location, attribute.numComponents, GL20.GL_UNSIGNED_BYTE, true, attributes.vertexSize,
@@ -191,6 +197,7 @@ public class VertexBufferObject implements VertexData {
 						attribute.offset);
 			}
 		}
+		if (state != null) state.enableVertexAttributes(mask);
 		isBound = true;
 	}
 
@@ -206,6 +213,13 @@ public class VertexBufferObject implements VertexData {
 	public void unbind (final ShaderProgram shader, final int[] locations) {
 		final GL20 gl = App.getGL20();
 		final int numAttributes = attributes.size();
+		final RenderState state = RenderState.current();
+		if (state != null) {
+			// Left bound, the next draw only changes the buffer and the attributes that differ.
+			state.skipped(numAttributes + 1);
+			isBound = false;
+			return;
+		}
 		if (locations == null) {
 			for (int i = 0; i < numAttributes; i++) {
 				shader.disableVertexAttribute(attributes.get(i).alias);
@@ -236,7 +250,9 @@ public class VertexBufferObject implements VertexData {
 			tmpHandle.flip();
 			
 			GL20 gl = App.getGL20();
-			gl.glBindBuffer(GL20.GL_ARRAY_BUFFER, 0);
+			final RenderState state = RenderState.current();
+			if (state != null) state.deleteBuffer(bufferHandle);
+			else gl.glBindBuffer(GL20.GL_ARRAY_BUFFER, 0);
 			gl.glDeleteBuffers(1, tmpHandle);
 			bufferHandle = 0;
 		}
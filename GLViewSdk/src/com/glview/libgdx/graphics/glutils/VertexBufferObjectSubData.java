@@ -22,6 +22,7 @@ import java.nio.IntBuffer;
 
 import com.glview.App;
 import com.glview.hwui.GLId;
+import com.glview.hwui.RenderState;
 import com.glview.libgdx.graphics.VertexAttribute;
 import com.glview.libgdx.graphics.VertexAttributes;
 import com.glview.libgdx.graphics.VertexAttributes.Usage;
@@ -155,8 +156,10 @@ public class VertexBufferObjectSubData implements VertexData {
 	@Override
 	public void bind (final ShaderProgram shader, final int[] locations) {
 		final GL20 gl = App.getGL20();
+		final RenderState state = RenderState.current();
 
-		gl.glBindBuffer(GL20.GL_ARRAY_BUFFER, bufferHandle);
+		if (state != null) state.bindArrayBuffer(bufferHandle);
+		else gl.glBindBuffer(GL20.GL_ARRAY_BUFFER, bufferHandle);
 		if (isDirty) {
 			byteBuffer.limit(buffer.limit() * 4);
 			gl.glBufferData(GL20.GL_ARRAY_BUFFER, byteBuffer.limit(), byteBuffer, usage);
@@ -164,13 +167,15 @@ public class VertexBufferObjectSubData implements VertexData {
 		}
 
 		final int numAttributes = attributes.size();
+		int mask = 0;
 		if (locations == null) {
 			for (int i = 0; i < numAttributes; i++) {
 				final VertexAttribute attribute = attributes.get(i);
 				final int location = shader.getAttributeLocation(attribute.alias);
 				if (location < 0)
 					continue;
-				shader.enableVertexAttribute(location);
+				if (state != null) mask |= 1 << location;
+				else shader.enableVertexAttribute(location);
 	
 				if (attribute.usage == Usage.ColorPacked)
 					shader.setVertexAttribute(location, attribute.numComponents, GL20.GL_UNSIGNED_BYTE, true, attributes.vertexSize,
@@ -185,7 +190,8 @@ public class VertexBufferObjectSubData implements VertexData {
 				final int location = locations[i];
 				if (location < 0)
 					continue;
-				shader.enableVertexAttribute(location);
+				if (state != null) mask |= 1 << location;
+				else shader.enableVertexAttribute(location);
 	
 				if (attribute.usage == Usage.ColorPacked)
 					shader.setVertexAttribute(location, attribute.numComponents, GL20.GL_UNSIGNED_BYTE, true, attributes.vertexSize,
@@ -195,6 +201,7 @@ public class VertexBufferObjectSubData implements VertexData {
 						attribute.offset);
 			}
 		}
+		if (state != null) state.enableVertexAttributes(mask);
 		isBound = true;
 	}
 
@@ -210,6 +217,13 @@ public class VertexBufferObjectSubData implements VertexData {
 	public void unbind (final ShaderProgram shader, final int[] locations) {
 		final GL20 gl = App.getGL20();
 		final int numAttributes = attributes.size();
+		final RenderState state = RenderState.current();
+		if (state != null) {
+			// Left bound, the next draw only changes the buffer and the attributes that differ.
+			state.skipped(numAttributes + 1);
+			isBound = false;
+			return;
+		}
 		if (locations == null) {
 			for (int i = 0; i < numAttributes; i++) {
 				shader.disableVertexAttribute(attributes.get(i).alias);
@@ -241,7 +255,9 @@ public class VertexBufferObjectSubData implements VertexData {
 			
 			
 			GL20 gl = App.getGL20();
-			gl.glBindBuffer(GL20.GL_ARRAY_BUFFER, 0);
+			final RenderState state = RenderState.current();
+			if (state != null) state.deleteBuffer(bufferHandle);
+			else gl.glBindBuffer(GL20.GL_ARRAY_BUFFER, 0);
 			gl.glDeleteBuffers(1, tmpHandle);
 			
 //			if(Gdx.canvas != null){
@@ -21,6 +21,7 @@ import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
 
 import android.opengl.GLES20;
+import android.opengl.GLUtils;
 
 public class AndroidGL20 implements GL20 {
 
@@ -621,4 +622,12 @@ public class AndroidGL20 implements GL20 {
 	public void glViewport (int x, int y, int width, int height) {
 		GLES20.glViewport(x, y, width, height);
 	}
+
+	public void glTexImage2D (int target, int level, int internalformat, android.graphics.Bitmap bitmap, int type, int border) {
+		GLUtils.texImage2D(target, level, internalformat, bitmap, type, border);
+	}
+
+	public void glTexSubImage2D (int target, int level, int xoffset, int yoffset, android.graphics.Bitmap bitmap, int format, int type) {
+		GLUtils.texSubImage2D(target, level, xoffset, yoffset, bitmap, format, type);
+	}
 }
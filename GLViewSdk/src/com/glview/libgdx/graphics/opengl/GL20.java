@@ -553,4 +553,10 @@ public interface GL20 extends GL {
 	public void glVertexAttribPointer (int indx, int size, int type, boolean normalized, int stride, Buffer ptr);
 
 	public void glVertexAttribPointer (int indx, int size, int type, boolean normalized, int stride, int offset);
+
+	// Android specific, mirrors android.opengl.GLUtils#texImage2D
+	public void glTexImage2D (int target, int level, int internalformat, android.graphics.Bitmap bitmap, int type, int border);
+
+	// Android specific, mirrors android.opengl.GLUtils#texSubImage2D
+	public void glTexSubImage2D (int target, int level, int xoffset, int yoffset, android.graphics.Bitmap bitmap, int format, int type);
 }
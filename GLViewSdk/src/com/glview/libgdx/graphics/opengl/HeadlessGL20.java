@@ -0,0 +1,935 @@
+package com.glview.libgdx.graphics.opengl;
+
+import java.nio.Buffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+
+import com.glview.libgdx.graphics.utils.ObjectIntMap;
+
+/**
+ * A {@link GL20} that talks to no driver at all. Every call is a no-op that
+ * is only counted, so the hwui pipeline can be run and profiled on machines
+ * without a GPU. Install it with {@link com.glview.App#setGL20(GL20)} before
+ * the render thread starts.
+ * <p>
+ * Generated names are unique increasing integers, shaders always compile and
+ * link, and framebuffers are always complete.
+ */
+public class HeadlessGL20 implements GL20 {
+
+	public final static int CATEGORY_OTHER = 0;
+	public final static int CATEGORY_DRAW = 1;
+	public final static int CATEGORY_STATE = 2;
+	public final static int CATEGORY_UNIFORM = 3;
+	private final static int CATEGORY_COUNT = 4;
+
+	private final static int MAX_TEXTURE_SIZE = 4096;
+
+	private final long[] mCallCounts = new long[CATEGORY_COUNT];
+	private long mCallCount;
+	private long mUploadedBytes;
+
+	private int mNextId = 1;
+	private final ObjectIntMap<String> mLocations = new ObjectIntMap<String>();
+
+	/**
+	 * Total number of GL calls since the last {@link #reset()}.
+	 */
+	public long getCallCount() {
+		return mCallCount;
+	}
+
+	/**
+	 * Number of glDrawArrays/glDrawElements calls since the last {@link #reset()}.
+	 */
+	public long getDrawCallCount() {
+		return mCallCounts[CATEGORY_DRAW];
+	}
+
+	/**
+	 * Number of calls changing pipeline state (enable/disable, blend, bindings,
+	 * program, scissor, viewport...) since the last {@link #reset()}.
+	 */
+	public long getStateChangeCount() {
+		return mCallCounts[CATEGORY_STATE];
+	}
+
+	/**
+	 * Number of glUniform* calls since the last {@link #reset()}.
+	 */
+	public long getUniformCallCount() {
+		return mCallCounts[CATEGORY_UNIFORM];
+	}
+
+	/**
+	 * Bytes handed to buffer and texture uploads since the last {@link #reset()}.
+	 */
+	public long getUploadedBytes() {
+		return mUploadedBytes;
+	}
+
+	public void reset() {
+		for (int i = 0; i < CATEGORY_COUNT; i ++) {
+			mCallCounts[i] = 0;
+		}
+		mCallCount = 0;
+		mUploadedBytes = 0;
+	}
+
+	@Override
+	public String toString() {
+		return "HeadlessGL20{calls=" + mCallCount + ", draws=" + getDrawCallCount()
+				+ ", stateChanges=" + getStateChangeCount() + ", uniforms=" + getUniformCallCount()
+				+ ", uploadedBytes=" + mUploadedBytes + "}";
+	}
+
+	private void call(int category) {
+		mCallCount ++;
+		mCallCounts[category] ++;
+	}
+
+	private void generate(int n, IntBuffer buffers) {
+		int position = buffers.position();
+		for (int i = 0; i < n; i ++) {
+			buffers.put(position + i, mNextId ++);
+		}
+	}
+
+	private int location(String name) {
+		int location = mLocations.get(name, -1);
+		if (location < 0) {
+			location = mLocations.size;
+			mLocations.put(name, location);
+		}
+		return location;
+	}
+
+	private static int getInteger(int pname) {
+		switch (pname) {
+		case GL_MAX_TEXTURE_SIZE:
+		case GL_MAX_RENDERBUFFER_SIZE:
+			return MAX_TEXTURE_SIZE;
+		default:
+			return 0;
+		}
+	}
+
+	private static int getParameter(int pname) {
+		switch (pname) {
+		case GL_COMPILE_STATUS:
+		case GL_LINK_STATUS:
+		case GL_VALIDATE_STATUS:
+			return GL_TRUE;
+		default:
+			return 0;
+		}
+	}
+
+	private static String getString(int name) {
+		switch (name) {
+		case GL_VERSION:
+			return "OpenGL ES 2.0 Headless";
+		case GL_VENDOR:
+		case GL_RENDERER:
+			return "Headless";
+		default:
+			return "";
+		}
+	}
+
+	private static int bytesPerPixel(int format, int type) {
+		switch (type) {
+		case GL_UNSIGNED_SHORT_5_6_5:
+		case GL_UNSIGNED_SHORT_4_4_4_4:
+		case GL_UNSIGNED_SHORT_5_5_5_1:
+			return 2;
+		default:
+			break;
+		}
+		switch (format) {
+		case GL_ALPHA:
+		case GL_LUMINANCE:
+			return 1;
+		case GL_LUMINANCE_ALPHA:
+			return 2;
+		case GL_RGB:
+			return 3;
+		default:
+			return 4;
+		}
+	}
+
+	@Override
+	public void glActiveTexture (int texture) {
+		call(CATEGORY_STATE);
+	}
+
+	@Override
+	public void glBindTexture (int target, int texture) {
+		call(CATEGORY_STATE);
+	}
+
+	@Override
+	public void glBlendFunc (int sfactor, int dfactor) {
+		call(CATEGORY_STATE);
+	}
+
+	@Override
+	public void glClear (int mask) {
+		call(CATEGORY_OTHER);
+	}
+
+	@Override
+	public void glClearColor (float red, float green, float blue, float alpha) {
+		call(CATEGORY_STATE);
+	}
+
+	@Override
+	public void glClearDepthf (float depth) {
+		call(CATEGORY_STATE);
+	}
+
+	@Override
+	public void glClearStencil (int s) {
+		call(CATEGORY_STATE);
+	}
+
+	@Override
+	public void glColorMask (boolean red, boolean green, boolean blue, boolean alpha) {
+		call(CATEGORY_STATE);
+	}
+
+	@Override
+	public void glCompressedTexImage2D (int target, int level, int internalformat, int width, int height, int border, int imageSize, Buffer data) {
+		call(CATEGORY_OTHER);
+		mUploadedBytes += imageSize;
+	}
+
+	@Override
+	public void glCompressedTexSubImage2D (int target, int level, int xoffset, int yoffset, int width, int height, int format, int imageSize, Buffer data) {
+		call(CATEGORY_OTHER);
+		mUploadedBytes += imageSize;
+	}
+
+	@Override
+	public void glCopyTexImage2D (int target, int level, int internalformat, int x, int y, int width, int height, int border) {
+		call(CATEGORY_OTHER);
+	}
+
+	@Override
+	public void glCopyTexSubImage2D (int target, int level, int xoffset, int yoffset, int x, int y, int width, int height) {
+		call(CATEGORY_OTHER);
+	}
+
+	@Override
+	public void glCullFace (int mode) {
+		call(CATEGORY_STATE);
+	}
+
+	@Override
+	public void glDeleteTextures (int n, IntBuffer textures) {
+		call(CATEGORY_OTHER);
+	}
+
+	@Override
+	public void glDepthFunc (int func) {
+		call(CATEGORY_STATE);
+	}
+
+	@Override
+	public void glDepthMask (boolean flag) {
+		call(CATEGORY_STATE);
+	}
+
+	@Override
+	public void glDepthRangef (float zNear, float zFar) {
+		call(CATEGORY_STATE);
+	}
+
+	@Override
+	public void glDisable (int cap) {
+		call(CATEGORY_STATE);
+	}
+
+	@Override
+	public void glDrawArrays (int mode, int first, int count) {
+		call(CATEGORY_DRAW);
+	}
+
+	@Override
+	public void glDrawElements (int mode, int count, int type, Buffer indices) {
+		call(CATEGORY_DRAW);
+	}
+
+	@Override
+	public void glEnable (int cap) {
+		call(CATEGORY_STATE);
+	}
+
+	@Override
+	public void glFinish () {
+		call(CATEGORY_OTHER);
+	}
+
+	@Override
+	public void glFlush () {
+		call(CATEGORY_OTHER);
+	}
+
+	@Override
+	public void glFrontFace (int mode) {
+		call(CATEGORY_STATE);
+	}
+
+	@Override
+	public void glGenTextures (int n, IntBuffer textures) {
+		call(CATEGORY_OTHER);
+		generate(n, textures);
+	}
+
+	@Override
+	public int glGetError () {
+		call(CATEGORY_OTHER);
+		return GL_NO_ERROR;
+	}
+
+	@Override
+	public void glGetIntegerv (int pname, IntBuffer params) {
+		call(CATEGORY_OTHER);
+		params.put(params.position(), getInteger(pname));
+	}
+
+	@Override
+	public String glGetString (int name) {
+		call(CATEGORY_OTHER);
+		return getString(name);
+	}
+
+	@Override
+	public void glHint (int target, int mode) {
+		call(CATEGORY_STATE);
+	}
+
+	@Override
+	public void glLineWidth (float width) {
+		call(CATEGORY_STATE);
+	}
+
+	@Override
+	public void glPixelStorei (int pname, int param) {
+		call(CATEGORY_STATE);
+	}
+
+	@Override
+	public void glPolygonOffset (float factor, float units) {
+		call(CATEGORY_STATE);
+	}
+
+	@Override
+	public void glReadPixels (int x, int y, int width, int height, int format, int type, Buffer pixels) {
+		call(CATEGORY_OTHER);
+	}
+
+	@Override
+	public void glScissor (int x, int y, int width, int height) {
+		call(CATEGORY_STATE);
+	}
+
+	@Override
+	public void glStencilFunc (int func, int ref, int mask) {
+		call(CATEGORY_STATE);
+	}
+
+	@Override
+	public void glStencilMask (int mask) {
+		call(CATEGORY_STATE);
+	}
+
+	@Override
+	public void glStencilOp (int fail, int zfail, int zpass) {
+		call(CATEGORY_STATE);
+	}
+
+	@Override
+	public void glTexImage2D (int target, int level, int internalformat, int width, int height, int border, int format, int type, Buffer pixels) {
+		call(CATEGORY_OTHER);
+		mUploadedBytes += width * height * bytesPerPixel(format, type);
+	}
+
+	@Override
+	public void glTexParameterf (int target, int pname, float param) {
+		call(CATEGORY_STATE);
+	}
+
+	@Override
+	public void glTexSubImage2D (int target, int level, int xoffset, int yoffset, int width, int height, int format, int type, Buffer pixels) {
+		call(CATEGORY_OTHER);
+		mUploadedBytes += width * height * bytesPerPixel(format, type);
+	}
+
+	@Override
+	public void glViewport (int x, int y, int width, int height) {
+		call(CATEGORY_STATE);
+	}
+
+	@Override
+	public void glAttachShader (int program, int shader) {
+		call(CATEGORY_OTHER);
+	}
+
+	@Override
+	public void glBindAttribLocation (int program, int index, String name) {
+		call(CATEGORY_OTHER);
+	}
+
+	@Override
+	public void glBindBuffer (int target, int buffer) {
+		call(CATEGORY_STATE);
+	}
+
+	@Override
+	public void glBindFramebuffer (int target, int framebuffer) {
+		call(CATEGORY_STATE);
+	}
+
+	@Override
+	public void glBindRenderbuffer (int target, int renderbuffer) {
+		call(CATEGORY_STATE);
+	}
+
+	@Override
+	public void glBlendColor (float red, float green, float blue, float alpha) {
+		call(CATEGORY_STATE);
+	}
+
+	@Override
+	public void glBlendEquation (int mode) {
+		call(CATEGORY_STATE);
+	}
+
+	@Override
+	public void glBlendEquationSeparate (int modeRGB, int modeAlpha) {
+		call(CATEGORY_STATE);
+	}
+
+	@Override
+	public void glBlendFuncSeparate (int srcRGB, int dstRGB, int srcAlpha, int dstAlpha) {
+		call(CATEGORY_STATE);
+	}
+
+	@Override
+	public void glBufferData (int target, int size, Buffer data, int usage) {
+		call(CATEGORY_OTHER);
+		mUploadedBytes += size;
+	}
+
+	@Override
+	public void glBufferSubData (int target, int offset, int size, Buffer data) {
+		call(CATEGORY_OTHER);
+		mUploadedBytes += size;
+	}
+
+	@Override
+	public int glCheckFramebufferStatus (int target) {
+		call(CATEGORY_OTHER);
+		return GL_FRAMEBUFFER_COMPLETE;
+	}
+
+	@Override
+	public void glCompileShader (int shader) {
+		call(CATEGORY_OTHER);
+	}
+
+	@Override
+	public int glCreateProgram () {
+		call(CATEGORY_OTHER);
+		return mNextId ++;
+	}
+
+	@Override
+	public int glCreateShader (int type) {
+		call(CATEGORY_OTHER);
+		return mNextId ++;
+	}
+
+	@Override
+	public void glDeleteBuffers (int n, IntBuffer buffers) {
+		call(CATEGORY_OTHER);
+	}
+
+	@Override
+	public void glDeleteFramebuffers (int n, IntBuffer framebuffers) {
+		call(CATEGORY_OTHER);
+	}
+
+	@Override
+	public void glDeleteProgram (int program) {
+		call(CATEGORY_OTHER);
+	}
+
+	@Override
+	public void glDeleteRenderbuffers (int n, IntBuffer renderbuffers) {
+		call(CATEGORY_OTHER);
+	}
+
+	@Override
+	public void glDeleteShader (int shader) {
+		call(CATEGORY_OTHER);
+	}
+
+	@Override
+	public void glDetachShader (int program, int shader) {
+		call(CATEGORY_OTHER);
+	}
+
+	@Override
+	public void glDisableVertexAttribArray (int index) {
+		call(CATEGORY_STATE);
+	}
+
+	@Override
+	public void glDrawElements (int mode, int count, int type, int offset) {
+		call(CATEGORY_DRAW);
+	}
+
+	@Override
+	public void glEnableVertexAttribArray (int index) {
+		call(CATEGORY_STATE);
+	}
+
+	@Override
+	public void glFramebufferRenderbuffer (int target, int attachment, int renderbuffertarget, int renderbuffer) {
+		call(CATEGORY_OTHER);
+	}
+
+	@Override
+	public void glFramebufferTexture2D (int target, int attachment, int textarget, int texture, int level) {
+		call(CATEGORY_OTHER);
+	}
+
+	@Override
+	public void glGenBuffers (int n, IntBuffer buffers) {
+		call(CATEGORY_OTHER);
+		generate(n, buffers);
+	}
+
+	@Override
+	public void glGenerateMipmap (int target) {
+		call(CATEGORY_OTHER);
+	}
+
+	@Override
+	public void glGenFramebuffers (int n, IntBuffer framebuffers) {
+		call(CATEGORY_OTHER);
+		generate(n, framebuffers);
+	}
+
+	@Override
+	public void glGenRenderbuffers (int n, IntBuffer renderbuffers) {
+		call(CATEGORY_OTHER);
+		generate(n, renderbuffers);
+	}
+
+	@Override
+	public String glGetActiveAttrib (int program, int index, IntBuffer size, IntBuffer type) {
+		call(CATEGORY_OTHER);
+		return "";
+	}
+
+	@Override
+	public void glGetActiveAttrib (int program, int index, int bufsize, int[] length, int lengthOffset, int[] size, int sizeOffset, int[] type, int typeOffset, byte[] name, int nameOffset) {
+		call(CATEGORY_OTHER);
+	}
+
+	@Override
+	public String glGetActiveUniform (int program, int index, IntBuffer size, IntBuffer type) {
+		call(CATEGORY_OTHER);
+		return "";
+	}
+
+	@Override
+	public void glGetActiveUniform (int program, int index, int bufsize, int[] length, int lengthOffset, int[] size, int sizeOffset, int[] type, int typeOffset, byte[] name, int nameOffset) {
+		call(CATEGORY_OTHER);
+	}
+
+	@Override
+	public void glGetAttachedShaders (int program, int maxcount, IntBuffer count, IntBuffer shaders) {
+		call(CATEGORY_OTHER);
+	}
+
+	@Override
+	public int glGetAttribLocation (int program, String name) {
+		call(CATEGORY_OTHER);
+		return location(name);
+	}
+
+	@Override
+	public void glGetBooleanv (int pname, IntBuffer params) {
+		call(CATEGORY_OTHER);
+	}
+
+	@Override
+	public void glGetBufferParameteriv (int target, int pname, IntBuffer params) {
+		call(CATEGORY_OTHER);
+	}
+
+	@Override
+	public void glGetFloatv (int pname, FloatBuffer params) {
+		call(CATEGORY_OTHER);
+	}
+
+	@Override
+	public void glGetFramebufferAttachmentParameteriv (int target, int attachment, int pname, IntBuffer params) {
+		call(CATEGORY_OTHER);
+	}
+
+	@Override
+	public void glGetProgramiv (int program, int pname, IntBuffer params) {
+		call(CATEGORY_OTHER);
+		params.put(params.position(), getParameter(pname));
+	}
+
+	@Override
+	public String glGetProgramInfoLog (int program) {
+		call(CATEGORY_OTHER);
+		return "";
+	}
+
+	@Override
+	public void glGetRenderbufferParameteriv (int target, int pname, IntBuffer params) {
+		call(CATEGORY_OTHER);
+	}
+
+	@Override
+	public void glGetShaderiv (int shader, int pname, IntBuffer params) {
+		call(CATEGORY_OTHER);
+		params.put(params.position(), getParameter(pname));
+	}
+
+	@Override
+	public void glGetShaderiv (int shader, int pname, int[] params, int offset) {
+		call(CATEGORY_OTHER);
+		params[offset] = getParameter(pname);
+	}
+
+	@Override
+	public String glGetShaderInfoLog (int shader) {
+		call(CATEGORY_OTHER);
+		return "";
+	}
+
+	@Override
+	public void glGetShaderPrecisionFormat (int shadertype, int precisiontype, IntBuffer range, IntBuffer precision) {
+		call(CATEGORY_OTHER);
+	}
+
+	@Override
+	public void glGetTexParameterfv (int target, int pname, FloatBuffer params) {
+		call(CATEGORY_OTHER);
+	}
+
+	@Override
+	public void glGetTexParameteriv (int target, int pname, IntBuffer params) {
+		call(CATEGORY_OTHER);
+	}
+
+	@Override
+	public void glGetUniformfv (int program, int location, FloatBuffer params) {
+		call(CATEGORY_OTHER);
+	}
+
+	@Override
+	public void glGetUniformiv (int program, int location, IntBuffer params) {
+		call(CATEGORY_OTHER);
+	}
+
+	@Override
+	public int glGetUniformLocation (int program, String name) {
+		call(CATEGORY_OTHER);
+		return location(name);
+	}
+
+	@Override
+	public void glGetVertexAttribfv (int index, int pname, FloatBuffer params) {
+		call(CATEGORY_OTHER);
+	}
+
+	@Override
+	public void glGetVertexAttribiv (int index, int pname, IntBuffer params) {
+		call(CATEGORY_OTHER);
+	}
+
+	@Override
+	public void glGetVertexAttribPointerv (int index, int pname, Buffer pointer) {
+		call(CATEGORY_OTHER);
+	}
+
+	@Override
+	public boolean glIsBuffer (int buffer) {
+		call(CATEGORY_OTHER);
+		return false;
+	}
+
+	@Override
+	public boolean glIsEnabled (int cap) {
+		call(CATEGORY_OTHER);
+		return false;
+	}
+
+	@Override
+	public boolean glIsFramebuffer (int framebuffer) {
+		call(CATEGORY_OTHER);
+		return false;
+	}
+
+	@Override
+	public boolean glIsProgram (int program) {
+		call(CATEGORY_OTHER);
+		return false;
+	}
+
+	@Override
+	public boolean glIsRenderbuffer (int renderbuffer) {
+		call(CATEGORY_OTHER);
+		return false;
+	}
+
+	@Override
+	public boolean glIsShader (int shader) {
+		call(CATEGORY_OTHER);
+		return false;
+	}
+
+	@Override
+	public boolean glIsTexture (int texture) {
+		call(CATEGORY_OTHER);
+		return false;
+	}
+
+	@Override
+	public void glLinkProgram (int program) {
+		call(CATEGORY_OTHER);
+	}
+
+	@Override
+	public void glReleaseShaderCompiler () {
+		call(CATEGORY_OTHER);
+	}
+
+	@Override
+	public void glRenderbufferStorage (int target, int internalformat, int width, int height) {
+		call(CATEGORY_OTHER);
+	}
+
+	@Override
+	public void glSampleCoverage (float value, boolean invert) {
+		call(CATEGORY_OTHER);
+	}
+
+	@Override
+	public void glShaderBinary (int n, IntBuffer shaders, int binaryformat, Buffer binary, int length) {
+		call(CATEGORY_OTHER);
+	}
+
+	@Override
+	public void glShaderSource (int shader, String string) {
+		call(CATEGORY_OTHER);
+	}
+
+	@Override
+	public void glStencilFuncSeparate (int face, int func, int ref, int mask) {
+		call(CATEGORY_STATE);
+	}
+
+	@Override
+	public void glStencilMaskSeparate (int face, int mask) {
+		call(CATEGORY_STATE);
+	}
+
+	@Override
+	public void glStencilOpSeparate (int face, int fail, int zfail, int zpass) {
+		call(CATEGORY_STATE);
+	}
+
+	@Override
+	public void glTexParameterfv (int target, int pname, FloatBuffer params) {
+		call(CATEGORY_STATE);
+	}
+
+	@Override
+	public void glTexParameteri (int target, int pname, int param) {
+		call(CATEGORY_STATE);
+	}
+
+	@Override
+	public void glTexParameteriv (int target, int pname, IntBuffer params) {
+		call(CATEGORY_STATE);
+	}
+
+	@Override
+	public void glUniform1f (int location, float x) {
+		call(CATEGORY_UNIFORM);
+	}
+
+	@Override
+	public void glUniform1fv (int location, int count, FloatBuffer v) {
+		call(CATEGORY_UNIFORM);
+	}
+
+	@Override
+	public void glUniform1i (int location, int x) {
+		call(CATEGORY_UNIFORM);
+	}
+
+	@Override
+	public void glUniform1iv (int location, int count, IntBuffer v) {
+		call(CATEGORY_UNIFORM);
+	}
+
+	@Override
+	public void glUniform2f (int location, float x, float y) {
+		call(CATEGORY_UNIFORM);
+	}
+
+	@Override
+	public void glUniform2fv (int location, int count, FloatBuffer v) {
+		call(CATEGORY_UNIFORM);
+	}
+
+	@Override
+	public void glUniform2i (int location, int x, int y) {
+		call(CATEGORY_UNIFORM);
+	}
+
+	@Override
+	public void glUniform2iv (int location, int count, IntBuffer v) {
+		call(CATEGORY_UNIFORM);
+	}
+
+	@Override
+	public void glUniform3f (int location, float x, float y, float z) {
+		call(CATEGORY_UNIFORM);
+	}
+
+	@Override
+	public void glUniform3fv (int location, int count, FloatBuffer v) {
+		call(CATEGORY_UNIFORM);
+	}
+
+	@Override
+	public void glUniform3i (int location, int x, int y, int z) {
+		call(CATEGORY_UNIFORM);
+	}
+
+	@Override
+	public void glUniform3iv (int location, int count, IntBuffer v) {
+		call(CATEGORY_UNIFORM);
+	}
+
+	@Override
+	public void glUniform4f (int location, float x, float y, float z, float w) {
+		call(CATEGORY_UNIFORM);
+	}
+
+	@Override
+	public void glUniform4fv (int location, int count, FloatBuffer v) {
+		call(CATEGORY_UNIFORM);
+	}
+
+	@Override
+	public void glUniform4i (int location, int x, int y, int z, int w) {
+		call(CATEGORY_UNIFORM);
+	}
+
+	@Override
+	public void glUniform4iv (int location, int count, IntBuffer v) {
+		call(CATEGORY_UNIFORM);
+	}
+
+	@Override
+	public void glUniformMatrix2fv (int location, int count, boolean transpose, FloatBuffer value) {
+		call(CATEGORY_UNIFORM);
+	}
+
+	@Override
+	public void glUniformMatrix3fv (int location, int count, boolean transpose, FloatBuffer value) {
+		call(CATEGORY_UNIFORM);
+	}
+
+	@Override
+	public void glUniformMatrix4fv (int location, int count, boolean transpose, FloatBuffer value) {
+		call(CATEGORY_UNIFORM);
+	}
+
+	@Override
+	public void glUseProgram (int program) {
+		call(CATEGORY_STATE);
+	}
+
+	@Override
+	public void glValidateProgram (int program) {
+		call(CATEGORY_OTHER);
+	}
+
+	@Override
+	public void glVertexAttrib1f (int indx, float x) {
+		call(CATEGORY_OTHER);
+	}
+
+	@Override
+	public void glVertexAttrib1fv (int indx, FloatBuffer values) {
+		call(CATEGORY_OTHER);
+	}
+
+	@Override
+	public void glVertexAttrib2f (int indx, float x, float y) {
+		call(CATEGORY_OTHER);
+	}
+
+	@Override
+	public void glVertexAttrib2fv (int indx, FloatBuffer values) {
+		call(CATEGORY_OTHER);
+	}
+
+	@Override
+	public void glVertexAttrib3f (int indx, float x, float y, float z) {
+		call(CATEGORY_OTHER);
+	}
+
+	@Override
+	public void glVertexAttrib3fv (int indx, FloatBuffer values) {
+		call(CATEGORY_OTHER);
+	}
+
+	@Override
+	public void glVertexAttrib4f (int indx, float x, float y, float z, float w) {
+		call(CATEGORY_OTHER);
+	}
+
+	@Override
+	public void glVertexAttrib4fv (int indx, FloatBuffer values) {
+		call(CATEGORY_OTHER);
+	}
+
+	@Override
+	public void glVertexAttribPointer (int indx, int size, int type, boolean normalized, int stride, Buffer ptr) {
+		call(CATEGORY_STATE);
+	}
+
+	@Override
+	public void glVertexAttribPointer (int indx, int size, int type, boolean normalized, int stride, int offset) {
+		call(CATEGORY_STATE);
+	}
+
+	@Override
+	public void glTexImage2D (int target, int level, int internalformat, android.graphics.Bitmap bitmap, int type, int border) {
+		call(CATEGORY_OTHER);
+		mUploadedBytes += bitmap.getRowBytes() * bitmap.getHeight();
+	}
+
+	@Override
+	public void glTexSubImage2D (int target, int level, int xoffset, int yoffset, android.graphics.Bitmap bitmap, int format, int type) {
+		call(CATEGORY_OTHER);
+		mUploadedBytes += bitmap.getRowBytes() * bitmap.getHeight();
+	}
+}
@@ -2,6 +2,11 @@ package com.glview.util;
 
 import android.util.Log;
 
+/**
+ * Logs the frame rate of any target once per second, e.g. a plain Android view.
+ * The frames of a GLView window are better measured by {@link com.glview.hwui.FrameStats},
+ * see {@link com.glview.view.GLRootView#setOnFrameStatsListener}.
+ */
 public class FPSUtils {
 	
 	Object mTarget;
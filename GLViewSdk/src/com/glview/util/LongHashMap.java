@@ -0,0 +1,167 @@
+package com.glview.util;
+
+import java.util.Arrays;
+
+/**
+ * A map of long keys to objects, open addressing with linear probing.
+ * <p>
+ * Unlike {@link android.support.v4.util.LongSparseArray}, which keeps its keys
+ * sorted and shifts them on every insert, a put or a remove is O(1) and only
+ * growing the table allocates. Null values are not allowed. Not thread safe.
+ */
+public class LongHashMap<V> {
+
+	private final static int MIN_CAPACITY = 16;
+
+	long[] mKeys;
+	/*
+	 * A null value is an empty slot.
+	 */
+	Object[] mValues;
+	int mSize;
+	int mMask;
+	/*
+	 * Grows when the table is 3/4 full.
+	 */
+	int mThreshold;
+
+	public LongHashMap() {
+		this(MIN_CAPACITY);
+	}
+
+	public LongHashMap(int initialCapacity) {
+		int capacity = MIN_CAPACITY;
+		while (capacity * 3 / 4 < initialCapacity) {
+			capacity <<= 1;
+		}
+		allocate(capacity);
+	}
+
+	private void allocate(int capacity) {
+		mKeys = new long[capacity];
+		mValues = new Object[capacity];
+		mMask = capacity - 1;
+		mThreshold = capacity * 3 / 4;
+	}
+
+	private static int hash(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+
+	@SuppressWarnings("unchecked")
+	public V get(long key) {
+		final long[] keys = mKeys;
+		final Object[] values = mValues;
+		final int mask = mMask;
+		int i = hash(key) & mask;
+		Object value;
+		while ((value = values[i]) != null) {
+			if (keys[i] == key) {
+				return (V) value;
+			}
+			i = (i + 1) & mask;
+		}
+		return null;
+	}
+
+	/**
+	 * @return the previous value of the key, or null.
+	 */
+	@SuppressWarnings("unchecked")
+	public V put(long key, V value) {
+		if (value == null) {
+			throw new IllegalArgumentException("value must not be null");
+		}
+		final long[] keys = mKeys;
+		final Object[] values = mValues;
+		final int mask = mMask;
+		int i = hash(key) & mask;
+		Object old;
+		while ((old = values[i]) != null) {
+			if (keys[i] == key) {
+				values[i] = value;
+				return (V) old;
+			}
+			i = (i + 1) & mask;
+		}
+		keys[i] = key;
+		values[i] = value;
+		if (++ mSize > mThreshold) {
+			resize(keys.length << 1);
+		}
+		return null;
+	}
+
+	/**
+	 * @return the removed value, or null.
+	 */
+	@SuppressWarnings("unchecked")
+	public V remove(long key) {
+		final long[] keys = mKeys;
+		final Object[] values = mValues;
+		final int mask = mMask;
+		int i = hash(key) & mask;
+		Object old;
+		while ((old = values[i]) != null) {
+			if (keys[i] == key) {
+				break;
+			}
+			i = (i + 1) & mask;
+		}
+		if (old == null) {
+			return null;
+		}
+		// Shift back the entries of the probe sequence after the hole, no
+		// tombstones so the lookups stay short.
+		int j = i;
+		while (true) {
+			j = (j + 1) & mask;
+			if (values[j] == null) {
+				break;
+			}
+			final int k = hash(keys[j]) & mask;
+			if (j > i ? (k <= i || k > j) : (k <= i && k > j)) {
+				keys[i] = keys[j];
+				values[i] = values[j];
+				i = j;
+			}
+		}
+		values[i] = null;
+		mSize --;
+		return (V) old;
+	}
+
+	public boolean containsKey(long key) {
+		return get(key) != null;
+	}
+
+	public int size() {
+		return mSize;
+	}
+
+	public void clear() {
+		if (mSize > 0) {
+			Arrays.fill(mValues, null);
+			mSize = 0;
+		}
+	}
+
+	private void resize(int capacity) {
+		final long[] keys = mKeys;
+		final Object[] values = mValues;
+		allocate(capacity);
+		final int mask = mMask;
+		for (int n = 0; n < keys.length; n ++) {
+			if (values[n] != null) {
+				int i = hash(keys[n]) & mask;
+				while (mValues[i] != null) {
+					i = (i + 1) & mask;
+				}
+				mKeys[i] = keys[n];
+				mValues[i] = values[n];
+			}
+		}
+	}
+
+}
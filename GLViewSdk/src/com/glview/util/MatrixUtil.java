@@ -40,6 +40,25 @@ public class MatrixUtil {
         return r;
 	}
 	
+	/**
+	 * @return true if the 4x4 matrix m maps the plane z = 0 to itself without
+	 * perspective, the points of the plane can then be mapped in 2D with
+	 * m[0], m[4], m[12] and m[1], m[5], m[13].
+	 */
+	public static boolean isAffine2D(float[] m) {
+		return m[2] == 0 && m[3] == 0 && m[6] == 0 && m[7] == 0 && m[14] == 0 && m[15] == 1;
+	}
+	
+	/**
+	 * @return true if the 4x4 matrices at the start of a and b are equal.
+	 */
+	public static boolean equals(float[] a, float[] b) {
+		for (int i = 0; i < 16; i ++) {
+			if (a[i] != b[i]) return false;
+		}
+		return true;
+	}
+	
 	/**
 	 * {@link Matrix#mapRect(RectF, RectF)}
 	 * @param m      the matrix
@@ -4,6 +4,8 @@ import java.util.List;
 
 import com.glview.animation.Animator;
 import com.glview.graphics.Bitmap;
+import com.glview.graphics.Rect;
+import com.glview.hwui.FrameStats;
 import com.glview.hwui.GLCanvas;
 import com.glview.hwui.RenderNode;
 import com.glview.hwui.RenderPolicy;
@@ -81,14 +83,31 @@ class GLRenderer {
     }
 	
 	public void draw(View view) {
+		draw(view, null);
+	}
+	
+	/**
+	 * @param dirty the area changed since the last frame in window coordinates,
+	 * null to draw the whole window.
+	 */
+	public void draw(View view, Rect dirty) {
+		final long recordStart = System.nanoTime();
 		updateRootDisplayList(view);
 		/*
 		 * draw
 		 */
-		syncAndDrawFrame();
+		syncAndDrawFrame(System.nanoTime() - recordStart, dirty);
+	}
+	
+	void syncAndDrawFrame(long recordTime, Rect dirty) {
+		mRenderer.syncAndDrawFrame(recordTime, dirty);
+	}
+	
+	public void setOnFrameStatsListener(FrameStats.OnFrameStatsListener listener) {
+		mRenderer.setOnFrameStatsListener(listener);
 	}
 	
-	void syncAndDrawFrame() {
-		mRenderer.syncAndDrawFrame();
+	public FrameStats getFrameStats() {
+		return mRenderer.getFrameStats();
 	}
 }
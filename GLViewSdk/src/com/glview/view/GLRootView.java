@@ -20,6 +20,8 @@ import android.view.SurfaceView;
 
 import com.glview.animation.Animator;
 import com.glview.graphics.Bitmap;
+import com.glview.graphics.Region;
+import com.glview.hwui.FrameStats;
 import com.glview.hwui.task.Task;
 import com.glview.hwui.task.TaskHandler;
 import com.glview.thread.Handler;
@@ -74,6 +76,14 @@ final public class GLRootView extends SurfaceView
 	boolean mRenderRequested = false;
 	boolean mRenderPrepared = false;
 	
+	/**
+	 * The damage of the next frame, reported by {@link #invalidateRect(int, int, int, int)}.
+	 * The whole window is drawn if {@link #mFullDamage} or if nothing was reported.
+	 */
+	final Region mDirtyRegion = new Region();
+	final com.glview.graphics.Rect mDirtyBounds = new com.glview.graphics.Rect();
+	boolean mFullDamage = true;
+	
 	boolean mAttatched = false;
 	boolean mFirst;
 	
@@ -127,6 +137,21 @@ final public class GLRootView extends SurfaceView
 		}
 	}
 	
+	/**
+	 * Get the timings of the frames of this window every {@link FrameStats#REPORT_INTERVAL} frames,
+	 * the listener is called in the UI thread.
+	 */
+	public void setOnFrameStatsListener(FrameStats.OnFrameStatsListener listener) {
+		getRenderer().setOnFrameStatsListener(listener);
+	}
+	
+	/**
+	 * @return the timings of the last frames of this window, null before the first surface.
+	 */
+	public FrameStats getFrameStats() {
+		return getRenderer().getFrameStats();
+	}
+	
 	GLRenderer getRenderer() {
 		if (mRenderer == null) {
 			mRenderer = GLRenderer.createRender();
@@ -277,6 +302,17 @@ final public class GLRootView extends SurfaceView
 	
 	public void requestRender() {
 		checkThread();
+		mFullDamage = true;
+		scheduleRender();
+	}
+	
+	/**
+	 * Render a frame which only changes the rect, in window coordinates.
+	 * Called by the top-level view, see {@link View#invalidateRoot(int, int, int, int)}.
+	 */
+	void invalidateRect(int left, int top, int right, int bottom) {
+		checkThread();
+		mDirtyRegion.op(left, top, right, bottom, Region.Op.UNION);
 		scheduleRender();
 	}
 	
@@ -362,7 +398,11 @@ final public class GLRootView extends SurfaceView
 	        }
 			mAttachInfo.mTreeObserver.dispatchOnDraw();
 			if (mDecor != null) {
-				getRenderer().draw(mDecor);
+				// The views invalidated while they are recorded go to the next frame.
+				final boolean fullDamage = mFullDamage || !mDirtyRegion.getBounds(mDirtyBounds);
+				mFullDamage = false;
+				mDirtyRegion.setEmpty();
+				getRenderer().draw(mDecor, fullDamage ? null : mDirtyBounds);
 			}
 		} else {
 			// Try again
@@ -7086,7 +7086,10 @@ public class View implements KeyEvent.Callback, Drawable.Callback{
             mBottom += offset;
             mRenderNode.setTop(mTop);
             mRenderNode.setBottom(mBottom);
-           invalidate();
+            // The old bounds are at -offset now, both are damaged.
+            final int height = mBottom - mTop;
+            invalidateInternal(0, Math.min(0, -offset), mRight - mLeft,
+                    Math.max(height, height - offset), true, true);
         }
     }
 
@@ -7101,7 +7104,9 @@ public class View implements KeyEvent.Callback, Drawable.Callback{
             mRight += offset;
             mRenderNode.setLeft(mLeft);
             mRenderNode.setRight(mRight);
-            invalidate();
+            final int width = mRight - mLeft;
+            invalidateInternal(Math.min(0, -offset), 0, Math.max(width, width - offset),
+                    mBottom - mTop, true, true);
         }
     }
     
@@ -8784,6 +8789,12 @@ public class View implements KeyEvent.Callback, Drawable.Callback{
         
         final GLRootView mViewRootImpl;
 
+        /**
+         * Temporary for use in computing invalidate rectangles while
+         * calling up the hierarchy.
+         */
+        final Rect mTmpInvalRect = new Rect();
+
         /**
          * Creates a new set of attachment information with the specified
          * events handler and thread.
@@ -9945,21 +9956,53 @@ public class View implements KeyEvent.Callback, Drawable.Callback{
     void invalidateInternal(int l, int t, int r, int b, boolean invalidateCache,
             boolean fullInvalidate) {
     	if (mAttachInfo == null) return;
-    	if ((mPrivateFlags & PFLAG_INVALIDATED)
-                == PFLAG_INVALIDATED) {
-    		return;
-		}
+    	// A view invalidated already still reports the rect, the frame
+    	// only redraws the union of them.
         if (invalidateCache) {
             mPrivateFlags |= PFLAG_INVALIDATED;
             mPrivateFlags &= ~PFLAG_DRAWING_CACHE_VALID;
         }
         if (mParent != null) {
         	mParent.invalidateChild(this, l, t, r, b);
-        } else if (mAttachInfo != null) {
-        	mAttachInfo.mViewRootImpl.requestRender();
+        } else {
+        	invalidateRoot(l, t, r, b);
+    	}
+    }
+    
+    /**
+     * Report a dirty rect of the top-level view to the root, in the coordinates
+     * of the view.
+     */
+    void invalidateRoot(int l, int t, int r, int b) {
+    	final Rect dirty = mAttachInfo.mTmpInvalRect;
+    	dirty.set(l, t, r, b);
+    	if (mapDirtyRectToParent(dirty)) {
+    		mAttachInfo.mViewRootImpl.invalidateRect(dirty.left, dirty.top, dirty.right, dirty.bottom);
+    	} else {
+    		mAttachInfo.mViewRootImpl.requestRender();
     	}
     }
     
+    /**
+     * Map a dirty rect in the coordinates of this view to the coordinates of its
+     * parent, before the scroll of the parent.
+     * @return false if this view is scaled, rotated or animated, its dirty area
+     * isn't known then.
+     */
+    boolean mapDirtyRectToParent(Rect dirty) {
+    	final RenderNode renderNode = mRenderNode;
+    	if (mCurrentAnimation != null || renderNode.getScaleX() != 1 || renderNode.getScaleY() != 1
+    			|| renderNode.getRotation() != 0 || renderNode.getRotationX() != 0
+    			|| renderNode.getRotationY() != 0 || renderNode.getTranslationZ() != 0) {
+    		return false;
+    	}
+    	final float x = mLeft + renderNode.getTranslationX();
+    	final float y = mTop + renderNode.getTranslationY();
+    	dirty.set((int) Math.floor(dirty.left + x), (int) Math.floor(dirty.top + y),
+    			(int) Math.ceil(dirty.right + x), (int) Math.ceil(dirty.bottom + y));
+    	return true;
+    }
+    
     /**
      * @return A handler associated with the thread running the View. This
      * handler can be used to pump events in the UI events queue.
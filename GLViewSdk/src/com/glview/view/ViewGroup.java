@@ -2095,6 +2095,8 @@ public abstract class ViewGroup extends View{
         boolean previousValue = (mGroupFlags & FLAG_CLIP_CHILDREN) == FLAG_CLIP_CHILDREN;
         if (clipChildren != previousValue) {
             setBooleanFlag(FLAG_CLIP_CHILDREN, clipChildren);
+            // pdraw() clips everything to the bounds then.
+            mRenderNode.setClipToBounds(clipChildren);
             invalidate(true);
         }
     }
@@ -3940,14 +3942,24 @@ public abstract class ViewGroup extends View{
     
     void invalidateChild(View child, int l, int t, int r, int b) {
     	mPrivateFlags &= ~PFLAG_DRAWING_CACHE_VALID;
-    	if (mParent != null) {
-    		if (mRenderNode.getLayerType() == LAYER_TYPE_HARDWARE) {
-    			// invalidate layer.
-    			mPrivateFlags |= PFLAG_INVALIDATED;
-    		}
-    		mParent.invalidateChild(this, l, t, r, b);
-    	} else if (mAttachInfo != null) {
+    	if (mParent != null && mRenderNode.getLayerType() == LAYER_TYPE_HARDWARE) {
+    		// invalidate layer.
+    		mPrivateFlags |= PFLAG_INVALIDATED;
+    	}
+    	if (mAttachInfo == null) return;
+    	final Rect dirty = mAttachInfo.mTmpInvalRect;
+    	dirty.set(l, t, r, b);
+    	if (!child.mapDirtyRectToParent(dirty)) {
+    		// The child may draw anywhere, the parents are still told for their layers.
     		mAttachInfo.mViewRootImpl.requestRender();
+    		dirty.set(0, 0, mRight - mLeft, mBottom - mTop);
+    	} else {
+    		dirty.offset(- mScrollX, - mScrollY);
+    	}
+    	if (mParent != null) {
+    		mParent.invalidateChild(this, dirty.left, dirty.top, dirty.right, dirty.bottom);
+    	} else {
+    		invalidateRoot(dirty.left, dirty.top, dirty.right, dirty.bottom);
     	}
     }
     
@@ -37,7 +37,9 @@ import android.view.VelocityTracker;
 import android.view.ViewDebug;
 
 import com.glview.content.GLContext;
+import com.glview.graphics.Bitmap;
 import com.glview.graphics.Rect;
+import com.glview.graphics.bitmap.BitmapDecoder;
 import com.glview.graphics.drawable.Drawable;
 import com.glview.graphics.drawable.TransitionDrawable;
 import com.glview.hwui.GLCanvas;
@@ -513,6 +515,28 @@ public abstract class AbsListView extends AdapterView<ListAdapter> implements Vi
      * The last scroll state reported to clients through {@link OnScrollListener}.
      */
     private int mLastScrollState = OnScrollListener.SCROLL_STATE_IDLE;
+
+    /**
+     * Number of items past the visible ones whose bitmaps are decoded ahead,
+     * see {@link BitmapPrefetchAdapter}.
+     */
+    private int mPrefetchItemCount = DEFAULT_PREFETCH_ITEM_COUNT;
+
+    static final int DEFAULT_PREFETCH_ITEM_COUNT = 4;
+
+    /**
+     * The first position the last prefetch was computed for, tells the scroll direction.
+     */
+    private int mPrefetchFirstPosition = INVALID_POSITION;
+    private boolean mPrefetchDown = true;
+    private int mPrefetchStart = INVALID_POSITION;
+    private int mPrefetchEnd = INVALID_POSITION;
+
+    /**
+     * The bitmaps of the items in [mPrefetchStart, mPrefetchEnd).
+     */
+    private ArrayList<Bitmap> mPrefetchBitmaps = new ArrayList<Bitmap>();
+    private ArrayList<Bitmap> mPrefetchScrap = new ArrayList<Bitmap>();
     
     /**
      * Helper object that renders and controls the fast scroll thumb.
@@ -812,6 +836,8 @@ public abstract class AbsListView extends AdapterView<ListAdapter> implements Vi
         if (mCheckedIdStates != null) {
             mCheckedIdStates.clear();
         }
+
+        cancelPrefetch();
     }
 
     /**
@@ -1325,6 +1351,109 @@ public abstract class AbsListView extends AdapterView<ListAdapter> implements Vi
             mOnScrollListener.onScroll(this, mFirstPosition, getChildCount(), mItemCount);
         }
         onScrollChanged(0, 0, 0, 0); // dummy values, View's implementation does not use these.
+        updatePrefetch();
+    }
+
+    /**
+     * Set how many items past the visible ones, in the direction of the scroll,
+     * get their bitmaps decoded before they are shown. Only used when the
+     * adapter is a {@link BitmapPrefetchAdapter}, 0 to disable.
+     *
+     * @param count The number of items to prefetch.
+     */
+    public void setPrefetchItemCount(int count) {
+        mPrefetchItemCount = Math.max(0, count);
+        if (mPrefetchItemCount == 0) {
+            cancelPrefetch();
+        } else {
+            updatePrefetch();
+        }
+    }
+
+    /**
+     * @return The number of items prefetched.
+     * @see #setPrefetchItemCount(int)
+     */
+    public int getPrefetchItemCount() {
+        return mPrefetchItemCount;
+    }
+
+    /**
+     * Prefetch the bitmaps of the items about to scroll in and cancel the
+     * ones of the items left behind.
+     */
+    void updatePrefetch() {
+        ListAdapter adapter = mAdapter;
+        int offset = 0;
+        if (adapter instanceof HeaderViewListAdapter) {
+            offset = ((HeaderViewListAdapter) adapter).getHeadersCount();
+            adapter = ((HeaderViewListAdapter) adapter).getWrappedAdapter();
+        }
+        if (!(adapter instanceof BitmapPrefetchAdapter) || mPrefetchItemCount <= 0) {
+            return;
+        }
+        final int firstPosition = mFirstPosition;
+        if (mPrefetchFirstPosition != INVALID_POSITION && firstPosition != mPrefetchFirstPosition) {
+            mPrefetchDown = firstPosition > mPrefetchFirstPosition;
+        }
+        mPrefetchFirstPosition = firstPosition;
+
+        int start, end;
+        if (mPrefetchDown) {
+            start = firstPosition + getChildCount();
+            end = Math.min(start + mPrefetchItemCount, mItemCount);
+        } else {
+            end = firstPosition;
+            start = Math.max(end - mPrefetchItemCount, 0);
+        }
+        if (start == mPrefetchStart && end == mPrefetchEnd) {
+            return;
+        }
+        mPrefetchStart = start;
+        mPrefetchEnd = end;
+
+        final BitmapPrefetchAdapter prefetchAdapter = (BitmapPrefetchAdapter) adapter;
+        final int count = adapter.getCount();
+        final ArrayList<Bitmap> bitmaps = mPrefetchScrap;
+        // The nearest items first, they are decoded first.
+        for (int i = 0; i < end - start; i++) {
+            final int position = (mPrefetchDown ? start + i : end - 1 - i) - offset;
+            if (position >= 0 && position < count) {
+                prefetchAdapter.getPrefetchBitmaps(position, bitmaps);
+            }
+        }
+
+        final BitmapDecoder decoder = BitmapDecoder.getInstance();
+        final ArrayList<Bitmap> previous = mPrefetchBitmaps;
+        for (int i = 0; i < previous.size(); i++) {
+            final Bitmap bitmap = previous.get(i);
+            if (!bitmaps.contains(bitmap)) {
+                decoder.cancelPrefetch(bitmap);
+            }
+        }
+        previous.clear();
+        for (int i = 0; i < bitmaps.size(); i++) {
+            decoder.prefetch(bitmaps.get(i));
+        }
+        mPrefetchScrap = previous;
+        mPrefetchBitmaps = bitmaps;
+    }
+
+    /**
+     * Cancel the decoding of the bitmaps prefetched and not started yet.
+     */
+    void cancelPrefetch() {
+        final ArrayList<Bitmap> bitmaps = mPrefetchBitmaps;
+        if (!bitmaps.isEmpty()) {
+            final BitmapDecoder decoder = BitmapDecoder.getInstance();
+            for (int i = 0; i < bitmaps.size(); i++) {
+                decoder.cancelPrefetch(bitmaps.get(i));
+            }
+            bitmaps.clear();
+        }
+        mPrefetchFirstPosition = INVALID_POSITION;
+        mPrefetchStart = INVALID_POSITION;
+        mPrefetchEnd = INVALID_POSITION;
     }
 
     /**
@@ -2178,6 +2307,8 @@ public abstract class AbsListView extends AdapterView<ListAdapter> implements Vi
         // Detach any view left in the scrap heap
         mRecycler.clear();
 
+        cancelPrefetch();
+
         final ViewTreeObserver treeObserver = getViewTreeObserver();
         treeObserver.removeOnTouchModeChangeListener(this);
         if (mTextFilterEnabled) {
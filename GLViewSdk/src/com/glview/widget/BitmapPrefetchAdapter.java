@@ -0,0 +1,25 @@
+package com.glview.widget;
+
+import java.util.List;
+
+import com.glview.graphics.Bitmap;
+
+/**
+ * An adapter whose items show bitmaps decoded from a file, an asset or a
+ * resource. {@link AbsListView} asks it for the bitmaps of the items about
+ * to scroll in and decodes them in background before they are drawn.
+ *
+ * @see com.glview.graphics.bitmap.BitmapDecoder
+ * @see AbsListView#setPrefetchItemCount(int)
+ */
+public interface BitmapPrefetchAdapter {
+
+    /**
+     * Add the bitmaps the item at the position will draw. Called in the UI thread,
+     * must not decode anything.
+     *
+     * @param position Position of the item in the adapter.
+     * @param outBitmaps The list to add the bitmaps to.
+     */
+    void getPrefetchBitmaps(int position, List<Bitmap> outBitmaps);
+}